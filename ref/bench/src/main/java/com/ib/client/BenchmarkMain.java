@@ -0,0 +1,31 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Same as org.openjdk.jmh.Main, but always adds the GC profiler so that allocation rates (gc.alloc.rate.norm)
+ *  are reported next to the timings. All regular JMH command line options are accepted. */
+public class BenchmarkMain {
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+		CommandLineOptions cmdOptions = new CommandLineOptions( args);
+		if (cmdOptions.shouldHelp() || cmdOptions.shouldList() || cmdOptions.shouldListWithParams()
+				|| cmdOptions.shouldListProfilers() || cmdOptions.shouldListResultFormats() ) {
+			org.openjdk.jmh.Main.main( args); // let JMH print help and lists
+			return;
+		}
+
+		OptionsBuilder options = new OptionsBuilder();
+		options.parent( cmdOptions);
+		options.addProfiler( GCProfiler.class);
+		new Runner( options).run();
+	}
+}
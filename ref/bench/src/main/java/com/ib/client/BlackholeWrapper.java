@@ -0,0 +1,58 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/** Hands the decoded values of the benchmarked message types to a Blackhole so that decoding cannot be eliminated. */
+class BlackholeWrapper extends DefaultEWrapper {
+	private final Blackhole m_blackhole;
+
+	BlackholeWrapper(Blackhole blackhole) {
+		m_blackhole = blackhole;
+	}
+
+	@Override public void tickPrice(int tickerId, int field, double price, TickAttrib attrib) {
+		m_blackhole.consume( price);
+		m_blackhole.consume( attrib);
+	}
+
+	@Override public void tickSize(int tickerId, int field, Decimal size) {
+		m_blackhole.consume( size);
+	}
+
+	@Override public void updateMktDepthL2(int tickerId, int position, String marketMaker, int operation, int side, double price, Decimal size, boolean isSmartDepth) {
+		m_blackhole.consume( marketMaker);
+		m_blackhole.consume( price);
+		m_blackhole.consume( size);
+	}
+
+	@Override public void tickByTickAllLast(int reqId, int tickType, long time, double price, Decimal size, TickAttribLast tickAttribLast, String exchange, String specialConditions) {
+		m_blackhole.consume( price);
+		m_blackhole.consume( size);
+		m_blackhole.consume( tickAttribLast);
+		m_blackhole.consume( exchange);
+	}
+
+	@Override public void tickByTickBidAsk(int reqId, long time, double bidPrice, double askPrice, Decimal bidSize, Decimal askSize, TickAttribBidAsk tickAttribBidAsk) {
+		m_blackhole.consume( bidPrice);
+		m_blackhole.consume( bidSize);
+		m_blackhole.consume( tickAttribBidAsk);
+	}
+
+	@Override public void tickByTickMidPoint(int reqId, long time, double midPoint) {
+		m_blackhole.consume( midPoint);
+	}
+
+	@Override public void openOrder(int orderId, Contract contract, Order order, OrderState orderState) {
+		m_blackhole.consume( contract);
+		m_blackhole.consume( order);
+		m_blackhole.consume( orderState);
+	}
+
+	@Override public void contractDetails(int reqId, ContractDetails contractDetails) {
+		m_blackhole.consume( contractDetails);
+	}
+}
@@ -0,0 +1,189 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/** Inbound message payloads used by the decoder benchmarks.
+ *  If the system property "corpus" names a journal recorded with EJournalWriter, the frames of the requested
+ *  type are taken from it; otherwise synthetic messages encoded for server version EClient.MAX_VERSION are used. */
+public final class Corpus {
+	public static final String PROPERTY = "corpus";
+	public static final int SIZE = 64;
+
+	public enum MsgType {
+		TICK_PRICE(1),
+		TICK_SIZE(2),
+		OPEN_ORDER(5),
+		CONTRACT_DATA(10),
+		MARKET_DEPTH_L2(13),
+		TICK_BY_TICK(99);
+
+		private final int m_msgId;
+
+		public int msgId() { return m_msgId; }
+
+		MsgType(int msgId) {
+			m_msgId = msgId;
+		}
+	}
+
+	private Corpus() {
+	}
+
+	/** Returns recorded messages if a corpus journal is configured, synthetic ones otherwise. */
+	public static EMessage[] messages(MsgType type) throws IOException {
+		String fileName = System.getProperty( PROPERTY);
+		return fileName == null ? synthetic( type, 1) : recorded( fileName, type);
+	}
+
+	public static EMessage[] recorded(String fileName, MsgType type) throws IOException {
+		List<EMessage> list = new ArrayList<>();
+		try (EJournalReader journal = new EJournalReader( fileName) ) {
+			journal.next(); // server version and time
+
+			while (journal.next() ) {
+				if (msgId( journal.data(), journal.length() ) == type.msgId() ) {
+					list.add( journal.message() );
+				}
+			}
+		}
+
+		if (list.isEmpty() ) {
+			throw new IllegalStateException( "no " + type + " messages in " + fileName);
+		}
+		return list.toArray( new EMessage[list.size()]);
+	}
+
+	/** Builds SIZE messages of the given type with varying values; reqId is used as ticker/request/order id. */
+	public static EMessage[] synthetic(MsgType type, int reqId) {
+		EMessage[] messages = new EMessage[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			messages[i] = message( fields( type, reqId, i) );
+		}
+		return messages;
+	}
+
+	private static Object[] fields(MsgType type, int reqId, int i) {
+		double price = 100 + i * 0.01;
+		int size = 100 + i;
+
+		switch (type) {
+			case TICK_PRICE:
+				return new Object[] { 1, 6, reqId, 1 + i % 3, price, size, 0 };
+
+			case TICK_SIZE:
+				return new Object[] { 2, 6, reqId, 8, size * 100 };
+
+			case MARKET_DEPTH_L2:
+				return new Object[] { 13, 1, reqId, i % 10, "NSDQ", i < 10 ? 0 : 1, i % 2, price, size, 1 };
+
+			case TICK_BY_TICK:
+				return new Object[] { 99, reqId, 1, 1700000000L + i, price, size, 0, "NYSE", "" };
+
+			case OPEN_ORDER:
+				return openOrder( reqId + i, price, size);
+
+			case CONTRACT_DATA:
+				return contractData( reqId, 265598 + i);
+
+			default:
+				throw new IllegalArgumentException( type.toString() );
+		}
+	}
+
+	/** OPEN_ORDER for a plain limit order; the field layout follows EOrderDecoder at server version 193. */
+	private static Object[] openOrder(int orderId, double lmtPrice, int qty) {
+		return new Object[] {
+			5, orderId,
+			// contract
+			265598, "AAPL", "STK", "", 0, "", "", "SMART", "USD", "AAPL", "NMS",
+			// action, quantity, type, prices, tif, oca group, account, open/close, origin, order ref, client id, perm id
+			"BUY", qty, "LMT", lmtPrice, "", "DAY", "", "DU000000", "", 0, "", 1, 1000000000L + orderId,
+			// outside rth, hidden, discretionary amount, good after time, shares allocation, fa group, method, percentage
+			0, 0, 0, "", "", "", "", "",
+			// model code, good till date, rule 80A, percent offset, settling firm
+			"", "", "", "", "",
+			// short sale slot, designated location, exempt code, auction strategy
+			0, "", -1, 0,
+			// starting price, stock ref price, delta, stock range lower, upper, display size
+			"", "", "", "", "", "",
+			// block order, sweep to fill, all or none, min qty, oca type, e-trade only, firm quote only, nbbo price cap
+			0, 0, 0, "", 3, 0, 0, "",
+			// parent id, trigger method
+			0, 0,
+			// volatility, volatility type, delta neutral order type, aux price, continuous update, reference price type
+			"", 0, "", "", 0, 0,
+			// trail stop price, trailing percent, basis points, basis points type
+			"", "", "", "",
+			// combo legs description, combo legs, order combo legs, smart combo routing params
+			"", 0, 0, 0,
+			// scale init level size, subs level size, price increment
+			"", "", "",
+			// hedge type, opt out smart routing, clearing account, clearing intent, not held, delta neutral, algo strategy, solicited
+			"", 0, "", "IB", 0, 0, "", 0,
+			// what if, status, margins before/change/after
+			0, "Submitted", "", "", "", "", "", "", "1.7976931348623157E308", "1.7976931348623157E308", "1.7976931348623157E308",
+			// commission, min, max, currency, warning
+			"", "", "", "", "",
+			// randomize size, randomize price, conditions
+			0, 0, 0,
+			// adjusted order type, trigger price, trail stop price, lmt price offset, adjusted stop, stop limit, trailing amount, trailing unit
+			"None", "", "", "", "", "", "", 0,
+			// soft dollar tier
+			"", "", "",
+			// cash qty, don't use auto price for hedge, oms container, discretionary up to limit, price mgmt algo, duration, post to ats, auto cancel parent
+			"", 1, 0, 0, "", "", "", 0,
+			// min trade qty, min compete size, compete against best offset, mid offset at whole, at half
+			"", "", "", "", "",
+			// customer account, professional customer, bond accrued interest, include overnight, ext operator, manual order indicator
+			"", 0, "", 0, "", ""
+		};
+	}
+
+	/** CONTRACT_DATA for a stock; the field layout follows EDecoder at server version 193. */
+	private static Object[] contractData(int reqId, int conid) {
+		return new Object[] {
+			10, reqId,
+			"AAPL", "STK", "", "", 0, "", "SMART", "USD", "AAPL", "NMS", "NMS", conid, 0.01, "",
+			"ACTIVETIM,AD,ADJUST,ALERT,ALGO,ALLOC,AON,AVGCOST,BASKET,BENCHPX,COND,CONDORDER,DARKONLY,DARKPOLL,DAY,DEACT,DEACTDIS,DEACTEOD,DIS,GAT,GTC,GTD,GTT,HID,IBKRATS,ICE,IMB,IOC,LIT,LMT,LOC,MIT,MKT,MOC,MTL,NGCOMB,NODARK,NONALGO,OCA,OPG,OPGREROUT,PEGBENCH,POSTONLY,PREOPGRTH,REL,RPI,RTH,SCALE,SCALEODD,SCALERST,SNAPMID,SNAPMKT,SNAPREL,STP,STPLMT,SWEEP,TRAIL,TRAILLIT,TRAILLMT,TRAILMIT,WHATIF",
+			"SMART,AMEX,NYSE,CBOE,PHLX,ISE,CHX,ARCA,ISLAND,DRCTEDGE,BEX,BATS,EDGEA,BYX,IEX,EDGX,FOXRIVER,PEARL,NYSENAT,LTSE,MEMX,IBEOS,OVERNIGHT,TPLUS0,PSX",
+			1, 0, "APPLE INC", "NASDAQ",
+			"", "Technology", "Computers", "Computers", "US/Eastern",
+			"20240102:0400-20240102:2000;20240103:0400-20240103:2000;20240104:0400-20240104:2000",
+			"20240102:0930-20240102:1600;20240103:0930-20240103:1600;20240104:0930-20240104:1600",
+			"", "",
+			1, "ISIN", "US0378331005",
+			1, "", "",
+			"26,26,26,26,26,26,26,26,26,26,26,26,26,26,26,26,26,26,26,26,26,26,26,26,26",
+			"", "COMMON", "0.0001", "0.0001", "100",
+			0
+		};
+	}
+
+	/** Encodes fields the way TWS does: NUL-terminated strings, without the length prefix. */
+	static EMessage message(Object... fields) {
+		StringBuilder sb = new StringBuilder();
+		for (Object field : fields) {
+			sb.append( field).append( '\0');
+		}
+		byte[] bytes = sb.toString().getBytes( StandardCharsets.US_ASCII);
+		return new EMessage( bytes, bytes.length);
+	}
+
+	private static int msgId(byte[] buf, int len) {
+		int id = 0;
+		for (int i = 0; i < len && buf[i] != 0; i++) {
+			if (buf[i] < '0' || buf[i] > '9') {
+				return -1;
+			}
+			id = id * 10 + buf[i] - '0';
+		}
+		return id;
+	}
+}
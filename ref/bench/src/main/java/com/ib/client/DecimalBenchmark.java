@@ -0,0 +1,82 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/** Decimal construction and arithmetic as used for sizes and quantities in every market data and order message. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DecimalBenchmark {
+	private static final int SIZE = 64;
+
+	private final String[] m_texts = new String[SIZE];
+	private final double[] m_doubles = new double[SIZE];
+	private final Decimal[] m_decimals = new Decimal[SIZE];
+	private int m_next;
+
+	@Setup
+	public void setup() {
+		for (int i = 0; i < SIZE; i++) {
+			m_doubles[i] = i % 4 == 0 ? 100 * i : 100 * i + 0.5;
+			m_texts[i] = i % 4 == 0 ? Integer.toString( 100 * i) : Double.toString( m_doubles[i]);
+			m_decimals[i] = Decimal.get( m_doubles[i]);
+		}
+	}
+
+	private int next() {
+		int i = m_next;
+		m_next = (i + 1) & (SIZE - 1);
+		return i;
+	}
+
+	@Benchmark
+	public Decimal parse() {
+		return Decimal.parse( m_texts[next()]);
+	}
+
+	@Benchmark
+	public Decimal getDouble() {
+		return Decimal.get( m_doubles[next()]);
+	}
+
+	@Benchmark
+	public Decimal add() {
+		int i = next();
+		return m_decimals[i].add( m_decimals[(i + 1) & (SIZE - 1)]);
+	}
+
+	@Benchmark
+	public Decimal multiply() {
+		int i = next();
+		return m_decimals[i].multiply( m_decimals[(i + 1) & (SIZE - 1)]);
+	}
+
+	@Benchmark
+	public Decimal divide() {
+		int i = next();
+		return m_decimals[i].divide( m_decimals[(i + 1) & (SIZE - 1)]);
+	}
+
+	@Benchmark
+	public String toText() {
+		return m_decimals[next()].toString();
+	}
+}
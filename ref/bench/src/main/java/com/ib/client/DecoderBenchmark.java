@@ -0,0 +1,50 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/** EDecoder.processMsg per message type, including the EMessage stream setup done by EReader. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DecoderBenchmark {
+	@Param({ "TICK_PRICE", "TICK_SIZE", "MARKET_DEPTH_L2", "TICK_BY_TICK", "OPEN_ORDER", "CONTRACT_DATA" })
+	public String msgType;
+
+	private EMessage[] m_messages;
+	private EDecoder m_decoder;
+	private int m_next;
+
+	@Setup
+	public void setup(Blackhole blackhole) throws IOException {
+		m_messages = Corpus.messages( Corpus.MsgType.valueOf( msgType) );
+		m_decoder = new EDecoder( EClient.MAX_VERSION, new BlackholeWrapper( blackhole) );
+	}
+
+	@Benchmark
+	public int processMsg() throws IOException {
+		EMessage msg = m_messages[m_next];
+		m_next = (m_next + 1) % m_messages.length;
+		return m_decoder.processMsg( msg);
+	}
+}
@@ -0,0 +1,96 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ib.contracts.StkContract;
+import com.ib.controller.ApiController;
+import com.ib.controller.ApiController.IConnectionHandler;
+import com.ib.controller.ApiController.TopMktDataAdapter;
+
+/** ApiController callback dispatch: the EWrapper call, the handler map lookup and the TickType conversion,
+ *  with and without the preceding decode. The controller is never connected; nextValidId() only marks it ready. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DispatchBenchmark {
+	private static final int FIRST_ORDER_ID = 1;
+	private static final int SUBSCRIPTIONS = 100;
+
+	private ApiController m_controller;
+	private EDecoder m_decoder;
+	private EMessage[] m_messages;
+	private TickAttrib m_attrib = new TickAttrib();
+	private int m_firstReqId;
+	private int m_next;
+
+	@Setup
+	public void setup(final Blackhole blackhole) {
+		m_controller = new ApiController( new ConnectionHandler() );
+		m_controller.nextValidId( FIRST_ORDER_ID);
+
+		// same offset ApiController uses to separate request ids from order ids
+		m_firstReqId = FIRST_ORDER_ID + 10000000;
+		for (int i = 0; i < SUBSCRIPTIONS; i++) {
+			m_controller.reqTopMktData( new StkContract( "S" + i), "", false, false, new TopMktDataAdapter() {
+				@Override public void tickPrice(TickType tickType, double price, TickAttrib attribs) {
+					blackhole.consume( price);
+				}
+				@Override public void tickSize(TickType tickType, Decimal size) {
+					blackhole.consume( size);
+				}
+			});
+		}
+
+		m_decoder = new EDecoder( EClient.MAX_VERSION, m_controller);
+		m_messages = Corpus.synthetic( Corpus.MsgType.TICK_PRICE, m_firstReqId + SUBSCRIPTIONS / 2);
+	}
+
+	@Benchmark
+	public void tickPrice() {
+		int i = m_next;
+		m_next = (i + 1) % SUBSCRIPTIONS;
+		m_controller.tickPrice( m_firstReqId + i, TickType.BID.index(), 100 + i, m_attrib);
+	}
+
+	@Benchmark
+	public int decodeAndDispatch() throws IOException {
+		EMessage msg = m_messages[m_next];
+		m_next = (m_next + 1) % m_messages.length;
+		return m_decoder.processMsg( msg);
+	}
+
+	private static class ConnectionHandler implements IConnectionHandler {
+		@Override public void connected() {
+		}
+		@Override public void disconnected() {
+		}
+		@Override public void accountList(List<String> list) {
+		}
+		@Override public void error(Exception e) {
+		}
+		@Override public void message(int id, int errorCode, String errorMsg, String advancedOrderRejectJson) {
+		}
+		@Override public void show(String string) {
+		}
+	}
+}
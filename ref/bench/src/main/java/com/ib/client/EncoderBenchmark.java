@@ -0,0 +1,90 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ib.contracts.StkContract;
+
+/** Request encoding in EClient, from the public call down to the finished EMessage; nothing is written to a socket. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EncoderBenchmark {
+	private SinkClient m_client;
+	private Contract m_contract;
+	private Order m_order;
+	private OrderTemplate m_template;
+	private int m_id;
+
+	/** Client which pretends to be connected at the latest server version and hands sent messages to a Blackhole. */
+	static class SinkClient extends EClientSocket {
+		private final Blackhole m_blackhole;
+
+		SinkClient(Blackhole blackhole) {
+			super( new DefaultEWrapper(), new EJavaSignal() );
+			m_blackhole = blackhole;
+			m_serverVersion = EClient.MAX_VERSION;
+		}
+
+		@Override public synchronized boolean isConnected() {
+			return true;
+		}
+
+		@Override protected void sendMsg(EMessage msg) {
+			m_blackhole.consume( msg);
+		}
+	}
+
+	@Setup
+	public void setup(Blackhole blackhole) {
+		m_client = new SinkClient( blackhole);
+		m_contract = new StkContract( "AAPL");
+
+		m_order = new Order();
+		m_order.action( "BUY");
+		m_order.orderType( "LMT");
+		m_order.totalQuantity( Decimal.ONE_HUNDRED);
+		m_order.lmtPrice( 187.25);
+		m_order.tif( "DAY");
+
+		Order templateOrder = new Order();
+		templateOrder.action( "BUY");
+		templateOrder.orderType( "LMT");
+		templateOrder.tif( "DAY");
+		m_template = m_client.compileOrder( m_contract, templateOrder);
+	}
+
+	@Benchmark
+	public void placeOrder() {
+		m_client.placeOrder( ++m_id, m_contract, m_order);
+	}
+
+	/** Same order as placeOrder(), amended through a compiled OrderTemplate. */
+	@Benchmark
+	public void placeOrderTemplate() {
+		m_client.placeOrder( m_template, ++m_id, Decimal.ONE_HUNDRED, 187.25, Double.MAX_VALUE);
+	}
+
+	@Benchmark
+	public void reqMktData() {
+		m_client.reqMktData( ++m_id, m_contract, "", false, false, Collections.<TagValue>emptyList() );
+	}
+}
@@ -0,0 +1,119 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Audit text of the high-rate callbacks: the Strings of EWrapperMsgGenerator versus EWrapperMsgFormatter appending
+ *  the same text to a reused StringBuilder. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MsgFormatterBenchmark {
+	private static final int N = 64;
+
+	private final EWrapperMsgFormatter m_formatter = new EWrapperMsgFormatter();
+	private final TickAttrib m_attrib = new TickAttrib();
+	private final TickAttribBidAsk m_bidAsk = new TickAttribBidAsk();
+	private final double[] m_prices = new double[N];
+	private final Decimal[] m_sizes = new Decimal[N];
+	private final Contract[] m_contracts = new Contract[N];
+	private int m_next;
+
+	@Setup
+	public void setup() {
+		for (int i = 0; i < N; i++) {
+			m_prices[i] = 100 + i * 0.01;
+			m_sizes[i] = Decimal.get( (i % 8 + 1) * 100L);
+			Contract contract = new Contract();
+			contract.conid( 1000 + i % 8);
+			contract.symbol( "S" + i % 8);
+			contract.secType( "STK");
+			contract.exchange( "SMART");
+			contract.primaryExch( "NYSE");
+			contract.currency( "USD");
+			contract.localSymbol( "S" + i % 8);
+			contract.tradingClass( "NMS");
+			m_contracts[i] = contract;
+		}
+	}
+
+	@Benchmark
+	public String tickPriceGenerator() {
+		int i = next();
+		return EWrapperMsgGenerator.tickPrice( i, TickType.BID.index(), m_prices[i], m_attrib);
+	}
+
+	@Benchmark
+	public int tickPriceFormatter() {
+		int i = next();
+		m_formatter.tickPrice( i, TickType.BID.index(), m_prices[i], m_attrib);
+		return reset();
+	}
+
+	@Benchmark
+	public String tickSizeGenerator() {
+		int i = next();
+		return EWrapperMsgGenerator.tickSize( i, TickType.BID_SIZE.index(), m_sizes[i]);
+	}
+
+	@Benchmark
+	public int tickSizeFormatter() {
+		int i = next();
+		m_formatter.tickSize( i, TickType.BID_SIZE.index(), m_sizes[i]);
+		return reset();
+	}
+
+	@Benchmark
+	public String tickByTickBidAskGenerator() {
+		int i = next();
+		return EWrapperMsgGenerator.tickByTickBidAsk( i, 1700000000L + i / 16, m_prices[i], m_prices[i] + 0.01, m_sizes[i], m_sizes[i], m_bidAsk);
+	}
+
+	@Benchmark
+	public int tickByTickBidAskFormatter() {
+		int i = next();
+		m_formatter.tickByTickBidAsk( i, 1700000000L + i / 16, m_prices[i], m_prices[i] + 0.01, m_sizes[i], m_sizes[i], m_bidAsk);
+		return reset();
+	}
+
+	@Benchmark
+	public String updatePortfolioGenerator() {
+		int i = next();
+		return EWrapperMsgGenerator.updatePortfolio( m_contracts[i], m_sizes[i], m_prices[i], 1e4, 99.5, 12.5, 0, "DU123");
+	}
+
+	@Benchmark
+	public int updatePortfolioFormatter() {
+		int i = next();
+		m_formatter.updatePortfolio( m_contracts[i], m_sizes[i], m_prices[i], 1e4, 99.5, 12.5, 0, "DU123");
+		return reset();
+	}
+
+	private int next() {
+		m_next = (m_next + 1) & (N - 1);
+		return m_next;
+	}
+
+	private int reset() {
+		StringBuilder text = m_formatter.text();
+		int length = text.length();
+		text.setLength( 0);
+		return length;
+	}
+}
@@ -0,0 +1,73 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** OPEN_ORDER through the eager EWrapper.openOrder() path versus OpenOrderView, reading the fields a blotter needs. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OpenOrderViewBenchmark {
+	private EMessage[] m_messages;
+	private EDecoder m_eagerDecoder;
+	private EDecoder m_lazyDecoder;
+	private int m_next;
+
+	private static class ViewWrapper extends DefaultEWrapper implements EOrderViewWrapper {
+		private final Blackhole m_blackhole;
+
+		ViewWrapper(Blackhole blackhole) {
+			m_blackhole = blackhole;
+		}
+
+		@Override public void openOrder(OpenOrderView view) {
+			m_blackhole.consume( view.orderId() );
+			m_blackhole.consume( view.permId() );
+			m_blackhole.consume( view.status() );
+			m_blackhole.consume( view.totalQuantity() );
+			m_blackhole.consume( view.lmtPrice() );
+		}
+
+		@Override public void completedOrder(OpenOrderView view) {
+		}
+	}
+
+	@Setup
+	public void setup(Blackhole blackhole) throws IOException {
+		m_messages = Corpus.messages( Corpus.MsgType.OPEN_ORDER);
+		m_eagerDecoder = new EDecoder( EClient.MAX_VERSION, new BlackholeWrapper( blackhole) );
+		m_lazyDecoder = new EDecoder( EClient.MAX_VERSION, new ViewWrapper( blackhole) );
+	}
+
+	@Benchmark
+	public int eager() throws IOException {
+		EMessage msg = m_messages[m_next];
+		m_next = (m_next + 1) % m_messages.length;
+		return m_eagerDecoder.processMsg( msg);
+	}
+
+	@Benchmark
+	public int view() throws IOException {
+		EMessage msg = m_messages[m_next];
+		m_next = (m_next + 1) % m_messages.length;
+		return m_lazyDecoder.processMsg( msg);
+	}
+}
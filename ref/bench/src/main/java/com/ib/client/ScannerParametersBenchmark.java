@@ -0,0 +1,132 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ib.controller.ScannerParameters;
+
+/** SCANNER_PARAMETERS decoded into a String by EDecoder.readStr(), which is all the eager path does, versus streamed
+ *  through EXmlStreamWrapper into a parsed and indexed ScannerParameters. The message is a synthetic document of
+ *  about 1.6 MB shaped like the one TWS sends. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ScannerParametersBenchmark {
+	private EMessage m_message;
+	private EDecoder m_eagerDecoder;
+	private EDecoder m_streamDecoder;
+
+	private static class StreamWrapper extends DefaultEWrapper implements EXmlStreamWrapper {
+		private final Blackhole m_blackhole;
+
+		StreamWrapper(Blackhole blackhole) {
+			m_blackhole = blackhole;
+		}
+
+		@Override public void scannerParameters(InputStream xml) {
+			try {
+				m_blackhole.consume( ScannerParameters.parse( xml) );
+			}
+			catch (XMLStreamException e) {
+				throw new IllegalStateException( e);
+			}
+		}
+
+		@Override public void receiveFA(int faDataType, InputStream xml) {
+		}
+	}
+
+	@Setup
+	public void setup(Blackhole blackhole) {
+		byte[] xml = xml( 600, 700, 120).getBytes( StandardCharsets.UTF_8);
+		byte[] header = "19\u00001\u0000".getBytes( StandardCharsets.US_ASCII);
+		byte[] frame = new byte[header.length + xml.length + 1];
+		System.arraycopy( header, 0, frame, 0, header.length);
+		System.arraycopy( xml, 0, frame, header.length, xml.length);
+		m_message = new EMessage( frame, frame.length);
+		m_eagerDecoder = new EDecoder( EClient.MAX_VERSION, new BlackholeWrapper( blackhole) );
+		m_streamDecoder = new EDecoder( EClient.MAX_VERSION, new StreamWrapper( blackhole) );
+	}
+
+	@Benchmark
+	public int eagerString() throws IOException {
+		return m_eagerDecoder.processMsg( m_message);
+	}
+
+	@Benchmark
+	public int streamParsed() throws IOException {
+		return m_streamDecoder.processMsg( m_message);
+	}
+
+	/** Scanner parameters XML with the given number of instruments, scan types and top level locations. */
+	public static String xml(int instruments, int scanTypes, int locations) {
+		StringBuilder sb = new StringBuilder( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<ScanParameterResponse>\n");
+		sb.append( "\t<InstrumentList varName=\"fullInstrumentList\">\n");
+		for (int i = 0; i < instruments; i++) {
+			sb.append( "\t\t<Instrument>\n\t\t\t<name>Instrument ").append( i).append( "</name>\n\t\t\t<type>TYPE.").append( i)
+				.append( "</type>\n\t\t\t<filters>");
+			for (int f = 0; f < 60; f++) {
+				sb.append( f == 0 ? "" : ",").append( "FILTER").append( f);
+			}
+			sb.append( "</filters>\n\t\t\t<group>GROUP.").append( i % 10).append( "</group>\n\t\t\t<shortName>I").append( i)
+				.append( "</shortName>\n\t\t</Instrument>\n");
+		}
+		sb.append( "\t</InstrumentList>\n\t<LocationTree varName=\"locationTree\">\n");
+		for (int i = 0; i < locations; i++) {
+			location( sb, "LOC." + i, "TYPE." + (i % instruments), 2, "\t\t");
+		}
+		sb.append( "\t</LocationTree>\n\t<ScanTypeList varName=\"fullScanTypeList\">\n");
+		for (int i = 0; i < scanTypes; i++) {
+			sb.append( "\t\t<ScanType>\n\t\t\t<displayName>Scan ").append( i).append( "</displayName>\n\t\t\t<scanCode>SCAN_")
+				.append( i).append( "</scanCode>\n\t\t\t<instruments>TYPE.").append( i % instruments).append( ",TYPE.")
+				.append( (i + 1) % instruments).append( "</instruments>\n\t\t\t<absoluteColumns>false</absoluteColumns>\n")
+				.append( "\t\t\t<Columns varName=\"columns\">\n");
+			for (int c = 0; c < 8; c++) {
+				sb.append( "\t\t\t\t<Column varName=\"col\">\n\t\t\t\t\t<colId>").append( c).append( "</colId>\n\t\t\t\t\t<name>Column ")
+					.append( c).append( "</name>\n\t\t\t\t\t<display>true</display>\n\t\t\t\t</Column>\n");
+			}
+			sb.append( "\t\t\t</Columns>\n\t\t\t<supportsSorting>true</supportsSorting>\n\t\t\t<access>unrestricted</access>\n")
+				.append( "\t\t</ScanType>\n");
+		}
+		sb.append( "\t</ScanTypeList>\n</ScanParameterResponse>\n");
+		return sb.toString();
+	}
+
+	private static void location(StringBuilder sb, String code, String instrument, int depth, String indent) {
+		sb.append( indent).append( "<Location varName=\"locationNode\">\n")
+			.append( indent).append( "\t<displayName>Location ").append( code).append( "</displayName>\n")
+			.append( indent).append( "\t<locationCode>").append( code).append( "</locationCode>\n")
+			.append( indent).append( "\t<instruments>").append( instrument).append( "</instruments>\n")
+			.append( indent).append( "\t<routeExchange>SMART</routeExchange>\n");
+		if (depth > 0) {
+			sb.append( indent).append( "\t<LocationTree varName=\"locationTree\">\n");
+			for (int i = 0; i < 3; i++) {
+				location( sb, code + "." + i, instrument, depth - 1, indent + "\t\t");
+			}
+			sb.append( indent).append( "\t</LocationTree>\n");
+		}
+		sb.append( indent).append( "</Location>\n");
+	}
+}
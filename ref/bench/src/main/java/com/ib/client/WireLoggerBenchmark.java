@@ -0,0 +1,98 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ib.controller.ApiConnection.ILogger;
+
+/** Cost on the reading thread of logging one inbound TICK_PRICE frame: ApiConnection's ILogger, which makes a String
+ *  of every frame and writes it synchronously (here to a buffered writer discarding its output), versus
+ *  EWireLogger.inbound(), which copies the frame into its ring for a background thread writing a binary file.
+ *  On a single core the writer thread's time is charged to wireLogger as well. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WireLoggerBenchmark {
+	private byte[][] m_frames;
+	private ILogger m_stringLogger;
+	private EWireLogger m_wireLogger;
+	private File m_file;
+	private int m_next;
+
+	@Setup
+	public void setup() throws IOException {
+		EMessage[] messages = Corpus.synthetic( Corpus.MsgType.TICK_PRICE, 1);
+		m_frames = new byte[messages.length][];
+		for (int i = 0; i < messages.length; i++) {
+			m_frames[i] = messages[i].getRawData();
+		}
+
+		Writer writer = new BufferedWriter( new OutputStreamWriter( new OutputStream() {
+			@Override public void write(int b) {
+			}
+			@Override public void write(byte[] b, int off, int len) {
+			}
+		}, StandardCharsets.UTF_8) );
+		m_stringLogger = valueOf -> {
+			try {
+				writer.write( valueOf);
+			}
+			catch (IOException e) {
+				throw new IllegalStateException( e);
+			}
+		};
+
+		m_file = File.createTempFile( "wire", ".bin");
+		m_wireLogger = new EWireLogger( m_file.getPath(), EWireLogger.Format.BINARY, 8 << 20, 256 << 20, 1);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		m_wireLogger.close();
+		System.out.println( "\nwire logger: frames=" + m_wireLogger.frames() + " dropped=" + m_wireLogger.dropped() );
+		m_file.delete();
+	}
+
+	@Benchmark
+	public void stringLogger() {
+		byte[] frame = next();
+		m_stringLogger.log( new String( frame, 0, frame.length, StandardCharsets.UTF_8) );
+		m_stringLogger.log( "\n");	// ApiController.recEOM()
+	}
+
+	@Benchmark
+	public void wireLogger() {
+		byte[] frame = next();
+		m_wireLogger.inbound( frame, 0, frame.length);
+	}
+
+	private byte[] next() {
+		byte[] frame = m_frames[m_next];
+		m_next = (m_next + 1) % m_frames.length;
+		return frame;
+	}
+}
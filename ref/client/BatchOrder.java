@@ -0,0 +1,18 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+/** One order of a batch sent with EClient.placeOrders(); the order id is taken from the order. */
+public class BatchOrder {
+	private final Contract m_contract;
+	private final Order m_order;
+
+	public Contract contract()	{ return m_contract; }
+	public Order order()		{ return m_order; }
+
+	public BatchOrder(Contract contract, Order order) {
+		m_contract = contract;
+		m_order = order;
+	}
+}
@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.io.ObjectOutput;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +18,7 @@ import java.util.Optional;
 class Builder implements ObjectOutput {
 	private static final char SEP = 0;
 	private static final byte[] EMPTY_LENGTH_HEADER = new byte[ 4 ];
+	private static final byte[] DOUBLE_MAX = String.valueOf( Double.MAX_VALUE).getBytes( StandardCharsets.US_ASCII);
 
 	private final ByteBuffer m_sb;
 
@@ -33,6 +35,12 @@ class Builder implements ObjectOutput {
 	}
 
 	public void send(double a) throws EClientException {
+		if (a == Double.MAX_VALUE) {
+			// unset prices are sent as is by many order fields, and formatting them is by far the slowest part of encoding
+			m_sb.write( DOUBLE_MAX, 0, DOUBLE_MAX.length);
+			m_sb.write( SEP);
+			return;
+		}
         send( String.valueOf( a) );
 	}
 
@@ -54,8 +62,7 @@ class Builder implements ObjectOutput {
 		}
 		
 		if (a != null) {
-		    byte[] buffer = a.getBytes(StandardCharsets.UTF_8);
-		    m_sb.write( buffer, 0, buffer.length );
+		    m_sb.writeAscii( a);
 		}
 		m_sb.write( SEP);
 	}
@@ -103,6 +110,19 @@ class Builder implements ObjectOutput {
        m_sb.writeTo( dos );
     }
 
+    byte[] toByteArray() {
+        return m_sb.toByteArray();
+    }
+
+    int size() {
+        return m_sb.size();
+    }
+
+    /** Discards everything written after the given size, e.g. a message which failed to encode. */
+    void truncate(int size) {
+        m_sb.truncate( size);
+    }
+
     // b[] must be at least b[position+4]
     static void intToBytes(int val, byte b[], int position) {
         b[position]   = (byte)(0xff & (val >> 24));
@@ -151,6 +171,21 @@ class Builder implements ObjectOutput {
         void writeTo(DataOutputStream out) throws IOException {
             out.write( this.buf, 0, this.count );
         }
+
+        void truncate(int size) {
+            this.count = Math.min( this.count, size);
+        }
+
+        /** Writes a string already known to be ASCII without encoding it to an intermediate array. */
+        void writeAscii(String str) {
+            int len = str.length();
+            if (this.count + len > this.buf.length) {
+                this.buf = Arrays.copyOf( this.buf, Math.max( this.buf.length * 2, this.count + len) );
+            }
+            for (int i = 0; i < len; i++) {
+                this.buf[this.count++] = (byte)str.charAt( i);
+            }
+        }
     }
 
 	@Override
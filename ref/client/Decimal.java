@@ -171,4 +171,8 @@ public class Decimal implements Comparable<Decimal>{
     public long longValue() {
         return isValid() ? m_value.longValue() : Long.MAX_VALUE;
     }
+
+    public double doubleValue() {
+        return isValid() ? m_value.doubleValue() : Double.MAX_VALUE;
+    }
 }
@@ -5,6 +5,8 @@ package com.ib.client;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.ib.client.Types.SecType;
@@ -333,6 +335,7 @@ public abstract class EClient {
     private String m_connectOptions = ""; // iServer rails are used for Connection if this is not null
 	protected String m_host;
 	protected ETransport m_socketTransport;
+	private volatile PreTradeChecks m_preTradeChecks;
 	
 	public boolean isUseV100Plus() {
 		return m_useV100Plus;
@@ -350,6 +353,10 @@ public abstract class EClient {
     // get
     public String optionalCapabilities() { return m_optionalCapabilities; }
 
+    /** Checks run by placeOrder() before an order is sent; null, the default, for none. */
+    public PreTradeChecks preTradeChecks()                       { return m_preTradeChecks; }
+    public void preTradeChecks(PreTradeChecks preTradeChecks)    { m_preTradeChecks = preTradeChecks; }
+
     public EClient( EWrapper eWrapper, EReaderSignal signal) {
         m_eWrapper = eWrapper;
         m_signal = signal;
@@ -1427,12 +1434,183 @@ public abstract class EClient {
             return;
         }
 
+        PreTradeChecks preTradeChecks = m_preTradeChecks;
+        if (preTradeChecks != null) {
+            String reason = preTradeChecks.check(contract, order);
+            if (reason != null) {
+                error(id, EClientErrors.PRE_TRADE_REJECT, reason);
+                return;
+            }
+        }
+
+        if (!checkOrder(id, contract, order)) {
+            return;
+        }
+
+        // send place order msg
+        try {
+            final Builder b = prepareBuffer(); 
+            encodeOrder(b, id, contract, order);
+            closeAndSend(b);
+        }
+        catch(EClientException e) {
+            error(id, e.error(), e.text());
+        }
+        catch(Exception e) {
+            error(id, EClientErrors.FAIL_SEND_ORDER, e.toString());
+            close();
+        }
+    }
+
+    /** Places or modifies a batch of orders, e.g. a basket or bracket orders, with a single write to the socket.
+     *  Every order is checked as by placeOrder(), and the pre-trade checks count the orders accepted before it in
+     *  the batch; an order which fails a check or cannot be encoded is reported through EWrapper.error() with its id
+     *  and left out, the others are sent in list order. Returns the orders sent, none if the write failed. */
+    public synchronized List<BatchOrder> placeOrders(List<BatchOrder> orders) {
+        if( !isConnected()) {
+            notConnected();
+            return Collections.emptyList();
+        }
+
+        PreTradeChecks preTradeChecks = m_preTradeChecks;
+        Builder b = new Builder( 1024 * orders.size() );
+        List<BatchOrder> sent = new ArrayList<>(orders.size());
+        try {
+            for (BatchOrder batchOrder : orders) {
+                Contract contract = batchOrder.contract();
+                Order order = batchOrder.order();
+                int id = order.orderId();
+
+                if (preTradeChecks != null) {
+                    String reason = preTradeChecks.check(contract, order);
+                    if (reason != null) {
+                        error(id, EClientErrors.PRE_TRADE_REJECT, reason);
+                        continue;
+                    }
+                }
+                if (!checkOrder(id, contract, order)) {
+                    continue;
+                }
+
+                int start = b.size();
+                try {
+                    if (m_useV100Plus) {
+                        b.allocateLengthHeader();
+                    }
+                    encodeOrder(b, id, contract, order);
+                    if (m_useV100Plus) {
+                        b.updateLength(start);
+                    }
+                    sent.add(batchOrder);
+                    if (preTradeChecks != null) {
+                        preTradeChecks.batchOrder(contract, order);
+                    }
+                }
+                catch(EClientException e) {
+                    b.truncate(start);
+                    error(id, e.error(), e.text());
+                }
+                catch(IOException e) {
+                    b.truncate(start);
+                    error(id, EClientErrors.FAIL_SEND_ORDER, e.toString());
+                }
+            }
+        }
+        finally {
+            if (preTradeChecks != null) {
+                preTradeChecks.batchEnd();
+            }
+        }
+
+        if (!sent.isEmpty()) {
+            try {
+                sendMsg(new EMessage(b));
+            }
+            catch(Exception e) {
+                error(EClientErrors.NO_VALID_ID, EClientErrors.FAIL_SEND_ORDER, e.toString());
+                close();
+                return Collections.emptyList();
+            }
+        }
+        return sent;
+    }
+
+    /** Validates and encodes an order once for repeated placeOrder(template, ...) calls, e.g. to amend its price
+     *  or size; the order id is assigned when the template is sent. Returns null, after reporting the error, if the
+     *  order is not supported or the server is older than MIN_SERVER_VER_ORDER_CONTAINER. */
+    public synchronized OrderTemplate compileOrder(Contract contract, Order order) {
+        if( !isConnected()) {
+            notConnected();
+            return null;
+        }
+
+        if (m_serverVersion < MIN_SERVER_VER_ORDER_CONTAINER || !m_useV100Plus) {
+            error(order.orderId(), EClientErrors.UPDATE_TWS, "  It does not support order templates.");
+            return null;
+        }
+
+        if (!checkOrder(order.orderId(), contract, order)) {
+            return null;
+        }
+
+        try {
+            Builder b = new Builder( 1024);
+            encodeOrder(b, order.orderId(), contract, order);
+            return new OrderTemplate(contract, order, m_serverVersion, b.toByteArray());
+        }
+        catch(EClientException e) {
+            error(order.orderId(), e.error(), e.text());
+            return null;
+        }
+        catch(IOException e) {
+            error(order.orderId(), EClientErrors.FAIL_SEND_ORDER, e.toString());
+            return null;
+        }
+    }
+
+    /** Places or modifies the order of a template with a new id, quantity and prices; Double.MAX_VALUE leaves a
+     *  price unset. The pre-trade checks see the new values, but the template's order only takes them once the
+     *  checks passed. Returns true if the order was sent. */
+    public synchronized boolean placeOrder(OrderTemplate template, int id, Decimal quantity, double lmtPrice, double auxPrice) {
+        if( !isConnected()) {
+            notConnected();
+            return false;
+        }
+
+        if (template.serverVersion() != m_serverVersion) {
+            error(id, EClientErrors.FAIL_SEND_ORDER, "order template compiled for another connection");
+            return false;
+        }
+
+        PreTradeChecks preTradeChecks = m_preTradeChecks;
+        if (preTradeChecks != null) {
+            String reason = preTradeChecks.check(template.contract(), template.requested(id, quantity, lmtPrice, auxPrice));
+            if (reason != null) {
+                error(id, EClientErrors.PRE_TRADE_REJECT, reason);
+                return false;
+            }
+        }
+
+        template.encode(id, quantity, lmtPrice, auxPrice);
+        try {
+            sendMsg(new EMessage(template.buffer(), template.length()));
+            return true;
+        }
+        catch(Exception e) {
+            error(id, EClientErrors.FAIL_SEND_ORDER, e.toString());
+            close();
+            return false;
+        }
+    }
+
+    /** Reports an error and returns false if the server does not support all attributes of the order. */
+    private boolean checkOrder(int id, Contract contract, Order order) {
         if (m_serverVersion < MIN_SERVER_VER_SCALE_ORDERS) {
         	if (order.scaleInitLevelSize() != Integer.MAX_VALUE ||
         		order.scalePriceIncrement() != Double.MAX_VALUE) {
         		error(id, EClientErrors.UPDATE_TWS,
             		"  It does not support Scale orders.");
-        		return;
+        		return false;
         	}
         }
 
@@ -1443,7 +1621,7 @@ public abstract class EClient {
                     	!IsEmpty(comboLeg.designatedLocation())) {
                 		error(id, EClientErrors.UPDATE_TWS,
                 			"  It does not support SSHORT flag for combo legs.");
-                		return;
+                		return false;
                     }
                 }
         	}
@@ -1453,7 +1631,7 @@ public abstract class EClient {
         	if (order.whatIf()) {
         		error(id, EClientErrors.UPDATE_TWS,
         			"  It does not support what-if orders.");
-        		return;
+        		return false;
         	}
         }
 
@@ -1461,7 +1639,7 @@ public abstract class EClient {
         	if (contract.deltaNeutralContract() != null) {
         		error(id, EClientErrors.UPDATE_TWS,
         			"  It does not support delta-neutral orders.");
-        		return;
+        		return false;
         	}
         }
 
@@ -1469,7 +1647,7 @@ public abstract class EClient {
         	if (order.scaleSubsLevelSize() != Integer.MAX_VALUE) {
         		error(id, EClientErrors.UPDATE_TWS,
             		"  It does not support Subsequent Level Size for Scale orders.");
-        		return;
+        		return false;
         	}
         }
 
@@ -1477,7 +1655,7 @@ public abstract class EClient {
         	if (!IsEmpty(order.getAlgoStrategy())) {
         		error(id, EClientErrors.UPDATE_TWS,
         			"  It does not support algo orders.");
-        		return;
+        		return false;
         	}
         }
 
@@ -1485,7 +1663,7 @@ public abstract class EClient {
         	if (order.notHeld()) {
         		error(id, EClientErrors.UPDATE_TWS,
         			"  It does not support notHeld parameter.");
-        		return;
+        		return false;
         	}
         }
 
@@ -1493,7 +1671,7 @@ public abstract class EClient {
         	if (!IsEmpty(contract.getSecIdType()) || !IsEmpty(contract.secId())) {
         		error(id, EClientErrors.UPDATE_TWS,
         			"  It does not support secIdType and secId parameters.");
-        		return;
+        		return false;
         	}
         }
 
@@ -1501,7 +1679,7 @@ public abstract class EClient {
         	if (contract.conid() > 0) {
         		error(id, EClientErrors.UPDATE_TWS,
         			"  It does not support conId parameter.");
-        		return;
+        		return false;
         	}
         }
 
@@ -1509,7 +1687,7 @@ public abstract class EClient {
         	if (order.exemptCode() != -1) {
         		error(id, EClientErrors.UPDATE_TWS,
         			"  It does not support exemptCode parameter.");
-        		return;
+        		return false;
         	}
         }
 
@@ -1519,7 +1697,7 @@ public abstract class EClient {
                     if (comboLeg.exemptCode() != -1) {
                 		error(id, EClientErrors.UPDATE_TWS,
                 			"  It does not support exemptCode parameter.");
-                		return;
+                		return false;
                     }
                 }
         	}
@@ -1529,7 +1707,7 @@ public abstract class EClient {
         	if (!IsEmpty(order.getHedgeType())) {
         		error(id, EClientErrors.UPDATE_TWS,
         			"  It does not support hedge orders.");
-        		return;
+        		return false;
         	}
         }
 
@@ -1537,7 +1715,7 @@ public abstract class EClient {
         	if (order.optOutSmartRouting()) {
         		error(id, EClientErrors.UPDATE_TWS,
         			"  It does not support optOutSmartRouting parameter.");
-        		return;
+        		return false;
         	}
         }
 
@@ -1549,7 +1727,7 @@ public abstract class EClient {
         			) {
         		error(id, EClientErrors.UPDATE_TWS,
         			"  It does not support deltaNeutral parameters: ConId, SettlingFirm, ClearingAccount, ClearingIntent");
-        		return;
+        		return false;
         	}
         }
 
@@ -1561,7 +1739,7 @@ public abstract class EClient {
         			) {
         		error(id, EClientErrors.UPDATE_TWS,
         			"  It does not support deltaNeutral parameters: OpenClose, ShortSale, ShortSaleSlot, DesignatedLocation");
-        		return;
+        		return false;
         	}
         }
 
@@ -1577,7 +1755,7 @@ public abstract class EClient {
         			error(id, EClientErrors.UPDATE_TWS,
         				"  It does not support Scale order parameters: PriceAdjustValue, PriceAdjustInterval, " +
         				"ProfitOffset, AutoReset, InitPosition, InitFillQty and RandomPercent");
-        			return;
+        			return false;
         		}
         	}
         }
@@ -1588,7 +1766,7 @@ public abstract class EClient {
         			if (orderComboLeg.price() != Double.MAX_VALUE) {
         			error(id, EClientErrors.UPDATE_TWS,
         				"  It does not support per-leg prices for order combo legs.");
-        			return;
+        			return false;
         			}
         		}
         	}
@@ -1598,7 +1776,7 @@ public abstract class EClient {
         	if (order.trailingPercent() != Double.MAX_VALUE) {
         		error(id, EClientErrors.UPDATE_TWS,
         			"  It does not support trailing percent parameter");
-        		return;
+        		return false;
         	}
         }
 
@@ -1606,20 +1784,20 @@ public abstract class EClient {
             if (!IsEmpty(contract.tradingClass())) {
                   error(id, EClientErrors.UPDATE_TWS,
                       "  It does not support tradingClass parameters in placeOrder.");
-                  return;
+                  return false;
             }
         }
         
         if (m_serverVersion < MIN_SERVER_VER_ALGO_ID && !IsEmpty(order.algoId()) ) {
             error(id, EClientErrors.UPDATE_TWS, " It does not support algoId parameter");
-            return;
+            return false;
         }
 
         if (m_serverVersion < MIN_SERVER_VER_SCALE_TABLE) {
             if (!IsEmpty(order.scaleTable()) || !IsEmpty(order.activeStartTime()) || !IsEmpty(order.activeStopTime())) {
                   error(id, EClientErrors.UPDATE_TWS,
                       "  It does not support scaleTable, activeStartTime and activeStopTime parameters.");
-                  return;
+                  return false;
             }
         }
         
@@ -1627,7 +1805,7 @@ public abstract class EClient {
         	if (order.solicited()) {
         		error(id, EClientErrors.UPDATE_TWS,
                         "  It does not support order solicited parameter.");
-                return;
+                return false;
         	}
         }
 
@@ -1635,19 +1813,19 @@ public abstract class EClient {
             if (!IsEmpty(order.modelCode())) {
                 error(id, EClientErrors.UPDATE_TWS,
                         "  It does not support model code parameter.");
-                return;
+                return false;
             }
         }
         
         if (m_serverVersion < MIN_SERVER_VER_EXT_OPERATOR && !IsEmpty(order.extOperator()) ) {
             error(id, EClientErrors.UPDATE_TWS, " It does not support ext operator");
-            return;
+            return false;
         }
 
         if (m_serverVersion < MIN_SERVER_VER_SOFT_DOLLAR_TIER && 
                 (!IsEmpty(order.softDollarTier().name()) || !IsEmpty(order.softDollarTier().value()))) {
             error(id, EClientErrors.UPDATE_TWS, " It does not support soft dollar tier");
-            return;
+            return false;
         }
         
 
@@ -1655,7 +1833,7 @@ public abstract class EClient {
             if (order.cashQty() != Double.MAX_VALUE) {
                 error(id, EClientErrors.UPDATE_TWS,
                     " It does not support cash quantity parameter");
-                return;
+                return false;
             }
         }
         
@@ -1664,7 +1842,7 @@ public abstract class EClient {
                 || !IsEmpty(order.mifid2DecisionAlgo()))) {
             error(id, EClientErrors.UPDATE_TWS,
                     " It does not support MIFID II decision maker parameters");
-            return;
+            return false;
         }
 
         if (m_serverVersion < MIN_SERVER_VER_MIFID_EXECUTION
@@ -1672,65 +1850,65 @@ public abstract class EClient {
                         || !IsEmpty(order.mifid2ExecutionAlgo()))) {
             error(id, EClientErrors.UPDATE_TWS,
                     " It does not support MIFID II execution parameters");
-            return;
+            return false;
         }
 
         if (m_serverVersion < MIN_SERVER_VER_AUTO_PRICE_FOR_HEDGE
                 && order.dontUseAutoPriceForHedge()) {
             error(id, EClientErrors.UPDATE_TWS,
                 "  It does not support don't use auto price for hedge parameter.");
-            return;
+            return false;
         }
         
         if (m_serverVersion < MIN_SERVER_VER_ORDER_CONTAINER
                 && order.isOmsContainer()) {
             error(id, EClientErrors.UPDATE_TWS,
                     "  It does not support oms container parameter.");
-            return;           
+            return false;           
         }
         
         if (m_serverVersion < MIN_SERVER_VER_D_PEG_ORDERS
                 && order.discretionaryUpToLimitPrice()) {
             error(id, EClientErrors.UPDATE_TWS,
                     "  It does not support D-Peg orders.");
-            return;           
+            return false;           
         }
         
         if (m_serverVersion < MIN_SERVER_VER_PRICE_MGMT_ALGO 
                 && order.usePriceMgmtAlgo() != null) {
             error(id, EClientErrors.UPDATE_TWS, "  It does not support price management algo parameter");
-            return;
+            return false;
         }
 
         if (m_serverVersion < MIN_SERVER_VER_DURATION 
                 && order.duration() != Integer.MAX_VALUE) {
             error(id, EClientErrors.UPDATE_TWS, "  It does not support duration attribute");
-            return;
+            return false;
         }
 
         if (m_serverVersion < MIN_SERVER_VER_POST_TO_ATS 
                 && order.postToAts() != Integer.MAX_VALUE) {
             error(id, EClientErrors.UPDATE_TWS, "  It does not support postToAts attribute");
-            return;
+            return false;
         }
 
         if (m_serverVersion < MIN_SERVER_VER_AUTO_CANCEL_PARENT 
                 && order.autoCancelParent()) {
             error(id, EClientErrors.UPDATE_TWS, "  It does not support autoCancelParent attribute");
-            return;
+            return false;
         }
         
         if (m_serverVersion < MIN_SERVER_VER_ADVANCED_ORDER_REJECT) {
             if (!IsEmpty(order.advancedErrorOverride())) {
                 error(id, EClientErrors.UPDATE_TWS, "  It does not support advanced error override attribute");
-                return;
+                return false;
             }
         }
 
         if (m_serverVersion < MIN_SERVER_VER_MANUAL_ORDER_TIME) {
             if (!IsEmpty(order.manualOrderTime())) {
                 error(id, EClientErrors.UPDATE_TWS, "  It does not support manual order time attribute");
-                return;
+                return false;
             }
         }
         
@@ -1743,534 +1921,524 @@ public abstract class EClient {
                 error(id, EClientErrors.UPDATE_TWS,
                     "  It does not support PEG BEST / PEG MID order parameters: minTradeQty, minCompeteSize, " +
                     "competeAgainstBestOffset, midOffsetAtWhole and midOffsetAtHalf");
-                return;
+                return false;
             }
         }
 
         if (m_serverVersion < MIN_SERVER_VER_CUSTOMER_ACCOUNT) {
             if (!IsEmpty(order.customerAccount())) {
                 error(id, EClientErrors.UPDATE_TWS, "  It does not support customer account parameter");
-                return;
+                return false;
             }
         }
 
         if (m_serverVersion < MIN_SERVER_VER_PROFESSIONAL_CUSTOMER) {
             if (order.professionalCustomer()) {
                 error(id, EClientErrors.UPDATE_TWS, "  It does not support professional customer parameter");
-                return;
+                return false;
             }
         }
 
         if (m_serverVersion < MIN_SERVER_VER_INCLUDE_OVERNIGHT) {
             if (order.includeOvernight()) {
                 error(id, EClientErrors.UPDATE_TWS, "  It does not support include overnight parameter");
-                return;
+                return false;
             }
         }
 
         if (m_serverVersion < MIN_SERVER_VER_CME_TAGGING_FIELDS) {
             if (order.manualOrderIndicator() != Integer.MAX_VALUE) {
                 error(id, EClientErrors.UPDATE_TWS, "  It does not support manual order indicator parameter");
-                return;
+                return false;
             }
         }
 
-        int VERSION = (m_serverVersion < MIN_SERVER_VER_NOT_HELD) ? 27 : 45;
+        return true;
+    }
 
-        // send place order msg
-        try {
-            final Builder b = prepareBuffer(); 
+    private void encodeOrder(Builder b, int id, Contract contract, Order order) throws IOException {
+        int VERSION = (m_serverVersion < MIN_SERVER_VER_NOT_HELD) ? 27 : 45;
 
-            b.send( PLACE_ORDER);
-            
-            if (m_serverVersion < MIN_SERVER_VER_ORDER_CONTAINER) {
-                b.send( VERSION);
-            }
-            
-            b.send( id);
+        b.send( PLACE_ORDER);
+        
+        if (m_serverVersion < MIN_SERVER_VER_ORDER_CONTAINER) {
+            b.send( VERSION);
+        }
+        
+        b.send( id);
 
-            // send contract fields
-            if( m_serverVersion >= MIN_SERVER_VER_PLACE_ORDER_CONID) {
-                b.send(contract.conid());
-            }
-            b.send( contract.symbol());
-            b.send( contract.getSecType());
-            b.send( contract.lastTradeDateOrContractMonth());
-            b.send( contract.strike());
-            b.send( contract.getRight());
-            if (m_serverVersion >= 15) {
-                b.send(contract.multiplier());
-            }
-            b.send( contract.exchange());
-            if( m_serverVersion >= 14) {
-              b.send(contract.primaryExch());
-            }
-            b.send( contract.currency());
-            if( m_serverVersion >= 2) {
-                b.send (contract.localSymbol());
-            }
-            if (m_serverVersion >= MIN_SERVER_VER_TRADING_CLASS) {
-                b.send(contract.tradingClass());
-            }
-            if( m_serverVersion >= MIN_SERVER_VER_SEC_ID_TYPE){
-            	b.send( contract.getSecIdType());
-            	b.send( contract.secId());
-            }
+        // send contract fields
+        if( m_serverVersion >= MIN_SERVER_VER_PLACE_ORDER_CONID) {
+            b.send(contract.conid());
+        }
+        b.send( contract.symbol());
+        b.send( contract.getSecType());
+        b.send( contract.lastTradeDateOrContractMonth());
+        b.send( contract.strike());
+        b.send( contract.getRight());
+        if (m_serverVersion >= 15) {
+            b.send(contract.multiplier());
+        }
+        b.send( contract.exchange());
+        if( m_serverVersion >= 14) {
+          b.send(contract.primaryExch());
+        }
+        b.send( contract.currency());
+        if( m_serverVersion >= 2) {
+            b.send (contract.localSymbol());
+        }
+        if (m_serverVersion >= MIN_SERVER_VER_TRADING_CLASS) {
+            b.send(contract.tradingClass());
+        }
+        if( m_serverVersion >= MIN_SERVER_VER_SEC_ID_TYPE){
+        	b.send( contract.getSecIdType());
+        	b.send( contract.secId());
+        }
 
-            // send main order fields
-            b.send( order.getAction());
-            
+        // send main order fields
+        b.send( order.getAction());
+        
 			if (m_serverVersion >= MIN_SERVER_VER_FRACTIONAL_POSITIONS)
 				b.send(order.totalQuantity().toString());
 			else
 				b.send((int) order.totalQuantity().longValue());
-            
+        
 			b.send( order.getOrderType());
-            if (m_serverVersion < MIN_SERVER_VER_ORDER_COMBO_LEGS_PRICE) {
-                b.send( order.lmtPrice() == Double.MAX_VALUE ? 0 : order.lmtPrice());
-            }
-            else {
-                b.sendMax( order.lmtPrice());
-            }
-            if (m_serverVersion < MIN_SERVER_VER_TRAILING_PERCENT) {
-                b.send( order.auxPrice() == Double.MAX_VALUE ? 0 : order.auxPrice());
+        if (m_serverVersion < MIN_SERVER_VER_ORDER_COMBO_LEGS_PRICE) {
+            b.send( order.lmtPrice() == Double.MAX_VALUE ? 0 : order.lmtPrice());
+        }
+        else {
+            b.sendMax( order.lmtPrice());
+        }
+        if (m_serverVersion < MIN_SERVER_VER_TRAILING_PERCENT) {
+            b.send( order.auxPrice() == Double.MAX_VALUE ? 0 : order.auxPrice());
+        }
+        else {
+            b.sendMax( order.auxPrice());
+        }
+
+        // send extended order fields
+        b.send( order.getTif());
+        b.send( order.ocaGroup());
+        b.send( order.account());
+        b.send( order.openClose());
+        b.send( order.origin());
+        b.send( order.orderRef());
+        b.send( order.transmit());
+        if( m_serverVersion >= 4 ) {
+            b.send (order.parentId());
+        }
+
+        if( m_serverVersion >= 5 ) {
+            b.send (order.blockOrder());
+            b.send (order.sweepToFill());
+            b.send (order.displaySize());
+            b.send (order.getTriggerMethod());
+            if (m_serverVersion < 38) {
+            	// will never happen
+            	b.send(/* order.m_ignoreRth */ false);
             }
             else {
-                b.sendMax( order.auxPrice());
-            }
-
-            // send extended order fields
-            b.send( order.getTif());
-            b.send( order.ocaGroup());
-            b.send( order.account());
-            b.send( order.openClose());
-            b.send( order.origin());
-            b.send( order.orderRef());
-            b.send( order.transmit());
-            if( m_serverVersion >= 4 ) {
-                b.send (order.parentId());
+            	b.send (order.outsideRth());
             }
+        }
 
-            if( m_serverVersion >= 5 ) {
-                b.send (order.blockOrder());
-                b.send (order.sweepToFill());
-                b.send (order.displaySize());
-                b.send (order.getTriggerMethod());
-                if (m_serverVersion < 38) {
-                	// will never happen
-                	b.send(/* order.m_ignoreRth */ false);
-                }
-                else {
-                	b.send (order.outsideRth());
-                }
-            }
+        if(m_serverVersion >= 7 ) {
+            b.send(order.hidden());
+        }
 
-            if(m_serverVersion >= 7 ) {
-                b.send(order.hidden());
+        // Send combo legs for BAG requests
+        if(m_serverVersion >= 8 && SecType.BAG.name().equalsIgnoreCase(contract.getSecType())) {
+            if ( contract.comboLegs() == null ) {
+                b.send( 0);
             }
+            else {
+                b.send( contract.comboLegs().size());
 
-            // Send combo legs for BAG requests
-            if(m_serverVersion >= 8 && SecType.BAG.name().equalsIgnoreCase(contract.getSecType())) {
-                if ( contract.comboLegs() == null ) {
-                    b.send( 0);
-                }
-                else {
-                    b.send( contract.comboLegs().size());
-
-                    for( ComboLeg comboLeg : contract.comboLegs() ) {
-                        b.send( comboLeg.conid());
-                        b.send( comboLeg.ratio());
-                        b.send( comboLeg.getAction());
-                        b.send( comboLeg.exchange());
-                        b.send( comboLeg.getOpenClose());
-
-                        if (m_serverVersion >= MIN_SERVER_VER_SSHORT_COMBO_LEGS) {
-                        	b.send( comboLeg.shortSaleSlot());
-                        	b.send( comboLeg.designatedLocation());
-                        }
-                        if (m_serverVersion >= MIN_SERVER_VER_SSHORTX_OLD) {
-                            b.send( comboLeg.exemptCode());
-                        }
+                for( ComboLeg comboLeg : contract.comboLegs() ) {
+                    b.send( comboLeg.conid());
+                    b.send( comboLeg.ratio());
+                    b.send( comboLeg.getAction());
+                    b.send( comboLeg.exchange());
+                    b.send( comboLeg.getOpenClose());
+
+                    if (m_serverVersion >= MIN_SERVER_VER_SSHORT_COMBO_LEGS) {
+                    	b.send( comboLeg.shortSaleSlot());
+                    	b.send( comboLeg.designatedLocation());
+                    }
+                    if (m_serverVersion >= MIN_SERVER_VER_SSHORTX_OLD) {
+                        b.send( comboLeg.exemptCode());
                     }
                 }
             }
+        }
 
-            // Send order combo legs for BAG requests
-            if(m_serverVersion >= MIN_SERVER_VER_ORDER_COMBO_LEGS_PRICE && SecType.BAG.name().equalsIgnoreCase(contract.getSecType())) {
-                if ( order.orderComboLegs() == null ) {
-                    b.send( 0);
-                }
-                else {
-                    b.send( order.orderComboLegs().size());
+        // Send order combo legs for BAG requests
+        if(m_serverVersion >= MIN_SERVER_VER_ORDER_COMBO_LEGS_PRICE && SecType.BAG.name().equalsIgnoreCase(contract.getSecType())) {
+            if ( order.orderComboLegs() == null ) {
+                b.send( 0);
+            }
+            else {
+                b.send( order.orderComboLegs().size());
 
-                    for( OrderComboLeg orderComboLeg : order.orderComboLegs() ) {
-                        b.sendMax( orderComboLeg.price());
-                    }
+                for( OrderComboLeg orderComboLeg : order.orderComboLegs() ) {
+                    b.sendMax( orderComboLeg.price());
                 }
             }
+        }
 
-            if(m_serverVersion >= MIN_SERVER_VER_SMART_COMBO_ROUTING_PARAMS && SecType.BAG.name().equalsIgnoreCase(contract.getSecType())) {
-                List<TagValue> smartComboRoutingParams = order.smartComboRoutingParams();
-                int smartComboRoutingParamsCount = smartComboRoutingParams == null ? 0 : smartComboRoutingParams.size();
-                b.send( smartComboRoutingParamsCount);
-                if( smartComboRoutingParamsCount > 0) {
-                    for( TagValue tagValue : smartComboRoutingParams ) {
-                        b.send( tagValue.m_tag);
-                        b.send( tagValue.m_value);
-                    }
+        if(m_serverVersion >= MIN_SERVER_VER_SMART_COMBO_ROUTING_PARAMS && SecType.BAG.name().equalsIgnoreCase(contract.getSecType())) {
+            List<TagValue> smartComboRoutingParams = order.smartComboRoutingParams();
+            int smartComboRoutingParamsCount = smartComboRoutingParams == null ? 0 : smartComboRoutingParams.size();
+            b.send( smartComboRoutingParamsCount);
+            if( smartComboRoutingParamsCount > 0) {
+                for( TagValue tagValue : smartComboRoutingParams ) {
+                    b.send( tagValue.m_tag);
+                    b.send( tagValue.m_value);
                 }
             }
+        }
 
-            if ( m_serverVersion >= 9 ) {
-            	// send deprecated sharesAllocation field
-                b.send( "");
-            }
+        if ( m_serverVersion >= 9 ) {
+        	// send deprecated sharesAllocation field
+            b.send( "");
+        }
 
-            if ( m_serverVersion >= 10 ) {
-                b.send( order.discretionaryAmt());
-            }
+        if ( m_serverVersion >= 10 ) {
+            b.send( order.discretionaryAmt());
+        }
 
-            if ( m_serverVersion >= 11 ) {
-                b.send( order.goodAfterTime());
-            }
+        if ( m_serverVersion >= 11 ) {
+            b.send( order.goodAfterTime());
+        }
 
-            if ( m_serverVersion >= 12 ) {
-                b.send( order.goodTillDate());
-            }
+        if ( m_serverVersion >= 12 ) {
+            b.send( order.goodTillDate());
+        }
 
-            if ( m_serverVersion >= 13 ) {
-               b.send( order.faGroup());
-               b.send( order.getFaMethod());
-               b.send( order.faPercentage());
-               if ( m_serverVersion < MIN_SERVER_VER_FA_PROFILE_DESUPPORT ) {
-                   b.send( ""); // send deprecated faProfile field
-               }
+        if ( m_serverVersion >= 13 ) {
+           b.send( order.faGroup());
+           b.send( order.getFaMethod());
+           b.send( order.faPercentage());
+           if ( m_serverVersion < MIN_SERVER_VER_FA_PROFILE_DESUPPORT ) {
+               b.send( ""); // send deprecated faProfile field
            }
+       }
 
-           if ( m_serverVersion >= MIN_SERVER_VER_MODELS_SUPPORT ) {
-               b.send( order.modelCode());
-           }
+       if ( m_serverVersion >= MIN_SERVER_VER_MODELS_SUPPORT ) {
+           b.send( order.modelCode());
+       }
 
-           if (m_serverVersion >= 18) { // institutional short sale slot fields.
-               b.send( order.shortSaleSlot());      // 0 only for retail, 1 or 2 only for institution.
-               b.send( order.designatedLocation()); // only populate when order.m_shortSaleSlot = 2.
-           }
-           if (m_serverVersion >= MIN_SERVER_VER_SSHORTX_OLD) {
-               b.send( order.exemptCode());
+       if (m_serverVersion >= 18) { // institutional short sale slot fields.
+           b.send( order.shortSaleSlot());      // 0 only for retail, 1 or 2 only for institution.
+           b.send( order.designatedLocation()); // only populate when order.m_shortSaleSlot = 2.
+       }
+       if (m_serverVersion >= MIN_SERVER_VER_SSHORTX_OLD) {
+           b.send( order.exemptCode());
+       }
+       if (m_serverVersion >= 19) {
+           b.send( order.getOcaType());
+           if (m_serverVersion < 38) {
+        	   // will never happen
+        	   b.send( /* order.m_rthOnly */ false);
            }
-           if (m_serverVersion >= 19) {
-               b.send( order.getOcaType());
-               if (m_serverVersion < 38) {
-            	   // will never happen
-            	   b.send( /* order.m_rthOnly */ false);
-               }
-               b.send( order.getRule80A());
-               b.send( order.settlingFirm());
-               b.send( order.allOrNone());
-               b.sendMax( order.minQty());
-               b.sendMax( order.percentOffset());
-               b.send( false); 
-               b.send( false);
-               b.sendMax( Double.MAX_VALUE);
-               b.sendMax( order.auctionStrategy());
-               b.sendMax( order.startingPrice());
-               b.sendMax( order.stockRefPrice());
-               b.sendMax( order.delta());
-        	   // Volatility orders had specific watermark price attribs in server version 26
-        	   double lower = (m_serverVersion == 26 && Util.IsVolOrder(order.orderType()))
-        	   		? Double.MAX_VALUE
-        	   		: order.stockRangeLower();
-        	   double upper = (m_serverVersion == 26 && Util.IsVolOrder(order.orderType()))
+           b.send( order.getRule80A());
+           b.send( order.settlingFirm());
+           b.send( order.allOrNone());
+           b.sendMax( order.minQty());
+           b.sendMax( order.percentOffset());
+           b.send( false); 
+           b.send( false);
+           b.sendMax( Double.MAX_VALUE);
+           b.sendMax( order.auctionStrategy());
+           b.sendMax( order.startingPrice());
+           b.sendMax( order.stockRefPrice());
+           b.sendMax( order.delta());
+    	   // Volatility orders had specific watermark price attribs in server version 26
+    	   double lower = (m_serverVersion == 26 && Util.IsVolOrder(order.orderType()))
+    	   		? Double.MAX_VALUE
+    	   		: order.stockRangeLower();
+    	   double upper = (m_serverVersion == 26 && Util.IsVolOrder(order.orderType()))
    	   				? Double.MAX_VALUE
    	   				: order.stockRangeUpper();
-               b.sendMax( lower);
-               b.sendMax( upper);
-           }
+           b.sendMax( lower);
+           b.sendMax( upper);
+       }
 
-           if (m_serverVersion >= 22) {
-               b.send( order.overridePercentageConstraints());
-           }
+       if (m_serverVersion >= 22) {
+           b.send( order.overridePercentageConstraints());
+       }
 
-           if (m_serverVersion >= 26) { // Volatility orders
-               b.sendMax( order.volatility());
-               b.send(order.getVolatilityType());
-               if (m_serverVersion < 28) {
-            	   b.send( order.getDeltaNeutralOrderType().equalsIgnoreCase("MKT"));
-               } else {
-            	   b.send( order.getDeltaNeutralOrderType());
-            	   b.sendMax( order.deltaNeutralAuxPrice());
-
-                   if (m_serverVersion >= MIN_SERVER_VER_DELTA_NEUTRAL_CONID && !IsEmpty(order.getDeltaNeutralOrderType())){
-                       b.send( order.deltaNeutralConId());
-                       b.send( order.deltaNeutralSettlingFirm());
-                       b.send( order.deltaNeutralClearingAccount());
-                       b.send( order.deltaNeutralClearingIntent());
-                   }
-
-                   if (m_serverVersion >= MIN_SERVER_VER_DELTA_NEUTRAL_OPEN_CLOSE && !IsEmpty(order.getDeltaNeutralOrderType())){
-                       b.send( order.deltaNeutralOpenClose());
-                       b.send( order.deltaNeutralShortSale());
-                       b.send( order.deltaNeutralShortSaleSlot());
-                       b.send( order.deltaNeutralDesignatedLocation());
-                   }
+       if (m_serverVersion >= 26) { // Volatility orders
+           b.sendMax( order.volatility());
+           b.send(order.getVolatilityType());
+           if (m_serverVersion < 28) {
+        	   b.send( order.getDeltaNeutralOrderType().equalsIgnoreCase("MKT"));
+           } else {
+        	   b.send( order.getDeltaNeutralOrderType());
+        	   b.sendMax( order.deltaNeutralAuxPrice());
+
+               if (m_serverVersion >= MIN_SERVER_VER_DELTA_NEUTRAL_CONID && !IsEmpty(order.getDeltaNeutralOrderType())){
+                   b.send( order.deltaNeutralConId());
+                   b.send( order.deltaNeutralSettlingFirm());
+                   b.send( order.deltaNeutralClearingAccount());
+                   b.send( order.deltaNeutralClearingIntent());
                }
-               b.send( order.continuousUpdate());
-               if (m_serverVersion == 26) {
-            	   // Volatility orders had specific watermark price attribs in server version 26
-            	   double lower = Util.IsVolOrder(order.orderType()) ? order.stockRangeLower() : Double.MAX_VALUE;
-            	   double upper = Util.IsVolOrder(order.orderType()) ? order.stockRangeUpper() : Double.MAX_VALUE;
-                   b.sendMax( lower);
-                   b.sendMax( upper);
+
+               if (m_serverVersion >= MIN_SERVER_VER_DELTA_NEUTRAL_OPEN_CLOSE && !IsEmpty(order.getDeltaNeutralOrderType())){
+                   b.send( order.deltaNeutralOpenClose());
+                   b.send( order.deltaNeutralShortSale());
+                   b.send( order.deltaNeutralShortSaleSlot());
+                   b.send( order.deltaNeutralDesignatedLocation());
                }
-               b.send(order.getReferencePriceType());
            }
-
-           if (m_serverVersion >= 30) { // TRAIL_STOP_LIMIT stop price
-               b.sendMax( order.trailStopPrice());
+           b.send( order.continuousUpdate());
+           if (m_serverVersion == 26) {
+        	   // Volatility orders had specific watermark price attribs in server version 26
+        	   double lower = Util.IsVolOrder(order.orderType()) ? order.stockRangeLower() : Double.MAX_VALUE;
+        	   double upper = Util.IsVolOrder(order.orderType()) ? order.stockRangeUpper() : Double.MAX_VALUE;
+               b.sendMax( lower);
+               b.sendMax( upper);
            }
+           b.send(order.getReferencePriceType());
+       }
 
-           if( m_serverVersion >= MIN_SERVER_VER_TRAILING_PERCENT){
-               b.sendMax( order.trailingPercent());
-           }
+       if (m_serverVersion >= 30) { // TRAIL_STOP_LIMIT stop price
+           b.sendMax( order.trailStopPrice());
+       }
 
-           if (m_serverVersion >= MIN_SERVER_VER_SCALE_ORDERS) {
-        	   if (m_serverVersion >= MIN_SERVER_VER_SCALE_ORDERS2) {
-        		   b.sendMax (order.scaleInitLevelSize());
-        		   b.sendMax (order.scaleSubsLevelSize());
-        	   }
-        	   else {
-        		   b.send ("");
-        		   b.sendMax (order.scaleInitLevelSize());
-
-        	   }
-        	   b.sendMax (order.scalePriceIncrement());
-           }
+       if( m_serverVersion >= MIN_SERVER_VER_TRAILING_PERCENT){
+           b.sendMax( order.trailingPercent());
+       }
 
-           if (m_serverVersion >= MIN_SERVER_VER_SCALE_ORDERS3 && order.scalePriceIncrement() > 0.0 && order.scalePriceIncrement() != Double.MAX_VALUE) {
-               b.sendMax (order.scalePriceAdjustValue());
-               b.sendMax (order.scalePriceAdjustInterval());
-               b.sendMax (order.scaleProfitOffset());
-               b.send (order.scaleAutoReset());
-               b.sendMax (order.scaleInitPosition());
-               b.sendMax (order.scaleInitFillQty());
-               b.send (order.scaleRandomPercent());
-           }
+       if (m_serverVersion >= MIN_SERVER_VER_SCALE_ORDERS) {
+    	   if (m_serverVersion >= MIN_SERVER_VER_SCALE_ORDERS2) {
+    		   b.sendMax (order.scaleInitLevelSize());
+    		   b.sendMax (order.scaleSubsLevelSize());
+    	   }
+    	   else {
+    		   b.send ("");
+    		   b.sendMax (order.scaleInitLevelSize());
+
+    	   }
+    	   b.sendMax (order.scalePriceIncrement());
+       }
 
-           if (m_serverVersion >= MIN_SERVER_VER_SCALE_TABLE) {
-               b.send (order.scaleTable());
-               b.send (order.activeStartTime());
-               b.send (order.activeStopTime());
-           }
+       if (m_serverVersion >= MIN_SERVER_VER_SCALE_ORDERS3 && order.scalePriceIncrement() > 0.0 && order.scalePriceIncrement() != Double.MAX_VALUE) {
+           b.sendMax (order.scalePriceAdjustValue());
+           b.sendMax (order.scalePriceAdjustInterval());
+           b.sendMax (order.scaleProfitOffset());
+           b.send (order.scaleAutoReset());
+           b.sendMax (order.scaleInitPosition());
+           b.sendMax (order.scaleInitFillQty());
+           b.send (order.scaleRandomPercent());
+       }
 
-           if (m_serverVersion >= MIN_SERVER_VER_HEDGE_ORDERS) {
-        	   b.send (order.getHedgeType());
-               if (!IsEmpty(order.getHedgeType())) {
-        		   b.send (order.hedgeParam());
-        	   }
-           }
+       if (m_serverVersion >= MIN_SERVER_VER_SCALE_TABLE) {
+           b.send (order.scaleTable());
+           b.send (order.activeStartTime());
+           b.send (order.activeStopTime());
+       }
 
-           if (m_serverVersion >= MIN_SERVER_VER_OPT_OUT_SMART_ROUTING) {
-               b.send (order.optOutSmartRouting());
-           }
+       if (m_serverVersion >= MIN_SERVER_VER_HEDGE_ORDERS) {
+    	   b.send (order.getHedgeType());
+           if (!IsEmpty(order.getHedgeType())) {
+    		   b.send (order.hedgeParam());
+    	   }
+       }
 
-           if (m_serverVersion >= MIN_SERVER_VER_PTA_ORDERS) {
-        	   b.send (order.clearingAccount());
-        	   b.send (order.clearingIntent());
-           }
+       if (m_serverVersion >= MIN_SERVER_VER_OPT_OUT_SMART_ROUTING) {
+           b.send (order.optOutSmartRouting());
+       }
 
-           if (m_serverVersion >= MIN_SERVER_VER_NOT_HELD) {
-        	   b.send (order.notHeld());
-           }
+       if (m_serverVersion >= MIN_SERVER_VER_PTA_ORDERS) {
+    	   b.send (order.clearingAccount());
+    	   b.send (order.clearingIntent());
+       }
 
-           if (m_serverVersion >= MIN_SERVER_VER_DELTA_NEUTRAL) {
-        	   if (contract.deltaNeutralContract() != null) {
-        		   DeltaNeutralContract deltaNeutralContract = contract.deltaNeutralContract();
-        		   b.send( true);
-        		   b.send( deltaNeutralContract.conid());
-        		   b.send( deltaNeutralContract.delta());
-        		   b.send( deltaNeutralContract.price());
-        	   }
-        	   else {
-        		   b.send( false);
-        	   }
-           }
+       if (m_serverVersion >= MIN_SERVER_VER_NOT_HELD) {
+    	   b.send (order.notHeld());
+       }
 
-           if (m_serverVersion >= MIN_SERVER_VER_ALGO_ORDERS) {
-        	   b.send( order.getAlgoStrategy());
-               if( !IsEmpty(order.getAlgoStrategy())) {
-        		   List<TagValue> algoParams = order.algoParams();
-        		   int algoParamsCount = algoParams.size();
-        		   b.send( algoParamsCount);
-        		   for( TagValue tagValue : algoParams ) {
-                       b.send( tagValue.m_tag);
-                       b.send( tagValue.m_value);
-        		   }
-        	   }
-           }
-           
-           if (m_serverVersion >= MIN_SERVER_VER_ALGO_ID) {
-        	   b.send(order.algoId());
-           }
+       if (m_serverVersion >= MIN_SERVER_VER_DELTA_NEUTRAL) {
+    	   if (contract.deltaNeutralContract() != null) {
+    		   DeltaNeutralContract deltaNeutralContract = contract.deltaNeutralContract();
+    		   b.send( true);
+    		   b.send( deltaNeutralContract.conid());
+    		   b.send( deltaNeutralContract.delta());
+    		   b.send( deltaNeutralContract.price());
+    	   }
+    	   else {
+    		   b.send( false);
+    	   }
+       }
 
-           if (m_serverVersion >= MIN_SERVER_VER_WHAT_IF_ORDERS) {
-        	   b.send (order.whatIf());
-           }
-           
-           // send orderMiscOptions parameter
-           if(m_serverVersion >= MIN_SERVER_VER_LINKING) {
-               b.send(order.orderMiscOptions());
-           }
-           
-           if (m_serverVersion >= MIN_SERVER_VER_ORDER_SOLICITED) {
-        	   b.send(order.solicited());
-           }
-           
-           if (m_serverVersion >= MIN_SERVER_VER_RANDOMIZE_SIZE_AND_PRICE) {
-        	   b.send(order.randomizeSize());
-        	   b.send(order.randomizePrice());
-           }
-           
-           if (m_serverVersion >= MIN_SERVER_VER_PEGGED_TO_BENCHMARK) {
-        	   if (Util.IsPegBenchOrder(order.orderType())) {
-        		   b.send(order.referenceContractId());
-        		   b.send(order.isPeggedChangeAmountDecrease());
-        		   b.send(order.peggedChangeAmount());
-        		   b.send(order.referenceChangeAmount());
-        		   b.send(order.referenceExchangeId());
-        	   }
-        	   
-        	   b.send(order.conditions().size());
-        	           	   
-        	   if (order.conditions().size() > 0) {
-        		   for (OrderCondition item : order.conditions()) {
-        			   b.send(item.type().val());
-        			   item.writeTo(b);
-        		   }
-        		   
-        		   b.send(order.conditionsIgnoreRth());
-        		   b.send(order.conditionsCancelOrder());
-        	   }
-        	   
-        	   b.send(order.adjustedOrderType());
-        	   b.send(order.triggerPrice());
-        	   b.send(order.lmtPriceOffset());
-        	   b.send(order.adjustedStopPrice());
-        	   b.send(order.adjustedStopLimitPrice());
-        	   b.send(order.adjustedTrailingAmount());
-        	   b.send(order.adjustableTrailingUnit());
-           }
-           
-           if (m_serverVersion >= MIN_SERVER_VER_EXT_OPERATOR) {
-        	   b.send(order.extOperator());
-           }
-           
-           if (m_serverVersion >= MIN_SERVER_VER_SOFT_DOLLAR_TIER) {
-        	   SoftDollarTier tier = order.softDollarTier();
-        	   
-        	   b.send(tier.name());
-        	   b.send(tier.value());
-           }           
-
-           if (m_serverVersion >= MIN_SERVER_VER_CASH_QTY) {
-               b.sendMax(order.cashQty());
-           }
-           
-           if (m_serverVersion >= MIN_SERVER_VER_DECISION_MAKER) {
-               b.send(order.mifid2DecisionMaker());
-               b.send(order.mifid2DecisionAlgo());
-           }
-           
-           if (m_serverVersion >= MIN_SERVER_VER_MIFID_EXECUTION) {
-               b.send(order.mifid2ExecutionTrader());
-               b.send(order.mifid2ExecutionAlgo());
-           }
-           
-           if (m_serverVersion >= MIN_SERVER_VER_AUTO_PRICE_FOR_HEDGE) {
-               b.send(order.dontUseAutoPriceForHedge());
-           }
-           
-           if (m_serverVersion >= MIN_SERVER_VER_ORDER_CONTAINER) {
-               b.send(order.isOmsContainer());
-           }
-           
-           if (m_serverVersion >= MIN_SERVER_VER_D_PEG_ORDERS) {
-               b.send(order.discretionaryUpToLimitPrice());
-           }
-           
-           if (m_serverVersion >= MIN_SERVER_VER_PRICE_MGMT_ALGO) {
-               b.send(order.usePriceMgmtAlgo());
-           }
+       if (m_serverVersion >= MIN_SERVER_VER_ALGO_ORDERS) {
+    	   b.send( order.getAlgoStrategy());
+           if( !IsEmpty(order.getAlgoStrategy())) {
+    		   List<TagValue> algoParams = order.algoParams();
+    		   int algoParamsCount = algoParams.size();
+    		   b.send( algoParamsCount);
+    		   for( TagValue tagValue : algoParams ) {
+                   b.send( tagValue.m_tag);
+                   b.send( tagValue.m_value);
+    		   }
+    	   }
+       }
+       
+       if (m_serverVersion >= MIN_SERVER_VER_ALGO_ID) {
+    	   b.send(order.algoId());
+       }
 
-           if (m_serverVersion >= MIN_SERVER_VER_DURATION) {
-               b.send(order.duration());
-           }
+       if (m_serverVersion >= MIN_SERVER_VER_WHAT_IF_ORDERS) {
+    	   b.send (order.whatIf());
+       }
+       
+       // send orderMiscOptions parameter
+       if(m_serverVersion >= MIN_SERVER_VER_LINKING) {
+           b.send(order.orderMiscOptions());
+       }
+       
+       if (m_serverVersion >= MIN_SERVER_VER_ORDER_SOLICITED) {
+    	   b.send(order.solicited());
+       }
+       
+       if (m_serverVersion >= MIN_SERVER_VER_RANDOMIZE_SIZE_AND_PRICE) {
+    	   b.send(order.randomizeSize());
+    	   b.send(order.randomizePrice());
+       }
+       
+       if (m_serverVersion >= MIN_SERVER_VER_PEGGED_TO_BENCHMARK) {
+    	   if (Util.IsPegBenchOrder(order.orderType())) {
+    		   b.send(order.referenceContractId());
+    		   b.send(order.isPeggedChangeAmountDecrease());
+    		   b.send(order.peggedChangeAmount());
+    		   b.send(order.referenceChangeAmount());
+    		   b.send(order.referenceExchangeId());
+    	   }
+    	   
+    	   b.send(order.conditions().size());
+    	           	   
+    	   if (order.conditions().size() > 0) {
+    		   for (OrderCondition item : order.conditions()) {
+    			   b.send(item.type().val());
+    			   item.writeTo(b);
+    		   }
+    		   
+    		   b.send(order.conditionsIgnoreRth());
+    		   b.send(order.conditionsCancelOrder());
+    	   }
+    	   
+    	   b.send(order.adjustedOrderType());
+    	   b.send(order.triggerPrice());
+    	   b.send(order.lmtPriceOffset());
+    	   b.send(order.adjustedStopPrice());
+    	   b.send(order.adjustedStopLimitPrice());
+    	   b.send(order.adjustedTrailingAmount());
+    	   b.send(order.adjustableTrailingUnit());
+       }
+       
+       if (m_serverVersion >= MIN_SERVER_VER_EXT_OPERATOR) {
+    	   b.send(order.extOperator());
+       }
+       
+       if (m_serverVersion >= MIN_SERVER_VER_SOFT_DOLLAR_TIER) {
+    	   SoftDollarTier tier = order.softDollarTier();
+    	   
+    	   b.send(tier.name());
+    	   b.send(tier.value());
+       }           
+
+       if (m_serverVersion >= MIN_SERVER_VER_CASH_QTY) {
+           b.sendMax(order.cashQty());
+       }
+       
+       if (m_serverVersion >= MIN_SERVER_VER_DECISION_MAKER) {
+           b.send(order.mifid2DecisionMaker());
+           b.send(order.mifid2DecisionAlgo());
+       }
+       
+       if (m_serverVersion >= MIN_SERVER_VER_MIFID_EXECUTION) {
+           b.send(order.mifid2ExecutionTrader());
+           b.send(order.mifid2ExecutionAlgo());
+       }
+       
+       if (m_serverVersion >= MIN_SERVER_VER_AUTO_PRICE_FOR_HEDGE) {
+           b.send(order.dontUseAutoPriceForHedge());
+       }
+       
+       if (m_serverVersion >= MIN_SERVER_VER_ORDER_CONTAINER) {
+           b.send(order.isOmsContainer());
+       }
+       
+       if (m_serverVersion >= MIN_SERVER_VER_D_PEG_ORDERS) {
+           b.send(order.discretionaryUpToLimitPrice());
+       }
+       
+       if (m_serverVersion >= MIN_SERVER_VER_PRICE_MGMT_ALGO) {
+           b.send(order.usePriceMgmtAlgo());
+       }
 
-           if (m_serverVersion >= MIN_SERVER_VER_POST_TO_ATS) {
-               b.send(order.postToAts());
-           }
+       if (m_serverVersion >= MIN_SERVER_VER_DURATION) {
+           b.send(order.duration());
+       }
 
-           if (m_serverVersion >= MIN_SERVER_VER_AUTO_CANCEL_PARENT) {
-               b.send(order.autoCancelParent());
-           }
-           
-           if (m_serverVersion >= MIN_SERVER_VER_ADVANCED_ORDER_REJECT) {
-               b.send(order.advancedErrorOverride());
-           }
+       if (m_serverVersion >= MIN_SERVER_VER_POST_TO_ATS) {
+           b.send(order.postToAts());
+       }
 
-           if (m_serverVersion >= MIN_SERVER_VER_MANUAL_ORDER_TIME) {
-               b.send(order.manualOrderTime());
-           }
+       if (m_serverVersion >= MIN_SERVER_VER_AUTO_CANCEL_PARENT) {
+           b.send(order.autoCancelParent());
+       }
+       
+       if (m_serverVersion >= MIN_SERVER_VER_ADVANCED_ORDER_REJECT) {
+           b.send(order.advancedErrorOverride());
+       }
 
-           if (m_serverVersion >= MIN_SERVER_VER_PEGBEST_PEGMID_OFFSETS) {
-               if (contract.exchange().equals("IBKRATS")) {
-                   b.sendMax(order.minTradeQty());
-               }
-               boolean sendMidOffsets = false;
-               if (Util.IsPegBestOrder(order.orderType())) {
-                   b.sendMax(order.minCompeteSize());
-                   b.sendMax(order.competeAgainstBestOffset());
-                   if (order.isCompeteAgainstBestOffsetUpToMid()) {
-                       sendMidOffsets = true;
-                   }
-               } else if (Util.IsPegMidOrder(order.orderType())) {
+       if (m_serverVersion >= MIN_SERVER_VER_MANUAL_ORDER_TIME) {
+           b.send(order.manualOrderTime());
+       }
+
+       if (m_serverVersion >= MIN_SERVER_VER_PEGBEST_PEGMID_OFFSETS) {
+           if (contract.exchange().equals("IBKRATS")) {
+               b.sendMax(order.minTradeQty());
+           }
+           boolean sendMidOffsets = false;
+           if (Util.IsPegBestOrder(order.orderType())) {
+               b.sendMax(order.minCompeteSize());
+               b.sendMax(order.competeAgainstBestOffset());
+               if (order.isCompeteAgainstBestOffsetUpToMid()) {
                    sendMidOffsets = true;
                }
-               if (sendMidOffsets) {
-                   b.sendMax(order.midOffsetAtWhole());
-                   b.sendMax(order.midOffsetAtHalf());
-               }
+           } else if (Util.IsPegMidOrder(order.orderType())) {
+               sendMidOffsets = true;
            }
-
-           if (m_serverVersion >= MIN_SERVER_VER_CUSTOMER_ACCOUNT) {
-               b.send(order.customerAccount());
+           if (sendMidOffsets) {
+               b.sendMax(order.midOffsetAtWhole());
+               b.sendMax(order.midOffsetAtHalf());
            }
+       }
 
-           if (m_serverVersion >= MIN_SERVER_VER_PROFESSIONAL_CUSTOMER) {
-               b.send(order.professionalCustomer());
-           }
+       if (m_serverVersion >= MIN_SERVER_VER_CUSTOMER_ACCOUNT) {
+           b.send(order.customerAccount());
+       }
 
-           if (m_serverVersion >= MIN_SERVER_VER_RFQ_FIELDS && m_serverVersion < MIN_SERVER_VER_UNDO_RFQ_FIELDS) {
-               b.send("");
-               b.send(Integer.MAX_VALUE);
-           }
+       if (m_serverVersion >= MIN_SERVER_VER_PROFESSIONAL_CUSTOMER) {
+           b.send(order.professionalCustomer());
+       }
 
-           if (m_serverVersion >= MIN_SERVER_VER_INCLUDE_OVERNIGHT) {
-               b.send(order.includeOvernight());
-           }
+       if (m_serverVersion >= MIN_SERVER_VER_RFQ_FIELDS && m_serverVersion < MIN_SERVER_VER_UNDO_RFQ_FIELDS) {
+           b.send("");
+           b.send(Integer.MAX_VALUE);
+       }
 
-           if (m_serverVersion >= MIN_SERVER_VER_CME_TAGGING_FIELDS) {
-               b.send(order.manualOrderIndicator());
-           }
+       if (m_serverVersion >= MIN_SERVER_VER_INCLUDE_OVERNIGHT) {
+           b.send(order.includeOvernight());
+       }
 
-           closeAndSend(b);
-        }
-        catch(EClientException e) {
-            error(id, e.error(), e.text());
-        }
-        catch(Exception e) {
-            error(id, EClientErrors.FAIL_SEND_ORDER, e.toString());
-            close();
-        }
+       if (m_serverVersion >= MIN_SERVER_VER_CME_TAGGING_FIELDS) {
+           b.send(order.manualOrderIndicator());
+       }
     }
 
     public synchronized void reqAccountUpdates(boolean subscribe, String acctCode) {
@@ -95,6 +95,8 @@ public class EClientErrors {
     static final CodeMsgPair FAIL_SEND_REQ_USER_INFO = new CodeMsgPair(584, "Request User Info Sending Error - ");
     static final CodeMsgPair FA_PROFILE_NOT_SUPPORTED = new CodeMsgPair(585, "FA Profile is not supported anymore, use FA Group instead - ");
     static final CodeMsgPair FAIL_READ_MESSAGE = new CodeMsgPair(586, "Failed to read message because not connected");
+    public static final CodeMsgPair PRE_TRADE_REJECT = new CodeMsgPair(587, "Order rejected by pre-trade check - ");
+    static final CodeMsgPair READER_QUEUE_OVERFLOW = new CodeMsgPair(588, "Inbound message queue limit exceeded, disconnecting.");
 
     public EClientErrors() {
     }
@@ -17,6 +17,10 @@ public class EClientSocket extends EClient implements EClientMsgSink  {
 	private boolean m_asyncEConnect = false;
 	private boolean m_connected = false;
 	private Socket m_socket;
+	private volatile EJournalWriter m_inboundJournal;
+	private EDecoderMetrics m_decoderMetrics;
+	private volatile EWireLogger m_wireLogger;
+	private EReaderLimits m_readerLimits;
 		
 	public void setAsyncEConnect(boolean asyncEConnect) {
 		this.m_asyncEConnect = asyncEConnect;
@@ -26,6 +30,42 @@ public class EClientSocket extends EClient implements EClientMsgSink  {
 		return m_asyncEConnect;
 	}
 
+	/** Records every inbound V100 frame read by EReader; pass null to stop recording. */
+	public void inboundJournal(EJournalWriter journal) {
+		m_inboundJournal = journal;
+	}
+
+	public EJournalWriter inboundJournal() {
+		return m_inboundJournal;
+	}
+
+	/** Instruments the EReader created after this call; see EDecoderMetrics. */
+	public void decoderMetrics(EDecoderMetrics metrics) {
+		m_decoderMetrics = metrics;
+	}
+
+	public EDecoderMetrics decoderMetrics() {
+		return m_decoderMetrics;
+	}
+
+	/** Logs every frame sent and every frame read by EReader; pass null to stop logging. */
+	public void wireLogger(EWireLogger logger) {
+		m_wireLogger = logger;
+	}
+
+	public EWireLogger wireLogger() {
+		return m_wireLogger;
+	}
+
+	/** Bounds the queue of the EReader created after this call; see EReaderLimits. */
+	public void readerLimits(EReaderLimits limits) {
+		m_readerLimits = limits;
+	}
+
+	public EReaderLimits readerLimits() {
+		return m_readerLimits;
+	}
+
 	public EClientSocket(EWrapper eWrapper, EReaderSignal signal) {
 		super(eWrapper, signal);
 	}
@@ -50,6 +90,22 @@ public class EClientSocket extends EClient implements EClientMsgSink  {
     	sendMsg(msg);
     }
 
+	@Override
+	protected void sendMsg(EMessage msg) throws IOException {
+		super.sendMsg(msg);
+
+		EWireLogger logger = m_wireLogger;
+		if (logger != null) {
+			byte[] buf = msg.getRawData();
+			if (m_useV100Plus) {
+				logger.outboundFrames(buf, 0, buf.length);
+			}
+			else {
+				logger.outbound(buf, 0, buf.length);
+			}
+		}
+	}
+
 	protected synchronized void eConnect(Socket socket) throws IOException {
 	    // create io streams
 	    m_socketTransport = new ESocket(socket);
@@ -3,6 +3,7 @@
 
 package com.ib.client;
 
+import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.EOFException;
 import java.io.IOException;
@@ -114,6 +115,11 @@ class EDecoder implements ObjectInput {
     private EWrapper m_EWrapper;
     private int m_serverVersion;
 	private IMessageReader m_messageReader;
+	private EDecoderMetrics m_metrics;
+	private EOrderViewWrapper m_orderViews;
+	private EScannerDiffWrapper m_scannerDiffs;
+	private EXmlStreamWrapper m_xmlStreams;
+	private EMessage m_msg;
 
 	public EDecoder(int serverVersion, EWrapper callback) {
 		this(serverVersion, callback, null);
@@ -123,6 +129,32 @@ class EDecoder implements ObjectInput {
 		m_clientMsgSink = sink;
 		m_serverVersion = serverVersion;
 		m_EWrapper = callback;
+		m_orderViews = callback instanceof EOrderViewWrapper ? (EOrderViewWrapper)callback : null;
+		m_scannerDiffs = callback instanceof EScannerDiffWrapper ? (EScannerDiffWrapper)callback : null;
+		m_xmlStreams = callback instanceof EXmlStreamWrapper ? (EXmlStreamWrapper)callback : null;
+	}
+
+	/** Enables per-message instrumentation; callbacks are timed by routing them through a TimedEWrapper. */
+	void metrics(EDecoderMetrics metrics) {
+		if (m_EWrapper instanceof TimedEWrapper) {
+			m_EWrapper = ((TimedEWrapper)m_EWrapper).wrapper();
+			m_orderViews = m_orderViews != null ? (EOrderViewWrapper)m_EWrapper : null;
+			m_scannerDiffs = m_scannerDiffs != null ? (EScannerDiffWrapper)m_EWrapper : null;
+			m_xmlStreams = m_xmlStreams != null ? (EXmlStreamWrapper)m_EWrapper : null;
+		}
+		m_metrics = metrics;
+		if (metrics != null) {
+			m_EWrapper = new TimedEWrapper(m_EWrapper, metrics);
+			if (m_orderViews != null) {
+				m_orderViews = (TimedEWrapper)m_EWrapper;
+			}
+			if (m_scannerDiffs != null) {
+				m_scannerDiffs = (TimedEWrapper)m_EWrapper;
+			}
+			if (m_xmlStreams != null) {
+				m_xmlStreams = (TimedEWrapper)m_EWrapper;
+			}
+		}
 	}
 	
     private void processFirstMsg() throws IOException {
@@ -162,6 +194,10 @@ class EDecoder implements ObjectInput {
     }
     
     public int processMsg(EMessage msg) throws IOException {
+    	EDecoderMetrics metrics = m_metrics;
+    	long start = metrics != null ? System.nanoTime() : 0;
+
+    	m_msg = msg;
     	if (!readMessageToInternalBuf(msg.getStream())) {
     		return 0;
     	}
@@ -174,6 +210,17 @@ class EDecoder implements ObjectInput {
     	
     	int msgId = readInt();
 
+    	if (metrics == null) {
+    		return processMsg(msgId);
+    	}
+
+    	metrics.begin();
+    	int length = processMsg(msgId);
+    	metrics.end(msgId, m_messageReader.msgLength(), System.nanoTime() - start);
+    	return length;
+    }
+
+    private int processMsg(int msgId) throws IOException {
         switch( msgId) {
             case END_CONN:
                 return 0;
@@ -1001,6 +1048,13 @@ class EDecoder implements ObjectInput {
 
 	private void processScannerParametersMsg() throws IOException {
 		/*int version =*/ readInt();
+		if (m_xmlStreams != null) {
+			byte[] frame = m_msg.getRawData();
+			m_messageReader.skipTo(frame.length);
+			m_xmlStreams.scannerParameters(fieldStream(frame, 2));
+			return;
+		}
+
 		String xml = readStr();
 		m_EWrapper.scannerParameters(xml);
 	}
@@ -1049,6 +1103,13 @@ class EDecoder implements ObjectInput {
 	private void processReceiveFaMsg() throws IOException {
 	    /*int version =*/ readInt();
 	    int faDataType = readInt();
+	    if (m_xmlStreams != null) {
+	        byte[] frame = m_msg.getRawData();
+	        m_messageReader.skipTo(frame.length);
+	        m_xmlStreams.receiveFA(faDataType, fieldStream(frame, 3));
+	        return;
+	    }
+
 	    String xml = readStr();
 
 	    m_EWrapper.receiveFA(faDataType, xml);
@@ -1394,6 +1455,16 @@ class EDecoder implements ObjectInput {
 	}
 
 	private void processScannerDataMsg() throws IOException {
+		if (m_scannerDiffs != null) {
+			byte[] frame = m_msg.getRawData();
+			int reqId = m_scannerDiffs.scannerSnapshots().diff(frame, m_scannerDiffs);
+			if (reqId != -1) {
+				m_messageReader.skipTo(frame.length);
+				m_EWrapper.scannerDataEnd(reqId);
+				return;
+			}
+		}
+
 		int version = readInt();
 		int tickerId = readInt();
 		int numberOfElements = readInt();
@@ -1433,13 +1504,25 @@ class EDecoder implements ObjectInput {
 	}
 
     private void processOpenOrderMsg() throws IOException {
-
-        // read version
-        int version = m_serverVersion < EClient.MIN_SERVER_VER_ORDER_CONTAINER ? readInt() : m_serverVersion;
+        if (m_orderViews != null) {
+            OpenOrderView view = new OpenOrderView(m_msg.getRawData(), m_serverVersion, false);
+            m_messageReader.skipTo(view.length());
+            m_orderViews.openOrder(view);
+            return;
+        }
 
         Contract contract = new Contract();
         Order order = new Order();
         OrderState orderState = new OrderState();
+        readOpenOrder(contract, order, orderState);
+
+        m_EWrapper.openOrder(order.orderId(), contract, order, orderState);
+    }
+
+    private void readOpenOrder(Contract contract, Order order, OrderState orderState) throws IOException {
+        // read version
+        int version = m_serverVersion < EClient.MIN_SERVER_VER_ORDER_CONTAINER ? readInt() : m_serverVersion;
+
         EOrderDecoder eOrderDecoder = new EOrderDecoder(this, contract, order, orderState, version, m_serverVersion);
 
         // read order id
@@ -1522,8 +1605,6 @@ class EDecoder implements ObjectInput {
         eOrderDecoder.readBondAccruedInterest();
         eOrderDecoder.readIncludeOvernight();
         eOrderDecoder.readCMETaggingFields();
-
-        m_EWrapper.openOrder(order.orderId(), contract, order, orderState);
     }
 
 	private void processErrMsgMsg() throws IOException {
@@ -1982,10 +2063,22 @@ class EDecoder implements ObjectInput {
     }
     
     private void processCompletedOrderMsg() throws IOException {
+        if (m_orderViews != null) {
+            OpenOrderView view = new OpenOrderView(m_msg.getRawData(), m_serverVersion, true);
+            m_messageReader.skipTo(view.length());
+            m_orderViews.completedOrder(view);
+            return;
+        }
+
         Contract contract = new Contract();
         Order order = new Order();
         OrderState orderState = new OrderState();
+        readCompletedOrder(contract, order, orderState);
+
+        m_EWrapper.completedOrder(contract, order, orderState);
+    }
 
+    private void readCompletedOrder(Contract contract, Order order, OrderState orderState) throws IOException {
         EOrderDecoder eOrderDecoder = new EOrderDecoder(this, contract, order, orderState, Integer.MAX_VALUE, m_serverVersion);
 
         // read contract fields 
@@ -2055,8 +2148,39 @@ class EDecoder implements ObjectInput {
         eOrderDecoder.readPegBestPegMidOrderAttributes();
         eOrderDecoder.readCustomerAccount();
         eOrderDecoder.readProfessionalCustomer();
+    }
 
-        m_EWrapper.completedOrder(contract, order, orderState);
+    /** Returns a stream over the bytes of the given field of a frame, without its terminating NUL. */
+    private static InputStream fieldStream(byte[] frame, int field) throws IOException {
+        int start = 0;
+        for (int i = 0; i < field; i++) {
+            while (start < frame.length && frame[start] != 0) {
+                start++;
+            }
+            start++;
+        }
+        if (start > frame.length) {
+            throw new EOFException();
+        }
+        int end = start;
+        while (end < frame.length && frame[end] != 0) {
+            end++;
+        }
+        return new ByteArrayInputStream(frame, start, end - start);
+    }
+
+    /** Decodes an OPEN_ORDER or COMPLETED_ORDER frame in full, exactly like the eager path; used by OpenOrderView. */
+    static void decodeOrder(byte[] frame, int serverVersion, boolean completed, Contract contract, Order order, OrderState orderState) throws IOException {
+        EDecoder decoder = new EDecoder(serverVersion, null);
+        decoder.m_messageReader = new PreV100MessageReader(new ByteArrayInputStream(frame));
+        decoder.readInt(); // message id
+
+        if (completed) {
+            decoder.readCompletedOrder(contract, order, orderState);
+        }
+        else {
+            decoder.readOpenOrder(contract, order, orderState);
+        }
     }
     
     private void processCompletedOrdersEndMsg() throws IOException {
@@ -2177,6 +2301,8 @@ class EDecoder implements ObjectInput {
     private interface IMessageReader extends Closeable {
     	String readStr() throws IOException;
     	int msgLength();
+    	/** Marks the message as consumed up to msgLength bytes without reading the remaining fields. */
+    	void skipTo(int msgLength);
     }
 
     private static class PreV100MessageReader implements IMessageReader {
@@ -2192,6 +2318,11 @@ class EDecoder implements ObjectInput {
     		return m_msgLength;
     	}
     	
+    	@Override
+    	public void skipTo(int msgLength) {
+    		m_msgLength = msgLength;
+    	}
+    	
     	@Override public String readStr() throws IOException {
     		 StringBuilder sb = new StringBuilder();
     		    		 
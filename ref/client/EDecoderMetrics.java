@@ -0,0 +1,253 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/** Optional instrumentation of the inbound path: per message id the number of messages, bytes, decode time and time
+ *  spent in EWrapper callbacks; for the reader the frame sizes and the depth of the message queue.
+ *  Install it with EClientSocket.decoderMetrics() before the EReader is created. Values can be pulled with stats(),
+ *  frameSize() and queueDepth(), or published to the platform MBean server with register().
+ *  Decode time excludes callback time; all times are in nanoseconds. */
+public class EDecoderMetrics {
+	private static final int MAX_MSG_ID = 255;
+	private static final String[] NAMES = msgNames();
+
+	public interface MsgStatsMXBean {
+		String getMessage();
+		long getCount();
+		long getBytes();
+		double getDecodeMeanNanos();
+		long getDecodeP50Nanos();
+		long getDecodeP99Nanos();
+		long getDecodeMaxNanos();
+		double getCallbackMeanNanos();
+		long getCallbackP50Nanos();
+		long getCallbackP99Nanos();
+		long getCallbackMaxNanos();
+	}
+
+	public interface ReaderStatsMXBean {
+		long getFrames();
+		double getFrameSizeMean();
+		long getFrameSizeP99();
+		long getFrameSizeMax();
+		double getQueueDepthMean();
+		long getQueueDepthP99();
+		long getQueueDepthMax();
+	}
+
+	public static class MsgStats implements MsgStatsMXBean {
+		private final int m_msgId;
+		private final Histogram m_decodeNanos = new Histogram();
+		private final Histogram m_callbackNanos = new Histogram();
+		private final AtomicLong m_bytes = new AtomicLong();
+
+		public int msgId()					{ return m_msgId; }
+		public String name()				{ return msgName( m_msgId); }
+		public long count()					{ return m_decodeNanos.count(); }
+		public long bytes()					{ return m_bytes.get(); }
+		public Histogram decodeNanos()		{ return m_decodeNanos; }
+		public Histogram callbackNanos()	{ return m_callbackNanos; }
+
+		MsgStats(int msgId) {
+			m_msgId = msgId;
+		}
+
+		@Override public String getMessage()			{ return name(); }
+		@Override public long getCount()				{ return count(); }
+		@Override public long getBytes()				{ return m_bytes.get(); }
+		@Override public double getDecodeMeanNanos()	{ return m_decodeNanos.mean(); }
+		@Override public long getDecodeP50Nanos()		{ return m_decodeNanos.percentile( 50); }
+		@Override public long getDecodeP99Nanos()		{ return m_decodeNanos.percentile( 99); }
+		@Override public long getDecodeMaxNanos()		{ return m_decodeNanos.max(); }
+		@Override public double getCallbackMeanNanos()	{ return m_callbackNanos.mean(); }
+		@Override public long getCallbackP50Nanos()		{ return m_callbackNanos.percentile( 50); }
+		@Override public long getCallbackP99Nanos()		{ return m_callbackNanos.percentile( 99); }
+		@Override public long getCallbackMaxNanos()		{ return m_callbackNanos.max(); }
+
+		void record(int bytes, long decodeNanos, long callbackNanos) {
+			m_bytes.lazySet( m_bytes.get() + bytes); // single writer
+			m_decodeNanos.record( decodeNanos);
+			m_callbackNanos.record( callbackNanos);
+		}
+
+		void reset() {
+			m_bytes.set( 0);
+			m_decodeNanos.reset();
+			m_callbackNanos.reset();
+		}
+
+		@Override public String toString() {
+			return name() + " count=" + count() + " bytes=" + bytes() + " decode[" + m_decodeNanos + "] callback[" + m_callbackNanos + "]";
+		}
+	}
+
+	private class ReaderStats implements ReaderStatsMXBean {
+		@Override public long getFrames()				{ return m_frameSize.count(); }
+		@Override public double getFrameSizeMean()		{ return m_frameSize.mean(); }
+		@Override public long getFrameSizeP99()			{ return m_frameSize.percentile( 99); }
+		@Override public long getFrameSizeMax()			{ return m_frameSize.max(); }
+		@Override public double getQueueDepthMean()		{ return m_queueDepth.mean(); }
+		@Override public long getQueueDepthP99()		{ return m_queueDepth.percentile( 99); }
+		@Override public long getQueueDepthMax()		{ return m_queueDepth.max(); }
+	}
+
+	private final MsgStats[] m_stats = new MsgStats[MAX_MSG_ID + 1];
+	private final Histogram m_frameSize = new Histogram();
+	private final Histogram m_queueDepth = new Histogram();
+	private final List<ObjectName> m_registered = new ArrayList<>();
+	private String m_jmxName;
+	private long m_callbackNanos; // accumulated for the message being decoded
+
+	/** Sizes of the frames read from the socket, in bytes. */
+	public Histogram frameSize()	{ return m_frameSize; }
+
+	/** Depth of the reader queue, sampled whenever a message is added. */
+	public Histogram queueDepth()	{ return m_queueDepth; }
+
+	/** Returns the statistics of one message id, or null if no such message was received yet. */
+	public MsgStats stats(int msgId) {
+		return msgId >= 0 && msgId <= MAX_MSG_ID ? m_stats[msgId] : null;
+	}
+
+	/** Returns the statistics of all message ids received so far, ordered by id. */
+	public List<MsgStats> stats() {
+		List<MsgStats> list = new ArrayList<>();
+		for (MsgStats stats : m_stats) {
+			if (stats != null) {
+				list.add( stats);
+			}
+		}
+		return list;
+	}
+
+	public void reset() {
+		for (MsgStats stats : stats() ) {
+			stats.reset();
+		}
+		m_frameSize.reset();
+		m_queueDepth.reset();
+	}
+
+	/** Registers MBeans under com.ib.client:type=DecoderMetrics,name=<name>: one for the reader and one per message id,
+	 *  the latter as soon as the first message of that id arrives. */
+	public synchronized void register(String name) throws JMException {
+		m_jmxName = ObjectName.quote( name);
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName readerName = new ObjectName( "com.ib.client:type=DecoderMetrics,name=" + m_jmxName + ",msg=READER");
+		server.registerMBean( new ReaderStats(), readerName);
+		m_registered.add( readerName);
+
+		for (MsgStats stats : stats() ) {
+			register( server, stats);
+		}
+	}
+
+	public synchronized void unregister() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName name : m_registered) {
+			if (server.isRegistered( name) ) {
+				server.unregisterMBean( name);
+			}
+		}
+		m_registered.clear();
+		m_jmxName = null;
+	}
+
+	public static String msgName(int msgId) {
+		String name = msgId >= 0 && msgId <= MAX_MSG_ID ? NAMES[msgId] : null;
+		return name != null ? name : "MSG_" + msgId;
+	}
+
+	@Override public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append( "frameSize[").append( m_frameSize).append( "] queueDepth[").append( m_queueDepth).append( "]");
+		for (MsgStats stats : stats() ) {
+			sb.append( '\n').append( stats);
+		}
+		return sb.toString();
+	}
+
+	// called by EDecoder and TimedEWrapper on the decoding thread
+
+	void begin() {
+		m_callbackNanos = 0;
+	}
+
+	void callback(long start) {
+		m_callbackNanos += System.nanoTime() - start;
+	}
+
+	void end(int msgId, int bytes, long totalNanos) {
+		if (msgId < 0 || msgId > MAX_MSG_ID) {
+			return;
+		}
+		MsgStats stats = m_stats[msgId];
+		if (stats == null) {
+			stats = newStats( msgId);
+		}
+		stats.record( bytes, totalNanos - m_callbackNanos, m_callbackNanos);
+	}
+
+	// called by EReader on the reader thread
+
+	void frame(int size) {
+		m_frameSize.record( size);
+	}
+
+	void queued(int depth) {
+		m_queueDepth.record( depth);
+	}
+
+	private synchronized MsgStats newStats(int msgId) {
+		MsgStats stats = new MsgStats( msgId);
+		m_stats[msgId] = stats;
+		if (m_jmxName != null) {
+			try {
+				register( ManagementFactory.getPlatformMBeanServer(), stats);
+			}
+			catch (JMException e) {
+				// metrics are still available through stats()
+			}
+		}
+		return stats;
+	}
+
+	private void register(MBeanServer server, MsgStats stats) throws JMException {
+		ObjectName name = new ObjectName( "com.ib.client:type=DecoderMetrics,name=" + m_jmxName + ",msg=" + stats.name() );
+		server.registerMBean( stats, name);
+		m_registered.add( name);
+	}
+
+	/** Maps message ids to the names of the corresponding constants in EDecoder. */
+	private static String[] msgNames() {
+		String[] names = new String[MAX_MSG_ID + 1];
+		for (Field field : EDecoder.class.getDeclaredFields() ) {
+			int mod = field.getModifiers();
+			if (field.getType() == int.class && Modifier.isStatic( mod) && Modifier.isFinal( mod) ) {
+				try {
+					field.setAccessible( true);
+					int id = field.getInt( null);
+					if (id > 0 && id <= MAX_MSG_ID) {
+						names[id] = field.getName();
+					}
+				}
+				catch (ReflectiveOperationException | RuntimeException e) {
+					// leave the id unnamed
+				}
+			}
+		}
+		return names;
+	}
+}
@@ -0,0 +1,243 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** Decodes the messages of one connection on several threads. The thread calling EReader.processMsgs( pool) peeks
+ *  at the id and request id of each message; market data, historical data, contract details and the other messages
+ *  belonging to a single request are handed to the worker chosen by their request id, each worker with its own
+ *  EDecoder, so the messages of one request are decoded and delivered in the order received. All other messages,
+ *  i.e. orders, executions, account and portfolio updates, errors and everything without a request id, are barriers:
+ *  they are decoded on the calling thread after the workers have finished every message received before them, and
+ *  before any message received after them.
+ *  The EWrapper is therefore called from several threads at once, for different request ids, and must allow that;
+ *  wrappers which cannot, e.g. ApiController, implement SingleThreaded and are refused.
+ *  With EDecoderMetrics installed, messages decoded by the workers are counted with a decode time of zero.
+ *  Create it after connecting, as it needs the server version, and close it after disconnecting. */
+public class EDecoderPool implements Closeable {
+	private static final int ORDERED = 0;
+
+	/** Marks an EWrapper whose callbacks must all be made on one thread; EDecoderPool refuses it. */
+	public interface SingleThreaded {
+	}
+
+	// message ids of EDecoder
+	private static final int TICK_PRICE = 1;
+	private static final int TICK_SIZE = 2;
+	private static final int CONTRACT_DATA = 10;
+	private static final int MARKET_DEPTH = 12;
+	private static final int MARKET_DEPTH_L2 = 13;
+	private static final int HISTORICAL_DATA = 17;
+	private static final int BOND_CONTRACT_DATA = 18;
+	private static final int TICK_OPTION_COMPUTATION = 21;
+	private static final int TICK_GENERIC = 45;
+	private static final int TICK_STRING = 46;
+	private static final int TICK_EFP = 47;
+	private static final int REAL_TIME_BARS = 50;
+	private static final int FUNDAMENTAL_DATA = 51;
+	private static final int CONTRACT_DATA_END = 52;
+	private static final int TICK_SNAPSHOT_END = 57;
+	private static final int MARKET_DATA_TYPE = 58;
+	private static final int SECURITY_DEFINITION_OPTION_PARAMETER = 75;
+	private static final int SECURITY_DEFINITION_OPTION_PARAMETER_END = 76;
+	private static final int TICK_REQ_PARAMS = 81;
+	private static final int TICK_NEWS = 84;
+	private static final int HEAD_TIMESTAMP = 88;
+	private static final int HISTOGRAM_DATA = 89;
+	private static final int HISTORICAL_DATA_UPDATE = 90;
+	private static final int HISTORICAL_TICKS = 96;
+	private static final int HISTORICAL_TICKS_BID_ASK = 97;
+	private static final int HISTORICAL_TICKS_LAST = 98;
+	private static final int TICK_BY_TICK = 99;
+
+	private final int[] m_reqIdField = new int[TICK_BY_TICK + 1];	// by message id: field of the request id, or ORDERED
+	private final Worker[] m_workers;
+	private final EDecoderMetrics m_metrics;
+	private final AtomicReference<Exception> m_error = new AtomicReference<>();
+	private int m_outstanding;		// messages handed to workers and not yet decoded; guarded by this
+	private volatile boolean m_closed;
+	private volatile long m_parallel;
+	private volatile long m_ordered;
+
+	/** One decoding thread and its queue, which it takes over in batches. */
+	private class Worker extends Thread {
+		private final EDecoder m_decoder;
+		private ArrayDeque<EMessage> m_queue = new ArrayDeque<>();	// guarded by m_lock
+		private ArrayDeque<EMessage> m_batch = new ArrayDeque<>();	// worker thread only
+		private final Object m_lock = new Object();
+
+		Worker(EClientSocket client, int index) {
+			super( "EDecoderPool-" + index);
+			setDaemon( true);
+			m_decoder = new EDecoder( client.serverVersion(), client.wrapper(), client);
+		}
+
+		void add(EMessage msg) {
+			synchronized( m_lock) {
+				m_queue.add( msg);
+				if (m_queue.size() == 1) {
+					m_lock.notify();
+				}
+			}
+		}
+
+		void wakeUp() {
+			synchronized( m_lock) {
+				m_lock.notify();
+			}
+		}
+
+		@Override public void run() {
+			while (true) {
+				synchronized( m_lock) {
+					while (m_queue.isEmpty() && !m_closed) {
+						try {
+							m_lock.wait();
+						}
+						catch (InterruptedException e) {
+							return;
+						}
+					}
+					if (m_queue.isEmpty() ) {
+						return;	// closed and drained
+					}
+					ArrayDeque<EMessage> batch = m_queue;
+					m_queue = m_batch;
+					m_batch = batch;
+				}
+				int count = m_batch.size();
+				for (EMessage msg = m_batch.poll(); msg != null; msg = m_batch.poll() ) {
+					try {
+						m_decoder.processMsg( msg);
+					}
+					catch (IOException | RuntimeException e) {
+						m_error.compareAndSet( null, e);
+					}
+				}
+				decoded( count);
+			}
+		}
+	}
+
+	/** @throws IllegalArgumentException if the client's wrapper is SingleThreaded */
+	public EDecoderPool(EClientSocket client, int workers) {
+		if (client.wrapper() instanceof SingleThreaded) {
+			throw new IllegalArgumentException( client.wrapper().getClass().getName() + " needs a single callback thread");
+		}
+		int serverVersion = client.serverVersion();
+		for (int msgId : new int[] { TICK_PRICE, TICK_SIZE, TICK_GENERIC, TICK_STRING, TICK_EFP, MARKET_DEPTH,
+				MARKET_DEPTH_L2, REAL_TIME_BARS, FUNDAMENTAL_DATA, CONTRACT_DATA_END, TICK_SNAPSHOT_END, MARKET_DATA_TYPE}) {
+			m_reqIdField[msgId] = 2;	// after the version
+		}
+		for (int msgId : new int[] { SECURITY_DEFINITION_OPTION_PARAMETER, SECURITY_DEFINITION_OPTION_PARAMETER_END,
+				TICK_REQ_PARAMS, TICK_NEWS, HEAD_TIMESTAMP, HISTOGRAM_DATA, HISTORICAL_DATA_UPDATE, HISTORICAL_TICKS,
+				HISTORICAL_TICKS_BID_ASK, HISTORICAL_TICKS_LAST, TICK_BY_TICK}) {
+			m_reqIdField[msgId] = 1;
+		}
+		m_reqIdField[TICK_OPTION_COMPUTATION] = serverVersion >= EClient.MIN_SERVER_VER_PRICE_BASED_VOLATILITY ? 1 : 2;
+		m_reqIdField[HISTORICAL_DATA] = serverVersion >= EClient.MIN_SERVER_VER_SYNT_REALTIME_BARS ? 1 : 2;
+		if (serverVersion >= EClient.MIN_SERVER_VER_SIZE_RULES) {
+			// older versions carry the request id only from message version 3 on
+			m_reqIdField[CONTRACT_DATA] = 1;
+			m_reqIdField[BOND_CONTRACT_DATA] = 1;
+		}
+
+		m_metrics = client.decoderMetrics();
+		m_workers = new Worker[Math.max( 1, workers)];
+		for (int i = 0; i < m_workers.length; i++) {
+			m_workers[i] = new Worker( client, i);
+			m_workers[i].start();
+		}
+	}
+
+	public int workers()	{ return m_workers.length; }
+
+	/** Messages decoded by the workers. */
+	public long parallel()	{ return m_parallel; }
+
+	/** Messages decoded in order on the processing thread. */
+	public long ordered()	{ return m_ordered; }
+
+	/** Routes one message; called by EReader.processMsgs( pool) on the processing thread.
+	 *  Returns 0 when the connection ended, like EDecoder.processMsg(). */
+	int processMsg(EMessage msg, EDecoder orderedDecoder) throws IOException {
+		rethrow();
+		int msgId = msg.intField( 0);
+		int field = msgId > 0 && msgId < m_reqIdField.length ? m_reqIdField[msgId] : ORDERED;
+		int reqId = field != ORDERED ? msg.intField( field) : Integer.MIN_VALUE;
+
+		if (reqId == Integer.MIN_VALUE || m_closed) {
+			awaitIdle();
+			rethrow();
+			m_ordered++;
+			return orderedDecoder.processMsg( msg);
+		}
+
+		synchronized( this) {
+			m_outstanding++;
+		}
+		m_workers[Math.floorMod( reqId, m_workers.length)].add( msg);
+		m_parallel++;
+		if (m_metrics != null) {
+			m_metrics.begin();
+			m_metrics.end( msgId, msg.size(), 0);
+		}
+		return msg.size();
+	}
+
+	/** Waits until the workers have decoded everything handed to them. */
+	public void awaitIdle() throws InterruptedIOException {
+		synchronized( this) {
+			while (m_outstanding > 0) {
+				try {
+					wait();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException( "interrupted waiting for the decoder pool");
+				}
+			}
+		}
+	}
+
+	/** Decodes what was handed to the workers and stops them; later messages are decoded on the processing thread. */
+	@Override public void close() {
+		m_closed = true;
+		for (Worker worker : m_workers) {
+			worker.wakeUp();
+		}
+		for (Worker worker : m_workers) {
+			try {
+				worker.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private synchronized void decoded(int count) {
+		m_outstanding -= count;
+		if (m_outstanding == 0) {
+			notifyAll();
+		}
+	}
+
+	/** Throws the first exception of a worker, once, as the single decoder would have thrown it. */
+	private void rethrow() throws IOException {
+		Exception e = m_error.getAndSet( null);
+		if (e instanceof IOException) {
+			throw (IOException)e;
+		}
+		if (e != null) {
+			throw (RuntimeException)e;
+		}
+	}
+}
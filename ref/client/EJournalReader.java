@@ -0,0 +1,70 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Reads frames written by EJournalWriter. The frame buffer is reused; copy data() if it must outlive the next call to next(). */
+public class EJournalReader implements Closeable {
+	private final DataInputStream m_dis;
+	private byte[] m_buf = new byte[8192];
+	private int m_length;
+	private long m_timestamp;
+
+	public long timestamp()	{ return m_timestamp; }
+	public byte[] data()	{ return m_buf; }
+	public int length()		{ return m_length; }
+
+	public EJournalReader(String fileName) throws IOException {
+		this(new FileInputStream(fileName));
+	}
+
+	public EJournalReader(InputStream in) throws IOException {
+		m_dis = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+
+		if (m_dis.readInt() != EJournalWriter.MAGIC) {
+			throw new IOException("not a journal file");
+		}
+
+		int version = m_dis.readInt();
+		if (version != EJournalWriter.VERSION) {
+			throw new IOException("unsupported journal version " + version);
+		}
+	}
+
+	/** Advances to the next frame; returns false at the end of the journal. */
+	public boolean next() throws IOException {
+		try {
+			m_timestamp = m_dis.readLong();
+		}
+		catch (EOFException e) {
+			return false;
+		}
+
+		m_length = m_dis.readInt();
+		if (m_length < 0 || m_length > EReader.MAX_MSG_LENGTH) {
+			throw new IOException("corrupt journal, frame length " + m_length);
+		}
+		if (m_length > m_buf.length) {
+			m_buf = new byte[Math.max(m_length, m_buf.length * 2)];
+		}
+		m_dis.readFully(m_buf, 0, m_length);
+		return true;
+	}
+
+	public EMessage message() {
+		return new EMessage(m_buf, m_length);
+	}
+
+	@Override
+	public void close() throws IOException {
+		m_dis.close();
+	}
+}
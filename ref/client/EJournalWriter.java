@@ -0,0 +1,71 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/** Appends raw inbound V100 frames (without the length prefix) to a binary journal.
+ *  Layout: header (magic, version), then one record per frame: long timestamp in nanoseconds
+ *  since epoch, int length, payload bytes. Frames are buffered; call flush() or close() to persist them. */
+public class EJournalWriter implements Closeable {
+	static final int MAGIC = 0x49424A31; // "IBJ1"
+	static final int VERSION = 1;
+	private static final int BUF_SIZE = 1 << 16;
+
+	private final DataOutputStream m_dos;
+	private final long m_epochNanosBase;
+	private final long m_nanoTimeBase;
+	private long m_frames;
+	private long m_bytes;
+
+	public long frames()	{ return m_frames; }
+	public long bytes()		{ return m_bytes; }
+
+	/** Opens the file for appending; the header is written only if the file is new or empty. */
+	public EJournalWriter(String fileName) throws IOException {
+		this(new FileOutputStream(fileName, true), new File(fileName).length() == 0);
+	}
+
+	public EJournalWriter(OutputStream out) throws IOException {
+		this(out, true);
+	}
+
+	private EJournalWriter(OutputStream out, boolean writeHeader) throws IOException {
+		m_dos = new DataOutputStream(new BufferedOutputStream(out, BUF_SIZE));
+		m_epochNanosBase = System.currentTimeMillis() * 1_000_000L;
+		m_nanoTimeBase = System.nanoTime();
+
+		if (writeHeader) {
+			m_dos.writeInt(MAGIC);
+			m_dos.writeInt(VERSION);
+		}
+	}
+
+	public synchronized void write(byte[] buf, int len) throws IOException {
+		write(m_epochNanosBase + System.nanoTime() - m_nanoTimeBase, buf, 0, len);
+	}
+
+	public synchronized void write(long timestamp, byte[] buf, int off, int len) throws IOException {
+		m_dos.writeLong(timestamp);
+		m_dos.writeInt(len);
+		m_dos.write(buf, off, len);
+		m_frames++;
+		m_bytes += len;
+	}
+
+	public synchronized void flush() throws IOException {
+		m_dos.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		m_dos.close();
+	}
+}
@@ -10,16 +10,21 @@ import java.io.IOException;
 import java.io.InputStream;
 
 public class EMessage {
-	ByteArrayOutputStream m_buf;
+	Buffer m_buf;
+
+	/** Gives access to the bytes without copying them. */
+	static class Buffer extends ByteArrayOutputStream {
+		byte[] array() { return buf; }
+	}
 	
 	public EMessage(byte[] buf, int len) {
-		m_buf = new ByteArrayOutputStream();
+		m_buf = new Buffer();
 		
 		m_buf.write(buf, 0, len);
 	}
 	
 	public EMessage(Builder buf) throws IOException {
-		m_buf = new ByteArrayOutputStream();
+		m_buf = new Buffer();
 		
 			buf.writeTo(new DataOutputStream(m_buf));
 	}
@@ -31,4 +36,40 @@ public class EMessage {
 	public byte[] getRawData() {		
 		return m_buf.toByteArray();
 	}
+
+	int size() {
+		return m_buf.size();
+	}
+
+	/** Parses a field of the message, 0 being the message id, as an int without copying the message;
+	 *  Integer.MIN_VALUE if it is missing or not a plain number. */
+	int intField(int field) {
+		byte[] buf = m_buf.array();
+		int end = m_buf.size();
+		int i = 0;
+		for (int f = 0; f < field; f++) {
+			while (i < end && buf[i] != 0) {
+				i++;
+			}
+			i++;
+		}
+		if (i >= end) {
+			return Integer.MIN_VALUE;
+		}
+		boolean negative = buf[i] == '-';
+		if (negative) {
+			i++;
+		}
+		long value = 0;
+		int digits = 0;
+		for (; i < end && buf[i] != 0; i++, digits++) {
+			int digit = buf[i] - '0';
+			if (digit < 0 || digit > 9 || digits > 10) {
+				return Integer.MIN_VALUE;
+			}
+			value = value * 10 + digit;
+		}
+		value = negative ? -value : value;
+		return digits == 0 || value <= Integer.MIN_VALUE || value > Integer.MAX_VALUE ? Integer.MIN_VALUE : (int)value;
+	}
 }
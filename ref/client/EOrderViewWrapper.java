@@ -0,0 +1,11 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+/** Implement this in addition to EWrapper to receive OPEN_ORDER and COMPLETED_ORDER messages as lazily decoded
+ *  OpenOrderViews instead of through EWrapper.openOrder() and completedOrder(). */
+public interface EOrderViewWrapper {
+	void openOrder(OpenOrderView view);
+	void completedOrder(OpenOrderView view);
+}
@@ -22,6 +22,10 @@ public class EReader extends Thread {
     private EClientSocket 	m_clientSocket;
     private EReaderSignal m_signal;
     private EDecoder m_processMsgsDecoder;
+    private final EDecoderMetrics m_metrics;
+    private final EReaderLimits m_limits;
+    private long m_queuedBytes; // guarded by m_msgQueue, with limits only
+    private boolean m_blocking; // reader thread waits for room in m_msgQueue
     private static final EWrapper defaultWrapper = new DefaultEWrapper();
     private static final int IN_BUF_SIZE_DEFAULT = 8192;
     private byte[] m_iBuf = new byte[IN_BUF_SIZE_DEFAULT];
@@ -44,6 +48,14 @@ public class EReader extends Thread {
     	m_clientSocket = parent;
         m_signal = signal;
         m_processMsgsDecoder = new EDecoder(parent.serverVersion(), parent.wrapper(), parent);
+        m_metrics = parent.decoderMetrics();
+        if (m_metrics != null) {
+        	m_processMsgsDecoder.metrics(m_metrics);
+        }
+        m_limits = parent.readerLimits();
+        if (m_limits != null) {
+        	m_limits.reset();
+        }
     }
     
     /**
@@ -65,7 +77,11 @@ public class EReader extends Thread {
             				EClientErrors.BAD_LENGTH.msg() + " " + ex.getMessage(), null);
                 } else if (ex instanceof EClientException) {
                     EClientException eClientException = (EClientException)ex;
-                    eWrapper().error(EClientErrors.NO_VALID_ID, eClientException.error().code(), eClientException.error().msg(), null);
+                    String msg = eClientException.error().msg();
+                    if (eClientException.error() == EClientErrors.READER_QUEUE_OVERFLOW) {
+                    	msg += " " + eClientException.text(); // the limits and counters at the overflow
+                    }
+                    eWrapper().error(EClientErrors.NO_VALID_ID, eClientException.error().code(), msg, null);
                 } else {
         			eWrapper().error( ex);
         		}
@@ -84,7 +100,15 @@ public class EReader extends Thread {
 			return false;
 		
 		synchronized(m_msgQueue) {
+			if (m_limits != null && !admit(msg)) {
+				return true;
+			}
+			
 			m_msgQueue.addFirst(msg);
+			
+			if (m_metrics != null) {
+				m_metrics.queued(m_msgQueue.size());
+			}
 		}
 		
 		m_signal.issueSignal();
@@ -94,9 +118,70 @@ public class EReader extends Thread {
 
 	protected EMessage getMsg() {
     	synchronized (m_msgQueue) {
-    		return m_msgQueue.isEmpty() ? null : m_msgQueue.removeLast();
+    		EMessage msg = m_msgQueue.isEmpty() ? null : m_msgQueue.removeLast();
+    		
+    		if (msg != null && m_limits != null) {
+    			m_queuedBytes -= msg.size();
+    			
+    			if (m_limits.isOverloaded() && m_limits.isDrained(m_msgQueue.size(), m_queuedBytes)) {
+    				m_limits.overloaded(false);
+    			}
+    			
+    			if (m_blocking) {
+    				m_msgQueue.notifyAll();
+    			}
+    		}
+    		
+    		return msg;
 		}
     }
+
+	/**
+	 * Applies the queue limits to a message about to be queued, holding the queue's lock.
+	 * Returns false if the message is to be discarded.
+	 */
+	private boolean admit(EMessage msg) throws IOException {
+		int size = msg.size();
+		
+		if (m_limits.isFull(m_msgQueue.size(), m_queuedBytes, size)) {
+			m_limits.overloaded(true);
+			
+			switch (m_limits.policy()) {
+				case BLOCK:
+					long start = System.nanoTime();
+					m_blocking = true;
+					try {
+						// stop reading, and so let TCP flow control hold back TWS, until there is room or the connection is gone
+						while (m_limits.isFull(m_msgQueue.size(), m_queuedBytes, size) && parent().isConnected()) {
+							m_msgQueue.wait(100);
+						}
+					}
+					catch (InterruptedException e) {
+						interrupt();
+					}
+					finally {
+						m_blocking = false;
+						m_limits.blocked(System.nanoTime() - start);
+					}
+					break;
+					
+				case DROP_MARKET_DATA:
+					EReaderLimits.MsgClass msgClass = m_limits.shedClass(msg);
+					if (msgClass != null) {
+						m_limits.dropped(msgClass, size);
+						return false;
+					}
+					break; // never shed, queued beyond the limits
+					
+				default:
+					throw new EClientException(EClientErrors.READER_QUEUE_OVERFLOW, m_limits.toString());
+			}
+		}
+		
+		m_queuedBytes += size;
+		m_limits.queued(m_msgQueue.size() + 1, m_queuedBytes);
+		return true;
+	}
 	
     static final int MAX_MSG_LENGTH = 0xffffff;
 
@@ -116,6 +201,17 @@ public class EReader extends Thread {
     	}
     }
 
+    /**
+     * Same as processMsgs() but hands messages belonging to a single request to the workers of a pool.
+     */
+    public void processMsgs(EDecoderPool pool) throws IOException {
+    	EMessage msg = getMsg();
+
+    	while (msg != null && pool.processMsg(msg, m_processMsgsDecoder) > 0) {
+    		msg = getMsg();
+    	}
+    }
+
 	private EMessage readSingleMessage() throws IOException {
 		if (isUseV100Plus()) {
 			int msgSize = 0;
@@ -142,6 +238,26 @@ public class EReader extends Thread {
 			while (offset < msgSize) {
 				offset += m_clientSocket.read(buf, offset, msgSize - offset);
 			}
+
+			if (m_metrics != null) {
+				m_metrics.frame(msgSize);
+			}
+
+			EJournalWriter journal = m_clientSocket.inboundJournal();
+			if (journal != null) {
+				try {
+					journal.write(buf, msgSize);
+				}
+				catch (IOException e) {
+					m_clientSocket.inboundJournal(null); // stop recording rather than the connection
+					eWrapper().error(e);
+				}
+			}
+
+			EWireLogger logger = m_clientSocket.wireLogger();
+			if (logger != null) {
+				logger.inbound(buf, 0, msgSize);
+			}
 						
 			return new EMessage(buf, buf.length);
 		}
@@ -179,6 +295,10 @@ public class EReader extends Thread {
 		
 		EMessage msg = new EMessage(m_iBuf, msgSize);
 		
+		if (m_metrics != null) {
+			m_metrics.frame(msgSize);
+		}
+		
 		System.arraycopy(Arrays.copyOfRange(m_iBuf, msgSize, m_iBuf.length), 0, m_iBuf, 0, m_iBuf.length - msgSize);
 		
 		m_iBufLen -= msgSize;
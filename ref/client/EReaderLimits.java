@@ -0,0 +1,167 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/** Bounds the queue between the EReader thread and processMsgs() by number of messages and bytes, and counts what
+ *  happens when it is full. Install it with EClientSocket.readerLimits() before connecting.
+ *  BLOCK stops reading from the socket until processMsgs() catches up, so TWS is slowed down by TCP flow control;
+ *  DROP_MARKET_DATA discards incoming messages of the classes shed(), by default ticks only, and queues all others
+ *  beyond the limits; DISCONNECT reports error 588 and disconnects. Orders, executions, account, position and error
+ *  messages are never discarded, and a message is always queued if the queue is empty.
+ *  Shedding depth updates leaves the books inconsistent, as they are incremental; re-request depth after
+ *  dropped( DEPTH) has grown. */
+public class EReaderLimits {
+	public enum Policy { BLOCK, DROP_MARKET_DATA, DISCONNECT }
+
+	/** Classes of messages which DROP_MARKET_DATA can discard. */
+	public enum MsgClass { TICKS, DEPTH, BARS }
+
+	// message ids of EDecoder
+	private static final int TICK_PRICE = 1;
+	private static final int TICK_SIZE = 2;
+	private static final int MARKET_DEPTH = 12;
+	private static final int MARKET_DEPTH_L2 = 13;
+	private static final int TICK_OPTION_COMPUTATION = 21;
+	private static final int TICK_GENERIC = 45;
+	private static final int TICK_STRING = 46;
+	private static final int TICK_EFP = 47;
+	private static final int REAL_TIME_BARS = 50;
+	private static final int HISTORICAL_DATA_UPDATE = 90;
+	private static final int TICK_BY_TICK = 99;
+
+	private final int m_maxMessages;
+	private final long m_maxBytes;
+	private final Policy m_policy;
+	private volatile Set<MsgClass> m_shed = EnumSet.of( MsgClass.TICKS);
+
+	// written by the reader thread
+	private volatile boolean m_overloaded;
+	private volatile long m_overloads;
+	private volatile long m_blockedNanos;
+	private volatile int m_highWaterMessages;
+	private volatile long m_highWaterBytes;
+	private final long[] m_dropped = new long[MsgClass.values().length];	// guarded by this
+	private long m_droppedBytes;											// guarded by this
+
+	/** @param maxMessages maximum number of queued messages, or Integer.MAX_VALUE
+	 *  @param maxBytes maximum size of the queued messages, or Long.MAX_VALUE */
+	public EReaderLimits(int maxMessages, long maxBytes, Policy policy) {
+		if (policy == null) {
+			throw new IllegalArgumentException( "policy is null");
+		}
+		m_maxMessages = Math.max( 1, maxMessages);
+		m_maxBytes = Math.max( 1, maxBytes);
+		m_policy = policy;
+	}
+
+	public int maxMessages()		{ return m_maxMessages; }
+	public long maxBytes()			{ return m_maxBytes; }
+	public Policy policy()			{ return m_policy; }
+
+	/** Classes discarded by DROP_MARKET_DATA. */
+	public Set<MsgClass> shed()					{ return m_shed; }
+	public void shed(Set<MsgClass> classes)		{ m_shed = classes.isEmpty() ? EnumSet.noneOf( MsgClass.class) : EnumSet.copyOf( classes); }
+
+	/** True from the time the queue reaches its limits until it is drained to half of them; cleared when a new
+	 *  EReader starts on a connection. */
+	public boolean isOverloaded()	{ return m_overloaded; }
+
+	/** Number of times the queue reached its limits. */
+	public long overloads()			{ return m_overloads; }
+
+	/** Time the reader thread spent waiting with BLOCK. */
+	public long blockedNanos()		{ return m_blockedNanos; }
+
+	public int highWaterMessages()	{ return m_highWaterMessages; }
+	public long highWaterBytes()	{ return m_highWaterBytes; }
+
+	public synchronized long dropped(MsgClass msgClass)	{ return m_dropped[msgClass.ordinal()]; }
+	public synchronized long droppedBytes()				{ return m_droppedBytes; }
+
+	public synchronized long dropped() {
+		long dropped = 0;
+		for (long count : m_dropped) {
+			dropped += count;
+		}
+		return dropped;
+	}
+
+	@Override public synchronized String toString() {
+		return m_policy + " maxMessages=" + m_maxMessages + " maxBytes=" + m_maxBytes + " overloads=" + m_overloads
+				+ " highWaterMessages=" + m_highWaterMessages + " highWaterBytes=" + m_highWaterBytes
+				+ " dropped=" + dropped() + " blockedMs=" + m_blockedNanos / 1000000;
+	}
+
+	/** Returns the class of a message id, or null for messages which are never discarded. */
+	static MsgClass msgClass(int msgId) {
+		switch (msgId) {
+			case TICK_PRICE:
+			case TICK_SIZE:
+			case TICK_OPTION_COMPUTATION:
+			case TICK_GENERIC:
+			case TICK_STRING:
+			case TICK_EFP:
+			case TICK_BY_TICK:
+				return MsgClass.TICKS;
+			case MARKET_DEPTH:
+			case MARKET_DEPTH_L2:
+				return MsgClass.DEPTH;
+			case REAL_TIME_BARS:
+			case HISTORICAL_DATA_UPDATE:
+				return MsgClass.BARS;
+			default:
+				return null;
+		}
+	}
+
+	/** Called by the EReader constructor; the queue of the previous connection is gone, the counters are kept. */
+	void reset() {
+		m_overloaded = false;
+	}
+
+	// called by EReader with the queue locked
+
+	boolean isFull(int messages, long bytes, int size) {
+		return messages > 0 && (messages >= m_maxMessages || bytes + size > m_maxBytes);
+	}
+
+	/** True if the queue is down to half of its limits, where an overload ends. */
+	boolean isDrained(int messages, long bytes) {
+		return messages <= m_maxMessages / 2 && bytes <= m_maxBytes / 2;
+	}
+
+	/** Returns the class to discard a message of with DROP_MARKET_DATA, or null to queue it. */
+	MsgClass shedClass(EMessage msg) {
+		MsgClass msgClass = msgClass( msg.intField( 0) );
+		return msgClass != null && m_shed.contains( msgClass) ? msgClass : null;
+	}
+
+	void overloaded(boolean overloaded) {
+		if (overloaded && !m_overloaded) {
+			m_overloads++;
+		}
+		m_overloaded = overloaded;
+	}
+
+	void queued(int messages, long bytes) {
+		if (messages > m_highWaterMessages) {
+			m_highWaterMessages = messages;
+		}
+		if (bytes > m_highWaterBytes) {
+			m_highWaterBytes = bytes;
+		}
+	}
+
+	void blocked(long nanos) {
+		m_blockedNanos += nanos;
+	}
+
+	synchronized void dropped(MsgClass msgClass, int size) {
+		m_dropped[msgClass.ordinal()]++;
+		m_droppedBytes += size;
+	}
+}
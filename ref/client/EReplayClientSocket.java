@@ -0,0 +1,114 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/** Client socket which plays back a journal recorded with EJournalWriter instead of talking to TWS.
+ *  Use it like EClientSocket: call startReplay(), then run an EReader on it. Outgoing requests are discarded.
+ *  The journal must start with the server version frame, i.e. be recorded from the moment of connection.
+ *  When the journal is exhausted the client disconnects and connectionClosed() is called. */
+public class EReplayClientSocket extends EClientSocket {
+	private static final ETransport DISCARD = new ETransport() {
+		@Override public void send(EMessage msg) { }
+		@Override public void close() { }
+	};
+
+	private final String m_fileName;
+	private final double m_speed;
+	private EJournalReader m_journal;
+	private int m_pos;
+	private long m_firstTimestamp;
+	private long m_startNanos;
+	private volatile boolean m_replaying;
+	private volatile boolean m_endOfJournal;
+
+	/** @param speed 1 replays at recorded speed, 2 twice as fast etc.; 0 replays as fast as possible */
+	public EReplayClientSocket(EWrapper eWrapper, EReaderSignal signal, String fileName, double speed) {
+		super(eWrapper, signal);
+		m_fileName = fileName;
+		m_speed = speed;
+	}
+
+	public synchronized void startReplay() throws IOException {
+		m_journal = new EJournalReader(m_fileName);
+		m_socketTransport = DISCARD;
+		m_pos = 0;
+		m_startNanos = 0;
+		m_endOfJournal = false;
+		m_replaying = true;
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		EJournalReader journal = m_journal;
+		if (journal == null || !m_replaying) {
+			throw new EClientException(EClientErrors.FAIL_READ_MESSAGE, "");
+		}
+
+		if (!journal.next()) {
+			m_endOfJournal = true;
+			throw new EOFException("end of journal");
+		}
+
+		if (m_speed > 0) {
+			if (m_startNanos == 0) {
+				m_firstTimestamp = journal.timestamp();
+				m_startNanos = System.nanoTime();
+			}
+			else {
+				long due = m_startNanos + (long)((journal.timestamp() - m_firstTimestamp) / m_speed);
+				long wait = due - System.nanoTime();
+				if (wait > 0) {
+					LockSupport.parkNanos(wait);
+				}
+			}
+		}
+
+		m_pos = 0;
+		return journal.length();
+	}
+
+	@Override
+	public int read(byte[] buf, int off, int len) throws IOException {
+		EJournalReader journal = m_journal;
+		if (journal == null || !m_replaying) {
+			throw new EClientException(EClientErrors.FAIL_READ_MESSAGE, "");
+		}
+
+		int n = Math.min(len, journal.length() - m_pos);
+		if (n <= 0) {
+			throw new EOFException();
+		}
+		System.arraycopy(journal.data(), m_pos, buf, off, n);
+		m_pos += n;
+		return n;
+	}
+
+	@Override
+	public synchronized boolean isConnected() {
+		return m_replaying && m_serverVersion > 0;
+	}
+
+	@Override
+	protected void connectionError() {
+		if (!m_endOfJournal) {
+			super.connectionError();
+		}
+	}
+
+	@Override
+	public synchronized void eDisconnect() {
+		m_replaying = false;
+		if (m_journal != null) {
+			try {
+				m_journal.close();
+			} catch (IOException ignored) {
+			}
+		}
+		super.eDisconnect();
+	}
+}
@@ -0,0 +1,21 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+/** Implement this in addition to EWrapper to receive the SCANNER_DATA of the subscriptions tracked by
+ *  scannerSnapshots() as differences to the previous scan instead of through EWrapper.scannerData().
+ *  Rows are keyed by conid. Unchanged rows are not decoded at all. Each scan still ends with EWrapper.scannerDataEnd(). */
+public interface EScannerDiffWrapper {
+	ScannerSnapshots scannerSnapshots();
+
+	/** A row which was not in the previous scan, with previousRank -1, or whose fields other than the rank changed. */
+	void scannerRowAdded(int reqId, int rank, int previousRank, ContractDetails contractDetails, String distance,
+			String benchmark, String projection, String legsStr);
+
+	/** A row which is unchanged except for its rank. */
+	void scannerRowMoved(int reqId, int conid, int rank, int previousRank);
+
+	/** A row of the previous scan which is not in this one. */
+	void scannerRowRemoved(int reqId, int conid, int previousRank);
+}
@@ -0,0 +1,334 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.locks.LockSupport;
+
+/** Logs the frames sent and received by an EClientSocket without slowing down the connection. Frames are copied into
+ *  a preallocated ring buffer and written to rotating files by a background thread; when the ring is full a frame
+ *  is dropped and counted rather than waiting. Install it with EClientSocket.wireLogger().
+ *  BINARY files start with the magic "IBW1" and a version int, followed by one record per frame: long timestamp in
+ *  nanoseconds since epoch, byte direction (0 in, 1 out), int length and the payload without the length prefix.
+ *  TEXT files have one line per frame: ISO timestamp, IN or OUT, and the fields separated by '|'.
+ *  When the file reaches maxFileBytes it is renamed to file.1, older files move up, and beyond maxFiles are deleted. */
+public class EWireLogger implements Closeable {
+	public enum Format { BINARY, TEXT }
+
+	static final int MAGIC = 0x49425731; // "IBW1"
+	static final int VERSION = 1;
+	private static final int RECORD_HEADER = 4 + 1 + 8;	// length, direction, timestamp
+	private static final byte IN = 0;
+	private static final byte OUT = 1;
+	private static final long IDLE_NANOS = 1_000_000;
+
+	private final Path m_file;
+	private final Format m_format;
+	private final long m_maxFileBytes;
+	private final int m_maxFiles;
+	private final byte[] m_ring;
+	private final int m_mask;
+	private final long m_epochNanosBase = System.currentTimeMillis() * 1_000_000L;
+	private final long m_nanoTimeBase = System.nanoTime();
+	private final Thread m_thread;
+
+	// producers, under m_ring's lock
+	private long m_frames;
+	private long m_dropped;
+	private long m_droppedBytes;
+
+	private volatile long m_head;		// end of the published records
+	private volatile long m_tail;		// end of the records written out
+	private volatile boolean m_closed;
+	private volatile IOException m_error;
+	private volatile long m_bytesWritten;
+
+	// writer thread
+	private OutputStream m_out;
+	private long m_fileBytes;
+	private byte[] m_scratch = new byte[4096];
+	private final StringBuilder m_line = new StringBuilder();
+
+	/** Logs to a file, keeping up to maxFiles files of about maxFileBytes each.
+	 *  @param ringBytes size of the ring buffer, rounded up to a power of two */
+	public EWireLogger(String file, Format format, int ringBytes, long maxFileBytes, int maxFiles) throws IOException {
+		m_file = Paths.get( file);
+		m_format = format;
+		m_maxFileBytes = maxFileBytes;
+		m_maxFiles = Math.max( 1, maxFiles);
+		int capacity = Integer.highestOneBit( Math.max( 1 << 12, ringBytes) - 1) << 1;
+		m_ring = new byte[capacity];
+		m_mask = capacity - 1;
+		open();
+		m_thread = new Thread( this::run, "EWireLogger");
+		m_thread.setDaemon( true);
+		m_thread.start();
+	}
+
+	/** Frames copied into the ring. */
+	public long frames()			{ synchronized( m_ring) { return m_frames; } }
+
+	/** Frames dropped because the ring was full. */
+	public long dropped()			{ synchronized( m_ring) { return m_dropped; } }
+	public long droppedBytes()		{ synchronized( m_ring) { return m_droppedBytes; } }
+	public long bytesWritten()		{ return m_bytesWritten; }
+
+	/** Bytes in the ring not yet written out. */
+	public long backlog()			{ return m_head - m_tail; }
+
+	/** The error which stopped writing, or null; frames are dropped from then on. */
+	public IOException error()		{ return m_error; }
+
+	/** Logs one received frame, without its length prefix. */
+	public void inbound(byte[] buf, int off, int len) {
+		add( IN, buf, off, len);
+	}
+
+	/** Logs one sent frame, without its length prefix. */
+	public void outbound(byte[] buf, int off, int len) {
+		add( OUT, buf, off, len);
+	}
+
+	/** Logs the sent frames of a buffer of length-prefixed frames, e.g. a batch of orders. */
+	void outboundFrames(byte[] buf, int off, int len) {
+		int end = off + len;
+		while (end - off >= 4) {
+			int frameLen = ( (buf[off] & 0xff) << 24) | ( (buf[off + 1] & 0xff) << 16) | ( (buf[off + 2] & 0xff) << 8) | (buf[off + 3] & 0xff);
+			if (frameLen < 0 || frameLen > end - off - 4) {
+				add( OUT, buf, off, end - off);	// not framed as expected, e.g. the "API\0" handshake; log the rest as it is
+				return;
+			}
+			add( OUT, buf, off + 4, frameLen);
+			off += 4 + frameLen;
+		}
+	}
+
+	private void add(byte direction, byte[] buf, int off, int len) {
+		long timestamp = m_epochNanosBase + System.nanoTime() - m_nanoTimeBase;
+		synchronized( m_ring) {
+			long head = m_head;
+			if (m_closed || m_ring.length - (head - m_tail) < RECORD_HEADER + len) {
+				m_dropped++;
+				m_droppedBytes += len;
+				return;
+			}
+			int start = (int)head & m_mask;
+			if (start + RECORD_HEADER <= m_ring.length) {
+				writeInt( m_ring, start, len);
+				m_ring[start + 4] = direction;
+				writeLong( m_ring, start + 5, timestamp);
+			}
+			else {
+				putInt( head, len);
+				m_ring[(int)(head + 4) & m_mask] = direction;
+				putLong( head + 5, timestamp);
+			}
+			put( head + RECORD_HEADER, buf, off, len);
+			m_frames++;
+			m_head = head + RECORD_HEADER + len;
+		}
+	}
+
+	/** Writes what is in the ring and stops the writer thread. */
+	@Override public void close() throws IOException {
+		synchronized( m_ring) {
+			m_closed = true;	// frames added from now on are dropped
+		}
+		LockSupport.unpark( m_thread);
+		try {
+			m_thread.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		IOException error = m_error;
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	// ---------------------------------------- writer thread ----------------------------------------
+
+	private void run() {
+		try {
+			boolean dirty = false;
+			while (true) {
+				long head = m_head;
+				long tail = m_tail;
+				if (tail == head) {
+					if (m_closed && m_head == head) {
+						break;
+					}
+					if (dirty) {
+						m_out.flush();
+						dirty = false;
+					}
+					LockSupport.parkNanos( IDLE_NANOS);
+					continue;
+				}
+				while (tail < head) {
+					int len = getInt( tail);
+					write( m_ring[(int)(tail + 4) & m_mask], getLong( tail + 5), tail + RECORD_HEADER, len);
+					tail += RECORD_HEADER + len;
+				}
+				m_tail = tail;
+				dirty = true;
+			}
+		}
+		catch (IOException e) {
+			m_error = e;
+			m_closed = true;
+		}
+		finally {
+			try {
+				m_out.close();
+			}
+			catch (IOException e) {
+				if (m_error == null) {
+					m_error = e;
+				}
+			}
+		}
+	}
+
+	private void write(byte direction, long timestamp, long pos, int len) throws IOException {
+		if (m_fileBytes >= m_maxFileBytes) {
+			rotate();
+		}
+		int written;
+		if (m_format == Format.BINARY) {
+			byte[] header = scratch( RECORD_HEADER);
+			writeLong( header, 0, timestamp);
+			header[8] = direction;
+			writeInt( header, 9, len);
+			m_out.write( header, 0, RECORD_HEADER);
+			int first = Math.min( len, m_ring.length - ((int)pos & m_mask) );
+			m_out.write( m_ring, (int)pos & m_mask, first);
+			m_out.write( m_ring, 0, len - first);
+			written = RECORD_HEADER + len;
+		}
+		else {
+			byte[] payload = scratch( len);
+			get( pos, payload, len);
+			m_line.setLength( 0);
+			m_line.append( Instant.ofEpochSecond( 0, timestamp) ).append( direction == IN ? " IN  " : " OUT ");
+			String text = new String( payload, 0, len, StandardCharsets.UTF_8);
+			for (int i = 0; i < text.length(); i++) {
+				char c = text.charAt( i);
+				m_line.append( c == 0 ? '|' : c == '\n' || c == '\r' ? ' ' : c);
+			}
+			m_line.append( '\n');
+			byte[] line = m_line.toString().getBytes( StandardCharsets.UTF_8);
+			m_out.write( line);
+			written = line.length;
+		}
+		m_fileBytes += written;
+		m_bytesWritten += written;
+	}
+
+	private void open() throws IOException {
+		boolean isNew = !Files.exists( m_file) || Files.size( m_file) == 0;
+		m_out = new BufferedOutputStream( Files.newOutputStream( m_file, StandardOpenOption.CREATE, StandardOpenOption.APPEND), 1 << 16);
+		m_fileBytes = isNew ? 0 : Files.size( m_file);
+		if (isNew && m_format == Format.BINARY) {
+			byte[] header = new byte[8];
+			writeInt( header, 0, MAGIC);
+			writeInt( header, 4, VERSION);
+			m_out.write( header);
+			m_fileBytes += header.length;
+		}
+	}
+
+	private void rotate() throws IOException {
+		m_out.close();
+		Files.deleteIfExists( rotated( m_maxFiles - 1) );
+		for (int i = m_maxFiles - 2; i >= 0; i--) {
+			Path from = i == 0 ? m_file : rotated( i);
+			if (Files.exists( from) ) {
+				Files.move( from, rotated( i + 1), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		if (m_maxFiles == 1) {
+			Files.deleteIfExists( m_file);
+		}
+		open();
+	}
+
+	private Path rotated(int index) {
+		return index == 0 ? m_file : m_file.resolveSibling( m_file.getFileName() + "." + index);
+	}
+
+	private byte[] scratch(int len) {
+		if (m_scratch.length < len) {
+			m_scratch = new byte[Math.max( len, m_scratch.length * 2)];
+		}
+		return m_scratch;
+	}
+
+	// ---------------------------------------- ring access ----------------------------------------
+
+	private void put(long pos, byte[] buf, int off, int len) {
+		int start = (int)pos & m_mask;
+		int first = Math.min( len, m_ring.length - start);
+		System.arraycopy( buf, off, m_ring, start, first);
+		System.arraycopy( buf, off + first, m_ring, 0, len - first);
+	}
+
+	private void get(long pos, byte[] buf, int len) {
+		int start = (int)pos & m_mask;
+		int first = Math.min( len, m_ring.length - start);
+		System.arraycopy( m_ring, start, buf, 0, first);
+		System.arraycopy( m_ring, 0, buf, first, len - first);
+	}
+
+	private void putInt(long pos, int v) {
+		for (int i = 0; i < 4; i++) {
+			m_ring[(int)(pos + i) & m_mask] = (byte)(v >>> (24 - 8 * i) );
+		}
+	}
+
+	private void putLong(long pos, long v) {
+		for (int i = 0; i < 8; i++) {
+			m_ring[(int)(pos + i) & m_mask] = (byte)(v >>> (56 - 8 * i) );
+		}
+	}
+
+	private int getInt(long pos) {
+		int v = 0;
+		for (int i = 0; i < 4; i++) {
+			v = (v << 8) | (m_ring[(int)(pos + i) & m_mask] & 0xff);
+		}
+		return v;
+	}
+
+	private long getLong(long pos) {
+		long v = 0;
+		for (int i = 0; i < 8; i++) {
+			v = (v << 8) | (m_ring[(int)(pos + i) & m_mask] & 0xff);
+		}
+		return v;
+	}
+
+	private static void writeInt(byte[] buf, int off, int v) {
+		for (int i = 0; i < 4; i++) {
+			buf[off + i] = (byte)(v >>> (24 - 8 * i) );
+		}
+	}
+
+	private static void writeLong(byte[] buf, int off, long v) {
+		for (int i = 0; i < 8; i++) {
+			buf[off + i] = (byte)(v >>> (56 - 8 * i) );
+		}
+	}
+}
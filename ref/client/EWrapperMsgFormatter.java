@@ -0,0 +1,502 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Objects;
+
+/** Writes the same text as EWrapperMsgGenerator for the high-rate callbacks, appending it to a sink instead of
+ *  building Strings. A StringBuilder sink is appended to directly; for a Writer the text goes through a reused
+ *  buffer, and other Appendables get it as a CharSequence. Tick type names, sizes, timestamps and the contract
+ *  blocks of portfolio, position and execution messages are cached, the latter by conid and checked against the
+ *  contract's fields, so a tick costs no allocation once the caches are warm.
+ *  No line terminator is written. Not thread safe; use one formatter per thread.
+ *  IOExceptions of the sink are rethrown as UncheckedIOException. */
+public class EWrapperMsgFormatter {
+	private static final String[] FIELDS = fields();
+	private static final int DECIMAL_CACHE = 256;
+	private static final int CONTRACT_CACHE = 1024;
+	private static final String TIME_FORMAT = "yyyyMMdd-HH:mm:ss";
+
+	private final Appendable m_sink;
+	private final StringBuilder m_sb;
+	private char[] m_chars = new char[256];
+
+	private final Decimal[] m_decimals = new Decimal[DECIMAL_CACHE];
+	private final String[] m_decimalText = new String[DECIMAL_CACHE];
+	private final ContractText[] m_contracts = new ContractText[CONTRACT_CACHE];
+	private long m_timeSeconds = Long.MIN_VALUE;
+	private String m_timeText;
+
+	/** Formatted contract block of one contract and the fields it was made from. */
+	private static class ContractText {
+		final int m_conid;
+		final double m_strike;
+		final String[] m_fields;
+		final String m_text;
+
+		ContractText(Contract contract, String text) {
+			m_conid = contract.conid();
+			m_strike = contract.strike();
+			m_fields = fields( contract);
+			m_text = text;
+		}
+
+		boolean matches(Contract contract) {
+			if (m_conid != contract.conid() || Double.compare( m_strike, contract.strike() ) != 0) {
+				return false;
+			}
+			String[] fields = m_fields;
+			return Objects.equals( fields[0], contract.symbol() )
+				&& Objects.equals( fields[1], contract.getSecType() )
+				&& Objects.equals( fields[2], contract.lastTradeDateOrContractMonth() )
+				&& Objects.equals( fields[3], contract.lastTradeDate() )
+				&& Objects.equals( fields[4], contract.getRight() )
+				&& Objects.equals( fields[5], contract.multiplier() )
+				&& Objects.equals( fields[6], contract.exchange() )
+				&& Objects.equals( fields[7], contract.primaryExch() )
+				&& Objects.equals( fields[8], contract.currency() )
+				&& Objects.equals( fields[9], contract.localSymbol() )
+				&& Objects.equals( fields[10], contract.tradingClass() );
+		}
+
+		static String[] fields(Contract contract) {
+			return new String[] { contract.symbol(), contract.getSecType(), contract.lastTradeDateOrContractMonth(),
+					contract.lastTradeDate(), contract.getRight(), contract.multiplier(), contract.exchange(),
+					contract.primaryExch(), contract.currency(), contract.localSymbol(), contract.tradingClass() };
+		}
+	}
+
+	/** Formats into a StringBuilder owned by the formatter; read it with text(). */
+	public EWrapperMsgFormatter() {
+		this( new StringBuilder( 256) );
+	}
+
+	public EWrapperMsgFormatter(Appendable sink) {
+		m_sink = sink;
+		m_sb = sink instanceof StringBuilder ? (StringBuilder)sink : new StringBuilder( 256);
+	}
+
+	/** The text written so far when formatting into the formatter's own or a StringBuilder sink. */
+	public StringBuilder text()		{ return m_sb; }
+
+	// ---------------------------------------- market data ----------------------------------------
+
+	public void tickPrice(int tickerId, int field, double price, TickAttrib attribs) {
+		m_sb.append( "id=").append( tickerId).append( "  ").append( field( field) ).append( '=');
+		doubleMax( price, "").append( ' ')
+			.append( attribs.canAutoExecute() ? " canAutoExecute" : " noAutoExecute")
+			.append( " pastLimit = ").append( attribs.pastLimit() );
+		if (field == TickType.BID.index() || field == TickType.ASK.index() ) {
+			m_sb.append( " preOpen = ").append( attribs.preOpen() );
+		}
+		flush();
+	}
+
+	public void tickSize(int tickerId, int field, Decimal size) {
+		m_sb.append( "id=").append( tickerId).append( "  ").append( field( field) ).append( '=');
+		decimal( size);
+		flush();
+	}
+
+	public void tickOptionComputation(int tickerId, int field, int tickAttrib, double impliedVol, double delta,
+			double optPrice, double pvDividend, double gamma, double vega, double theta, double undPrice) {
+		m_sb.append( "id=").append( tickerId).append( "  ").append( field( field) ).append( ": tickAttrib = ");
+		intMax( tickAttrib);
+		doubleMax( impliedVol, " impliedVol = ", "N/A");
+		doubleMax( delta, " delta = ", "N/A");
+		doubleMax( gamma, " gamma = ", "N/A");
+		doubleMax( vega, " vega = ", "N/A");
+		doubleMax( theta, " theta = ", "N/A");
+		doubleMax( optPrice, " optPrice = ", "N/A");
+		doubleMax( pvDividend, " pvDividend = ", "N/A");
+		doubleMax( undPrice, " undPrice = ", "N/A");
+		flush();
+	}
+
+	public void tickGeneric(int tickerId, int tickType, double value) {
+		m_sb.append( "id=").append( tickerId).append( "  ").append( field( tickType) ).append( '=');
+		doubleMax( value, "");
+		flush();
+	}
+
+	public void tickString(int tickerId, int tickType, String value) {
+		m_sb.append( "id=").append( tickerId).append( "  ").append( field( tickType) ).append( '=').append( value);
+		flush();
+	}
+
+	public void updateMktDepth(int tickerId, int position, int operation, int side, double price, Decimal size) {
+		m_sb.append( "updateMktDepth: ").append( tickerId).append( ' ').append( position).append( ' ')
+			.append( operation).append( ' ').append( side).append( ' ');
+		doubleMax( price, "").append( ' ');
+		decimal( size);
+		flush();
+	}
+
+	public void updateMktDepthL2(int tickerId, int position, String marketMaker, int operation, int side, double price,
+			Decimal size, boolean isSmartDepth) {
+		m_sb.append( "updateMktDepth: ").append( tickerId).append( ' ').append( position).append( ' ')
+			.append( marketMaker).append( ' ').append( operation).append( ' ').append( side).append( ' ');
+		doubleMax( price, "").append( ' ');
+		decimal( size).append( ' ').append( isSmartDepth);
+		flush();
+	}
+
+	public void tickByTickAllLast(int reqId, int tickType, long time, double price, Decimal size,
+			TickAttribLast tickAttribLast, String exchange, String specialConditions) {
+		m_sb.append( tickType == 1 ? "Last." : "AllLast.").append( " Req Id: ").append( reqId).append( " Time: ");
+		time( time).append( " Price: ");
+		doubleMax( price, "").append( " Size: ");
+		decimal( size).append( " Exch: ").append( exchange).append( " Spec Cond: ").append( specialConditions)
+			.append( " Tick Attibs: ").append( tickAttribLast.pastLimit() ? "pastLimit " : "")
+			.append( tickType == 1 ? "" : tickAttribLast.unreported() ? "unreported " : "");
+		flush();
+	}
+
+	public void tickByTickBidAsk(int reqId, long time, double bidPrice, double askPrice, Decimal bidSize,
+			Decimal askSize, TickAttribBidAsk tickAttribBidAsk) {
+		m_sb.append( "BidAsk. Req Id: ").append( reqId).append( " Time: ");
+		time( time).append( " BidPrice: ");
+		doubleMax( bidPrice, "").append( " AskPrice: ");
+		doubleMax( askPrice, "").append( " BidSize: ");
+		decimal( bidSize).append( " AskSize: ");
+		decimal( askSize).append( " Tick Attibs: ").append( tickAttribBidAsk.bidPastLow() ? "bidPastLow " : "")
+			.append( tickAttribBidAsk.askPastHigh() ? "askPastHigh " : "");
+		flush();
+	}
+
+	public void tickByTickMidPoint(int reqId, long time, double midPoint) {
+		m_sb.append( "MidPoint. Req Id: ").append( reqId).append( " Time: ");
+		time( time).append( " MidPoint: ");
+		doubleMax( midPoint, "");
+		flush();
+	}
+
+	public void historicalTick(int reqId, long time, double price, Decimal size) {
+		m_sb.append( "Historical Tick. Req Id: ").append( reqId).append( ", time: ");
+		time( time).append( ", price: ");
+		doubleMax( price, "").append( ", size: ");
+		decimal( size);
+		flush();
+	}
+
+	public void historicalTickBidAsk(int reqId, long time, TickAttribBidAsk tickAttribBidAsk, double priceBid,
+			double priceAsk, Decimal sizeBid, Decimal sizeAsk) {
+		m_sb.append( "Historical Tick Bid/Ask. Req Id: ").append( reqId).append( ", time: ");
+		time( time).append( ", bid price: ");
+		doubleMax( priceBid, "").append( ", ask price: ");
+		doubleMax( priceAsk, "").append( ", bid size: ");
+		decimal( sizeBid).append( ", ask size: ");
+		decimal( sizeAsk).append( ", tick attribs: ").append( tickAttribBidAsk.bidPastLow() ? "bidPastLow " : "")
+			.append( tickAttribBidAsk.askPastHigh() ? "askPastHigh " : "");
+		flush();
+	}
+
+	public void historicalTickLast(int reqId, long time, TickAttribLast tickAttribLast, double price, Decimal size,
+			String exchange, String specialConditions) {
+		m_sb.append( "Historical Tick Last. Req Id: ").append( reqId).append( ", time: ");
+		time( time).append( ", price: ");
+		doubleMax( price, "").append( ", size: ");
+		decimal( size).append( ", exchange: ").append( exchange).append( ", special conditions:").append( specialConditions)
+			.append( ", tick attribs: ").append( tickAttribLast.pastLimit() ? "pastLimit " : "")
+			.append( tickAttribLast.unreported() ? "unreported " : "");
+		flush();
+	}
+
+	public void historicalData(int reqId, String date, double open, double high, double low, double close,
+			Decimal volume, int count, Decimal WAP) {
+		m_sb.append( "id=").append( reqId).append( " date = ").append( date);
+		doubleMax( open, " open=", "");
+		doubleMax( high, " high=", "");
+		doubleMax( low, " low=", "");
+		doubleMax( close, " close=", "");
+		m_sb.append( " volume=");
+		decimal( volume).append( " count=");
+		intMax( count).append( " WAP=");
+		decimal( WAP);
+		flush();
+	}
+
+	public void realtimeBar(int reqId, long time, double open, double high, double low, double close, Decimal volume,
+			Decimal wap, int count) {
+		m_sb.append( "id=").append( reqId).append( " time = ");
+		longMax( time);
+		doubleMax( open, " open=", "");
+		doubleMax( high, " high=", "");
+		doubleMax( low, " low=", "");
+		doubleMax( close, " close=", "");
+		m_sb.append( " volume=");
+		decimal( volume).append( " count=");
+		intMax( count).append( " WAP=");
+		decimal( wap);
+		flush();
+	}
+
+	// ---------------------------------------- orders and executions ----------------------------------------
+
+	public void orderStatus(int orderId, String status, Decimal filled, Decimal remaining, double avgFillPrice,
+			long permId, int parentId, double lastFillPrice, int clientId, String whyHeld, double mktCapPrice) {
+		m_sb.append( "order status: orderId=").append( orderId).append( " clientId=");
+		intMax( clientId).append( " permId=");
+		longMax( permId).append( " status=").append( status).append( " filled=");
+		decimal( filled).append( " remaining=");
+		decimal( remaining);
+		doubleMax( avgFillPrice, " avgFillPrice=", "");
+		doubleMax( lastFillPrice, " lastFillPrice=", "");
+		m_sb.append( " parent Id=");
+		intMax( parentId).append( " whyHeld=").append( whyHeld);
+		doubleMax( mktCapPrice, " mktCapPrice=", "");
+		flush();
+	}
+
+	public void execDetails(int reqId, Contract contract, Execution execution) {
+		m_sb.append( " ---- Execution Details begin ----\n")
+			.append( "reqId = ").append( reqId).append( '\n')
+			.append( "orderId = ").append( execution.orderId() ).append( '\n')
+			.append( "clientId = ");
+		intMax( execution.clientId() ).append( '\n');
+		contract( contract);
+		m_sb.append( "execId = ").append( execution.execId() ).append( '\n')
+			.append( "time = ").append( execution.time() ).append( '\n')
+			.append( "acctNumber = ").append( execution.acctNumber() ).append( '\n')
+			.append( "executionExchange = ").append( execution.exchange() ).append( '\n')
+			.append( "side = ").append( execution.side() ).append( '\n')
+			.append( "shares = ");
+		decimal( execution.shares() ).append( '\n').append( "price = ");
+		doubleMax( execution.price(), "").append( '\n').append( "permId = ");
+		longMax( execution.permId() ).append( '\n').append( "liquidation = ");
+		intMax( execution.liquidation() ).append( '\n').append( "cumQty = ");
+		decimal( execution.cumQty() ).append( '\n').append( "avgPrice = ");
+		doubleMax( execution.avgPrice(), "").append( '\n')
+			.append( "orderRef = ").append( execution.orderRef() ).append( '\n')
+			.append( "evRule = ").append( execution.evRule() ).append( '\n')
+			.append( "evMultiplier = ");
+		doubleMax( execution.evMultiplier(), "").append( '\n')
+			.append( "modelCode = ").append( execution.modelCode() ).append( '\n')
+			.append( "lastLiquidity = ").append( execution.lastLiquidity() ).append( '\n')
+			.append( "pendingPriceRevision = ").append( execution.pendingPriceRevision() ).append( '\n')
+			.append( " ---- Execution Details end ----\n");
+		flush();
+	}
+
+	public void commissionReport(CommissionReport commissionReport) {
+		m_sb.append( "commission report:").append( " execId=").append( commissionReport.execId() );
+		doubleMax( commissionReport.commission(), " commission=", "");
+		m_sb.append( " currency=").append( commissionReport.currency() );
+		doubleMax( commissionReport.realizedPNL(), " realizedPNL=", "");
+		doubleMax( commissionReport.yield(), " yield=", "");
+		m_sb.append( " yieldRedemptionDate=");
+		intMax( commissionReport.yieldRedemptionDate() );
+		flush();
+	}
+
+	public void error(int id, int errorCode, String errorMsg, String advancedOrderRejectJson) {
+		m_sb.append( id).append( " | ").append( errorCode).append( " | ").append( errorMsg);
+		if (advancedOrderRejectJson != null) {
+			m_sb.append( " | ").append( advancedOrderRejectJson);
+		}
+		flush();
+	}
+
+	// ---------------------------------------- account and portfolio ----------------------------------------
+
+	public void updateAccountValue(String key, String value, String currency, String accountName) {
+		m_sb.append( "updateAccountValue: ").append( key).append( ' ').append( value).append( ' ')
+			.append( currency).append( ' ').append( accountName);
+		flush();
+	}
+
+	public void updatePortfolio(Contract contract, Decimal position, double marketPrice, double marketValue,
+			double averageCost, double unrealizedPNL, double realizedPNL, String accountName) {
+		m_sb.append( "updatePortfolio: ");
+		contract( contract);
+		decimal( position).append( ' ');
+		doubleMax( marketPrice, "").append( ' ');
+		doubleMax( marketValue, "").append( ' ');
+		doubleMax( averageCost, "").append( ' ');
+		doubleMax( unrealizedPNL, "").append( ' ');
+		doubleMax( realizedPNL, "").append( ' ').append( accountName);
+		flush();
+	}
+
+	public void position(String account, Contract contract, Decimal pos, double avgCost) {
+		m_sb.append( " ---- Position begin ----\n")
+			.append( "account = ").append( account).append( '\n');
+		position( contract, pos, avgCost);
+	}
+
+	public void positionMulti(int reqId, String account, String modelCode, Contract contract, Decimal pos,
+			double avgCost) {
+		m_sb.append( " ---- Position begin ----\n")
+			.append( "id = ").append( reqId).append( '\n')
+			.append( "account = ").append( account).append( '\n')
+			.append( "modelCode = ").append( modelCode).append( '\n');
+		position( contract, pos, avgCost);
+	}
+
+	private void position(Contract contract, Decimal pos, double avgCost) {
+		contract( contract);
+		m_sb.append( "position = ");
+		decimal( pos).append( '\n').append( "avgCost = ");
+		doubleMax( avgCost, "").append( '\n')
+			.append( " ---- Position end ----\n");
+		flush();
+	}
+
+	public void accountSummary(int reqId, String account, String tag, String value, String currency) {
+		m_sb.append( " ---- Account Summary begin ----\n")
+			.append( "reqId = ").append( reqId).append( '\n')
+			.append( "account = ").append( account).append( '\n')
+			.append( "tag = ").append( tag).append( '\n')
+			.append( "value = ").append( value).append( '\n')
+			.append( "currency = ").append( currency).append( '\n')
+			.append( " ---- Account Summary end ----\n");
+		flush();
+	}
+
+	public void accountUpdateMulti(int reqId, String account, String modelCode, String key, String value,
+			String currency) {
+		m_sb.append( " id = ").append( reqId).append( " account = ").append( account).append( " modelCode = ")
+			.append( modelCode).append( " key = ").append( key).append( " value = ").append( value)
+			.append( " currency = ").append( currency);
+		flush();
+	}
+
+	public void pnl(int reqId, double dailyPnL, double unrealizedPnL, double realizedPnL) {
+		m_sb.append( "Daily PnL. Req Id: ").append( reqId);
+		doubleMax( dailyPnL, ", daily PnL: ", "");
+		doubleMax( unrealizedPnL, ", unrealizedPnL: ", "");
+		doubleMax( realizedPnL, ", realizedPnL: ", "");
+		flush();
+	}
+
+	public void pnlSingle(int reqId, Decimal pos, double dailyPnL, double unrealizedPnL, double realizedPnL,
+			double value) {
+		m_sb.append( "Daily PnL Single. Req Id: ").append( reqId).append( ", pos: ");
+		decimal( pos);
+		doubleMax( dailyPnL, ", daily PnL: ", "");
+		doubleMax( unrealizedPnL, ", unrealizedPnL: ", "");
+		doubleMax( realizedPnL, ", realizedPnL: ", "");
+		doubleMax( value, ", value: ", "");
+		flush();
+	}
+
+	// ---------------------------------------- helpers ----------------------------------------
+
+	/** Hands the formatted text to the sink unless it is the builder itself. */
+	private void flush() {
+		if (m_sb == m_sink) {
+			return;
+		}
+		try {
+			if (m_sink instanceof Writer) {
+				int len = m_sb.length();
+				if (m_chars.length < len) {
+					m_chars = new char[Math.max( len, m_chars.length * 2)];
+				}
+				m_sb.getChars( 0, len, m_chars, 0);
+				((Writer)m_sink).write( m_chars, 0, len);
+			}
+			else {
+				m_sink.append( m_sb);
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException( e);
+		}
+		finally {
+			m_sb.setLength( 0);
+		}
+	}
+
+	/** Same as Util.DoubleMaxString(). */
+	private StringBuilder doubleMax(double value, String defValue) {
+		return value == Double.MAX_VALUE ? m_sb.append( defValue) : m_sb.append( value);
+	}
+
+	private StringBuilder doubleMax(double value, String name, String defValue) {
+		m_sb.append( name);
+		return doubleMax( value, defValue);
+	}
+
+	/** Same as Util.IntMaxString(). */
+	private StringBuilder intMax(int value) {
+		return value == Integer.MAX_VALUE ? m_sb : m_sb.append( value);
+	}
+
+	/** Same as Util.LongMaxString(). */
+	private StringBuilder longMax(long value) {
+		return value == Long.MAX_VALUE ? m_sb : m_sb.append( value);
+	}
+
+	/** Same as Decimal.toString(), cached by value. */
+	private StringBuilder decimal(Decimal value) {
+		if (value == null || !value.isValid() ) {
+			return m_sb.append( value);
+		}
+		int i = value.hashCode() & (DECIMAL_CACHE - 1);
+		Decimal cached = m_decimals[i];
+		if (cached != value && !value.equals( cached) ) {
+			m_decimalText[i] = value.toString();
+			m_decimals[i] = value;
+		}
+		return m_sb.append( m_decimalText[i]);
+	}
+
+	/** Same as Util.UnixSecondsToString( seconds, "yyyyMMdd-HH:mm:ss"), cached for the last second. */
+	private StringBuilder time(long seconds) {
+		if (seconds != m_timeSeconds) {
+			m_timeText = Util.UnixSecondsToString( seconds, TIME_FORMAT);
+			m_timeSeconds = seconds;
+		}
+		return m_sb.append( m_timeText);
+	}
+
+	/** Same as EWrapperMsgGenerator.contractMsg(), cached by conid. */
+	private void contract(Contract contract) {
+		int i = contract.conid() & (CONTRACT_CACHE - 1);
+		ContractText cached = m_contracts[i];
+		if (cached == null || !cached.matches( contract) ) {
+			int start = m_sb.length();
+			m_sb.append( "conid = ").append( contract.conid() ).append( '\n')
+				.append( "symbol = ").append( contract.symbol() ).append( '\n')
+				.append( "secType = ").append( contract.getSecType() ).append( '\n')
+				.append( "lastTradeDateOrContractMonth = ").append( contract.lastTradeDateOrContractMonth() ).append( '\n')
+				.append( "lastTradeDate = ").append( contract.lastTradeDate() ).append( '\n')
+				.append( "strike = ");
+			doubleMax( contract.strike(), "").append( '\n')
+				.append( "right = ").append( contract.getRight() ).append( '\n')
+				.append( "multiplier = ").append( contract.multiplier() ).append( '\n')
+				.append( "exchange = ").append( contract.exchange() ).append( '\n')
+				.append( "primaryExch = ").append( contract.primaryExch() ).append( '\n')
+				.append( "currency = ").append( contract.currency() ).append( '\n')
+				.append( "localSymbol = ").append( contract.localSymbol() ).append( '\n')
+				.append( "tradingClass = ").append( contract.tradingClass() ).append( '\n');
+			m_contracts[i] = new ContractText( contract, m_sb.substring( start) );
+			return;
+		}
+		m_sb.append( cached.m_text);
+	}
+
+	private static String field(int tickType) {
+		return tickType >= 0 && tickType < FIELDS.length ? FIELDS[tickType] : TickType.getField( tickType);
+	}
+
+	/** TickType.getField() by index, which scans the values on every call. */
+	private static String[] fields() {
+		int max = 0;
+		for (TickType type : TickType.values() ) {
+			if (type.index() < 1024) {
+				max = Math.max( max, type.index() );
+			}
+		}
+		String[] fields = new String[max + 1];
+		for (int i = 0; i <= max; i++) {
+			fields[i] = TickType.getField( i);
+		}
+		return fields;
+	}
+}
@@ -0,0 +1,14 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.io.InputStream;
+
+/** Implement this in addition to EWrapper to receive the XML of SCANNER_PARAMETERS and RECEIVE_FA messages as a
+ *  stream over the bytes of the message, e.g. for a StAX parser, instead of as a String through
+ *  EWrapper.scannerParameters() and receiveFA(). The stream is only valid during the callback. */
+public interface EXmlStreamWrapper {
+	void scannerParameters(InputStream xml);
+	void receiveFA(int faDataType, InputStream xml);
+}
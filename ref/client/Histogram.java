@@ -0,0 +1,100 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** Fixed-size log-linear histogram of non-negative long values, e.g. nanoseconds or bytes, in the style of HdrHistogram.
+ *  Values below 64 are counted exactly, larger values with a relative precision of about 3%; values of 2^42
+ *  and above (73 minutes in nanoseconds) fall into the last bucket, but max() is always exact.
+ *  Recording does not allocate or lock and is meant for a single writer thread; any thread may read concurrently
+ *  and sees a consistent-enough view for monitoring. Samples recorded concurrently with reset() may be lost. */
+public class Histogram {
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;	// exact values 0..63
+	private static final int HALF = SUB_BUCKETS / 2;				// buckets per power of two above that
+	private static final int MAX_SHIFT = 36;
+	private static final int BUCKETS = SUB_BUCKETS + MAX_SHIFT * HALF;
+
+	// bucket counts, followed by total count, sum and max
+	private static final int COUNT = BUCKETS;
+	private static final int SUM = BUCKETS + 1;
+	private static final int MAX = BUCKETS + 2;
+
+	private final AtomicLongArray m_data = new AtomicLongArray(BUCKETS + 3);
+
+	public long count()	{ return m_data.get(COUNT); }
+	public long sum()	{ return m_data.get(SUM); }
+	public long max()	{ return m_data.get(MAX); }
+
+	public double mean() {
+		long count = count();
+		return count == 0 ? 0 : (double)sum() / count;
+	}
+
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		// single writer: plain read-modify-write with ordered stores, no atomic instructions
+		int i = index(value);
+		m_data.lazySet(i, m_data.get(i) + 1);
+		m_data.lazySet(COUNT, m_data.get(COUNT) + 1);
+		m_data.lazySet(SUM, m_data.get(SUM) + value);
+		if (value > m_data.get(MAX)) {
+			m_data.lazySet(MAX, value);
+		}
+	}
+
+	/** Returns the value at the given percentile (0..100), i.e. the highest value equivalent to the
+	 *  bucket containing it; 0 if the histogram is empty. */
+	public long percentile(double percentile) {
+		long count = count();
+		if (count == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long)Math.ceil(Math.min(percentile, 100) / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += m_data.get(i);
+			if (seen >= rank) {
+				return Math.min(highestValue(i), max());
+			}
+		}
+		return max();
+	}
+
+	public void reset() {
+		for (int i = 0; i < m_data.length(); i++) {
+			m_data.set(i, 0);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + count() + " mean=" + Math.round(mean()) + " p50=" + percentile(50) + " p99=" + percentile(99)
+			+ " p99.9=" + percentile(99.9) + " max=" + max();
+	}
+
+	static int index(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int)value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+		if (shift > MAX_SHIFT) {
+			return BUCKETS - 1;
+		}
+		return SUB_BUCKETS + (shift - 1) * HALF + (int)(value >>> shift) - HALF;
+	}
+
+	static long highestValue(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index - SUB_BUCKETS) / HALF + 1;
+		long subBucket = (index - SUB_BUCKETS) % HALF + HALF;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,315 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** Lazily decoded OPEN_ORDER or COMPLETED_ORDER message, delivered to an EOrderViewWrapper.
+ *  Construction only indexes the field boundaries of the frame. The identifying fields, quantities, prices and the
+ *  status are parsed from the frame when accessed; contract(), order() and orderState() decode the whole message,
+ *  once, exactly as the eager EWrapper path does. With server versions below 145 the frame layout still carries a
+ *  message version, so every accessor falls back to the full decode.
+ *  A view may be kept and handed to other threads; it holds on to its frame but to nothing else.
+ *  Accessors of a field missing from a truncated frame throw IllegalStateException. */
+public class OpenOrderView {
+	private static final int NOT_FOUND = -1;
+	private static final String INT_MAX = String.valueOf(Integer.MAX_VALUE);
+	private static final String LONG_MAX = String.valueOf(Long.MAX_VALUE);
+	private static final String DOUBLE_MAX = String.valueOf(Double.MAX_VALUE);
+
+	private final byte[] m_frame;
+	private final int m_serverVersion;
+	private final boolean m_completed;
+	private final boolean m_indexed;	// fixed field positions are known
+	private final int m_base;			// index of the first contract field
+	private int[] m_starts;				// start offset of each field; the field ends at the next NUL
+	private int m_fields;
+	private int m_status = NOT_FOUND;	// index of the status field, if it could be located
+	private Contract m_contract;
+	private Order m_order;
+	private OrderState m_orderState;
+
+	public boolean isCompleted()	{ return m_completed; }
+	public int serverVersion()		{ return m_serverVersion; }
+
+	/** Length of the frame in bytes. */
+	public int length()				{ return m_frame.length; }
+
+	OpenOrderView(byte[] frame, int serverVersion, boolean completed) {
+		m_frame = frame;
+		m_serverVersion = serverVersion;
+		m_completed = completed;
+		m_indexed = serverVersion >= EClient.MIN_SERVER_VER_ORDER_CONTAINER;
+		m_base = completed ? 1 : 2;
+
+		m_starts = new int[256];
+		m_starts[0] = 0;
+		for (int i = 0; i < frame.length; i++) {
+			if (frame[i] == 0) {
+				if (++m_fields == m_starts.length) {
+					m_starts = Arrays.copyOf(m_starts, m_starts.length * 2);
+				}
+				m_starts[m_fields] = i + 1;
+			}
+		}
+
+		if (m_indexed) {
+			try {
+				m_status = locateStatus();
+			}
+			catch (IllegalStateException | NumberFormatException e) {
+				// malformed or truncated; status() decodes in full and reports the error
+			}
+		}
+	}
+
+	// fields at fixed positions
+
+	/** Order id; 0 for completed orders, which carry none. */
+	public int orderId() {
+		if (m_completed) {
+			return 0;
+		}
+		return m_indexed ? intAt(1) : order().orderId();
+	}
+
+	public int conid()				{ return m_indexed ? intAt(m_base) : contract().conid(); }
+	public String symbol()			{ return m_indexed ? strAt(m_base + 1) : contract().symbol(); }
+	public String secType()			{ return m_indexed ? strAt(m_base + 2) : contract().getSecType(); }
+	public String exchange()		{ return m_indexed ? strAt(m_base + 7) : contract().exchange(); }
+	public String currency()		{ return m_indexed ? strAt(m_base + 8) : contract().currency(); }
+	public String localSymbol()		{ return m_indexed ? strAt(m_base + 9) : contract().localSymbol(); }
+	public String action()			{ return m_indexed ? strAt(m_base + 11) : order().getAction(); }
+	public Decimal totalQuantity()	{ return m_indexed ? decimalAt(m_base + 12) : order().totalQuantity(); }
+	public String orderType()		{ return m_indexed ? strAt(m_base + 13) : order().getOrderType(); }
+	public double lmtPrice()		{ return m_indexed ? doubleMaxAt(m_base + 14) : order().lmtPrice(); }
+	public double auxPrice()		{ return m_indexed ? doubleMaxAt(m_base + 15) : order().auxPrice(); }
+	public String tif()				{ return m_indexed ? strAt(m_base + 16) : order().getTif(); }
+	public String account()			{ return m_indexed ? strAt(m_base + 18) : order().account(); }
+
+	/** Client id; 0 for completed orders, which carry none. */
+	public int clientId() {
+		if (m_completed) {
+			return 0;
+		}
+		return m_indexed ? intAt(m_base + 22) : order().clientId();
+	}
+
+	public long permId() {
+		return m_indexed ? longAt(m_completed ? m_base + 22 : m_base + 23) : order().permId();
+	}
+
+	public String status() {
+		return m_status != NOT_FOUND ? strAt(m_status) : orderState().getStatus();
+	}
+
+	// full decode
+
+	public synchronized Contract contract() {
+		decode();
+		return m_contract;
+	}
+
+	public synchronized Order order() {
+		decode();
+		return m_order;
+	}
+
+	public synchronized OrderState orderState() {
+		decode();
+		return m_orderState;
+	}
+
+	private void decode() {
+		if (m_order != null) {
+			return;
+		}
+
+		Contract contract = new Contract();
+		Order order = new Order();
+		OrderState orderState = new OrderState();
+		try {
+			EDecoder.decodeOrder(m_frame, m_serverVersion, m_completed, contract, order, orderState);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("cannot decode order message", e);
+		}
+		m_contract = contract;
+		m_order = order;
+		m_orderState = orderState;
+	}
+
+	/** Skips the variable-length groups in front of the status field, following the same conditions as EOrderDecoder;
+	 *  OpenOrderViewTest checks the result against EOrderDecoder for every server version. */
+	private int locateStatus() {
+		int i = m_completed ? m_base + 23 : m_base + 24;	// outsideRth, after permId
+		i += 4;									// outsideRth, hidden, discretionaryAmt, goodAfterTime
+		if (!m_completed) {
+			i++;								// shares allocation
+		}
+		i += 3;									// faGroup, faMethod, faPercentage
+		if (m_serverVersion < EClient.MIN_SERVER_VER_FA_PROFILE_DESUPPORT) {
+			i++;								// faProfile
+		}
+		i += 5;									// modelCode, goodTillDate, rule80A, percentOffset, settlingFirm
+		i += 3;									// shortSaleSlot, designatedLocation, exemptCode
+		if (!m_completed) {
+			i++;								// auctionStrategy
+		}
+		i += 6;									// startingPrice, stockRefPrice, delta, stockRangeLower, stockRangeUpper, displaySize
+		if (!m_completed) {
+			i++;								// blockOrder
+		}
+		i += 4;									// sweepToFill, allOrNone, minQty, ocaType
+		if (!m_completed) {
+			i += 4;								// eTradeOnly, firmQuoteOnly, nbboPriceCap, parentId
+		}
+		i++;									// triggerMethod
+
+		// volatility order params
+		i += 2;									// volatility, volatilityType
+		if (i >= m_fields) {
+			return NOT_FOUND;
+		}
+		boolean deltaNeutral = !isEmpty(i);
+		i += 2;									// deltaNeutralOrderType, deltaNeutralAuxPrice
+		if (deltaNeutral) {
+			i += m_completed ? 1 : 4;			// conid [, settlingFirm, clearingAccount, clearingIntent]
+			i += m_completed ? 3 : 4;			// [openClose,] shortSale, shortSaleSlot, designatedLocation
+		}
+		i += 2;									// continuousUpdate, referencePriceType
+
+		i += 2;									// trailStopPrice, trailingPercent
+		if (!m_completed) {
+			i += 2;								// basisPoints, basisPointsType
+		}
+
+		i++;									// comboLegsDescrip
+		if (i >= m_fields) {
+			return NOT_FOUND;
+		}
+		i += 1 + 8 * count(i);					// combo legs
+		if (i >= m_fields) {
+			return NOT_FOUND;
+		}
+		i += 1 + count(i);						// order combo legs
+		if (i >= m_fields) {
+			return NOT_FOUND;
+		}
+		i += 1 + 2 * count(i);					// smart combo routing params
+
+		i += 2;									// scaleInitLevelSize, scaleSubsLevelSize
+		if (i >= m_fields) {
+			return NOT_FOUND;
+		}
+		double scalePriceIncrement = doubleMaxAt(i++);
+		if (scalePriceIncrement > 0.0 && scalePriceIncrement != Double.MAX_VALUE) {
+			i += 7;
+		}
+
+		if (i >= m_fields) {
+			return NOT_FOUND;
+		}
+		i += isEmpty(i) ? 1 : 2;				// hedgeType [, hedgeParam]
+		if (!m_completed) {
+			i++;								// optOutSmartRouting
+		}
+		i += 3;									// clearingAccount, clearingIntent, notHeld
+
+		if (i >= m_fields) {
+			return NOT_FOUND;
+		}
+		i += intAt(i) != 0 ? 4 : 1;				// delta neutral contract
+
+		if (i >= m_fields) {
+			return NOT_FOUND;
+		}
+		boolean algo = !isEmpty(i++);			// algoStrategy
+		if (algo) {
+			if (i >= m_fields) {
+				return NOT_FOUND;
+			}
+			i += 1 + 2 * count(i);				// algo params
+		}
+
+		i++;									// solicited
+		if (!m_completed) {
+			i++;								// whatIf
+		}
+		return i < m_fields ? i : NOT_FOUND;
+	}
+
+	// field access
+
+	/** Returns the start offset of a field, which ends at the next start minus the NUL. */
+	private int start(int field) {
+		if (field < 0 || field >= m_fields) {
+			throw new IllegalStateException("truncated order message: field " + field + " of " + m_fields);
+		}
+		return m_starts[field];
+	}
+
+	/** Number of entries of a repeated group. */
+	private int count(int field) {
+		int count = intAt(field);
+		if (count < 0) {
+			throw new IllegalStateException("invalid order message: count " + count + " in field " + field);
+		}
+		return count;
+	}
+
+	private boolean isEmpty(int field) {
+		int start = start(field);
+		return m_starts[field + 1] - 1 == start;
+	}
+
+	private String strAt(int field) {
+		int start = start(field);
+		int len = m_starts[field + 1] - 1 - start;
+		return len == 0 ? null : new String(m_frame, start, len, StandardCharsets.ISO_8859_1);
+	}
+
+	private int intAt(int field) {
+		return (int)longAt(field);
+	}
+
+	/** Parses an integer field in place; empty fields are 0, like EDecoder.readInt(). */
+	private long longAt(int field) {
+		int i = start(field);
+		int end = m_starts[field + 1] - 1;
+		boolean negative = i < end && m_frame[i] == '-';
+		if (negative) {
+			i++;
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			int digit = m_frame[i] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException(strAt(field));
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/** Empty fields are Double.MAX_VALUE, like EDecoder.readDoubleMax(). */
+	private double doubleMaxAt(int field) {
+		String str = strAt(field);
+		return str == null ? Double.MAX_VALUE : Double.parseDouble(str);
+	}
+
+	private Decimal decimalAt(int field) {
+		String str = strAt(field);
+		return (str == null || str.equals(LONG_MAX) || str.equals(INT_MAX) || str.equals(DOUBLE_MAX))
+				? Decimal.INVALID : Decimal.parse(str);
+	}
+
+	@Override
+	public String toString() {
+		return (m_completed ? "completed order" : "open order " + orderId()) + " permId=" + permId() + " " + action() + " "
+				+ totalQuantity() + " " + symbol() + " " + orderType() + " " + status();
+	}
+}
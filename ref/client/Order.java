@@ -17,7 +17,7 @@ import com.ib.client.Types.TimeInForce;
 import com.ib.client.Types.TriggerMethod;
 import com.ib.client.Types.VolatilityType;
 
-public class Order {
+public class Order implements Cloneable {
     final public static int 	CUSTOMER = 0;
     final public static int 	FIRM = 1;
     final public static char    OPT_UNKNOWN='?';
@@ -601,6 +601,27 @@ public class Order {
         m_manualOrderIndicator = Integer.MAX_VALUE;
     }
 
+    /** Copy with its own lists of algo params, combo legs, misc options and conditions; the elements are shared. */
+    @Override public Order clone() {
+        try {
+            Order copy = (Order)super.clone();
+            copy.m_algoParams = copyOf( m_algoParams);
+            copy.m_smartComboRoutingParams = copyOf( m_smartComboRoutingParams);
+            copy.m_orderComboLegs = copyOf( m_orderComboLegs);
+            copy.m_orderMiscOptions = copyOf( m_orderMiscOptions);
+            copy.m_conditions = copyOf( m_conditions);
+            return copy;
+        }
+        catch (CloneNotSupportedException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static <T> List<T> copyOf(List<T> list) {
+        return list != null ? new ArrayList<>( list) : null;
+    }
+
     public List<TagValue> algoParams() {
         if( m_algoParams == null ) {
             m_algoParams = new ArrayList<>();
@@ -3,6 +3,8 @@
 
 package com.ib.client;
 
+import java.util.HashMap;
+import java.util.Map;
 
 public enum OrderStatus {
 	ApiPending,
@@ -16,7 +18,18 @@ public enum OrderStatus {
 	PendingSubmit,
 	Unknown;
 
+	private static final Map<String, OrderStatus> BY_NAME = new HashMap<>();
+	static {
+		for (OrderStatus status : values()) {
+			BY_NAME.put(status.name(), status);
+		}
+	}
+
     public static OrderStatus get(String apiString) {
+        OrderStatus status = apiString != null ? BY_NAME.get(apiString) : null;
+        if (status != null) {
+            return status;
+        }
         for( OrderStatus type : values() ) {
             if( type.name().equalsIgnoreCase(apiString) ) {
                 return type;
@@ -28,4 +41,9 @@ public enum OrderStatus {
 	public boolean isActive() {
 		return this == PreSubmitted || this == PendingCancel || this == Submitted || this == PendingSubmit;
 	}
+
+	/** The order will not change any more. */
+	public boolean isDone() {
+		return this == Filled || this == Cancelled || this == ApiCancelled;
+	}
 }
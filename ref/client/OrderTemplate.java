@@ -0,0 +1,153 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.util.Arrays;
+
+/** A PLACE_ORDER message compiled once for a contract and order, see EClient.compileOrder(). Sending it with
+ *  EClient.placeOrder(template, ...) only writes the order id, quantity, limit and aux price into a reused buffer
+ *  around the bytes of all other fields, which were encoded and validated when the template was compiled.
+ *  Changing any other attribute of the order requires compiling a new template.
+ *  Templates are used under the lock of the EClient that compiled them and are valid only for its connection. */
+public class OrderTemplate {
+	// field positions in PLACE_ORDER from MIN_SERVER_VER_ORDER_CONTAINER on
+	private static final int ORDER_ID = 1;
+	private static final int ACTION = 16;
+	private static final int QUANTITY = 17;
+	private static final int ORDER_TYPE = 18;
+	private static final int LMT_PRICE = 19;
+	private static final int AUX_PRICE = 20;
+	private static final int HEADER = 4;	// length prefix
+
+	private final Contract m_contract;
+	private final Order m_order;
+	private final Order m_requested;	// the values of the next placeOrder(), for the pre-trade checks
+	private final int m_serverVersion;
+	private final byte[] m_prefix;		// message id
+	private final byte[] m_contractPart;	// contract fields and action
+	private final byte[] m_orderType;
+	private final byte[] m_suffix;		// all remaining fields
+	private byte[] m_buf = new byte[256];
+	private int m_length;
+
+	public Contract contract()		{ return m_contract; }
+	public int serverVersion()		{ return m_serverVersion; }
+
+	/** The order the template was compiled from; its id, quantity and prices are those last sent. */
+	public Order order()			{ return m_order; }
+
+	OrderTemplate(Contract contract, Order order, int serverVersion, byte[] payload) {
+		m_contract = contract;
+		m_order = order;
+		m_requested = order.clone();
+		m_serverVersion = serverVersion;
+
+		int[] starts = new int[AUX_PRICE + 2];
+		int field = 0;
+		for (int i = 0; i < payload.length && field <= AUX_PRICE; i++) {
+			if (payload[i] == 0) {
+				starts[++field] = i + 1;
+			}
+		}
+		if (field <= AUX_PRICE || !fieldEquals( payload, starts, ACTION, order.getAction() )
+				|| !fieldEquals( payload, starts, ORDER_TYPE, order.getOrderType() ) ) {
+			throw new IllegalStateException( "unexpected PLACE_ORDER layout for server version " + serverVersion);
+		}
+
+		m_prefix = Arrays.copyOfRange( payload, 0, starts[ORDER_ID]);
+		m_contractPart = Arrays.copyOfRange( payload, starts[ORDER_ID + 1], starts[QUANTITY]);
+		m_orderType = Arrays.copyOfRange( payload, starts[ORDER_TYPE], starts[LMT_PRICE]);
+		m_suffix = Arrays.copyOfRange( payload, starts[AUX_PRICE + 1], payload.length);
+	}
+
+	/** Returns the order with a new id, quantity and prices without changing order(); the same object every time. */
+	Order requested(int orderId, Decimal quantity, double lmtPrice, double auxPrice) {
+		m_requested.orderId( orderId);
+		m_requested.totalQuantity( quantity);
+		m_requested.lmtPrice( lmtPrice);
+		m_requested.auxPrice( auxPrice);
+		return m_requested;
+	}
+
+	/** Builds the complete message, with length prefix, into the reused buffer and updates the order. */
+	void encode(int orderId, Decimal quantity, double lmtPrice, double auxPrice) {
+		m_order.orderId( orderId);
+		m_order.totalQuantity( quantity);
+		m_order.lmtPrice( lmtPrice);
+		m_order.auxPrice( auxPrice);
+
+		m_length = HEADER;
+		append( m_prefix);
+		append( orderId);
+		append( m_contractPart);
+		append( quantity.toString() );
+		append( m_orderType);
+		appendMax( lmtPrice);
+		appendMax( auxPrice);
+		append( m_suffix);
+		Builder.intToBytes( m_length - HEADER, m_buf, 0);
+	}
+
+	byte[] buffer()		{ return m_buf; }
+	int length()		{ return m_length; }
+
+	private void append(byte[] bytes) {
+		ensure( bytes.length);
+		System.arraycopy( bytes, 0, m_buf, m_length, bytes.length);
+		m_length += bytes.length;
+	}
+
+	/** Writes the decimal digits of an int directly, as Builder.send(int) would. */
+	private void append(int value) {
+		ensure( 12);
+		if (value < 0) {
+			m_buf[m_length++] = '-';
+		}
+		long v = Math.abs( (long)value);
+		int digits = 1;
+		for (long p = 10; p <= v; p *= 10) {
+			digits++;
+		}
+		for (int i = m_length + digits - 1; i >= m_length; i--) {
+			m_buf[i] = (byte)('0' + v % 10);
+			v /= 10;
+		}
+		m_length += digits;
+		m_buf[m_length++] = 0;
+	}
+
+	private void appendMax(double value) {
+		append( value == Double.MAX_VALUE ? "" : String.valueOf( value) );
+	}
+
+	/** Appends an ASCII string and the separator. */
+	private void append(String str) {
+		ensure( str.length() + 1);
+		for (int i = 0; i < str.length(); i++) {
+			m_buf[m_length++] = (byte)str.charAt( i);
+		}
+		m_buf[m_length++] = 0;
+	}
+
+	private void ensure(int size) {
+		if (m_length + size > m_buf.length) {
+			m_buf = Arrays.copyOf( m_buf, Math.max( m_buf.length * 2, m_length + size) );
+		}
+	}
+
+	private static boolean fieldEquals(byte[] payload, int[] starts, int field, String value) {
+		int start = starts[field];
+		int len = starts[field + 1] - 1 - start;
+		String str = value != null ? value : "";
+		if (len != str.length() ) {
+			return false;
+		}
+		for (int i = 0; i < len; i++) {
+			if (payload[start + i] != str.charAt( i) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
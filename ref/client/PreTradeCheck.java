@@ -0,0 +1,35 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+/** One check of the pre-trade chain run by EClient.placeOrder() before an order is encoded, see PreTradeChecks.
+ *  Checks run on the thread placing the order while EClient is locked, so they must be fast and should not allocate;
+ *  return a constant string as reason. */
+public interface PreTradeCheck {
+	/** Short name used in rejection messages and statistics. */
+	String name();
+
+	/** Returns null to accept the order, or the reason for rejecting it. */
+	String check(Contract contract, Order order);
+
+	/** Called by EClient.placeOrders() for each order of a batch that passed all checks and will be sent, so that
+	 *  checks of the following orders can take it into account, e.g. its effect on the position. */
+	default void batchOrder(Contract contract, Order order) {
+	}
+
+	/** Called when a batch has been sent or failed; forgets the orders passed to batchOrder(). */
+	default void batchEnd() {
+	}
+
+	/** Reference price of a contract, e.g. the last mark; 0 or less if unknown. */
+	interface PriceSource {
+		double price(int conid);
+	}
+
+	/** Current position of an account in a contract, signed; of all accounts together if account is empty.
+	 *  Called on the thread placing the order, so it should not block. */
+	interface PositionSource {
+		double position(String account, int conid);
+	}
+}
@@ -0,0 +1,260 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Chain of PreTradeChecks, installed with EClient.preTradeChecks(). Orders are checked in the order the checks were
+ *  added and the first rejection wins; a rejected order is not sent and reported through EWrapper.error() with code
+ *  EClientErrors.PRE_TRADE_REJECT and the order id. The latency and the rejections of every check are recorded.
+ *  Checks may be added and removed at any time; check() itself takes no lock, but expects its callers to be
+ *  serialized, as EClient.placeOrder() is.
+ *  The nested classes are the standard checks: MaxNotional, MaxPosition, PriceBand and OrderRate. */
+public class PreTradeChecks {
+	public static class Stats {
+		private final PreTradeCheck m_check;
+		private final Histogram m_nanos = new Histogram();
+		private final AtomicLong m_rejected = new AtomicLong();
+
+		public PreTradeCheck check()	{ return m_check; }
+		public String name()			{ return m_check.name(); }
+		public long checked()			{ return m_nanos.count(); }
+		public long rejected()			{ return m_rejected.get(); }
+
+		/** Time spent in the check, in nanoseconds. */
+		public Histogram nanos()		{ return m_nanos; }
+
+		Stats(PreTradeCheck check) {
+			m_check = check;
+		}
+
+		@Override public String toString() {
+			return name() + " rejected=" + rejected() + " nanos[" + m_nanos + "]";
+		}
+	}
+
+	private volatile Stats[] m_stats = new Stats[0];
+
+	public synchronized void add(PreTradeCheck check) {
+		Stats[] stats = Arrays.copyOf( m_stats, m_stats.length + 1);
+		stats[stats.length - 1] = new Stats( check);
+		m_stats = stats;
+	}
+
+	public synchronized boolean remove(PreTradeCheck check) {
+		List<Stats> list = new ArrayList<>( Arrays.asList( m_stats) );
+		boolean removed = list.removeIf( stats -> stats.m_check == check);
+		m_stats = list.toArray( new Stats[list.size()]);
+		return removed;
+	}
+
+	public List<Stats> stats() {
+		return Arrays.asList( m_stats.clone() );
+	}
+
+	public void reset() {
+		for (Stats stats : m_stats) {
+			stats.m_nanos.reset();
+			stats.m_rejected.set( 0);
+		}
+	}
+
+	/** Runs all checks; returns null if the order passed, otherwise the name of the rejecting check and its reason. */
+	public String check(Contract contract, Order order) {
+		for (Stats stats : m_stats) {
+			long start = System.nanoTime();
+			String reason = stats.m_check.check( contract, order);
+			stats.m_nanos.record( System.nanoTime() - start);
+			if (reason != null) {
+				stats.m_rejected.incrementAndGet();
+				return stats.m_check.name() + ": " + reason;
+			}
+		}
+		return null;
+	}
+
+	/** Passes an accepted order of a batch to all checks, see PreTradeCheck.batchOrder(). */
+	public void batchOrder(Contract contract, Order order) {
+		for (Stats stats : m_stats) {
+			stats.m_check.batchOrder( contract, order);
+		}
+	}
+
+	public void batchEnd() {
+		for (Stats stats : m_stats) {
+			stats.m_check.batchEnd();
+		}
+	}
+
+	@Override public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Stats stats : m_stats) {
+			sb.append( stats).append( '\n');
+		}
+		return sb.toString();
+	}
+
+	// ---------------------------------------- Standard checks ----------------------------------------
+
+	/** Rejects orders whose quantity times price times multiplier exceeds a limit. The price is the limit price,
+	 *  else the stop price of stop orders, else the reference price; orders without any price are rejected. */
+	public static class MaxNotional implements PreTradeCheck {
+		private final double m_maxNotional;
+		private final PriceSource m_prices;
+
+		public MaxNotional(double maxNotional, PriceSource prices) {
+			m_maxNotional = maxNotional;
+			m_prices = prices;
+		}
+
+		@Override public String name() { return "MaxNotional"; }
+
+		@Override public String check(Contract contract, Order order) {
+			double price = orderPrice( order);
+			if (price == 0 && m_prices != null) {
+				price = m_prices.price( contract.conid() );
+			}
+			if (price <= 0) {
+				return "no price";
+			}
+			double notional = quantity( order) * price * multiplier( contract);
+			return notional > m_maxNotional ? "notional above limit" : null;
+		}
+	}
+
+	/** Rejects orders which would take the absolute position of the order's account above a limit; orders that
+	 *  reduce the position are always accepted. Orders without an account, as usual with a single account, are checked
+	 *  against the position of all accounts together. Within a batch, the orders accepted before count as filled. */
+	public static class MaxPosition implements PreTradeCheck {
+		private final double m_maxPosition;
+		private final PositionSource m_positions;
+		private final Map<String, double[]> m_batch = new HashMap<>();	// by account and conid; change of the position
+
+		public MaxPosition(double maxPosition, PositionSource positions) {
+			m_maxPosition = maxPosition;
+			m_positions = positions;
+		}
+
+		@Override public String name() { return "MaxPosition"; }
+
+		@Override public String check(Contract contract, Order order) {
+			double current = m_positions.position( order.account(), contract.conid() );
+			if (!m_batch.isEmpty() ) {
+				double[] change = m_batch.get( key( contract, order) );
+				if (change != null) {
+					current += change[0];
+				}
+			}
+			double projected = current + change( order);
+			return Math.abs( projected) > m_maxPosition && Math.abs( projected) > Math.abs( current) ? "position above limit" : null;
+		}
+
+		@Override public void batchOrder(Contract contract, Order order) {
+			m_batch.computeIfAbsent( key( contract, order), key -> new double[1])[0] += change( order);
+		}
+
+		@Override public void batchEnd() {
+			m_batch.clear();
+		}
+
+		private static String key(Contract contract, Order order) {
+			return order.account() + ":" + contract.conid();
+		}
+
+		private static double change(Order order) {
+			return ("BUY".equalsIgnoreCase( order.getAction() ) ? 1 : -1) * quantity( order);
+		}
+	}
+
+	/** Rejects orders whose limit or stop price deviates from the reference price by more than a fraction,
+	 *  e.g. 0.05 for 5%, and orders with a price but no reference price. */
+	public static class PriceBand implements PreTradeCheck {
+		private final double m_maxDeviation;
+		private final PriceSource m_prices;
+
+		public PriceBand(double maxDeviation, PriceSource prices) {
+			m_maxDeviation = maxDeviation;
+			m_prices = prices;
+		}
+
+		@Override public String name() { return "PriceBand"; }
+
+		@Override public String check(Contract contract, Order order) {
+			double price = orderPrice( order);
+			if (price == 0) {
+				return null; // market order
+			}
+			double reference = m_prices.price( contract.conid() );
+			if (reference <= 0) {
+				return "no reference price";
+			}
+			return Math.abs( price - reference) > m_maxDeviation * reference ? "price outside band" : null;
+		}
+	}
+
+	/** Limits the rate of placeOrder calls, new orders and modifications alike, to a number per period, allowing
+	 *  bursts of up to that number. Uses a single atomic counter (generic cell rate algorithm), so it can be shared. */
+	public static class OrderRate implements PreTradeCheck {
+		private final long m_interval;	// nanoseconds per order
+		private final long m_burst;		// nanoseconds the schedule may run ahead
+		private final AtomicLong m_next = new AtomicLong( Long.MIN_VALUE);	// theoretical arrival time of the next order
+
+		public OrderRate(int maxOrders, long period, TimeUnit unit) {
+			if (maxOrders <= 0) {
+				throw new IllegalArgumentException( "invalid order count " + maxOrders);
+			}
+			m_interval = Math.max( 1, unit.toNanos( period) / maxOrders);
+			m_burst = m_interval * (maxOrders - 1);
+		}
+
+		@Override public String name() { return "OrderRate"; }
+
+		@Override public String check(Contract contract, Order order) {
+			long now = System.nanoTime();
+			while (true) {
+				long next = m_next.get();
+				long start = next == Long.MIN_VALUE || next - now < 0 ? now : next;
+				if (start - now > m_burst) {
+					return "order rate above limit";
+				}
+				if (m_next.compareAndSet( next, start + m_interval) ) {
+					return null;
+				}
+			}
+		}
+	}
+
+	/** Limit price, else the stop price of a stop order, else 0; auxPrice means other things for other order types. */
+	static double orderPrice(Order order) {
+		double price = order.lmtPrice();
+		if ((price == 0 || price == Double.MAX_VALUE) && "STP".equals( order.getOrderType() ) ) {
+			price = order.auxPrice();
+		}
+		return price == Double.MAX_VALUE ? 0 : Math.abs( price);
+	}
+
+	static double quantity(Order order) {
+		Decimal quantity = order.totalQuantity();
+		return Decimal.isValid( quantity) ? quantity.doubleValue() : 0;
+	}
+
+	static double multiplier(Contract contract) {
+		String multiplier = contract.multiplier();
+		if (Util.StringIsEmpty( multiplier) ) {
+			return 1;
+		}
+		try {
+			return Double.parseDouble( multiplier);
+		}
+		catch (NumberFormatException e) {
+			return 1;
+		}
+	}
+}
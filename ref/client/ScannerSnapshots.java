@@ -0,0 +1,220 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Last scan of each tracked scanner subscription, used by EDecoder to turn SCANNER_DATA into differences for an
+ *  EScannerDiffWrapper. A row is remembered by its conid, rank and a hash of its other fields, so unchanged rows are
+ *  compared in place in the frame; only added or changed rows are decoded into ContractDetails.
+ *  Snapshots are double-buffered arrays which are reused from scan to scan.
+ *  track() and untrack() may be called from any thread; diffing happens on the decoding thread. */
+public class ScannerSnapshots {
+	private static final int ROW_FIELDS = 16;	// rank, conid, 10 contract fields, distance, benchmark, projection, legs
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final ConcurrentHashMap<Integer, Snapshot> m_snapshots = new ConcurrentHashMap<>();
+	private int[] m_starts = new int[256];	// field offsets of the frame being diffed
+
+	private static class Snapshot {
+		int m_rows;
+		int[] m_conids = new int[64];
+		int[] m_ranks = new int[64];
+		long[] m_hashes = new long[64];
+		boolean[] m_matched = new boolean[64];
+
+		// next scan, swapped in when complete
+		int[] m_nextConids = new int[64];
+		int[] m_nextRanks = new int[64];
+		long[] m_nextHashes = new long[64];
+
+		void ensureCapacity(int rows) {
+			if (rows > m_nextConids.length) {
+				m_nextConids = new int[rows];
+				m_nextRanks = new int[rows];
+				m_nextHashes = new long[rows];
+			}
+			if (m_rows > m_matched.length || rows > m_matched.length) {
+				m_matched = new boolean[Math.max( m_rows, rows)];
+			}
+		}
+
+		void swap() {
+			int[] conids = m_conids;
+			m_conids = m_nextConids;
+			m_nextConids = conids;
+			int[] ranks = m_ranks;
+			m_ranks = m_nextRanks;
+			m_nextRanks = ranks;
+			long[] hashes = m_hashes;
+			m_hashes = m_nextHashes;
+			m_nextHashes = hashes;
+		}
+
+		/** Index of the first not yet matched row of the previous scan with this conid, or -1. */
+		int find(int conid) {
+			for (int i = 0; i < m_rows; i++) {
+				if (m_conids[i] == conid && !m_matched[i]) {
+					return i;
+				}
+			}
+			return -1;
+		}
+	}
+
+	/** Starts diffing the scans of a subscription; its first scan is delivered as added rows. */
+	public void track(int reqId) {
+		m_snapshots.put( reqId, new Snapshot() );
+	}
+
+	/** Stops diffing a subscription, e.g. when it is cancelled, and forgets its last scan. */
+	public void untrack(int reqId) {
+		m_snapshots.remove( reqId);
+	}
+
+	public boolean isTracked(int reqId) {
+		return m_snapshots.containsKey( reqId);
+	}
+
+	/** Number of rows of the last scan of a subscription, or -1 if it is not tracked. */
+	public int rows(int reqId) {
+		Snapshot snapshot = m_snapshots.get( reqId);
+		return snapshot != null ? snapshot.m_rows : -1;
+	}
+
+	public void clear() {
+		m_snapshots.clear();
+	}
+
+	/** Diffs a SCANNER_DATA frame against the last scan of its subscription and reports the differences to wrapper.
+	 *  Returns the reqId, or -1 without calling wrapper if the subscription is not tracked or the message version
+	 *  carries no conids; the frame must then be decoded in full. */
+	int diff(byte[] frame, EScannerDiffWrapper wrapper) {
+		int fields = index( frame);
+		if (fields < 4 || intAt( frame, 1) < 3) {
+			return -1;
+		}
+		int reqId = intAt( frame, 2);
+		Snapshot snapshot = m_snapshots.get( reqId);
+		if (snapshot == null) {
+			return -1;
+		}
+
+		int rows = Math.max( 0, Math.min( intAt( frame, 3), (fields - 4) / ROW_FIELDS) );
+		snapshot.ensureCapacity( rows);
+		Arrays.fill( snapshot.m_matched, 0, snapshot.m_rows, false);
+
+		// match the rows of this scan to the previous one first, so removals can be reported before additions
+		for (int row = 0; row < rows; row++) {
+			int field = 4 + row * ROW_FIELDS;
+			int conid = intAt( frame, field + 1);
+			snapshot.m_nextConids[row] = conid;
+			snapshot.m_nextRanks[row] = intAt( frame, field);
+			snapshot.m_nextHashes[row] = hash( frame, m_starts[field + 1], m_starts[field + ROW_FIELDS] - 1);
+			int previous = snapshot.find( conid);
+			if (previous >= 0) {
+				snapshot.m_matched[previous] = true;
+			}
+		}
+		for (int i = 0; i < snapshot.m_rows; i++) {
+			if (!snapshot.m_matched[i]) {
+				wrapper.scannerRowRemoved( reqId, snapshot.m_conids[i], snapshot.m_ranks[i]);
+			}
+		}
+
+		Arrays.fill( snapshot.m_matched, 0, snapshot.m_rows, false);
+		for (int row = 0; row < rows; row++) {
+			int rank = snapshot.m_nextRanks[row];
+			int previous = snapshot.find( snapshot.m_nextConids[row]);
+			int previousRank = -1;
+			if (previous >= 0) {
+				snapshot.m_matched[previous] = true;
+				previousRank = snapshot.m_ranks[previous];
+				if (snapshot.m_hashes[previous] == snapshot.m_nextHashes[row]) {
+					if (previousRank != rank) {
+						wrapper.scannerRowMoved( reqId, snapshot.m_nextConids[row], rank, previousRank);
+					}
+					continue;
+				}
+			}
+			added( frame, 4 + row * ROW_FIELDS, reqId, rank, previousRank, wrapper);
+		}
+
+		snapshot.swap();
+		snapshot.m_rows = rows;
+		return reqId;
+	}
+
+	/** Decodes a row exactly like EDecoder.processScannerDataMsg(). */
+	private void added(byte[] frame, int field, int reqId, int rank, int previousRank, EScannerDiffWrapper wrapper) {
+		ContractDetails contract = new ContractDetails();
+		contract.contract().conid( intAt( frame, field + 1) );
+		contract.contract().symbol( strAt( frame, field + 2) );
+		contract.contract().secType( strAt( frame, field + 3) );
+		contract.contract().lastTradeDateOrContractMonth( strAt( frame, field + 4) );
+		String strike = strAt( frame, field + 5);
+		contract.contract().strike( strike == null ? 0 : Double.parseDouble( strike) );
+		contract.contract().right( strAt( frame, field + 6) );
+		contract.contract().exchange( strAt( frame, field + 7) );
+		contract.contract().currency( strAt( frame, field + 8) );
+		contract.contract().localSymbol( strAt( frame, field + 9) );
+		contract.marketName( strAt( frame, field + 10) );
+		contract.contract().tradingClass( strAt( frame, field + 11) );
+		wrapper.scannerRowAdded( reqId, rank, previousRank, contract, strAt( frame, field + 12), strAt( frame, field + 13),
+				strAt( frame, field + 14), strAt( frame, field + 15) );
+	}
+
+	/** Records the start of every field of the frame in m_starts; returns the number of fields. */
+	private int index(byte[] frame) {
+		int fields = 0;
+		m_starts[0] = 0;
+		for (int i = 0; i < frame.length; i++) {
+			if (frame[i] == 0) {
+				if (++fields == m_starts.length) {
+					m_starts = Arrays.copyOf( m_starts, m_starts.length * 2);
+				}
+				m_starts[fields] = i + 1;
+			}
+		}
+		return fields;
+	}
+
+	private String strAt(byte[] frame, int field) {
+		int start = m_starts[field];
+		int len = m_starts[field + 1] - 1 - start;
+		return len == 0 ? null : new String( frame, start, len, StandardCharsets.ISO_8859_1);
+	}
+
+	/** Parses an integer field in place; empty fields are 0, like EDecoder.readInt(). */
+	private int intAt(byte[] frame, int field) {
+		int i = m_starts[field];
+		int end = m_starts[field + 1] - 1;
+		boolean negative = i < end && frame[i] == '-';
+		if (negative) {
+			i++;
+		}
+		int value = 0;
+		for (; i < end; i++) {
+			int digit = frame[i] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException( strAt( frame, field) );
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/** 64-bit FNV-1a over bytes from start to end, exclusive. */
+	private static long hash(byte[] frame, int start, int end) {
+		long hash = FNV_OFFSET;
+		for (int i = start; i < end; i++) {
+			hash ^= frame[i] & 0xff;
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+}
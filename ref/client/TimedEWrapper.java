@@ -0,0 +1,710 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/** Forwards all callbacks to the user's EWrapper and adds the time spent in them to EDecoderMetrics,
+ *  so that decode time and callback time of a message can be told apart.
+ *  The EOrderViewWrapper, EScannerDiffWrapper and EXmlStreamWrapper methods are only called if the user's wrapper
+ *  implements that interface too. */
+class TimedEWrapper implements EWrapper, EOrderViewWrapper, EScannerDiffWrapper, EXmlStreamWrapper {
+	private final EWrapper m_wrapper;
+	private final EDecoderMetrics m_metrics;
+
+	EWrapper wrapper() { return m_wrapper; }
+
+	TimedEWrapper(EWrapper wrapper, EDecoderMetrics metrics) {
+		m_wrapper = wrapper;
+		m_metrics = metrics;
+	}
+
+	@Override
+	public void tickPrice(int tickerId, int field, double price, TickAttrib attrib) {
+		long start = System.nanoTime();
+		m_wrapper.tickPrice(tickerId, field, price, attrib);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void tickSize(int tickerId, int field, Decimal size) {
+		long start = System.nanoTime();
+		m_wrapper.tickSize(tickerId, field, size);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void tickOptionComputation(int tickerId, int field, int tickAttrib, double impliedVol, double delta, double optPrice, double pvDividend, double gamma, double vega, double theta, double undPrice) {
+		long start = System.nanoTime();
+		m_wrapper.tickOptionComputation(tickerId, field, tickAttrib, impliedVol, delta, optPrice, pvDividend, gamma, vega, theta, undPrice);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void tickGeneric(int tickerId, int tickType, double value) {
+		long start = System.nanoTime();
+		m_wrapper.tickGeneric(tickerId, tickType, value);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void tickString(int tickerId, int tickType, String value) {
+		long start = System.nanoTime();
+		m_wrapper.tickString(tickerId, tickType, value);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void tickEFP(int tickerId, int tickType, double basisPoints, String formattedBasisPoints, double impliedFuture, int holdDays, String futureLastTradeDate, double dividendImpact, double dividendsToLastTradeDate) {
+		long start = System.nanoTime();
+		m_wrapper.tickEFP(tickerId, tickType, basisPoints, formattedBasisPoints, impliedFuture, holdDays, futureLastTradeDate, dividendImpact, dividendsToLastTradeDate);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void orderStatus(int orderId, String status, Decimal filled, Decimal remaining, double avgFillPrice, long permId, int parentId, double lastFillPrice, int clientId, String whyHeld, double mktCapPrice) {
+		long start = System.nanoTime();
+		m_wrapper.orderStatus(orderId, status, filled, remaining, avgFillPrice, permId, parentId, lastFillPrice, clientId, whyHeld, mktCapPrice);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void openOrder(int orderId, Contract contract, Order order, OrderState orderState) {
+		long start = System.nanoTime();
+		m_wrapper.openOrder(orderId, contract, order, orderState);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void openOrderEnd() {
+		long start = System.nanoTime();
+		m_wrapper.openOrderEnd();
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void updateAccountValue(String key, String value, String currency, String accountName) {
+		long start = System.nanoTime();
+		m_wrapper.updateAccountValue(key, value, currency, accountName);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void updatePortfolio(Contract contract, Decimal position, double marketPrice, double marketValue, double averageCost, double unrealizedPNL, double realizedPNL, String accountName) {
+		long start = System.nanoTime();
+		m_wrapper.updatePortfolio(contract, position, marketPrice, marketValue, averageCost, unrealizedPNL, realizedPNL, accountName);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void updateAccountTime(String timeStamp) {
+		long start = System.nanoTime();
+		m_wrapper.updateAccountTime(timeStamp);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void accountDownloadEnd(String accountName) {
+		long start = System.nanoTime();
+		m_wrapper.accountDownloadEnd(accountName);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void nextValidId(int orderId) {
+		long start = System.nanoTime();
+		m_wrapper.nextValidId(orderId);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void contractDetails(int reqId, ContractDetails contractDetails) {
+		long start = System.nanoTime();
+		m_wrapper.contractDetails(reqId, contractDetails);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void bondContractDetails(int reqId, ContractDetails contractDetails) {
+		long start = System.nanoTime();
+		m_wrapper.bondContractDetails(reqId, contractDetails);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void contractDetailsEnd(int reqId) {
+		long start = System.nanoTime();
+		m_wrapper.contractDetailsEnd(reqId);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void execDetails(int reqId, Contract contract, Execution execution) {
+		long start = System.nanoTime();
+		m_wrapper.execDetails(reqId, contract, execution);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void execDetailsEnd(int reqId) {
+		long start = System.nanoTime();
+		m_wrapper.execDetailsEnd(reqId);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void updateMktDepth(int tickerId, int position, int operation, int side, double price, Decimal size) {
+		long start = System.nanoTime();
+		m_wrapper.updateMktDepth(tickerId, position, operation, side, price, size);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void updateMktDepthL2(int tickerId, int position, String marketMaker, int operation, int side, double price, Decimal size, boolean isSmartDepth) {
+		long start = System.nanoTime();
+		m_wrapper.updateMktDepthL2(tickerId, position, marketMaker, operation, side, price, size, isSmartDepth);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void updateNewsBulletin(int msgId, int msgType, String message, String origExchange) {
+		long start = System.nanoTime();
+		m_wrapper.updateNewsBulletin(msgId, msgType, message, origExchange);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void managedAccounts(String accountsList) {
+		long start = System.nanoTime();
+		m_wrapper.managedAccounts(accountsList);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void receiveFA(int faDataType, String xml) {
+		long start = System.nanoTime();
+		m_wrapper.receiveFA(faDataType, xml);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void historicalData(int reqId, Bar bar) {
+		long start = System.nanoTime();
+		m_wrapper.historicalData(reqId, bar);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void scannerParameters(String xml) {
+		long start = System.nanoTime();
+		m_wrapper.scannerParameters(xml);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void scannerData(int reqId, int rank, ContractDetails contractDetails, String distance, String benchmark, String projection, String legsStr) {
+		long start = System.nanoTime();
+		m_wrapper.scannerData(reqId, rank, contractDetails, distance, benchmark, projection, legsStr);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void scannerDataEnd(int reqId) {
+		long start = System.nanoTime();
+		m_wrapper.scannerDataEnd(reqId);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void realtimeBar(int reqId, long time, double open, double high, double low, double close, Decimal volume, Decimal wap, int count) {
+		long start = System.nanoTime();
+		m_wrapper.realtimeBar(reqId, time, open, high, low, close, volume, wap, count);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void currentTime(long time) {
+		long start = System.nanoTime();
+		m_wrapper.currentTime(time);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void fundamentalData(int reqId, String data) {
+		long start = System.nanoTime();
+		m_wrapper.fundamentalData(reqId, data);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void deltaNeutralValidation(int reqId, DeltaNeutralContract deltaNeutralContract) {
+		long start = System.nanoTime();
+		m_wrapper.deltaNeutralValidation(reqId, deltaNeutralContract);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void tickSnapshotEnd(int reqId) {
+		long start = System.nanoTime();
+		m_wrapper.tickSnapshotEnd(reqId);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void marketDataType(int reqId, int marketDataType) {
+		long start = System.nanoTime();
+		m_wrapper.marketDataType(reqId, marketDataType);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void commissionReport(CommissionReport commissionReport) {
+		long start = System.nanoTime();
+		m_wrapper.commissionReport(commissionReport);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void position(String account, Contract contract, Decimal pos, double avgCost) {
+		long start = System.nanoTime();
+		m_wrapper.position(account, contract, pos, avgCost);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void positionEnd() {
+		long start = System.nanoTime();
+		m_wrapper.positionEnd();
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void accountSummary(int reqId, String account, String tag, String value, String currency) {
+		long start = System.nanoTime();
+		m_wrapper.accountSummary(reqId, account, tag, value, currency);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void accountSummaryEnd(int reqId) {
+		long start = System.nanoTime();
+		m_wrapper.accountSummaryEnd(reqId);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void verifyMessageAPI(String apiData) {
+		long start = System.nanoTime();
+		m_wrapper.verifyMessageAPI(apiData);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void verifyCompleted(boolean isSuccessful, String errorText) {
+		long start = System.nanoTime();
+		m_wrapper.verifyCompleted(isSuccessful, errorText);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void verifyAndAuthMessageAPI(String apiData, String xyzChallenge) {
+		long start = System.nanoTime();
+		m_wrapper.verifyAndAuthMessageAPI(apiData, xyzChallenge);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void verifyAndAuthCompleted(boolean isSuccessful, String errorText) {
+		long start = System.nanoTime();
+		m_wrapper.verifyAndAuthCompleted(isSuccessful, errorText);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void displayGroupList(int reqId, String groups) {
+		long start = System.nanoTime();
+		m_wrapper.displayGroupList(reqId, groups);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void displayGroupUpdated(int reqId, String contractInfo) {
+		long start = System.nanoTime();
+		m_wrapper.displayGroupUpdated(reqId, contractInfo);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void error(Exception e) {
+		long start = System.nanoTime();
+		m_wrapper.error(e);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void error(String str) {
+		long start = System.nanoTime();
+		m_wrapper.error(str);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void error(int id, int errorCode, String errorMsg, String advancedOrderRejectJson) {
+		long start = System.nanoTime();
+		m_wrapper.error(id, errorCode, errorMsg, advancedOrderRejectJson);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void connectionClosed() {
+		long start = System.nanoTime();
+		m_wrapper.connectionClosed();
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void connectAck() {
+		long start = System.nanoTime();
+		m_wrapper.connectAck();
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void positionMulti(int reqId, String account, String modelCode, Contract contract, Decimal pos, double avgCost) {
+		long start = System.nanoTime();
+		m_wrapper.positionMulti(reqId, account, modelCode, contract, pos, avgCost);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void positionMultiEnd(int reqId) {
+		long start = System.nanoTime();
+		m_wrapper.positionMultiEnd(reqId);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void accountUpdateMulti(int reqId, String account, String modelCode, String key, String value, String currency) {
+		long start = System.nanoTime();
+		m_wrapper.accountUpdateMulti(reqId, account, modelCode, key, value, currency);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void accountUpdateMultiEnd(int reqId) {
+		long start = System.nanoTime();
+		m_wrapper.accountUpdateMultiEnd(reqId);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void securityDefinitionOptionalParameter(int reqId, String exchange, int underlyingConId, String tradingClass, String multiplier, Set<String> expirations, Set<Double> strikes) {
+		long start = System.nanoTime();
+		m_wrapper.securityDefinitionOptionalParameter(reqId, exchange, underlyingConId, tradingClass, multiplier, expirations, strikes);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void securityDefinitionOptionalParameterEnd(int reqId) {
+		long start = System.nanoTime();
+		m_wrapper.securityDefinitionOptionalParameterEnd(reqId);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void softDollarTiers(int reqId, SoftDollarTier[] tiers) {
+		long start = System.nanoTime();
+		m_wrapper.softDollarTiers(reqId, tiers);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void familyCodes(FamilyCode[] familyCodes) {
+		long start = System.nanoTime();
+		m_wrapper.familyCodes(familyCodes);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void symbolSamples(int reqId, ContractDescription[] contractDescriptions) {
+		long start = System.nanoTime();
+		m_wrapper.symbolSamples(reqId, contractDescriptions);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void historicalDataEnd(int reqId, String startDateStr, String endDateStr) {
+		long start = System.nanoTime();
+		m_wrapper.historicalDataEnd(reqId, startDateStr, endDateStr);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void mktDepthExchanges(DepthMktDataDescription[] depthMktDataDescriptions) {
+		long start = System.nanoTime();
+		m_wrapper.mktDepthExchanges(depthMktDataDescriptions);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void tickNews(int tickerId, long timeStamp, String providerCode, String articleId, String headline, String extraData) {
+		long start = System.nanoTime();
+		m_wrapper.tickNews(tickerId, timeStamp, providerCode, articleId, headline, extraData);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void smartComponents(int reqId, Map<Integer, Entry<String, Character>> theMap) {
+		long start = System.nanoTime();
+		m_wrapper.smartComponents(reqId, theMap);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void tickReqParams(int tickerId, double minTick, String bboExchange, int snapshotPermissions) {
+		long start = System.nanoTime();
+		m_wrapper.tickReqParams(tickerId, minTick, bboExchange, snapshotPermissions);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void newsProviders(NewsProvider[] newsProviders) {
+		long start = System.nanoTime();
+		m_wrapper.newsProviders(newsProviders);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void newsArticle(int requestId, int articleType, String articleText) {
+		long start = System.nanoTime();
+		m_wrapper.newsArticle(requestId, articleType, articleText);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void historicalNews(int requestId, String time, String providerCode, String articleId, String headline) {
+		long start = System.nanoTime();
+		m_wrapper.historicalNews(requestId, time, providerCode, articleId, headline);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void historicalNewsEnd(int requestId, boolean hasMore) {
+		long start = System.nanoTime();
+		m_wrapper.historicalNewsEnd(requestId, hasMore);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void headTimestamp(int reqId, String headTimestamp) {
+		long start = System.nanoTime();
+		m_wrapper.headTimestamp(reqId, headTimestamp);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void histogramData(int reqId, List<HistogramEntry> items) {
+		long start = System.nanoTime();
+		m_wrapper.histogramData(reqId, items);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void historicalDataUpdate(int reqId, Bar bar) {
+		long start = System.nanoTime();
+		m_wrapper.historicalDataUpdate(reqId, bar);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void rerouteMktDataReq(int reqId, int conId, String exchange) {
+		long start = System.nanoTime();
+		m_wrapper.rerouteMktDataReq(reqId, conId, exchange);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void rerouteMktDepthReq(int reqId, int conId, String exchange) {
+		long start = System.nanoTime();
+		m_wrapper.rerouteMktDepthReq(reqId, conId, exchange);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void marketRule(int marketRuleId, PriceIncrement[] priceIncrements) {
+		long start = System.nanoTime();
+		m_wrapper.marketRule(marketRuleId, priceIncrements);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void pnl(int reqId, double dailyPnL, double unrealizedPnL, double realizedPnL) {
+		long start = System.nanoTime();
+		m_wrapper.pnl(reqId, dailyPnL, unrealizedPnL, realizedPnL);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void pnlSingle(int reqId, Decimal pos, double dailyPnL, double unrealizedPnL, double realizedPnL, double value) {
+		long start = System.nanoTime();
+		m_wrapper.pnlSingle(reqId, pos, dailyPnL, unrealizedPnL, realizedPnL, value);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void historicalTicks(int reqId, List<HistoricalTick> ticks, boolean done) {
+		long start = System.nanoTime();
+		m_wrapper.historicalTicks(reqId, ticks, done);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void historicalTicksBidAsk(int reqId, List<HistoricalTickBidAsk> ticks, boolean done) {
+		long start = System.nanoTime();
+		m_wrapper.historicalTicksBidAsk(reqId, ticks, done);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void historicalTicksLast(int reqId, List<HistoricalTickLast> ticks, boolean done) {
+		long start = System.nanoTime();
+		m_wrapper.historicalTicksLast(reqId, ticks, done);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void tickByTickAllLast(int reqId, int tickType, long time, double price, Decimal size, TickAttribLast tickAttribLast, String exchange, String specialConditions) {
+		long start = System.nanoTime();
+		m_wrapper.tickByTickAllLast(reqId, tickType, time, price, size, tickAttribLast, exchange, specialConditions);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void tickByTickBidAsk(int reqId, long time, double bidPrice, double askPrice, Decimal bidSize, Decimal askSize, TickAttribBidAsk tickAttribBidAsk) {
+		long start = System.nanoTime();
+		m_wrapper.tickByTickBidAsk(reqId, time, bidPrice, askPrice, bidSize, askSize, tickAttribBidAsk);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void tickByTickMidPoint(int reqId, long time, double midPoint) {
+		long start = System.nanoTime();
+		m_wrapper.tickByTickMidPoint(reqId, time, midPoint);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void orderBound(long permId, int clientId, int orderId) {
+		long start = System.nanoTime();
+		m_wrapper.orderBound(permId, clientId, orderId);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void completedOrder(Contract contract, Order order, OrderState orderState) {
+		long start = System.nanoTime();
+		m_wrapper.completedOrder(contract, order, orderState);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void completedOrdersEnd() {
+		long start = System.nanoTime();
+		m_wrapper.completedOrdersEnd();
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void replaceFAEnd(int reqId, String text) {
+		long start = System.nanoTime();
+		m_wrapper.replaceFAEnd(reqId, text);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void wshMetaData(int reqId, String dataJson) {
+		long start = System.nanoTime();
+		m_wrapper.wshMetaData(reqId, dataJson);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void wshEventData(int reqId, String dataJson) {
+		long start = System.nanoTime();
+		m_wrapper.wshEventData(reqId, dataJson);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void historicalSchedule(int reqId, String startDateTime, String endDateTime, String timeZone, List<HistoricalSession> sessions) {
+		long start = System.nanoTime();
+		m_wrapper.historicalSchedule(reqId, startDateTime, endDateTime, timeZone, sessions);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void userInfo(int reqId, String whiteBrandingId) {
+		long start = System.nanoTime();
+		m_wrapper.userInfo(reqId, whiteBrandingId);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void openOrder(OpenOrderView view) {
+		long start = System.nanoTime();
+		((EOrderViewWrapper)m_wrapper).openOrder(view);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void completedOrder(OpenOrderView view) {
+		long start = System.nanoTime();
+		((EOrderViewWrapper)m_wrapper).completedOrder(view);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public ScannerSnapshots scannerSnapshots() {
+		return ((EScannerDiffWrapper)m_wrapper).scannerSnapshots();
+	}
+
+	@Override
+	public void scannerRowAdded(int reqId, int rank, int previousRank, ContractDetails contractDetails, String distance, String benchmark, String projection, String legsStr) {
+		long start = System.nanoTime();
+		((EScannerDiffWrapper)m_wrapper).scannerRowAdded(reqId, rank, previousRank, contractDetails, distance, benchmark, projection, legsStr);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void scannerRowMoved(int reqId, int conid, int rank, int previousRank) {
+		long start = System.nanoTime();
+		((EScannerDiffWrapper)m_wrapper).scannerRowMoved(reqId, conid, rank, previousRank);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void scannerRowRemoved(int reqId, int conid, int previousRank) {
+		long start = System.nanoTime();
+		((EScannerDiffWrapper)m_wrapper).scannerRowRemoved(reqId, conid, previousRank);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void scannerParameters(InputStream xml) {
+		long start = System.nanoTime();
+		((EXmlStreamWrapper)m_wrapper).scannerParameters(xml);
+		m_metrics.callback(start);
+	}
+
+	@Override
+	public void receiveFA(int faDataType, InputStream xml) {
+		long start = System.nanoTime();
+		((EXmlStreamWrapper)m_wrapper).receiveFA(faDataType, xml);
+		m_metrics.callback(start);
+	}
+}
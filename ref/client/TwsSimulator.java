@@ -0,0 +1,381 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/** Minimal in-process stand-in for TWS/IB Gateway for load and regression testing of the client stack.
+ *  It accepts V100 connections on localhost, answers the handshake, startAPI, reqIds and reqCurrentTime,
+ *  and streams synthetic data for reqMktData, reqMktDepth and reqTickByTickData at the configured rates
+ *  (messages per second per subscription); a snapshot reqMktData gets one bid and ask and tickSnapshotEnd.
+ *  placeOrder is answered with Submitted and, if enabled, Filled order status; cancelOrder with Cancelled.
+ *  All other requests are ignored. */
+public class TwsSimulator implements Closeable {
+	// incoming msg id's
+	private static final int REQ_MKT_DATA = 1;
+	private static final int CANCEL_MKT_DATA = 2;
+	private static final int PLACE_ORDER = 3;
+	private static final int CANCEL_ORDER = 4;
+	private static final int REQ_IDS = 8;
+	private static final int REQ_MKT_DEPTH = 10;
+	private static final int CANCEL_MKT_DEPTH = 11;
+	private static final int REQ_CURRENT_TIME = 49;
+	private static final int START_API = 71;
+	private static final int REQ_TICK_BY_TICK_DATA = 97;
+	private static final int CANCEL_TICK_BY_TICK_DATA = 98;
+
+	// outgoing msg id's
+	private static final int TICK_PRICE = 1;
+	private static final int TICK_SIZE = 2;
+	private static final int ORDER_STATUS = 3;
+	private static final int NEXT_VALID_ID = 9;
+	private static final int MARKET_DEPTH_L2 = 13;
+	private static final int MANAGED_ACCTS = 15;
+	private static final int TICK_SNAPSHOT_END = 57;
+	private static final int CURRENT_TIME = 49;
+	private static final int TICK_BY_TICK = 99;
+
+	private static final int TOP = 0;
+	private static final int DEPTH = 1;
+	private static final int TICK_BY_TICK_LAST = 2;
+	private static final int TICK_BY_TICK_BID_ASK = 3;
+	private static final int TICK_BY_TICK_MID_POINT = 4;
+
+	private static final long PUBLISH_INTERVAL_NANOS = 200_000;
+	private static final String ACCOUNT = "DU000000";
+
+	private final ServerSocket m_serverSocket;
+	private final Set<Session> m_sessions = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger m_nextOrderId = new AtomicInteger(1);
+	private final AtomicInteger m_nextPermId = new AtomicInteger(1_000_000);
+	private final AtomicLong m_msgsSent = new AtomicLong();
+	private final AtomicLong m_msgsReceived = new AtomicLong();
+	private volatile double m_marketDataRate = 1000;
+	private volatile double m_depthRate = 1000;
+	private volatile double m_tickByTickRate = 1000;
+	private volatile int m_depthRows = 10;
+	private volatile boolean m_fillOrders = true;
+	private volatile boolean m_running;
+
+	public int port()						{ return m_serverSocket.getLocalPort(); }
+	public long msgsSent()					{ return m_msgsSent.get(); }
+	public long msgsReceived()				{ return m_msgsReceived.get(); }
+	public void marketDataRate(double v)	{ m_marketDataRate = v; }
+	public void depthRate(double v)			{ m_depthRate = v; }
+	public void tickByTickRate(double v)	{ m_tickByTickRate = v; }
+	public void depthRows(int v)			{ m_depthRows = v; }
+	public void fillOrders(boolean v)		{ m_fillOrders = v; }
+
+	/** @param port pass 0 to use any free port, see port() */
+	public TwsSimulator(int port) throws IOException {
+		m_serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+	}
+
+	public void start() {
+		m_running = true;
+		Thread acceptor = new Thread(() -> {
+			while (m_running) {
+				try {
+					Socket socket = m_serverSocket.accept();
+					socket.setTcpNoDelay(true);
+					Session session = new Session(socket);
+					m_sessions.add(session);
+					session.start();
+				}
+				catch (IOException e) {
+					// server socket closed
+				}
+			}
+		}, "TwsSimulator-accept");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	@Override
+	public void close() throws IOException {
+		m_running = false;
+		m_serverSocket.close();
+		for (Session session : m_sessions) {
+			session.close();
+		}
+	}
+
+	private static class Subscription {
+		final int m_reqId;
+		final int m_type;
+		final double m_rate;
+		final long m_start = System.nanoTime();
+		long m_sent;
+		double m_price = 100;
+
+		Subscription(int reqId, int type, double rate) {
+			m_reqId = reqId;
+			m_type = type;
+			m_rate = rate;
+		}
+	}
+
+	private class Session {
+		private final Socket m_socket;
+		private final DataInputStream m_dis;
+		private final DataOutputStream m_dos;
+		private final Map<Integer, Subscription> m_subscriptions = new ConcurrentHashMap<>();
+		private final SplittableRandom m_random = new SplittableRandom();
+		private int m_serverVersion;
+		private volatile boolean m_open = true;
+
+		Session(Socket socket) throws IOException {
+			m_socket = socket;
+			m_dis = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			m_dos = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+		}
+
+		void start() {
+			Thread reader = new Thread(this::read, "TwsSimulator-read");
+			reader.setDaemon(true);
+			reader.start();
+			Thread publisher = new Thread(this::publish, "TwsSimulator-publish");
+			publisher.setDaemon(true);
+			publisher.start();
+		}
+
+		void close() {
+			m_open = false;
+			m_sessions.remove(this);
+			try {
+				m_socket.close();
+			} catch (IOException ignored) {
+			}
+		}
+
+		private void read() {
+			try {
+				handshake();
+				while (m_open) {
+					int len = m_dis.readInt();
+					if (len < 0 || len > EReader.MAX_MSG_LENGTH) {
+						throw new IOException("bad message length " + len);
+					}
+					byte[] buf = new byte[len];
+					m_dis.readFully(buf);
+					m_msgsReceived.incrementAndGet();
+					process(new String(buf, StandardCharsets.UTF_8).split("\0", -1));
+				}
+			}
+			catch (IOException | RuntimeException e) {
+				// client disconnected or sent something we do not understand
+			}
+			close();
+		}
+
+		/** Expects "API\0" followed by a length-prefixed "vMin..Max[ options]" and answers with server version and time. */
+		private void handshake() throws IOException {
+			byte[] prefix = new byte[4];
+			m_dis.readFully(prefix);
+			if (!"API\0".equals(new String(prefix, StandardCharsets.UTF_8))) {
+				throw new IOException("V100 handshake expected");
+			}
+
+			byte[] buf = new byte[m_dis.readInt()];
+			m_dis.readFully(buf);
+			String versions = new String(buf, StandardCharsets.UTF_8).split(" ")[0].substring(1);
+			int sep = versions.indexOf("..");
+			int maxVersion = Integer.parseInt(sep < 0 ? versions : versions.substring(sep + 2));
+			m_serverVersion = Math.min(maxVersion, EClient.MAX_VERSION);
+
+			send(m_serverVersion, "20240101 00:00:00 EST");
+		}
+
+		private void process(String[] fields) throws IOException {
+			switch (Integer.parseInt(fields[0])) {
+				case START_API:
+					send(MANAGED_ACCTS, 1, ACCOUNT);
+					send(NEXT_VALID_ID, 1, m_nextOrderId.get());
+					break;
+
+				case REQ_IDS:
+					send(NEXT_VALID_ID, 1, m_nextOrderId.get());
+					break;
+
+				case REQ_CURRENT_TIME:
+					send(CURRENT_TIME, 1, System.currentTimeMillis() / 1000);
+					break;
+
+				case REQ_MKT_DATA:
+					if (isSnapshot(fields)) {
+						int reqId = Integer.parseInt(fields[2]);
+						send(TICK_PRICE, 6, reqId, TickType.BID.index(), 100, 1, 0);
+						send(TICK_PRICE, 6, reqId, TickType.ASK.index(), 100.01, 1, 0);
+						send(TICK_SNAPSHOT_END, 1, reqId);
+					}
+					else {
+						subscribe(Integer.parseInt(fields[2]), TOP, m_marketDataRate);
+					}
+					break;
+
+				case REQ_MKT_DEPTH:
+					subscribe(Integer.parseInt(fields[2]), DEPTH, m_depthRate);
+					break;
+
+				case REQ_TICK_BY_TICK_DATA:
+					String tickType = fields[14];
+					int type = "BidAsk".equals(tickType) ? TICK_BY_TICK_BID_ASK : "MidPoint".equals(tickType) ? TICK_BY_TICK_MID_POINT : TICK_BY_TICK_LAST;
+					subscribe(Integer.parseInt(fields[1]), type, m_tickByTickRate);
+					break;
+
+				case CANCEL_MKT_DATA:
+				case CANCEL_MKT_DEPTH:
+					m_subscriptions.remove(Integer.parseInt(fields[2]));
+					break;
+
+				case CANCEL_TICK_BY_TICK_DATA:
+					m_subscriptions.remove(Integer.parseInt(fields[1]));
+					break;
+
+				case PLACE_ORDER:
+					placeOrder(fields);
+					break;
+
+				case CANCEL_ORDER:
+					int cancelId = Integer.parseInt(fields[m_serverVersion < EClient.MIN_SERVER_VER_CME_TAGGING_FIELDS ? 2 : 1]);
+					sendOrderStatus(cancelId, "Cancelled", "0", "0", 0, 0);
+					break;
+
+				default:
+					break;
+			}
+		}
+
+		/** Reads the snapshot flag of a reqMktData for a contract other than a combo; fields as sent by EClient. */
+		private boolean isSnapshot(String[] fields) {
+			if ("BAG".equalsIgnoreCase(fields[5])) {
+				return false;
+			}
+			int deltaNeutral = 15; // after version, tickerId and the contract fields
+			int genericTicks = deltaNeutral + ("1".equals(fields[deltaNeutral]) ? 4 : 1);
+			return fields.length > genericTicks + 1 && "1".equals(fields[genericTicks + 1]);
+		}
+
+		private void subscribe(int reqId, int type, double rate) {
+			m_subscriptions.put(reqId, new Subscription(reqId, type, rate));
+		}
+
+		private void placeOrder(String[] fields) throws IOException {
+			int base = m_serverVersion < EClient.MIN_SERVER_VER_ORDER_CONTAINER ? 1 : 0; // version field
+			int orderId = Integer.parseInt(fields[1 + base]);
+			String quantity = fields[17 + base];
+			String lmtPrice = fields[19 + base];
+			double price = lmtPrice.isEmpty() ? 100 : Double.parseDouble(lmtPrice);
+			int permId = m_nextPermId.incrementAndGet();
+
+			m_nextOrderId.accumulateAndGet(orderId + 1, Math::max);
+			sendOrderStatus(orderId, "Submitted", "0", quantity, 0, permId);
+			if (m_fillOrders) {
+				sendOrderStatus(orderId, "Filled", quantity, "0", price, permId);
+			}
+		}
+
+		private void sendOrderStatus(int orderId, String status, String filled, String remaining, double avgFillPrice, int permId) throws IOException {
+			send(ORDER_STATUS, orderId, status, filled, remaining, avgFillPrice, permId, 0, avgFillPrice, 0, "", Double.MAX_VALUE);
+		}
+
+		private void publish() {
+			while (m_open) {
+				long now = System.nanoTime();
+				try {
+					synchronized (m_dos) {
+						for (Subscription sub : m_subscriptions.values()) {
+							long due = (long)((now - sub.m_start) / 1e9 * sub.m_rate) - sub.m_sent;
+							for (long i = 0; i < due; i++) {
+								publish(sub, now);
+							}
+						}
+						m_dos.flush();
+					}
+				}
+				catch (IOException e) {
+					close();
+				}
+				LockSupport.parkNanos(PUBLISH_INTERVAL_NANOS);
+			}
+		}
+
+		private void publish(Subscription sub, long now) throws IOException {
+			sub.m_price = Math.max(0.01, sub.m_price + (m_random.nextInt(3) - 1) * 0.01);
+			double bid = Math.round(sub.m_price * 100) / 100.0;
+			double ask = bid + 0.01;
+			long time = System.currentTimeMillis() / 1000;
+			int size = 1 + m_random.nextInt(1000);
+
+			switch (sub.m_type) {
+				case TOP:
+					switch ((int)(sub.m_sent % 4)) {
+						case 0: write(TICK_PRICE, 6, sub.m_reqId, TickType.BID.index(), bid, size, 0); break;
+						case 1: write(TICK_PRICE, 6, sub.m_reqId, TickType.ASK.index(), ask, size, 0); break;
+						case 2: write(TICK_PRICE, 6, sub.m_reqId, TickType.LAST.index(), bid, size, 0); break;
+						default: write(TICK_SIZE, 6, sub.m_reqId, TickType.VOLUME.index(), sub.m_sent * 100); break;
+					}
+					break;
+
+				case DEPTH:
+					int rows = Math.max(1, m_depthRows);
+					int position = (int)(sub.m_sent / 2 % rows);
+					int side = (int)(sub.m_sent % 2); // 0 = ask, 1 = bid
+					int operation = sub.m_sent < rows * 2 ? 0 : 1; // insert, then update
+					double price = side == 1 ? bid - position * 0.01 : ask + position * 0.01;
+					write(MARKET_DEPTH_L2, 1, sub.m_reqId, position, "SIM", operation, side, price, size, 0);
+					break;
+
+				case TICK_BY_TICK_LAST:
+					write(TICK_BY_TICK, sub.m_reqId, 2, time, bid, size, 0, "SIM", "");
+					break;
+
+				case TICK_BY_TICK_BID_ASK:
+					write(TICK_BY_TICK, sub.m_reqId, 3, time, bid, ask, size, size, 0);
+					break;
+
+				default:
+					write(TICK_BY_TICK, sub.m_reqId, 4, time, (bid + ask) / 2);
+					break;
+			}
+			sub.m_sent++;
+		}
+
+		private void send(Object... fields) throws IOException {
+			synchronized (m_dos) {
+				write(fields);
+				m_dos.flush();
+			}
+		}
+
+		/** Writes one length-prefixed frame; the caller holds the lock on m_dos. */
+		private void write(Object... fields) throws IOException {
+			try (Builder b = new Builder(256)) {
+				b.allocateLengthHeader();
+				for (Object field : fields) {
+					b.send(field instanceof Double && (Double)field == Double.MAX_VALUE ? "" : String.valueOf(field));
+				}
+				b.updateLength(0);
+				b.writeTo(m_dos);
+			}
+			m_msgsSent.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** FA groups indexed by name and by account, e.g. built from the list passed to IAdvisorHandler.groups(). */
+public class AdvisorGroups {
+	private final Map<String,Group> m_groups = new LinkedHashMap<>();
+	private final Map<String,List<Group>> m_groupsByAccount = new HashMap<>();
+
+	public AdvisorGroups(List<Group> groups) {
+		for (Group group : groups) {
+			if (group.name() == null || m_groups.putIfAbsent( group.name(), group) != null) {
+				continue;
+			}
+			for (Account account : group.accounts() ) {
+				if (account.acct() != null) {
+					m_groupsByAccount.computeIfAbsent( account.acct(), k -> new ArrayList<>() ).add( group);
+				}
+			}
+		}
+	}
+
+	public List<Group> groups() {
+		return new ArrayList<>( m_groups.values() );
+	}
+
+	/** Returns the group with the given name, or null. */
+	public Group group(String name) {
+		return m_groups.get( name);
+	}
+
+	/** Returns the groups containing an account. */
+	public List<Group> groupsOf(String account) {
+		List<Group> groups = m_groupsByAccount.get( account);
+		return groups == null ? Collections.emptyList() : Collections.unmodifiableList( groups);
+	}
+
+	public int size() {
+		return m_groups.size();
+	}
+
+	@Override public String toString() {
+		return m_groups.keySet().toString();
+	}
+}
@@ -3,12 +3,13 @@
 
 package com.ib.controller;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.StringReader;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 import com.ib.client.Types.Method;
 
 
@@ -16,187 +17,105 @@ import com.ib.client.Types.Method;
 public class AdvisorUtil {
 	static List<Group> getGroups( String xml) {
 		try {
-			return getGroups_( xml);
-		} catch (IOException e) {
+			return getGroups_( Xml.reader( xml) );
+		} catch (XMLStreamException e) {
 			e.printStackTrace();
 			return null;
 		}
 	}
 
-	static List<Group> getGroups_( String xml) throws IOException {
-		List<Group> list = new ArrayList<>();
-
-		Group group = null;
-		Account account = null;
-
-		BufferedReader reader = new BufferedReader( new StringReader( xml) );
-		String line;
-		int state = 0; // 0=none; 1=list of groups; 2=reading group 3=listOfAccts
-		while ( (line=reader.readLine()) != null) {
-			line = line.trim();
-
-			switch( state) {
-				// top of file
-				case 0:
-					if (line.equals( "<ListOfGroups>")) {
-						state = 1;
-					}
-					break;
-
-				// reading groups
-				case 1:
-					if (line.equals( "<Group>")) {
-						group = new Group();
-						state = 2;
-					}
-					else if (line.equals( "</ListOfGroups>")) {
-						state = 0;
-					}
-					else {
-						err( line);
-					}
-					break;
-
-				// reading group
-				case 2:
-					if (line.startsWith( "<name>") ) {
-						group.name( getVal( line) );
-					}
-					else if (line.startsWith( "<defaultMethod>")) {
-						group.defaultMethod( Method.valueOf( getVal( line) ) );
-					}
-					else if (line.startsWith( "<defaultSize>")) {
-						group.defaultSize( getVal( line) );
-					}
-					else if (line.startsWith( "<riskCriteria>")) {
-						group.riskCriteria( getVal( line) );
-					}
-					else if (line.startsWith( "<ListOfAccts")) {
-						state = 3;
-					}
-					else if (line.equals( "</Group>")) {
-						list.add( group);
-						state = 1;
-					}
-					else {
-						err( line);
-					}
-					break;
+	static List<Group> getGroups( InputStream xml) {
+		try {
+			return getGroups_( Xml.reader( xml) );
+		} catch (XMLStreamException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
 
-				// reading list of accts
-				case 3:
-					if (line.equals( "</ListOfAccts>")) {
-						state = 2;
-					}
-					else if (line.startsWith( "<Account")) {
-						account = new Account();
-						state = 4;
-					}
-					else {
-						err( line);
+	static List<Group> getGroups_( XMLStreamReader reader) throws XMLStreamException {
+		List<Group> list = new ArrayList<>();
+		try {
+			while (Xml.next( reader, "Group") ) {
+				Group group = new Group();
+				while (Xml.nextChild( reader) ) {
+					switch( reader.getLocalName() ) {
+						case "name":			group.name( Xml.text( reader) ); break;
+						case "defaultMethod":	group.defaultMethod( Method.valueOf( Xml.text( reader) ) ); break;
+						case "defaultSize":		group.defaultSize( Xml.text( reader) ); break;
+						case "riskCriteria":	group.riskCriteria( Xml.text( reader) ); break;
+						case "ListOfAccts":		getAccounts( reader, group); break;
+						default:				err( reader.getLocalName() ); Xml.skip( reader); break;
 					}
-					break;
+				}
+				list.add( group);
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return list;
+	}
 
-				// reading account
-				case 4:
-					if (line.equals( "</Account>")) {
-						group.addAccount( account);
-						state = 3;
-					}
-					else if (line.startsWith( "<acct>")) {
-						account.acct( getVal( line) );
-					}
-					else if (line.startsWith( "<amount>")) {
-						account.amount( getVal( line) );
-					}
-					else {
-						err( line);
-					}
-					break;
+	private static void getAccounts( XMLStreamReader reader, Group group) throws XMLStreamException {
+		while (Xml.nextChild( reader) ) {
+			if (!reader.getLocalName().equals( "Account") ) {
+				err( reader.getLocalName() );
+				Xml.skip( reader);
+				continue;
+			}
 
-				// should not happen
-				default:
-					break;
+			Account account = new Account();
+			while (Xml.nextChild( reader) ) {
+				switch( reader.getLocalName() ) {
+					case "acct":	account.acct( Xml.text( reader) ); break;
+					case "amount":	account.amount( Xml.text( reader) ); break;
+					default:		err( reader.getLocalName() ); Xml.skip( reader); break;
+				}
 			}
+			group.addAccount( account);
 		}
-
-		return list;
 	}
 
 	static List<Alias> getAliases( String xml) {
 		try {
-			return getAliases_( xml);
-		} catch (IOException e) {
+			return getAliases_( Xml.reader( xml) );
+		} catch (XMLStreamException e) {
 			e.printStackTrace();
 			return null;
 		}
 	}
 
-	static List<Alias> getAliases_( String xml) throws IOException {
-		List<Alias> list = new ArrayList<>();
-
-		Alias alias = null;
-
-		BufferedReader reader = new BufferedReader( new StringReader( xml) );
-		String line;
-		int state = 0; // 0=none; 1=list of aliases; 2=reading alias
-		while ( (line=reader.readLine() ) != null) {
-			line = line.trim();
-
-			switch( state) {
-				// top of file
-				case 0:
-					if (line.equals( "<ListOfAccountAliases>")) {
-						state = 1;
-					}
-					break;
-
-				// reading aliases
-				case 1:
-					if (line.equals( "<AccountAlias>")) {
-						alias = new Alias();
-						state = 2;
-					}
-					else if (line.equals( "</ListOfAccountAliases>")) {
-						state = 0;
-					}
-					else {
-						err( line);
-					}
-					break;
+	static List<Alias> getAliases( InputStream xml) {
+		try {
+			return getAliases_( Xml.reader( xml) );
+		} catch (XMLStreamException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
 
-				// reading Alias
-				case 2:
-					if (line.startsWith( "<account>") ) {
-						alias.account( getVal( line) );
-					}
-					else if (line.startsWith( "<alias>")) {
-						alias.alias( getVal( line) );
-					}
-					else if (line.equals( "</AccountAlias>")) {
-						list.add( alias);
-						state = 1;
-					}
-					else {
-						err( line);
+	static List<Alias> getAliases_( XMLStreamReader reader) throws XMLStreamException {
+		List<Alias> list = new ArrayList<>();
+		try {
+			while (Xml.next( reader, "AccountAlias") ) {
+				Alias alias = new Alias();
+				while (Xml.nextChild( reader) ) {
+					switch( reader.getLocalName() ) {
+						case "account":	alias.account( Xml.text( reader) ); break;
+						case "alias":	alias.alias( Xml.text( reader) ); break;
+						default:		err( reader.getLocalName() ); Xml.skip( reader); break;
 					}
-					break;
-
-				// should not happen
-				default:
-					break;
+				}
+				list.add( alias);
 			}
 		}
-
+		finally {
+			reader.close();
+		}
 		return list;
 	}
 
-	private static String getVal(String line) {
-		int i1 = line.indexOf( '>');
-		int i2 = line.indexOf( '<', 1);
-		return line.substring( i1 + 1, i2);
-	}
-
 	private static void err(String line) {
 		System.out.println( "error " + line);
 	}
@@ -18,6 +18,8 @@ import com.ib.client.Order;
 // NOTE: TWS 936 SERVER_VERSION is 67.
 
 public class ApiConnection extends EClientSocket {
+	/** Receives the raw traffic as strings, synchronously on the reading and sending threads; for logging without
+	 *  that cost, install an EWireLogger with wireLogger() instead. */
 	public interface ILogger {
 		void log(String valueOf);
 	}
@@ -3,7 +3,10 @@
 
 package com.ib.controller;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -13,6 +16,8 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.StringTokenizer;
 
+import javax.xml.stream.XMLStreamException;
+
 import com.ib.client.*;
 import com.ib.client.Types.BarSize;
 import com.ib.client.Types.DeepSide;
@@ -25,18 +30,20 @@ import com.ib.client.Types.NewsType;
 import com.ib.client.Types.WhatToShow;
 import com.ib.controller.ApiConnection.ILogger;
 
-public class ApiController implements EWrapper {
+public class ApiController implements EWrapper, EScannerDiffWrapper, EXmlStreamWrapper, EDecoderPool.SingleThreaded {
 	private ApiConnection m_client;
 	private final ILogger m_outLogger;
 	private final ILogger m_inLogger;
-	private int m_reqId;	// used for all requests except orders; designed not to conflict with m_orderId
-	private int m_orderId;
+	private int m_reqId;	// used for all requests except orders; designed not to conflict with order ids
+	private volatile OrderIdAllocator m_orderIds = new OrderIdAllocator();
 
 	private final IConnectionHandler m_connectionHandler;
 	private ITradeReportHandler m_tradeReportHandler;
     private ICompletedOrdersHandler m_completedOrdersHandler;
 	private IAdvisorHandler m_advisorHandler;
 	private IScannerHandler m_scannerHandler;
+	private IScannerParametersHandler m_scannerParametersHandler;
+	private final boolean m_scannerParametersOverridden;	// a subclass overrides scannerParameters(String)
 	private ITimeHandler m_timeHandler;
 	private IBulletinHandler m_bulletinHandler;
 	private IUserInfoHandler m_userInfoHandler;
@@ -46,6 +53,8 @@ public class ApiController implements EWrapper {
 	private final Map<Integer,ITopMktDataHandler> m_topMktDataMap = new HashMap<>();
 	private final Map<Integer,IDeepMktDataHandler> m_deepMktDataMap = new HashMap<>();
 	private final Map<Integer, IScannerHandler> m_scannerMap = new HashMap<>();
+	private final Map<Integer, IScannerDiffHandler> m_scannerDiffMap = new HashMap<>();
+	private final ScannerSnapshots m_scannerSnapshots = new ScannerSnapshots();
 	private final Map<Integer, IRealTimeBarHandler> m_realTimeBarMap = new HashMap<>();
 	private final Map<Integer, IHistoricalDataHandler> m_historicalDataMap = new HashMap<>();
 	private final Map<Integer, IHeadTimestampHandler> m_headTimestampMap = new HashMap<>();
@@ -78,10 +87,23 @@ public class ApiController implements EWrapper {
     private final Map<Integer, IWshMetaDataHandler> m_wshMetaDataMap = new HashMap<>();
     private final Map<Integer, IWshEventDataHandler> m_wshEventDataMap = new HashMap<>();
     private final Map<Integer, IHistoricalScheduleHandler> m_historicalScheduleMap = new HashMap<>();
+	private final OrderBlotter m_orderBlotter = new OrderBlotter();
+	private PositionBook m_positionBook;
 	private boolean m_connected = false;
 
 	public ApiConnection client() { return m_client; }
 
+	/** State of all orders seen on this connection; see OrderBlotter. */
+	public OrderBlotter orderBlotter() { return m_orderBlotter; }
+
+	/** Position book fed from reqAccountUpdates; null by default. */
+	public PositionBook positionBook() { return m_positionBook; }
+	public void positionBook(PositionBook positionBook) { m_positionBook = positionBook; }
+
+	/** Source of the ids of new orders; replace it before connecting, e.g. with one persisting its high-water mark. */
+	public OrderIdAllocator orderIdAllocator() { return m_orderIds; }
+	public void orderIdAllocator(OrderIdAllocator orderIds) { m_orderIds = orderIds; }
+
 	// ---------------------------------------- Constructor and Connection handling ----------------------------------------
 	public interface IConnectionHandler {
 		void connected();
@@ -101,6 +123,16 @@ public class ApiController implements EWrapper {
 		m_client = new ApiConnection( this, inLogger, outLogger);
 		m_inLogger = inLogger;
 		m_outLogger = outLogger;
+		m_scannerParametersOverridden = isOverridden( "scannerParameters", String.class);
+	}
+
+	private boolean isOverridden(String name, Class<?>... parameterTypes) {
+		try {
+			return getClass().getMethod( name, parameterTypes).getDeclaringClass() != ApiController.class;
+		}
+		catch (NoSuchMethodException e) {
+			return false;
+		}
 	}
 	
 	private void startMsgProcessingThread() {
@@ -124,6 +156,7 @@ public class ApiController implements EWrapper {
 	public void connect( String host, int port, int clientId, String connectOptions ) {
 		if(!m_client.isConnected()){
 			m_client.setConnectOptions(connectOptions);
+			m_orderBlotter.clientId(clientId);
 			m_client.eConnect(host, port, clientId);
 			startMsgProcessingThread();
 	        sendEOM();
@@ -150,8 +183,8 @@ public class ApiController implements EWrapper {
 	}
 
 	@Override public void nextValidId(int orderId) {
-		m_orderId = orderId;
-		m_reqId = m_orderId + 10000000; // let order id's not collide with other request id's
+		m_orderIds.seed( orderId);
+		m_reqId = m_orderIds.peek() + 10000000; // let order id's not collide with other request id's
 		m_connected  = true;
 		if (m_connectionHandler != null) {
 			m_connectionHandler.connected();
@@ -178,6 +211,10 @@ public class ApiController implements EWrapper {
 			liveHandler.handle( id, errorCode, errorMsg);
 		}
 
+		if (errorCode == EClientErrors.PRE_TRADE_REJECT.code() ) {
+			m_orderBlotter.rejected( id);
+		}
+
 		// "no sec def found" response?
 		if (errorCode == 200) {
 			IInternalHandler hand = m_contractDetailsMap.remove( id);
@@ -241,9 +278,16 @@ public class ApiController implements EWrapper {
 	@Override public void updatePortfolio(Contract contract, Decimal positionIn, double marketPrice, double marketValue, double averageCost, double unrealizedPNL, double realizedPNL, String account) {
 		contract.exchange( contract.primaryExch());
 
-		Position position = new Position( contract, account, positionIn, marketPrice, marketValue, averageCost, unrealizedPNL, realizedPNL);
-		for( IAccountHandler handler : m_accountHandlers) {
-			handler.updatePortfolio( position);
+		PositionBook positionBook = m_positionBook;
+		if (positionBook != null) {
+			positionBook.updatePortfolio( account, contract, positionIn, marketPrice, marketValue, averageCost, unrealizedPNL, realizedPNL);
+		}
+
+		if (!m_accountHandlers.isEmpty() ) {
+			Position position = new Position( contract, account, positionIn, marketPrice, marketValue, averageCost, unrealizedPNL, realizedPNL);
+			for( IAccountHandler handler : m_accountHandlers) {
+				handler.updatePortfolio( position);
+			}
 		}
 		recEOM();
 	}
@@ -278,10 +322,33 @@ public class ApiController implements EWrapper {
 		sendEOM();
 	}
 
-	private boolean isConnected() {
+	boolean isConnected() {
 		return m_connected;
 	}
 
+	/** Forgets the handlers of all streaming requests, whose reqIds died with the previous connection, so they can be
+	 *  requested again under new reqIds; see ConnectionSupervisor. Orders and handlers not keyed by reqId are kept. */
+	void forgetSubscriptions() {
+		m_topMktDataMap.clear();
+		m_optionCompMap.clear();
+		m_efpMap.clear();
+		m_deepMktDataMap.clear();
+		m_tickByTickDataMap.clear();
+		m_realTimeBarMap.clear();
+		m_historicalDataMap.clear();
+		m_pnlMap.clear();
+		m_pnlSingleMap.clear();
+		m_acctSummaryHandlers.clear();
+		m_mktValSummaryHandlers.clear();
+		m_positionMultiMap.clear();
+		m_accountUpdateMultiMap.clear();
+		for (Integer reqId : m_scannerDiffMap.keySet() ) {
+			m_scannerSnapshots.untrack( reqId);
+		}
+		m_scannerMap.clear();
+		m_scannerDiffMap.clear();
+	}
+
 	public void cancelAccountSummary(IAccountSummaryHandler handler) {
 		if (!checkConnection())
 			return;
@@ -413,7 +480,13 @@ public class ApiController implements EWrapper {
 	private void internalReqContractDetails( Contract contract, final IInternalHandler processor) {
 		int reqId = m_reqId++;
 		m_contractDetailsMap.put( reqId, processor);
-		m_orderHandlers.put(reqId, new IOrderHandler() { public void handle(int errorCode, String errorMsg) { processor.contractDetailsEnd();}
+		m_orderHandlers.put(reqId, new IOrderHandler() { public void handle(int errorCode, String errorMsg) {
+			// an error ends the request once, whether or not error() also sees it as "no sec def found"
+			m_orderHandlers.remove( reqId, this);
+			if (m_contractDetailsMap.remove( reqId, processor) ) {
+				processor.contractDetailsEnd();
+			}
+		}
 
 		@Override
 		public void orderState(OrderState orderState, Order order) {
@@ -741,6 +814,8 @@ public class ApiController implements EWrapper {
     }
 
 	@Override public void execDetails(int reqId, Contract contract, Execution execution) {
+		m_orderBlotter.execDetails( contract, execution);
+
 		if (m_tradeReportHandler != null) {
 			int i = execution.execId().lastIndexOf( '.');
 			String tradeKey = execution.execId().substring( 0, i);
@@ -757,6 +832,8 @@ public class ApiController implements EWrapper {
 	}
 
 	@Override public void commissionReport(CommissionReport commissionReport) {
+		m_orderBlotter.commissionReport( commissionReport);
+
 		if (m_tradeReportHandler != null) {
 			int i = commissionReport.execId().lastIndexOf( '.');
 			String tradeKey = commissionReport.execId().substring( 0, i);
@@ -792,6 +869,15 @@ public class ApiController implements EWrapper {
 	}
 
 	@Override public final void receiveFA(int faDataType, String xml) {
+		dispatchFA( faDataType, xml, null);
+	}
+	
+	@Override public void receiveFA(int faDataType, InputStream xml) {
+		dispatchFA( faDataType, null, xml);
+	}
+
+	/** Parses FA data from the string, or from the stream if the string is null. */
+	private void dispatchFA(int faDataType, String xml, InputStream stream) {
 		if (m_advisorHandler == null) {
 			return;
 		}
@@ -800,12 +886,12 @@ public class ApiController implements EWrapper {
 
 		switch( type) {
 			case GROUPS:
-				List<Group> groups = AdvisorUtil.getGroups( xml);
+				List<Group> groups = xml != null ? AdvisorUtil.getGroups( xml) : AdvisorUtil.getGroups( stream);
 				m_advisorHandler.groups(groups);
 				break;
 
 			case ALIASES:
-				List<Alias> aliases = AdvisorUtil.getAliases( xml);
+				List<Alias> aliases = xml != null ? AdvisorUtil.getAliases( xml) : AdvisorUtil.getAliases( stream);
 				m_advisorHandler.aliases(aliases);
 				break;
 
@@ -814,7 +900,7 @@ public class ApiController implements EWrapper {
 		}
 		recEOM();
 	}
-	
+
 	@Override public final void replaceFAEnd(int reqId, String text) {
 		switch(reqId) {
 		case REPLACE_FA_GROUPS_REQ_ID:
@@ -846,16 +932,105 @@ public class ApiController implements EWrapper {
 
 		// when placing new order, assign new order id
 		if (order.orderId() == 0) {
-			order.orderId( m_orderId++);
+			order.orderId( m_orderIds.next() );
 		}
 		if (handler != null) {
 			m_orderHandlers.put( order.orderId(), handler);
 		}
+		if (!order.whatIf() ) {
+			m_orderBlotter.placed( contract, order);
+		}
 
 		m_client.placeOrder( contract, order);
 		sendEOM();
 	}
 
+	/** Returns the first of count consecutive order ids, e.g. to link the orders of a batch with parentId before
+	 *  passing them to placeOrModifyOrders(). */
+	public int reserveOrderIds(int count) {
+		return m_orderIds.reserve( count);
+	}
+
+	/** Places or modifies a batch of orders with a single write to the socket; see EClient.placeOrders().
+	 *  Orders without an id get consecutive ids from one block, in list order. handlers may be null,
+	 *  or hold one handler, or null, per order. A handler receives the error of its order if it is rejected, but is
+	 *  kept only for orders sent, as are the copies of the orders given to the order blotter. Returns the number
+	 *  of orders sent. */
+	public int placeOrModifyOrders(List<BatchOrder> orders, List<IOrderHandler> handlers) {
+		if (!checkConnection())
+			return 0;
+
+		int newOrders = 0;
+		for (BatchOrder batchOrder : orders) {
+			if (batchOrder.order().orderId() == 0) {
+				newOrders++;
+			}
+		}
+		int nextId = newOrders > 0 ? reserveOrderIds( newOrders) : 0;
+
+		IOrderHandler[] previous = new IOrderHandler[orders.size()];
+		for (int i = 0; i < orders.size(); i++) {
+			Order order = orders.get( i).order();
+			if (order.orderId() == 0) {
+				order.orderId( nextId++);
+			}
+			IOrderHandler handler = handlers != null ? handlers.get( i) : null;
+			if (handler != null) {
+				previous[i] = m_orderHandlers.put( order.orderId(), handler);
+			}
+		}
+
+		List<BatchOrder> sent = m_client.placeOrders( orders);
+
+		int next = 0;	// sent is in list order
+		for (int i = 0; i < orders.size(); i++) {
+			BatchOrder batchOrder = orders.get( i);
+			Order order = batchOrder.order();
+			if (next < sent.size() && sent.get( next) == batchOrder) {
+				next++;
+				if (!order.whatIf() ) {
+					m_orderBlotter.placed( batchOrder.contract(), order.clone() );
+				}
+			}
+			else if (handlers != null && handlers.get( i) != null) {
+				if (previous[i] != null) {
+					m_orderHandlers.put( order.orderId(), previous[i]);
+				}
+				else {
+					m_orderHandlers.remove( order.orderId(), handlers.get( i) );
+				}
+			}
+		}
+		sendEOM();
+		return sent.size();
+	}
+
+	/** Compiles an order for fast amends with placeOrModifyOrder(template, ...); null if not supported, see EClient.compileOrder(). */
+	public OrderTemplate compileOrder(Contract contract, Order order) {
+		if (!checkConnection())
+			return null;
+
+		return m_client.compileOrder( contract, order);
+	}
+
+	/** Places the order of a template, or modifies it if it has an order id already, with a new quantity and prices.
+	 *  The order blotter gets a copy of the order as sent; an order rejected before sending leaves it unchanged. */
+	public void placeOrModifyOrder(OrderTemplate template, Decimal quantity, double lmtPrice, double auxPrice, final IOrderHandler handler) {
+		if (!checkConnection())
+			return;
+
+		Order order = template.order();
+		int orderId = order.orderId() == 0 ? m_orderIds.next() : order.orderId();
+		if (handler != null) {
+			m_orderHandlers.put( orderId, handler);
+		}
+
+		if (m_client.placeOrder( template, orderId, quantity, lmtPrice, auxPrice) && !order.whatIf() ) {
+			m_orderBlotter.placed( template.contract(), order.clone() );
+		}
+		sendEOM();
+	}
+
     public void cancelOrder(int orderId, OrderCancel orderCancel, final IOrderCancelHandler orderCancelHandler) {
 		if (!checkConnection())
 			return;
@@ -940,6 +1115,7 @@ public class ApiController implements EWrapper {
 		}
 
 		if (!order.whatIf() ) {
+			m_orderBlotter.openOrder( orderId, contract, order, orderState);
 			for (ILiveOrderHandler liveHandler : m_liveOrderHandlers) {
 				liveHandler.openOrder( contract, order, orderState );
 			}
@@ -955,6 +1131,8 @@ public class ApiController implements EWrapper {
 	}
 
 	@Override public void orderStatus(int orderId, String status, Decimal filled, Decimal remaining, double avgFillPrice, long permId, int parentId, double lastFillPrice, int clientId, String whyHeld, double mktCapPrice) {
+		m_orderBlotter.orderStatus( orderId, OrderStatus.get( status), filled, remaining, avgFillPrice, permId, parentId, lastFillPrice, clientId, whyHeld);
+
 		IOrderHandler handler = m_orderHandlers.get( orderId);
 		if (handler != null) {
 			handler.orderStatus( OrderStatus.valueOf( status), filled, remaining, avgFillPrice, permId, parentId, lastFillPrice, clientId, whyHeld, mktCapPrice);
@@ -979,11 +1157,36 @@ public class ApiController implements EWrapper {
 		void scannerDataEnd();
 	}
 
+	/** Receives only the rows which changed since the previous scan, keyed by conid; see EScannerDiffWrapper. */
+	public interface IScannerDiffHandler {
+		/** A new row, with previousRank -1, or a row whose fields other than the rank changed. */
+		void rowAdded( int rank, int previousRank, ContractDetails contractDetails, String legsStr);
+		void rowMoved( int conid, int rank, int previousRank);
+		void rowRemoved( int conid, int previousRank);
+		void scannerDataEnd();
+	}
+
+	/** Receives the scanner parameters parsed and indexed, without the XML ever being built as a String. */
+	public interface IScannerParametersHandler {
+		void scannerParameters(ScannerParameters params);
+	}
+
 	public void reqScannerParameters( IScannerHandler handler) {
 		if (!checkConnection())
 			return;
 
 		m_scannerHandler = handler;
+		m_scannerParametersHandler = null;
+		m_client.reqScannerParameters();
+		sendEOM();
+	}
+
+	public void reqScannerParameters( IScannerParametersHandler handler) {
+		if (!checkConnection())
+			return;
+
+		m_scannerParametersHandler = handler;
+		m_scannerHandler = null;
 		m_client.reqScannerParameters();
 		sendEOM();
 	}
@@ -1011,11 +1214,78 @@ public class ApiController implements EWrapper {
 		}
 	}
 
+	/** Subscribes to a scanner which reports only the differences between consecutive scans. */
+	public void reqScannerSubscription(ScannerSubscription sub, List<TagValue> filterOptions, IScannerDiffHandler handler) {
+		if (!checkConnection())
+			return;
+
+		int reqId = m_reqId++;
+
+		m_scannerDiffMap.put( reqId, handler);
+		m_scannerSnapshots.track( reqId);
+		m_client.reqScannerSubscription( reqId, sub, null, filterOptions);
+
+		sendEOM();
+	}
+
+	public void cancelScannerSubscription( IScannerDiffHandler handler) {
+		if (!checkConnection())
+			return;
+
+		Integer reqId = getAndRemoveKey( m_scannerDiffMap, handler);
+		if (reqId != null) {
+			m_scannerSnapshots.untrack( reqId);
+			m_client.cancelScannerSubscription( reqId);
+			sendEOM();
+		}
+	}
+
 	@Override public void scannerParameters(String xml) {
-		m_scannerHandler.scannerParameters( xml);
+		if (m_scannerParametersHandler != null) {
+			try {
+				m_scannerParametersHandler.scannerParameters( ScannerParameters.parse( xml) );
+			}
+			catch (XMLStreamException e) {
+				m_connectionHandler.error( e);
+			}
+		}
+		else if (m_scannerHandler != null) {
+			m_scannerHandler.scannerParameters( xml);
+		}
 		recEOM();
 	}
 
+	/** Parses the stream directly for an IScannerParametersHandler; otherwise, or if a subclass overrides
+	 *  scannerParameters(String), builds the String and passes it to that method. */
+	@Override public void scannerParameters(InputStream xml) {
+		if (!m_scannerParametersOverridden && m_scannerHandler == null) {
+			if (m_scannerParametersHandler != null) {
+				try {
+					m_scannerParametersHandler.scannerParameters( ScannerParameters.parse( xml) );
+				}
+				catch (XMLStreamException e) {
+					m_connectionHandler.error( e);
+				}
+			}
+			recEOM();
+			return;
+		}
+
+		try {
+			// same string as EDecoder.readStr() would have built
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buf = new byte[8192];
+			for (int n; (n = xml.read( buf) ) > 0; ) {
+				bytes.write( buf, 0, n);
+			}
+			scannerParameters( new String( bytes.toByteArray(), StandardCharsets.ISO_8859_1) );
+		}
+		catch (IOException e) {
+			m_connectionHandler.error( e);
+			recEOM();
+		}
+	}
+
 	@Override public void scannerData(int reqId, int rank, ContractDetails contractDetails, String distance, String benchmark, String projection, String legsStr) {
 		IScannerHandler handler = m_scannerMap.get( reqId);
 		if (handler != null) {
@@ -1029,9 +1299,38 @@ public class ApiController implements EWrapper {
 		if (handler != null) {
 			handler.scannerDataEnd();
 		}
+		IScannerDiffHandler diffHandler = m_scannerDiffMap.get( reqId);
+		if (diffHandler != null) {
+			diffHandler.scannerDataEnd();
+		}
 		recEOM();
 	}
 
+	@Override public ScannerSnapshots scannerSnapshots() {
+		return m_scannerSnapshots;
+	}
+
+	@Override public void scannerRowAdded(int reqId, int rank, int previousRank, ContractDetails contractDetails, String distance, String benchmark, String projection, String legsStr) {
+		IScannerDiffHandler handler = m_scannerDiffMap.get( reqId);
+		if (handler != null) {
+			handler.rowAdded( rank, previousRank, contractDetails, legsStr);
+		}
+	}
+
+	@Override public void scannerRowMoved(int reqId, int conid, int rank, int previousRank) {
+		IScannerDiffHandler handler = m_scannerDiffMap.get( reqId);
+		if (handler != null) {
+			handler.rowMoved( conid, rank, previousRank);
+		}
+	}
+
+	@Override public void scannerRowRemoved(int reqId, int conid, int previousRank) {
+		IScannerDiffHandler handler = m_scannerDiffMap.get( reqId);
+		if (handler != null) {
+			handler.rowRemoved( conid, previousRank);
+		}
+	}
+
 
 	// ----------------------------------------- Historical data handling ----------------------------------------
 	public interface IHistoricalDataHandler {
@@ -1928,6 +2227,7 @@ public class ApiController implements EWrapper {
 
     @Override
     public void orderBound(long permId, int clientId, int orderId) {
+        m_orderBlotter.orderBound(permId, clientId, orderId);
         show( "Order bound. PermId: " + permId + ", clientId: " + clientId + ", orderId: " + orderId);
     }
 
@@ -1948,6 +2248,7 @@ public class ApiController implements EWrapper {
 
     @Override
     public void completedOrder(Contract contract, Order order, OrderState orderState) {
+        m_orderBlotter.completedOrder(contract, order, orderState);
         if (m_completedOrdersHandler != null) {
             m_completedOrdersHandler.completedOrder(contract, order, orderState);
         }
@@ -0,0 +1,281 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ib.client.Contract;
+import com.ib.client.Decimal;
+import com.ib.client.TickAttrib;
+import com.ib.client.TickType;
+import com.ib.controller.ApiConnection.ILogger;
+import com.ib.controller.ApiController.IConnectionHandler;
+import com.ib.controller.ApiController.IDeepMktDataHandler;
+import com.ib.controller.ApiController.IEfpHandler;
+import com.ib.controller.ApiController.ITickByTickDataHandler;
+import com.ib.controller.ApiController.ITopMktDataHandler;
+
+/** Pool of ApiControllers, each with its own connection and clientId, to one or more TWS or Gateway instances.
+ *  Market data, market depth and tick-by-tick subscriptions are sharded by conid, so every subscription of one
+ *  instrument goes to the same connection, and each connection decodes on its own reader and processing threads.
+ *  Handlers of different instruments may therefore be called concurrently; all callbacks of one instrument come from
+ *  one thread, in order. Contracts without a conid are sharded by symbol, type, exchange and currency.
+ *  Orders and account requests belong on one connection; use primary() for them.
+ *  If the pool's handler is an IPoolConnectionHandler, messages are reported with the connection they came from,
+ *  as request ids of different connections overlap. */
+public class ApiControllerPool {
+	/** Connection handler which also learns the connection of each message. */
+	public interface IPoolConnectionHandler extends IConnectionHandler {
+		/** Same as message(), from the connection shard; called instead of it. */
+		void message(int shard, int id, int errorCode, String errorMsg, String advancedOrderRejectJson);
+	}
+
+	private final ApiController[] m_controllers;
+	private final IConnectionHandler m_handler;
+	private final AtomicInteger m_connected = new AtomicInteger();
+	private final AtomicInteger[] m_subscriptions;
+	private final Map<Object,Integer> m_shards = new ConcurrentHashMap<>();	// handler to shard, for cancels
+	private final Map<ITopMktDataHandler,SnapshotHandler> m_snapshots = new ConcurrentHashMap<>();	// snapshots not ended yet
+
+	public ApiControllerPool(int size, IConnectionHandler handler) {
+		this( size, handler, null, null);
+	}
+
+	/** Creates size controllers; handler is told connected() once all of them are connected and disconnected() when
+	 *  the first of them disconnects. */
+	public ApiControllerPool(int size, IConnectionHandler handler, ILogger inLogger, ILogger outLogger) {
+		if (size < 1) {
+			throw new IllegalArgumentException( "size " + size);
+		}
+		m_handler = handler;
+		m_controllers = new ApiController[size];
+		m_subscriptions = new AtomicInteger[size];
+		for (int i = 0; i < size; i++) {
+			m_controllers[i] = new ApiController( new ConnectionHandler( i), inLogger, outLogger);
+			m_subscriptions[i] = new AtomicInteger();
+		}
+	}
+
+	public int size()							{ return m_controllers.length; }
+	public ApiController controller(int shard)	{ return m_controllers[shard]; }
+
+	/** The controller for orders, accounts and everything else which is not sharded. */
+	public ApiController primary()				{ return m_controllers[0]; }
+
+	/** Number of subscriptions made through the pool which are active on a connection; a snapshot counts until it ended. */
+	public int subscriptions(int shard)			{ return m_subscriptions[shard].get(); }
+
+	public boolean isConnected() {
+		return m_connected.get() == m_controllers.length;
+	}
+
+	/** Connects all controllers to one TWS or Gateway with clientIds firstClientId, firstClientId + 1, ... */
+	public void connect(String host, int port, int firstClientId, String connectOptions) {
+		connect( Collections.singletonList( InetSocketAddress.createUnresolved( host, port) ), firstClientId, connectOptions);
+	}
+
+	/** Connects controller i to gateways[i % gateways.size()] with clientId firstClientId + i. */
+	public void connect(List<InetSocketAddress> gateways, int firstClientId, String connectOptions) {
+		for (int i = 0; i < m_controllers.length; i++) {
+			InetSocketAddress gateway = gateways.get( i % gateways.size() );
+			m_controllers[i].connect( gateway.getHostString(), gateway.getPort(), firstClientId + i, connectOptions);
+		}
+	}
+
+	public void disconnect() {
+		for (ApiController controller : m_controllers) {
+			controller.disconnect();
+		}
+	}
+
+	/** Returns the connection used for a contract. */
+	public int shard(Contract contract) {
+		int key = contract.conid();
+		if (key == 0) {
+			key = Objects.hash( contract.symbol(), contract.getSecType(), contract.exchange(), contract.currency() );
+		}
+		// spread consecutive conids
+		key *= 0x9E3779B9;
+		return ( (key ^ (key >>> 16) ) & Integer.MAX_VALUE) % m_controllers.length;
+	}
+
+	public ApiController controllerFor(Contract contract) {
+		return m_controllers[shard( contract)];
+	}
+
+	public void reqTopMktData(Contract contract, String genericTickList, boolean snapshot, boolean regulatorySnapshot, ITopMktDataHandler handler) {
+		int shard = subscribe( contract, handler);
+		ITopMktDataHandler registered = handler;
+		if (snapshot || regulatorySnapshot) {
+			SnapshotHandler snapshotHandler = new SnapshotHandler( handler);
+			m_snapshots.put( handler, snapshotHandler);
+			registered = snapshotHandler;
+		}
+		m_controllers[shard].reqTopMktData( contract, genericTickList, snapshot, regulatorySnapshot, registered);
+	}
+
+	public void cancelTopMktData(ITopMktDataHandler handler) {
+		Integer shard = unsubscribe( handler);
+		if (shard != null) {
+			SnapshotHandler snapshotHandler = m_snapshots.remove( handler);
+			m_controllers[shard].cancelTopMktData( snapshotHandler != null ? snapshotHandler : handler);
+		}
+	}
+
+	public void reqDeepMktData(Contract contract, int numRows, boolean isSmartDepth, IDeepMktDataHandler handler) {
+		int shard = subscribe( contract, handler);
+		m_controllers[shard].reqDeepMktData( contract, numRows, isSmartDepth, handler);
+	}
+
+	public void cancelDeepMktData(boolean isSmartDepth, IDeepMktDataHandler handler) {
+		Integer shard = unsubscribe( handler);
+		if (shard != null) {
+			m_controllers[shard].cancelDeepMktData( isSmartDepth, handler);
+		}
+	}
+
+	public void reqTickByTickData(Contract contract, String tickType, int numberOfTicks, boolean ignoreSize, ITickByTickDataHandler handler) {
+		int shard = subscribe( contract, handler);
+		m_controllers[shard].reqTickByTickData( contract, tickType, numberOfTicks, ignoreSize, handler);
+	}
+
+	public void cancelTickByTickData(ITickByTickDataHandler handler) {
+		Integer shard = unsubscribe( handler);
+		if (shard != null) {
+			m_controllers[shard].cancelTickByTickData( handler);
+		}
+	}
+
+	private int subscribe(Contract contract, Object handler) {
+		int shard = shard( contract);
+		if (m_shards.put( handler, shard) == null) {
+			m_subscriptions[shard].incrementAndGet();
+		}
+		return shard;
+	}
+
+	private Integer unsubscribe(Object handler) {
+		Integer shard = m_shards.remove( handler);
+		if (shard != null) {
+			m_subscriptions[shard].decrementAndGet();
+		}
+		return shard;
+	}
+
+	/** Passes the ticks of a snapshot on and ends its subscription with tickSnapshotEnd(). */
+	private class SnapshotHandler implements IEfpHandler {
+		private final ITopMktDataHandler m_handler;
+
+		SnapshotHandler(ITopMktDataHandler handler) {
+			m_handler = handler;
+		}
+
+		@Override public void tickPrice(TickType tickType, double price, TickAttrib attribs) {
+			m_handler.tickPrice( tickType, price, attribs);
+		}
+
+		@Override public void tickSize(TickType tickType, Decimal size) {
+			m_handler.tickSize( tickType, size);
+		}
+
+		@Override public void tickString(TickType tickType, String value) {
+			m_handler.tickString( tickType, value);
+		}
+
+		@Override public void tickSnapshotEnd() {
+			m_handler.tickSnapshotEnd();
+			if (m_snapshots.remove( m_handler, this) ) {
+				unsubscribe( m_handler);
+			}
+		}
+
+		@Override public void marketDataType(int marketDataType) {
+			m_handler.marketDataType( marketDataType);
+		}
+
+		@Override public void tickReqParams(int tickerId, double minTick, String bboExchange, int snapshotPermissions) {
+			m_handler.tickReqParams( tickerId, minTick, bboExchange, snapshotPermissions);
+		}
+
+		@Override public void tickEFP(int tickType, double basisPoints, String formattedBasisPoints, double impliedFuture, int holdDays,
+				String futureLastTradeDate, double dividendImpact, double dividendsToLastTradeDate) {
+			if (m_handler instanceof IEfpHandler) {
+				((IEfpHandler)m_handler).tickEFP( tickType, basisPoints, formattedBasisPoints, impliedFuture, holdDays,
+					futureLastTradeDate, dividendImpact, dividendsToLastTradeDate);
+			}
+		}
+	}
+
+	@Override public String toString() {
+		StringBuilder sb = new StringBuilder( "connected=").append( m_connected.get() ).append( '/').append( m_controllers.length)
+			.append( " subscriptions=[");
+		for (int i = 0; i < m_subscriptions.length; i++) {
+			sb.append( i == 0 ? "" : ",").append( m_subscriptions[i].get() );
+		}
+		return sb.append( ']').toString();
+	}
+
+	/** Merges the connection events of the controllers into the pool's handler. */
+	private class ConnectionHandler implements IConnectionHandler {
+		private final int m_shard;
+		private boolean m_up;
+
+		ConnectionHandler(int shard) {
+			m_shard = shard;
+		}
+
+		@Override public void connected() {
+			synchronized( this) {
+				if (m_up) {
+					return;
+				}
+				m_up = true;
+			}
+			if (m_connected.incrementAndGet() == m_controllers.length) {
+				m_handler.connected();
+			}
+		}
+
+		@Override public void disconnected() {
+			synchronized( this) {
+				if (!m_up) {
+					return;
+				}
+				m_up = false;
+			}
+			if (m_connected.getAndDecrement() == m_controllers.length) {
+				m_handler.disconnected();
+			}
+		}
+
+		@Override public void accountList(List<String> list) {
+			if (m_shard == 0) {
+				m_handler.accountList( list);
+			}
+		}
+
+		@Override public void error(Exception e) {
+			m_handler.error( e);
+		}
+
+		@Override public void message(int id, int errorCode, String errorMsg, String advancedOrderRejectJson) {
+			if (m_handler instanceof IPoolConnectionHandler) {
+				((IPoolConnectionHandler)m_handler).message( m_shard, id, errorCode, errorMsg, advancedOrderRejectJson);
+			}
+			else {
+				m_handler.message( id, errorCode, errorMsg, advancedOrderRejectJson);
+			}
+		}
+
+		@Override public void show(String string) {
+			m_handler.show( string);
+		}
+	}
+}
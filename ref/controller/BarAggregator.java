@@ -0,0 +1,350 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import com.ib.client.Decimal;
+import com.ib.client.HistoricalSession;
+import com.ib.client.HistoricalTick;
+import com.ib.client.HistoricalTickBidAsk;
+import com.ib.client.HistoricalTickLast;
+import com.ib.client.TickAttribBidAsk;
+import com.ib.client.TickAttribLast;
+import com.ib.client.Util;
+import com.ib.controller.ApiController.IHistoricalScheduleHandler;
+import com.ib.controller.ApiController.IRealTimeBarHandler;
+import com.ib.controller.ApiController.ITickByTickDataHandler;
+
+/** Builds bars of arbitrary size locally from 5-second real-time bars and/or "AllLast" tick-by-tick data.
+ *  State for all contracts is kept in flat primitive arrays indexed by slot * barSizes + barSizeIndex.
+ *  Bar sizes are in seconds; a bar size can be fed from real-time bars only if it is a multiple of 5 seconds.
+ *  If sessions are set for a contract, bars are aligned to the session start, truncated at the session end
+ *  and data outside of any session is ignored; otherwise bars are aligned to the epoch.
+ *  If a contract is fed both ways, each 5-second interval is taken from one source only: from ticks if any tick fell
+ *  into it, else from the real-time bar, and whichever arrives second for an interval is ignored by the bar sizes
+ *  which are multiples of 5 seconds. Data for a bar which was already completed is dropped and counted by lateUpdates(). */
+public class BarAggregator {
+	public interface IBarHandler {
+		/** Called on every update of a bar which is still in progress; only if publishInProgress is enabled. */
+		void barUpdated(int conid, int barSize, Bar bar);
+		void barCompleted(int conid, int barSize, Bar bar);
+	}
+
+	public static final int REAL_TIME_BAR_SIZE = 5;
+	private static final int INITIAL_SLOTS = 64;
+	private static final long NO_BAR = Long.MIN_VALUE;
+	private static final long[] NO_SESSIONS = new long[0];
+	private static final int INTERVAL_HISTORY = 64; // 5-second intervals whose source is remembered, one bit each
+
+	private final int[] m_barSizes;
+	private final IBarHandler m_handler;
+	private final Map<Integer,Integer> m_slots = new HashMap<>();
+	private boolean m_publishInProgress;
+	private int m_slotCount;
+	private int[] m_conids = new int[INITIAL_SLOTS];
+	private long[][] m_sessions = new long[INITIAL_SLOTS][]; // per slot: start0, end0, start1, end1... in epoch seconds
+	private long[] m_interval = new long[INITIAL_SLOTS];	// per slot: latest 5-second interval seen, time / 5
+	private long[] m_tickIntervals = new long[INITIAL_SLOTS];	// per slot: bit n set if interval m_interval - n was fed by ticks
+	private long[] m_barIntervals = new long[INITIAL_SLOTS];	// per slot: bit n set if interval m_interval - n was fed by a real-time bar
+	private long m_lateUpdates;
+
+	// one entry per slot and bar size
+	private long[] m_start;
+	private long[] m_end;
+	private long[] m_completed;		// start of the last completed bar
+	private double[] m_open;
+	private double[] m_high;
+	private double[] m_low;
+	private double[] m_close;
+	private double[] m_volume;
+	private double[] m_notional;
+	private int[] m_count;
+
+	public int[] barSizes()		{ return m_barSizes.clone(); }
+	public boolean publishInProgress() 	{ return m_publishInProgress; }
+	public synchronized void publishInProgress(boolean v) { m_publishInProgress = v; }
+
+	/** Number of updates dropped because their bar had already been completed. */
+	public synchronized long lateUpdates() { return m_lateUpdates; }
+
+	/** @param barSizes bar sizes in seconds, e.g. 1, 60, 300 */
+	public BarAggregator( IBarHandler handler, int... barSizes) {
+		if (barSizes.length == 0) {
+			throw new IllegalArgumentException( "at least one bar size is required");
+		}
+		for (int barSize : barSizes) {
+			if (barSize <= 0) {
+				throw new IllegalArgumentException( "invalid bar size " + barSize);
+			}
+		}
+		m_handler = handler;
+		m_barSizes = barSizes.clone();
+		allocate( INITIAL_SLOTS * m_barSizes.length);
+	}
+
+	/** Sets the trading sessions, as returned by reqHistoricalSchedule, used to align and cut bars of this contract. */
+	public synchronized void setSessions(int conid, String timeZone, List<HistoricalSession> sessions) {
+		SimpleDateFormat format = new SimpleDateFormat( "yyyyMMdd-HH:mm:ss");
+		if (!Util.StringIsEmpty( timeZone) ) {
+			format.setTimeZone( TimeZone.getTimeZone( timeZone) );
+		}
+
+		long[] times = new long[sessions.size() * 2];
+		int n = 0;
+		for (HistoricalSession session : sessions) {
+			try {
+				times[n]     = format.parse( session.startDateTime() ).getTime() / 1000;
+				times[n + 1] = format.parse( session.endDateTime() ).getTime() / 1000;
+				n += 2;
+			}
+			catch( ParseException e) {
+				// skip sessions we cannot interpret
+			}
+		}
+		times = Arrays.copyOf( times, n);
+		sortSessions( times);
+		m_sessions[slot( conid)] = times;
+	}
+
+	/** Feeds one 5-second bar from reqRealTimeBars; time is in seconds since epoch. */
+	public synchronized void realtimeBar(int conid, long time, double open, double high, double low, double close, double volume, double wap, int count) {
+		int slot = slot( conid);
+		update( slot, REAL_TIME_BAR_SIZE, claimInterval( slot, time, false), time, open, high, low, close, volume, wap * volume, count);
+	}
+
+	/** Feeds one trade, e.g. from reqTickByTickData "AllLast"; time is in seconds since epoch. */
+	public synchronized void tick(int conid, long time, double price, double size) {
+		int slot = slot( conid);
+		update( slot, 1, claimInterval( slot, time, true), time, price, price, price, price, size, price * size, 1);
+	}
+
+	/** Completes all bars which end at or before the given time; call periodically so that
+	 *  bars of illiquid contracts and bars at the end of a session are published without waiting for the next trade. */
+	public synchronized void advanceTo(long time) {
+		for (int i = 0; i < m_slotCount * m_barSizes.length; i++) {
+			if (m_start[i] != NO_BAR && m_end[i] <= time) {
+				complete( i);
+			}
+		}
+	}
+
+	public IRealTimeBarHandler realTimeBarHandler(final int conid) {
+		return bar -> realtimeBar( conid, bar.time(), bar.open(), bar.high(), bar.low(), bar.close(), toDouble( bar.volume() ), toDouble( bar.wap() ), bar.count() );
+	}
+
+	public ITickByTickDataHandler tickByTickHandler(final int conid) {
+		return new ITickByTickDataHandler() {
+			@Override public void tickByTickAllLast(int reqId, int tickType, long time, double price, Decimal size, TickAttribLast tickAttribLast, String exchange, String specialConditions) {
+				tick( conid, time, price, toDouble( size) );
+			}
+			@Override public void tickByTickBidAsk(int reqId, long time, double bidPrice, double askPrice, Decimal bidSize, Decimal askSize, TickAttribBidAsk tickAttribBidAsk) {
+			}
+			@Override public void tickByTickMidPoint(int reqId, long time, double midPoint) {
+			}
+			@Override public void tickByTickHistoricalTickAllLast(int reqId, List<HistoricalTickLast> ticks) {
+			}
+			@Override public void tickByTickHistoricalTickBidAsk(int reqId, List<HistoricalTickBidAsk> ticks) {
+			}
+			@Override public void tickByTickHistoricalTick(int reqId, List<HistoricalTick> ticks) {
+			}
+		};
+	}
+
+	public IHistoricalScheduleHandler historicalScheduleHandler(final int conid) {
+		return (reqId, startDateTime, endDateTime, timeZone, sessions) -> setSessions( conid, timeZone, sessions);
+	}
+
+	/** Records that the 5-second interval containing time is fed by ticks or by a real-time bar.
+	 *  Returns false if it was already fed by the other source, or is too old to tell. */
+	private boolean claimInterval(int slot, long time, boolean ticks) {
+		long interval = Math.floorDiv( time, REAL_TIME_BAR_SIZE);
+		long latest = m_interval[slot];
+		if (interval > latest) {
+			long shift = interval - latest;
+			boolean keep = shift > 0 && shift < INTERVAL_HISTORY; // negative on overflow from the initial Long.MIN_VALUE
+			m_tickIntervals[slot] = keep ? m_tickIntervals[slot] << shift : 0;
+			m_barIntervals[slot] = keep ? m_barIntervals[slot] << shift : 0;
+			m_interval[slot] = latest = interval;
+		}
+
+		long age = latest - interval;
+		if (age >= INTERVAL_HISTORY) {
+			return false;
+		}
+		long bit = 1L << age;
+		if (((ticks ? m_barIntervals[slot] : m_tickIntervals[slot]) & bit) != 0) {
+			return false;
+		}
+		if (ticks) {
+			m_tickIntervals[slot] |= bit;
+		}
+		else {
+			m_barIntervals[slot] |= bit;
+		}
+		return true;
+	}
+
+	/** @param claimed false if bar sizes which are multiples of 5 seconds are fed by the other source for this interval */
+	private void update(int slot, int sourceSize, boolean claimed, long time, double open, double high, double low, double close, double volume, double notional, int count) {
+		long[] sessions = m_sessions[slot];
+		long sessionStart = 0;
+		long sessionEnd = Long.MAX_VALUE;
+
+		if (sessions.length > 0) {
+			int s = findSession( sessions, time);
+			if (s < 0) {
+				return; // outside of trading hours
+			}
+			sessionStart = sessions[s];
+			sessionEnd = sessions[s + 1];
+		}
+
+		for (int k = 0; k < m_barSizes.length; k++) {
+			int barSize = m_barSizes[k];
+			if (barSize % sourceSize != 0) {
+				continue; // e.g. 1-second bars cannot be built from 5-second bars
+			}
+			if (!claimed && barSize % REAL_TIME_BAR_SIZE == 0) {
+				continue; // this interval is taken from the other source
+			}
+
+			int i = slot * m_barSizes.length + k;
+			long start = sessionStart + Math.floorDiv( time - sessionStart, barSize) * barSize;
+
+			if (start <= m_completed[i] || m_start[i] != NO_BAR && start < m_start[i]) {
+				m_lateUpdates++;
+				continue; // late data for a bar which was already published
+			}
+
+			if (m_start[i] != NO_BAR) {
+				if (start != m_start[i]) {
+					complete( i);
+				}
+			}
+
+			if (m_start[i] == NO_BAR) {
+				m_start[i] = start;
+				m_end[i] = Math.min( start + barSize, sessionEnd);
+				m_open[i] = open;
+				m_high[i] = high;
+				m_low[i] = low;
+				m_close[i] = close;
+				m_volume[i] = volume;
+				m_notional[i] = notional;
+				m_count[i] = count;
+			}
+			else {
+				m_high[i] = Math.max( m_high[i], high);
+				m_low[i] = Math.min( m_low[i], low);
+				m_close[i] = close;
+				m_volume[i] += volume;
+				m_notional[i] += notional;
+				m_count[i] += count;
+			}
+
+			if (m_publishInProgress && m_handler != null) {
+				m_handler.barUpdated( m_conids[slot], barSize, createBar( i) );
+			}
+		}
+	}
+
+	private void complete(int i) {
+		if (m_handler != null) {
+			m_handler.barCompleted( m_conids[i / m_barSizes.length], m_barSizes[i % m_barSizes.length], createBar( i) );
+		}
+		m_completed[i] = m_start[i];
+		m_start[i] = NO_BAR;
+	}
+
+	private Bar createBar(int i) {
+		double wap = m_volume[i] > 0 ? m_notional[i] / m_volume[i] : m_close[i];
+		return new Bar( m_start[i], m_high[i], m_low[i], m_open[i], m_close[i], Decimal.get( wap), Decimal.get( m_volume[i]), m_count[i]);
+	}
+
+	private int slot(int conid) {
+		Integer slot = m_slots.get( conid);
+		if (slot != null) {
+			return slot;
+		}
+
+		if (m_slotCount == m_conids.length) {
+			int capacity = m_conids.length * 2;
+			m_conids = Arrays.copyOf( m_conids, capacity);
+			m_sessions = Arrays.copyOf( m_sessions, capacity);
+			m_interval = Arrays.copyOf( m_interval, capacity);
+			m_tickIntervals = Arrays.copyOf( m_tickIntervals, capacity);
+			m_barIntervals = Arrays.copyOf( m_barIntervals, capacity);
+			allocate( capacity * m_barSizes.length);
+		}
+
+		int newSlot = m_slotCount++;
+		m_conids[newSlot] = conid;
+		m_sessions[newSlot] = NO_SESSIONS;
+		m_interval[newSlot] = Long.MIN_VALUE;
+		m_slots.put( conid, newSlot);
+		return newSlot;
+	}
+
+	private void allocate(int size) {
+		int oldSize = m_start == null ? 0 : m_start.length;
+		m_start = m_start == null ? new long[size] : Arrays.copyOf( m_start, size);
+		m_end = m_end == null ? new long[size] : Arrays.copyOf( m_end, size);
+		m_completed = m_completed == null ? new long[size] : Arrays.copyOf( m_completed, size);
+		m_open = m_open == null ? new double[size] : Arrays.copyOf( m_open, size);
+		m_high = m_high == null ? new double[size] : Arrays.copyOf( m_high, size);
+		m_low = m_low == null ? new double[size] : Arrays.copyOf( m_low, size);
+		m_close = m_close == null ? new double[size] : Arrays.copyOf( m_close, size);
+		m_volume = m_volume == null ? new double[size] : Arrays.copyOf( m_volume, size);
+		m_notional = m_notional == null ? new double[size] : Arrays.copyOf( m_notional, size);
+		m_count = m_count == null ? new int[size] : Arrays.copyOf( m_count, size);
+		Arrays.fill( m_start, oldSize, size, NO_BAR);
+		Arrays.fill( m_completed, oldSize, size, NO_BAR);
+	}
+
+	/** Returns the index of the start of the session containing time, or -1. */
+	private static int findSession(long[] sessions, long time) {
+		int lo = 0;
+		int hi = sessions.length / 2 - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (time < sessions[mid * 2]) {
+				hi = mid - 1;
+			}
+			else if (time >= sessions[mid * 2 + 1]) {
+				lo = mid + 1;
+			}
+			else {
+				return mid * 2;
+			}
+		}
+		return -1;
+	}
+
+	/** Sorts (start, end) pairs by start time. */
+	private static void sortSessions(long[] times) {
+		for (int i = 2; i < times.length; i += 2) {
+			long start = times[i];
+			long end = times[i + 1];
+			int j = i - 2;
+			while (j >= 0 && times[j] > start) {
+				times[j + 2] = times[j];
+				times[j + 3] = times[j + 1];
+				j -= 2;
+			}
+			times[j + 2] = start;
+			times[j + 3] = end;
+		}
+	}
+
+	private static double toDouble(Decimal v) {
+		return Decimal.isValid( v) ? v.doubleValue() : 0;
+	}
+}
@@ -0,0 +1,492 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.ib.client.Contract;
+import com.ib.client.Types.WhatToShow;
+import com.ib.controller.ApiConnection.ILogger;
+import com.ib.controller.ApiController.IAccountHandler;
+import com.ib.controller.ApiController.IAccountSummaryHandler;
+import com.ib.controller.ApiController.IAccountUpdateMultiHandler;
+import com.ib.controller.ApiController.IConnectionHandler;
+import com.ib.controller.ApiController.IDeepMktDataHandler;
+import com.ib.controller.ApiController.IOptHandler;
+import com.ib.controller.ApiController.IPnLHandler;
+import com.ib.controller.ApiController.IPnLSingleHandler;
+import com.ib.controller.ApiController.IPositionHandler;
+import com.ib.controller.ApiController.IPositionMultiHandler;
+import com.ib.controller.ApiController.IRealTimeBarHandler;
+import com.ib.controller.ApiController.ITickByTickDataHandler;
+import com.ib.controller.ApiController.ITopMktDataHandler;
+
+/** Keeps an ApiController connected. Streaming requests made through the supervisor are journaled by handler; when
+ *  the connection drops, the supervisor reconnects with exponential backoff and requests all of them again, paced
+ *  to stay within the TWS limit on messages per second. The new reqIds are mapped to the same handlers, so callers
+ *  keep their handlers across reconnects and only see a pause in the data. Snapshots are not requested again; one
+ *  made while disconnected is sent once connected, like the requests journaled meanwhile.
+ *  ApiController is not thread safe, and the replay runs on the supervisor's thread, so all requests of the
+ *  supervisor are serialized by one lock; make other requests on controller() through request() to take it too.
+ *  The handler passed in is told disconnected() on every drop and connected() on every reconnect, before the
+ *  journal is replayed. */
+public class ConnectionSupervisor {
+	private final ApiController m_controller;
+	private final IConnectionHandler m_handler;
+	private final ScheduledExecutorService m_scheduler = Executors.newSingleThreadScheduledExecutor( r -> {
+		Thread thread = new Thread( r, "ConnectionSupervisor");
+		thread.setDaemon( true);
+		return thread;
+	});
+	private final Map<Object,Runnable> m_journal = new LinkedHashMap<>();	// handler to request, in request order
+	private final Set<Object> m_snapshots = new HashSet<>();	// handlers of journaled snapshots, sent once
+	private final Object m_requestLock = new Object();		// serializes all requests on m_controller
+	private Runnable m_mktDataType;
+
+	private String m_host;
+	private int m_port;
+	private int m_clientId;
+	private String m_connectOptions;
+	private long m_initialBackoffMillis = 100;
+	private long m_maxBackoffMillis = 30000;
+	private long m_connectTimeoutMillis = 5000;
+	private double m_maxRequestsPerSecond = 40;	// TWS allows 50 messages per second
+
+	// guarded by this
+	private boolean m_started;
+	private boolean m_connected;
+	private int m_generation;		// incremented on every connect and disconnect; stale tasks check it
+	private long m_backoffMillis;
+	private int m_connects;
+	private int m_replayed;
+
+	public ConnectionSupervisor(IConnectionHandler handler) {
+		this( handler, null, null);
+	}
+
+	public ConnectionSupervisor(IConnectionHandler handler, ILogger inLogger, ILogger outLogger) {
+		m_handler = handler;
+		m_controller = new ApiController( new ConnectionHandler(), inLogger, outLogger);
+	}
+
+	/** The supervised controller, e.g. for orders and one-off requests, which are not journaled; see request(). */
+	public ApiController controller()				{ return m_controller; }
+	public synchronized boolean isConnected()		{ return m_connected; }
+	public synchronized int reconnects()			{ return Math.max( m_connects - 1, 0); }
+	public synchronized int journalSize()			{ return m_journal.size(); }
+
+	/** Number of requests sent again after the last reconnect. */
+	public synchronized int replayed()				{ return m_replayed; }
+
+	public synchronized void backoff(long initialMillis, long maxMillis) {
+		m_initialBackoffMillis = initialMillis;
+		m_maxBackoffMillis = maxMillis;
+	}
+
+	/** Time after which a connection attempt without nextValidId is abandoned and retried. */
+	public synchronized void connectTimeout(long millis)				{ m_connectTimeoutMillis = millis; }
+	public synchronized void maxRequestsPerSecond(double requests)	{ m_maxRequestsPerSecond = requests; }
+
+	/** Runs requests on controller() under the lock of the supervisor's own requests, so they cannot run at the
+	 *  same time as a replay and, e.g., be given the same reqId. */
+	public void request(Runnable request) {
+		synchronized( m_requestLock) {
+			request.run();
+		}
+	}
+
+	public void connect(String host, int port, int clientId, String connectOptions) {
+		synchronized( this) {
+			m_host = host;
+			m_port = port;
+			m_clientId = clientId;
+			m_connectOptions = connectOptions;
+			m_started = true;
+			m_backoffMillis = m_initialBackoffMillis;
+		}
+		attempt( generation() );
+	}
+
+	/** Disconnects and stops reconnecting; the journal is kept for the next connect(). */
+	public void disconnect() {
+		synchronized( this) {
+			m_started = false;
+			m_generation++;
+		}
+		if (m_controller.isConnected() ) {
+			m_controller.disconnect();
+		}
+		else {
+			m_controller.client().eDisconnect();	// also abandons an attempt still waiting for nextValidId
+		}
+	}
+
+	/** Drops the connection and reconnects, e.g. when it stopped answering; see LivenessMonitor. */
+	public void reconnect() {
+		if (isConnected() ) {
+			m_controller.client().eDisconnect();	// reported through connectionClosed() like any other drop
+		}
+	}
+
+	/** Stops reconnecting and releases the supervisor's thread. */
+	public void close() {
+		disconnect();
+		m_scheduler.shutdownNow();
+	}
+
+	// ---------------------------------------- journaled requests ----------------------------------------
+
+	public void reqMktDataType(int mktDataType) {
+		Runnable request = () -> m_controller.reqMktDataType( mktDataType);
+		synchronized( this) {
+			m_mktDataType = request;
+		}
+		send( request);
+	}
+
+	public void reqTopMktData(Contract contract, String genericTickList, boolean snapshot, boolean regulatorySnapshot, ITopMktDataHandler handler) {
+		Runnable request = () -> m_controller.reqTopMktData( contract, genericTickList, snapshot, regulatorySnapshot, handler);
+		if (snapshot || regulatorySnapshot) {
+			snapshot( handler, request);
+		}
+		else {
+			subscribe( handler, request);
+		}
+	}
+
+	/** Cancels a subscription, or a snapshot still running. */
+	public void cancelTopMktData(ITopMktDataHandler handler) {
+		if (unsubscribe( handler) || isConnected() ) {	// a snapshot sent while connected is not journaled
+			request( () -> m_controller.cancelTopMktData( handler) );
+		}
+	}
+
+	public void reqOptionMktData(Contract contract, String genericTickList, boolean snapshot, boolean regulatorySnapshot, IOptHandler handler) {
+		Runnable request = () -> m_controller.reqOptionMktData( contract, genericTickList, snapshot, regulatorySnapshot, handler);
+		if (snapshot || regulatorySnapshot) {
+			snapshot( handler, request);
+		}
+		else {
+			subscribe( handler, request);
+		}
+	}
+
+	public void cancelOptionMktData(IOptHandler handler) {
+		if (unsubscribe( handler) || isConnected() ) {
+			request( () -> m_controller.cancelOptionMktData( handler) );
+		}
+	}
+
+	public void reqDeepMktData(Contract contract, int numRows, boolean isSmartDepth, IDeepMktDataHandler handler) {
+		subscribe( handler, () -> m_controller.reqDeepMktData( contract, numRows, isSmartDepth, handler) );
+	}
+
+	public void cancelDeepMktData(boolean isSmartDepth, IDeepMktDataHandler handler) {
+		if (unsubscribe( handler) ) {
+			request( () -> m_controller.cancelDeepMktData( isSmartDepth, handler) );
+		}
+	}
+
+	public void reqTickByTickData(Contract contract, String tickType, int numberOfTicks, boolean ignoreSize, ITickByTickDataHandler handler) {
+		subscribe( handler, () -> m_controller.reqTickByTickData( contract, tickType, numberOfTicks, ignoreSize, handler) );
+	}
+
+	public void cancelTickByTickData(ITickByTickDataHandler handler) {
+		if (unsubscribe( handler) ) {
+			request( () -> m_controller.cancelTickByTickData( handler) );
+		}
+	}
+
+	public void reqRealTimeBars(Contract contract, WhatToShow whatToShow, boolean rthOnly, IRealTimeBarHandler handler) {
+		subscribe( handler, () -> m_controller.reqRealTimeBars( contract, whatToShow, rthOnly, handler) );
+	}
+
+	public void cancelRealtimeBars(IRealTimeBarHandler handler) {
+		if (unsubscribe( handler) ) {
+			request( () -> m_controller.cancelRealtimeBars( handler) );
+		}
+	}
+
+	public void reqPnL(String account, String modelCode, IPnLHandler handler) {
+		subscribe( handler, () -> m_controller.reqPnL( account, modelCode, handler) );
+	}
+
+	public void cancelPnL(IPnLHandler handler) {
+		if (unsubscribe( handler) ) {
+			request( () -> m_controller.cancelPnL( handler) );
+		}
+	}
+
+	public void reqPnLSingle(String account, String modelCode, int conId, IPnLSingleHandler handler) {
+		subscribe( handler, () -> m_controller.reqPnLSingle( account, modelCode, conId, handler) );
+	}
+
+	public void cancelPnLSingle(IPnLSingleHandler handler) {
+		if (unsubscribe( handler) ) {
+			request( () -> m_controller.cancelPnLSingle( handler) );
+		}
+	}
+
+	/** Subscribes, or with subscribe false unsubscribes, the account updates of one account. */
+	public void reqAccountUpdates(boolean subscribe, String acctCode, IAccountHandler handler) {
+		if (subscribe) {
+			subscribe( handler, () -> m_controller.reqAccountUpdates( true, acctCode, handler) );
+		}
+		else if (unsubscribe( handler) ) {
+			request( () -> m_controller.reqAccountUpdates( false, acctCode, handler) );
+		}
+	}
+
+	public void reqPositions(IPositionHandler handler) {
+		subscribe( handler, () -> m_controller.reqPositions( handler) );
+	}
+
+	public void cancelPositions(IPositionHandler handler) {
+		if (unsubscribe( handler) ) {
+			request( () -> m_controller.cancelPositions( handler) );
+		}
+	}
+
+	public void reqAccountSummary(String group, AccountSummaryTag[] tags, IAccountSummaryHandler handler) {
+		subscribe( handler, () -> m_controller.reqAccountSummary( group, tags, handler) );
+	}
+
+	public void cancelAccountSummary(IAccountSummaryHandler handler) {
+		if (unsubscribe( handler) ) {
+			request( () -> m_controller.cancelAccountSummary( handler) );
+		}
+	}
+
+	public void reqPositionsMulti(String account, String modelCode, IPositionMultiHandler handler) {
+		subscribe( handler, () -> m_controller.reqPositionsMulti( account, modelCode, handler) );
+	}
+
+	public void cancelPositionsMulti(IPositionMultiHandler handler) {
+		if (unsubscribe( handler) ) {
+			request( () -> m_controller.cancelPositionsMulti( handler) );
+		}
+	}
+
+	public void reqAccountUpdatesMulti(String account, String modelCode, boolean ledgerAndNLV, IAccountUpdateMultiHandler handler) {
+		subscribe( handler, () -> m_controller.reqAccountUpdatesMulti( account, modelCode, ledgerAndNLV, handler) );
+	}
+
+	public void cancelAccountUpdatesMulti(IAccountUpdateMultiHandler handler) {
+		if (unsubscribe( handler) ) {
+			request( () -> m_controller.cancelAccountUpdatesMulti( handler) );
+		}
+	}
+
+	private void subscribe(Object handler, Runnable request) {
+		synchronized( this) {
+			m_journal.put( handler, request);
+		}
+		send( request);
+	}
+
+	/** Sends a snapshot now if connected; otherwise journals it until it went out with the replay after connecting. */
+	private void snapshot(Object handler, Runnable request) {
+		synchronized( m_requestLock) {
+			synchronized( this) {
+				if (!m_connected) {
+					m_journal.put( handler, request);
+					m_snapshots.add( handler);
+					return;
+				}
+			}
+			request.run();
+		}
+	}
+
+	/** Removes a handler from the journal; returns true if a cancel should be sent. */
+	private boolean unsubscribe(Object handler) {
+		synchronized( this) {
+			m_snapshots.remove( handler);
+			return m_journal.remove( handler) != null && m_connected;
+		}
+	}
+
+	/** Sends a request now if connected; otherwise it goes out with the replay after connecting. */
+	private void send(Runnable request) {
+		synchronized( m_requestLock) {
+			if (isConnected() ) {
+				request.run();
+			}
+		}
+	}
+
+	// ---------------------------------------- reconnecting ----------------------------------------
+
+	private synchronized int generation() {
+		return m_generation;
+	}
+
+	private void attempt(int generation) {
+		String host;
+		int port;
+		int clientId;
+		String connectOptions;
+		long timeout;
+		synchronized( this) {
+			if (!m_started || generation != m_generation) {
+				return;
+			}
+			host = m_host;
+			port = m_port;
+			clientId = m_clientId;
+			connectOptions = m_connectOptions;
+			timeout = m_connectTimeoutMillis;
+		}
+		m_controller.connect( host, port, clientId, connectOptions);
+		if (!m_controller.client().isConnected() ) {
+			retry();	// socket not opened; the controller has reported why
+			return;
+		}
+		m_scheduler.schedule( () -> checkAttempt( generation), timeout, TimeUnit.MILLISECONDS);
+	}
+
+	/** Retries if the attempt of this generation did not lead to nextValidId in time. */
+	private void checkAttempt(int generation) {
+		synchronized( this) {
+			if (!m_started || generation != m_generation || m_connected) {
+				return;
+			}
+			m_generation++;
+		}
+		m_controller.client().eDisconnect();
+		retry();
+	}
+
+	private void retry() {
+		long delay;
+		int generation;
+		synchronized( this) {
+			if (!m_started) {
+				return;
+			}
+			delay = m_backoffMillis;
+			m_backoffMillis = Math.min( m_backoffMillis * 2, m_maxBackoffMillis);
+			generation = m_generation;
+		}
+		m_handler.show( "reconnecting in " + delay + " ms");
+		m_scheduler.schedule( () -> attempt( generation), delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void connected() {
+		List<Object> handlers;
+		int generation;
+		synchronized( m_requestLock) {
+			synchronized( this) {
+				if (m_connected) {
+					return;
+				}
+				// drop the handlers registered under the reqIds of the previous connection before anything is requested again
+				m_controller.forgetSubscriptions();
+				m_connected = true;
+				generation = ++m_generation;
+				m_connects++;
+				m_backoffMillis = m_initialBackoffMillis;
+				handlers = new ArrayList<>( m_journal.keySet() );
+			}
+		}
+		m_handler.connected();
+		m_scheduler.execute( () -> replay( generation, handlers) );
+	}
+
+	/** Sends the market data type and the journaled requests of the given handlers again, paced to
+	 *  maxRequestsPerSecond; stops if the connection drops meanwhile. Runs on the supervisor's thread. */
+	private void replay(int generation, List<Object> handlers) {
+		Runnable mktDataType;
+		double rate;
+		synchronized( this) {
+			if (generation != m_generation) {
+				return;
+			}
+			m_replayed = 0;
+			mktDataType = m_mktDataType;
+			rate = m_maxRequestsPerSecond;
+		}
+		if (mktDataType != null) {
+			request( mktDataType);
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < handlers.size(); i++) {
+			long due = start + (long)( (i + 1) * 1e9 / rate);
+			for (long wait; (wait = due - System.nanoTime() ) > 0; ) {
+				LockSupport.parkNanos( wait);
+			}
+
+			synchronized( m_requestLock) {
+				Runnable request;
+				synchronized( this) {
+					if (generation != m_generation) {
+						return;
+					}
+					Object handler = handlers.get( i);
+					request = m_journal.get( handler);	// null if cancelled since the reconnect
+					if (request == null) {
+						continue;
+					}
+					if (m_snapshots.remove( handler) ) {
+						m_journal.remove( handler);
+					}
+					m_replayed++;
+				}
+				request.run();
+			}
+		}
+		if (!handlers.isEmpty() ) {
+			m_handler.show( "resubscribed " + replayed() + " requests");
+		}
+	}
+
+	private void disconnected() {
+		synchronized( this) {
+			if (!m_connected) {
+				return;
+			}
+			m_connected = false;
+			m_generation++;
+		}
+		m_handler.disconnected();
+		retry();
+	}
+
+	/** Receives the connection events of the controller. */
+	private class ConnectionHandler implements IConnectionHandler {
+		@Override public void connected() {
+			ConnectionSupervisor.this.connected();
+		}
+
+		@Override public void disconnected() {
+			ConnectionSupervisor.this.disconnected();
+		}
+
+		@Override public void accountList(List<String> list) {
+			m_handler.accountList( list);
+		}
+
+		@Override public void error(Exception e) {
+			m_handler.error( e);
+		}
+
+		@Override public void message(int id, int errorCode, String errorMsg, String advancedOrderRejectJson) {
+			m_handler.message( id, errorCode, errorMsg, advancedOrderRejectJson);
+		}
+
+		@Override public void show(String string) {
+			m_handler.show( string);
+		}
+	}
+}
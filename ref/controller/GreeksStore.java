@@ -0,0 +1,391 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ib.client.Contract;
+import com.ib.client.PreTradeCheck.PositionSource;
+import com.ib.client.TickType;
+import com.ib.client.Types.Right;
+import com.ib.client.Util;
+import com.ib.controller.ApiController.IOptHandler;
+import com.ib.controller.ApiController.TopMktDataAdapter;
+
+/** Latest greeks of many options in flat primitive arrays, one entry per option, grouped by underlying and expiration.
+ *  Feed it with the handlers of optionHandler() for reqOptionMktData, or with update(); by default only model
+ *  computations (MODEL_OPTION and DELAYED_MODEL_OPTION) are kept. Set quantities with position() or positions().
+ *  Exposures are sums of quantity * multiplier * greek in one pass over the arrays: delta in units of the underlying,
+ *  gamma per point of the underlying, vega per volatility point and theta per day, the latter two in currency.
+ *  Values TWS did not send are NaN and left out of the sums. */
+public class GreeksStore {
+	public enum Greek { IMPLIED_VOL, DELTA, GAMMA, VEGA, THETA, OPTION_PRICE, UNDERLYING_PRICE }
+
+	private static final int INITIAL_SIZE = 64;
+
+	/** Values of one greek of one underlying by expiration and strike, copied out of the store. */
+	public static class Surface {
+		private final String m_underlying;
+		private final Greek m_greek;
+		private final String[] m_expirations;
+		private final double[][] m_strikes;
+		private final double[][] m_calls;
+		private final double[][] m_puts;
+
+		Surface(String underlying, Greek greek, String[] expirations, double[][] strikes, double[][] calls, double[][] puts) {
+			m_underlying = underlying;
+			m_greek = greek;
+			m_expirations = expirations;
+			m_strikes = strikes;
+			m_calls = calls;
+			m_puts = puts;
+		}
+
+		public String underlying()				{ return m_underlying; }
+		public Greek greek()					{ return m_greek; }
+		public int expirations()				{ return m_expirations.length; }
+		public String expiration(int expiry)	{ return m_expirations[expiry]; }
+
+		/** Sorted strikes of an expiration. */
+		public double[] strikes(int expiry)		{ return m_strikes[expiry]; }
+
+		/** Values of the calls of an expiration, aligned with strikes(); NaN where unknown. */
+		public double[] calls(int expiry)		{ return m_calls[expiry]; }
+		public double[] puts(int expiry)		{ return m_puts[expiry]; }
+	}
+
+	private final IntIntMap m_index = new IntIntMap();				// conid to option
+	private final Map<String,Integer> m_underlyings = new HashMap<>();
+	private final List<String> m_underlyingNames = new ArrayList<>();
+	private final Map<String,Integer> m_buckets = new HashMap<>();		// underlying, '\0', expiration
+	private boolean m_modelOnly = true;
+
+	// one entry per option
+	private int m_size;
+	private int[] m_conid = new int[INITIAL_SIZE];
+	private int[] m_underlying = new int[INITIAL_SIZE];
+	private int[] m_bucket = new int[INITIAL_SIZE];
+	private double[] m_strike = new double[INITIAL_SIZE];
+	private boolean[] m_call = new boolean[INITIAL_SIZE];
+	private double[] m_multiplier = new double[INITIAL_SIZE];
+	private double[] m_quantity = new double[INITIAL_SIZE];
+	private final double[][] m_greeks = new double[Greek.values().length][INITIAL_SIZE];	// by Greek ordinal
+
+	// one entry per underlying and expiration
+	private int m_bucketCount;
+	private int[] m_bucketUnderlying = new int[INITIAL_SIZE];
+	private String[] m_bucketExpiration = new String[INITIAL_SIZE];
+	private int[][] m_bucketOptions = new int[INITIAL_SIZE][];		// options of each bucket, sorted by strike
+	private int[] m_bucketSize = new int[INITIAL_SIZE];
+
+	// ---------------------------------------- Queries ----------------------------------------
+
+	public synchronized int size()	{ return m_size; }
+
+	/** Returns the greek of an option, NaN if unknown or not in the store. */
+	public synchronized double greek(int conid, Greek greek) {
+		int option = m_index.get( conid);
+		return option >= 0 ? m_greeks[greek.ordinal()][option] : Double.NaN;
+	}
+
+	public synchronized double quantity(int conid) {
+		int option = m_index.get( conid);
+		return option >= 0 ? m_quantity[option] : 0;
+	}
+
+	public synchronized List<String> underlyings() {
+		return new ArrayList<>( m_underlyingNames);
+	}
+
+	/** Sorted expirations of an underlying. */
+	public synchronized String[] expirations(String underlying) {
+		int[] buckets = buckets( underlying);
+		String[] expirations = new String[buckets.length];
+		for (int i = 0; i < buckets.length; i++) {
+			expirations[i] = m_bucketExpiration[buckets[i]];
+		}
+		return expirations;
+	}
+
+	/** Sum of quantity * multiplier * greek over the options of an underlying. */
+	public synchronized double exposure(String underlying, Greek greek) {
+		Integer u = m_underlyings.get( underlying);
+		if (u == null) {
+			return 0;
+		}
+		double[] values = m_greeks[greek.ordinal()];
+		double sum = 0;
+		for (int i = 0; i < m_size; i++) {
+			double value = m_quantity[i] * m_multiplier[i] * values[i];
+			if (m_underlying[i] == u && value == value) {	// not NaN
+				sum += value;
+			}
+		}
+		return sum;
+	}
+
+	/** Like exposure(), per expiration, aligned with expirations(underlying). */
+	public synchronized double[] exposureByExpiry(String underlying, Greek greek) {
+		int[] buckets = buckets( underlying);
+		double[] byBucket = new double[m_bucketCount];
+		double[] values = m_greeks[greek.ordinal()];
+		for (int i = 0; i < m_size; i++) {
+			double value = m_quantity[i] * m_multiplier[i] * values[i];
+			if (value == value) {
+				byBucket[m_bucket[i]] += value;
+			}
+		}
+		double[] exposures = new double[buckets.length];
+		for (int i = 0; i < buckets.length; i++) {
+			exposures[i] = byBucket[buckets[i]];
+		}
+		return exposures;
+	}
+
+	/** Sum of quantity * multiplier * greek over all options, e.g. total vega. */
+	public synchronized double exposure(Greek greek) {
+		double[] values = m_greeks[greek.ordinal()];
+		double sum = 0;
+		for (int i = 0; i < m_size; i++) {
+			double value = m_quantity[i] * m_multiplier[i] * values[i];
+			if (value == value) {
+				sum += value;
+			}
+		}
+		return sum;
+	}
+
+	/** Copies one greek of all options of an underlying, e.g. IMPLIED_VOL for the volatility surface. */
+	public synchronized Surface surface(String underlying, Greek greek) {
+		int[] buckets = buckets( underlying);
+		double[] values = m_greeks[greek.ordinal()];
+		String[] expirations = new String[buckets.length];
+		double[][] strikes = new double[buckets.length][];
+		double[][] calls = new double[buckets.length][];
+		double[][] puts = new double[buckets.length][];
+
+		for (int e = 0; e < buckets.length; e++) {
+			int bucket = buckets[e];
+			int[] options = m_bucketOptions[bucket];
+			int n = m_bucketSize[bucket];
+			expirations[e] = m_bucketExpiration[bucket];
+			strikes[e] = new double[n];
+			calls[e] = new double[n];
+			puts[e] = new double[n];
+			Arrays.fill( calls[e], Double.NaN);
+			Arrays.fill( puts[e], Double.NaN);
+
+			// options are sorted by strike; a call and a put of the same strike share one entry
+			int s = -1;
+			for (int i = 0; i < n; i++) {
+				int option = options[i];
+				if (s < 0 || strikes[e][s] != m_strike[option]) {
+					strikes[e][++s] = m_strike[option];
+				}
+				(m_call[option] ? calls[e] : puts[e])[s] = values[option];
+			}
+			strikes[e] = Arrays.copyOf( strikes[e], s + 1);
+			calls[e] = Arrays.copyOf( calls[e], s + 1);
+			puts[e] = Arrays.copyOf( puts[e], s + 1);
+		}
+		return new Surface( underlying, greek, expirations, strikes, calls, puts);
+	}
+
+	// ---------------------------------------- Updates ----------------------------------------
+
+	/** With false also keeps bid, ask and last computations; the latest of any kind wins. */
+	public synchronized void modelOnly(boolean modelOnly) {
+		m_modelOnly = modelOnly;
+	}
+
+	/** Adds an option, which needs conid, symbol, expiration, strike and right; the symbol names the underlying.
+	 *  Adding it again has no effect. */
+	public synchronized void add(Contract option) {
+		if (m_index.get( option.conid() ) < 0) {
+			addOption( option);
+		}
+	}
+
+	/** Handler for reqOptionMktData of an option, adding it to the store. */
+	public IOptHandler optionHandler(Contract option) {
+		add( option);
+		return new OptionHandler( option.conid() );
+	}
+
+	/** Applies one tickOptionComputation of an option added before. */
+	public synchronized void update(int conid, TickType tickType, double impliedVol, double delta, double optPrice,
+			double gamma, double vega, double theta, double undPrice) {
+		int option = m_index.get( conid);
+		if (option < 0 || !keep( tickType) ) {
+			return;
+		}
+		set( Greek.IMPLIED_VOL, option, impliedVol);
+		set( Greek.DELTA, option, delta);
+		set( Greek.GAMMA, option, gamma);
+		set( Greek.VEGA, option, vega);
+		set( Greek.THETA, option, theta);
+		set( Greek.OPTION_PRICE, option, optPrice);
+		set( Greek.UNDERLYING_PRICE, option, undPrice);
+	}
+
+	/** Sets the quantity held of an option, negative if short. */
+	public synchronized void position(int conid, double quantity) {
+		int option = m_index.get( conid);
+		if (option >= 0) {
+			m_quantity[option] = quantity;
+		}
+	}
+
+	/** Sets the quantities of all options from the positions of an account, e.g. in a PositionBook. */
+	public synchronized void positions(PositionSource source, String account) {
+		for (int i = 0; i < m_size; i++) {
+			m_quantity[i] = source.position( account, m_conid[i]);
+		}
+	}
+
+	public synchronized void clear() {
+		m_index.clear();
+		m_underlyings.clear();
+		m_underlyingNames.clear();
+		m_buckets.clear();
+		m_size = 0;
+		m_bucketCount = 0;
+	}
+
+	// ---------------------------------------- Internals ----------------------------------------
+
+	private class OptionHandler extends TopMktDataAdapter implements IOptHandler {
+		private final int m_conid;
+
+		OptionHandler(int conid) {
+			m_conid = conid;
+		}
+
+		@Override public void tickOptionComputation(TickType tickType, int tickAttrib, double impliedVol, double delta, double optPrice,
+				double pvDividend, double gamma, double vega, double theta, double undPrice) {
+			update( m_conid, tickType, impliedVol, delta, optPrice, gamma, vega, theta, undPrice);
+		}
+	}
+
+	private boolean keep(TickType tickType) {
+		return !m_modelOnly || tickType == TickType.MODEL_OPTION || tickType == TickType.DELAYED_MODEL_OPTION;
+	}
+
+	/** Stores a value, NaN for the Double.MAX_VALUE which EDecoder passes for values TWS did not send. */
+	private void set(Greek greek, int option, double value) {
+		m_greeks[greek.ordinal()][option] = value == Double.MAX_VALUE ? Double.NaN : value;
+	}
+
+	/** Returns the buckets of an underlying sorted by expiration. */
+	private int[] buckets(String underlying) {
+		Integer u = m_underlyings.get( underlying);
+		if (u == null) {
+			return new int[0];
+		}
+		int[] buckets = new int[m_bucketCount];
+		int n = 0;
+		for (int b = 0; b < m_bucketCount; b++) {
+			if (m_bucketUnderlying[b] == u) {
+				int i = n++;
+				// insertion sort; an underlying has few expirations
+				for (; i > 0 && m_bucketExpiration[buckets[i - 1]].compareTo( m_bucketExpiration[b]) > 0; i--) {
+					buckets[i] = buckets[i - 1];
+				}
+				buckets[i] = b;
+			}
+		}
+		return Arrays.copyOf( buckets, n);
+	}
+
+	private void addOption(Contract option) {
+		if (m_size == m_conid.length) {
+			int capacity = m_size * 2;
+			m_conid = Arrays.copyOf( m_conid, capacity);
+			m_underlying = Arrays.copyOf( m_underlying, capacity);
+			m_bucket = Arrays.copyOf( m_bucket, capacity);
+			m_strike = Arrays.copyOf( m_strike, capacity);
+			m_call = Arrays.copyOf( m_call, capacity);
+			m_multiplier = Arrays.copyOf( m_multiplier, capacity);
+			m_quantity = Arrays.copyOf( m_quantity, capacity);
+			for (int g = 0; g < m_greeks.length; g++) {
+				m_greeks[g] = Arrays.copyOf( m_greeks[g], capacity);
+			}
+		}
+
+		String underlying = option.symbol() != null ? option.symbol() : "";
+		Integer u = m_underlyings.get( underlying);
+		if (u == null) {
+			u = m_underlyingNames.size();
+			m_underlyings.put( underlying, u);
+			m_underlyingNames.add( underlying);
+		}
+
+		int newOption = m_size++;
+		int bucket = bucket( u, underlying, option.lastTradeDateOrContractMonth() );
+		m_conid[newOption] = option.conid();
+		m_underlying[newOption] = u;
+		m_bucket[newOption] = bucket;
+		m_strike[newOption] = option.strike();
+		m_call[newOption] = option.right() == Right.Call;
+		m_multiplier[newOption] = multiplier( option.multiplier() );
+		m_quantity[newOption] = 0;
+		for (double[] values : m_greeks) {
+			values[newOption] = Double.NaN;
+		}
+		m_index.put( option.conid(), newOption);
+
+		// insert into the bucket, keeping it sorted by strike
+		int[] options = m_bucketOptions[bucket];
+		int n = m_bucketSize[bucket];
+		if (n == options.length) {
+			options = m_bucketOptions[bucket] = Arrays.copyOf( options, n * 2);
+		}
+		int i = n;
+		for (; i > 0 && m_strike[options[i - 1]] > m_strike[newOption]; i--) {
+			options[i] = options[i - 1];
+		}
+		options[i] = newOption;
+		m_bucketSize[bucket] = n + 1;
+	}
+
+	private int bucket(int underlying, String underlyingName, String expiration) {
+		String key = underlyingName + '\0' + expiration;
+		Integer bucket = m_buckets.get( key);
+		if (bucket != null) {
+			return bucket;
+		}
+
+		if (m_bucketCount == m_bucketUnderlying.length) {
+			int capacity = m_bucketCount * 2;
+			m_bucketUnderlying = Arrays.copyOf( m_bucketUnderlying, capacity);
+			m_bucketExpiration = Arrays.copyOf( m_bucketExpiration, capacity);
+			m_bucketOptions = Arrays.copyOf( m_bucketOptions, capacity);
+			m_bucketSize = Arrays.copyOf( m_bucketSize, capacity);
+		}
+		int newBucket = m_bucketCount++;
+		m_bucketUnderlying[newBucket] = underlying;
+		m_bucketExpiration[newBucket] = expiration != null ? expiration : "";
+		m_bucketOptions[newBucket] = new int[16];
+		m_bucketSize[newBucket] = 0;
+		m_buckets.put( key, newBucket);
+		return newBucket;
+	}
+
+	private static double multiplier(String multiplier) {
+		if (Util.StringIsEmpty( multiplier) ) {
+			return 1;
+		}
+		try {
+			double value = Double.parseDouble( multiplier);
+			return value > 0 ? value : 1;
+		}
+		catch (NumberFormatException e) {
+			return 1;
+		}
+	}
+}
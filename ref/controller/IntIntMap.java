@@ -0,0 +1,88 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import java.util.Arrays;
+
+/** Open-addressing map from int to int, e.g. conid to slot, for lookups on hot paths without boxing.
+ *  Values must not be negative; get() returns -1 for missing keys. Not thread safe. */
+class IntIntMap {
+	private static final int NO_VALUE = -1;
+
+	private int[] m_keys;
+	private int[] m_values;
+	private int m_size;
+	private int m_mask;
+
+	IntIntMap() {
+		this( 64);
+	}
+
+	IntIntMap(int capacity) {
+		int size = Integer.highestOneBit( Math.max( 4, capacity) * 2 - 1);
+		m_keys = new int[size];
+		m_values = new int[size];
+		m_mask = size - 1;
+		Arrays.fill( m_values, NO_VALUE);
+	}
+
+	int size()	{ return m_size; }
+
+	int get(int key) {
+		for (int i = hash( key) & m_mask; ; i = (i + 1) & m_mask) {
+			if (m_values[i] == NO_VALUE) {
+				return NO_VALUE;
+			}
+			if (m_keys[i] == key) {
+				return m_values[i];
+			}
+		}
+	}
+
+	void put(int key, int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException( "negative value " + value);
+		}
+		if ((m_size + 1) * 2 > m_keys.length) {
+			rehash( m_keys.length * 2);
+		}
+		for (int i = hash( key) & m_mask; ; i = (i + 1) & m_mask) {
+			if (m_values[i] == NO_VALUE) {
+				m_keys[i] = key;
+				m_values[i] = value;
+				m_size++;
+				return;
+			}
+			if (m_keys[i] == key) {
+				m_values[i] = value;
+				return;
+			}
+		}
+	}
+
+	void clear() {
+		Arrays.fill( m_values, NO_VALUE);
+		m_size = 0;
+	}
+
+	private void rehash(int capacity) {
+		int[] keys = m_keys;
+		int[] values = m_values;
+		m_keys = new int[capacity];
+		m_values = new int[capacity];
+		m_mask = capacity - 1;
+		m_size = 0;
+		Arrays.fill( m_values, NO_VALUE);
+		for (int i = 0; i < keys.length; i++) {
+			if (values[i] != NO_VALUE) {
+				put( keys[i], values[i]);
+			}
+		}
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,257 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.ib.client.EDecoderMetrics;
+import com.ib.client.Histogram;
+import com.ib.controller.ApiController.ITimeHandler;
+
+/** Watches the liveness of a connection. A reqCurrentTime probe is sent every probe interval and its round trip time
+ *  recorded into rttNanos(); a probe without answer within the probe timeout means the connection is stalled, e.g.
+ *  half-open, and is reported to the stall handler. If the monitor was created for a ConnectionSupervisor, it then
+ *  also drops the connection so the supervisor reconnects.
+ *  Inbound silence can also be watched per stream, e.g. market data, with its own deadline. Streams are recognized
+ *  by message id and counted by the EDecoderMetrics of the client, which must be installed before connecting.
+ *  The round trip includes the time the answer waits in the reader queue, so a growing RTT with a short queue points
+ *  at the Gateway or the network, and with a long queue at the application.
+ *  The probes use ApiController.reqCurrentTime(); do not use it for anything else while monitoring. */
+public class LivenessMonitor implements ITimeHandler {
+	/** Groups of inbound messages which can be watched for silence. */
+	public enum Stream {
+		MARKET_DATA( "TICK_PRICE", "TICK_SIZE", "TICK_GENERIC", "TICK_STRING", "TICK_EFP", "TICK_OPTION_COMPUTATION"),
+		MARKET_DEPTH( "MARKET_DEPTH", "MARKET_DEPTH_L2"),
+		TICK_BY_TICK( "TICK_BY_TICK"),
+		REAL_TIME_BARS( "REAL_TIME_BARS"),
+		HISTORICAL_UPDATES( "HISTORICAL_DATA_UPDATE"),
+		ACCOUNT( "ACCT_VALUE", "PORTFOLIO_VALUE", "ACCT_UPDATE_TIME", "ACCOUNT_UPDATE_MULTI"),
+		PNL( "PNL", "PNL_SINGLE"),
+		ORDERS( "ORDER_STATUS", "OPEN_ORDER", "EXECUTION_DATA", "COMMISSION_REPORT");
+
+		private final String[] m_msgNames;
+
+		Stream(String... msgNames) {
+			m_msgNames = msgNames;
+		}
+
+		/** Returns the message ids of this stream. */
+		int[] msgIds() {
+			int[] ids = new int[m_msgNames.length];
+			int n = 0;
+			for (int id = 0; id <= 255; id++) {
+				for (String name : m_msgNames) {
+					if (name.equals( EDecoderMetrics.msgName( id) ) ) {
+						ids[n++] = id;
+					}
+				}
+			}
+			return Arrays.copyOf( ids, n);
+		}
+	}
+
+	public interface IStallHandler {
+		/** The connection did not answer a probe within the probe timeout. */
+		void connectionStalled(long silentMillis);
+
+		/** Nothing was received on a watched stream for longer than its deadline. */
+		void streamStalled(Stream stream, long silentMillis);
+
+		/** A stalled stream received data again. */
+		void streamRecovered(Stream stream);
+	}
+
+	private static class Watch {
+		final int[] m_msgIds;
+		final long m_deadlineMillis;
+		final boolean m_reconnect;
+		long m_count = -1;
+		long m_lastActivity;
+		boolean m_stalled;
+
+		Watch(Stream stream, long deadlineMillis, boolean reconnect) {
+			m_msgIds = stream.msgIds();
+			m_deadlineMillis = deadlineMillis;
+			m_reconnect = reconnect;
+		}
+	}
+
+	private final ApiController m_controller;
+	private final ConnectionSupervisor m_supervisor;
+	private final IStallHandler m_handler;
+	private final Histogram m_rttNanos = new Histogram();
+	private final ScheduledExecutorService m_scheduler = Executors.newSingleThreadScheduledExecutor( r -> {
+		Thread thread = new Thread( r, "LivenessMonitor");
+		thread.setDaemon( true);
+		return thread;
+	});
+
+	// accessed on the monitor's thread only
+	private final Map<Stream,Watch> m_watches = new EnumMap<>( Stream.class);
+	private ScheduledFuture<?> m_task;
+	private long m_lastProbe;
+	private boolean m_stalled;
+
+	private volatile long m_probeSent;		// nanoTime of the outstanding probe, 0 if none
+	private volatile long m_lastRttNanos;
+	private volatile long m_missedProbes;
+	private volatile long m_probeIntervalMillis = 2000;
+	private volatile long m_probeTimeoutMillis = 5000;
+	private volatile long m_checkMillis = 250;
+
+	/** Monitors a controller; stalls are only reported. */
+	public LivenessMonitor(ApiController controller, IStallHandler handler) {
+		this( controller, null, handler);
+	}
+
+	/** Monitors the controller of a supervisor; a stalled connection is also dropped and reconnected. */
+	public LivenessMonitor(ConnectionSupervisor supervisor, IStallHandler handler) {
+		this( supervisor.controller(), supervisor, handler);
+	}
+
+	private LivenessMonitor(ApiController controller, ConnectionSupervisor supervisor, IStallHandler handler) {
+		m_controller = controller;
+		m_supervisor = supervisor;
+		m_handler = handler;
+	}
+
+	/** Round trip times of the answered probes, in nanoseconds. */
+	public Histogram rttNanos()			{ return m_rttNanos; }
+	public long lastRttNanos()			{ return m_lastRttNanos; }
+
+	/** Number of probes not answered within the probe timeout. */
+	public long missedProbes()			{ return m_missedProbes; }
+
+	public void probeInterval(long millis)	{ m_probeIntervalMillis = millis; }
+	public void probeTimeout(long millis)	{ m_probeTimeoutMillis = millis; }
+
+	/** How often probes and streams are checked; deadlines are met within this granularity. Takes effect on start(). */
+	public void checkInterval(long millis)	{ m_checkMillis = millis; }
+
+	/** Reports the stream as stalled when nothing of it was received for deadlineMillis while connected; with
+	 *  reconnect also drops the connection of the supervisor. Replaces an earlier watch of the stream. */
+	public void watch(Stream stream, long deadlineMillis, boolean reconnect) {
+		if (m_controller.client().decoderMetrics() == null) {
+			throw new IllegalStateException( "watching streams requires EClientSocket.decoderMetrics()");
+		}
+		Watch watch = new Watch( stream, deadlineMillis, reconnect);
+		m_scheduler.execute( () -> m_watches.put( stream, watch) );
+	}
+
+	public void unwatch(Stream stream) {
+		m_scheduler.execute( () -> m_watches.remove( stream) );
+	}
+
+	public synchronized void start() {
+		if (m_task == null) {
+			m_task = m_scheduler.scheduleWithFixedDelay( this::check, 0, m_checkMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	public synchronized void stop() {
+		if (m_task != null) {
+			m_task.cancel( false);
+			m_task = null;
+		}
+	}
+
+	/** Stops monitoring and releases the monitor's thread. */
+	public void close() {
+		stop();
+		m_scheduler.shutdownNow();
+	}
+
+	/** Answer of a probe, on the processing thread. */
+	@Override public void currentTime(long time) {
+		long sent = m_probeSent;
+		if (sent != 0) {
+			long rtt = System.nanoTime() - sent;
+			m_probeSent = 0;
+			m_lastRttNanos = rtt;
+			m_rttNanos.record( rtt);
+		}
+	}
+
+	private void check() {
+		long now = System.currentTimeMillis();
+		if (!m_controller.isConnected() ) {
+			// nothing is expected until connected again; restart the clocks then
+			m_probeSent = 0;
+			m_stalled = false;
+			for (Watch watch : m_watches.values() ) {
+				watch.m_count = -1;
+			}
+			return;
+		}
+
+		checkProbe( now);
+		EDecoderMetrics metrics = m_controller.client().decoderMetrics();
+		if (metrics != null) {
+			for (Map.Entry<Stream,Watch> entry : m_watches.entrySet() ) {
+				checkStream( entry.getKey(), entry.getValue(), metrics, now);
+			}
+		}
+	}
+
+	private void checkProbe(long now) {
+		long sent = m_probeSent;
+		if (sent != 0) {
+			long waited = (System.nanoTime() - sent) / 1000000;
+			if (waited > m_probeTimeoutMillis && !m_stalled) {
+				m_stalled = true;
+				m_missedProbes++;
+				m_handler.connectionStalled( waited);
+				reconnect();
+			}
+			return;
+		}
+		m_stalled = false;
+		if (now - m_lastProbe >= m_probeIntervalMillis) {
+			m_lastProbe = now;
+			m_probeSent = System.nanoTime();
+			m_controller.reqCurrentTime( this);
+		}
+	}
+
+	private void checkStream(Stream stream, Watch watch, EDecoderMetrics metrics, long now) {
+		long count = 0;
+		for (int msgId : watch.m_msgIds) {
+			EDecoderMetrics.MsgStats stats = metrics.stats( msgId);
+			if (stats != null) {
+				count += stats.count();
+			}
+		}
+		if (count != watch.m_count) {
+			watch.m_count = count;
+			watch.m_lastActivity = now;
+			if (watch.m_stalled) {
+				watch.m_stalled = false;
+				m_handler.streamRecovered( stream);
+			}
+		}
+		else if (!watch.m_stalled && now - watch.m_lastActivity > watch.m_deadlineMillis) {
+			watch.m_stalled = true;
+			m_handler.streamStalled( stream, now - watch.m_lastActivity);
+			if (watch.m_reconnect) {
+				reconnect();
+			}
+		}
+	}
+
+	private void reconnect() {
+		if (m_supervisor != null) {
+			m_supervisor.reconnect();
+		}
+	}
+
+	@Override public String toString() {
+		return "rtt[" + m_rttNanos + "] missedProbes=" + m_missedProbes;
+	}
+}
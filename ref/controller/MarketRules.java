@@ -0,0 +1,281 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.ib.client.ContractDetails;
+import com.ib.client.PriceIncrement;
+import com.ib.client.Util;
+import com.ib.controller.ApiController.IMarketRuleHandler;
+
+/** Market rules, i.e. the price increments of a contract on an exchange, requested once per rule id and kept for
+ *  tick rounding. Each rule is stored as sorted primitive arrays of band edges and increments, scaled to integers
+ *  so that results are the doubles closest to the decimal prices, e.g. 0.3 and not 0.30000000000000004.
+ *  roundToTick(), increment(), addTicks() and ticksBetween() do not allocate or lock and may be called from any
+ *  thread; they throw IllegalArgumentException for a rule which has not arrived yet, see isKnown().
+ *  Negative prices, e.g. of combos, are rounded like their absolute values.
+ *  TWS does not tie errors to market rule requests, so a request which is not answered within requestTimeout() is
+ *  sent again by the next request() of its rule; clearRequests() forgets all outstanding requests, e.g. after a
+ *  reconnect. */
+public class MarketRules implements IMarketRuleHandler {
+	public enum Direction { DOWN, UP, NEAREST }
+
+	/** One rule; immutable. Band i covers prices from m_edges[i] up to m_edges[i + 1] with increment m_ticks[i]. */
+	private static class Rule {
+		final double m_scale;
+		final double[] m_edges;		// scaled, ascending
+		final double[] m_ticks;		// scaled
+		final double[] m_perTick;	// 1 / m_ticks, to multiply instead of divide
+
+		Rule(PriceIncrement[] increments) {
+			PriceIncrement[] sorted = increments.clone();
+			Arrays.sort( sorted, (a, b) -> Double.compare( a.lowEdge(), b.lowEdge() ) );
+			int decimals = 0;
+			for (PriceIncrement increment : sorted) {
+				decimals = Math.max( decimals, Math.max( decimals( increment.lowEdge() ), decimals( increment.increment() ) ) );
+			}
+			m_scale = Math.pow( 10, decimals);
+			m_edges = new double[sorted.length];
+			m_ticks = new double[sorted.length];
+			m_perTick = new double[sorted.length];
+			for (int i = 0; i < sorted.length; i++) {
+				m_edges[i] = Math.rint( sorted[i].lowEdge() * m_scale);
+				m_ticks[i] = Math.rint( sorted[i].increment() * m_scale);
+				m_perTick[i] = 1 / m_ticks[i];
+			}
+		}
+
+		/** Band of a scaled price for rounding and steps up: the last band whose edge is at or below it. */
+		int band(double scaled) {
+			int i = m_edges.length - 1;
+			while (i > 0 && m_edges[i] > scaled) {
+				i--;
+			}
+			return i;
+		}
+
+		/** Band for steps down: the last band whose edge is below the price. */
+		int bandBelow(double scaled) {
+			int i = m_edges.length - 1;
+			while (i > 0 && m_edges[i] >= scaled) {
+				i--;
+			}
+			return i;
+		}
+
+		double edge(int band) {
+			return band < m_edges.length ? m_edges[band] : Double.POSITIVE_INFINITY;
+		}
+	}
+
+	private static final double EPSILON = 1e-6;	// of a tick, absorbs binary representation errors
+
+	private final ApiController m_controller;
+	private final Map<Integer,Long> m_requested = new HashMap<>();	// rule id to System.nanoTime() of the request
+	private volatile long m_requestTimeout = TimeUnit.SECONDS.toNanos( 10);
+	private volatile Rule[] m_rules = new Rule[0];	// by rule id, copy on write
+
+	/** Creates a registry filled from reqMarketRule on the given controller; null for rules added with add() only. */
+	public MarketRules(ApiController controller) {
+		m_controller = controller;
+	}
+
+	/** Time after which an unanswered request may be sent again. */
+	public long requestTimeout()		{ return TimeUnit.NANOSECONDS.toMillis( m_requestTimeout); }
+	public void requestTimeout(long millis)	{ m_requestTimeout = TimeUnit.MILLISECONDS.toNanos( millis); }
+
+	/** Forgets all outstanding requests, so the next request() of each rule is sent again. */
+	public synchronized void clearRequests() {
+		m_requested.clear();
+	}
+
+	public boolean isKnown(int ruleId) {
+		Rule[] rules = m_rules;
+		return ruleId >= 0 && ruleId < rules.length && rules[ruleId] != null;
+	}
+
+	/** Requests a rule unless it is known or a request for it is outstanding; does nothing without a controller. */
+	public void request(int ruleId) {
+		if (m_controller == null) {
+			return;
+		}
+		long now = System.nanoTime();
+		synchronized( this) {
+			Long requested = m_requested.get( ruleId);
+			if (isKnown( ruleId) || requested != null && now - requested < m_requestTimeout) {
+				return;
+			}
+			m_requested.put( ruleId, now);
+		}
+		m_controller.reqMarketRule( ruleId, this);
+	}
+
+	/** Requests the rules of all exchanges of a contract. */
+	public void request(ContractDetails details) {
+		for (String id : ruleIds( details) ) {
+			request( Integer.parseInt( id.trim() ) );
+		}
+	}
+
+	/** Returns the rule id of a contract on an exchange, or -1; the ids of ContractDetails.marketRuleIds() are aligned
+	 *  with its valid exchanges. */
+	public static int ruleId(ContractDetails details, String exchange) {
+		String[] exchanges = Util.StringIsEmpty( details.validExchanges() ) ? new String[0] : details.validExchanges().split( ",");
+		String[] ids = ruleIds( details);
+		for (int i = 0; i < exchanges.length && i < ids.length; i++) {
+			if (exchanges[i].trim().equals( exchange) ) {
+				return Integer.parseInt( ids[i].trim() );
+			}
+		}
+		return -1;
+	}
+
+	private static String[] ruleIds(ContractDetails details) {
+		return Util.StringIsEmpty( details.marketRuleIds() ) ? new String[0] : details.marketRuleIds().split( ",");
+	}
+
+	@Override public void marketRule(int marketRuleId, PriceIncrement[] priceIncrements) {
+		add( marketRuleId, priceIncrements);
+	}
+
+	/** Adds or replaces a rule. */
+	public synchronized void add(int ruleId, PriceIncrement[] increments) {
+		if (increments == null || increments.length == 0) {
+			return;
+		}
+		Rule[] rules = m_rules;
+		if (ruleId >= rules.length) {
+			rules = Arrays.copyOf( rules, Math.max( ruleId + 1, rules.length * 2) );
+		}
+		else {
+			rules = rules.clone();
+		}
+		rules[ruleId] = new Rule( increments);
+		m_rules = rules;
+		m_requested.remove( ruleId);
+	}
+
+	/** Returns the increments of a rule, or null if unknown. */
+	public PriceIncrement[] increments(int ruleId) {
+		if (!isKnown( ruleId) ) {
+			return null;
+		}
+		Rule rule = m_rules[ruleId];
+		PriceIncrement[] increments = new PriceIncrement[rule.m_edges.length];
+		for (int i = 0; i < increments.length; i++) {
+			increments[i] = new PriceIncrement( rule.m_edges[i] / rule.m_scale, rule.m_ticks[i] / rule.m_scale);
+		}
+		return increments;
+	}
+
+	/** Returns the increment at a price. */
+	public double increment(double price, int ruleId) {
+		Rule rule = rule( ruleId);
+		return rule.m_ticks[rule.band( Math.abs( price) * rule.m_scale)] / rule.m_scale;
+	}
+
+	/** Rounds a price to a valid price of the rule. */
+	public double roundToTick(double price, int ruleId, Direction direction) {
+		Rule rule = rule( ruleId);
+		if (price < 0) {
+			Direction opposite = direction == Direction.UP ? Direction.DOWN : direction == Direction.DOWN ? Direction.UP : direction;
+			return -round( rule, -price * rule.m_scale, opposite) / rule.m_scale;
+		}
+		return round( rule, price * rule.m_scale, direction) / rule.m_scale;
+	}
+
+	public boolean isValid(double price, int ruleId) {
+		return roundToTick( price, ruleId, Direction.NEAREST) == price;
+	}
+
+	/** Moves a valid price by a number of ticks, up if positive, using the increment of every band crossed;
+	 *  prices are not moved below zero. */
+	public double addTicks(double price, int ticks, int ruleId) {
+		Rule rule = rule( ruleId);
+		if (price < 0) {
+			return -addTicks( -price, -ticks, ruleId);
+		}
+		double scaled = round( rule, price * rule.m_scale, Direction.NEAREST);
+		while (ticks > 0) {
+			int band = rule.band( scaled);
+			double tick = rule.m_ticks[band];
+			double room = Math.floor( (rule.edge( band + 1) - scaled) / tick + EPSILON);
+			if (ticks <= room) {
+				scaled += ticks * tick;
+				break;
+			}
+			scaled = rule.edge( band + 1);
+			ticks -= room;
+		}
+		while (ticks < 0 && scaled > 0) {
+			int band = rule.bandBelow( scaled);
+			double tick = rule.m_ticks[band];
+			double room = Math.ceil( (scaled - rule.m_edges[band]) / tick - EPSILON);
+			if (-ticks <= room) {
+				scaled -= -ticks * tick;
+				break;
+			}
+			scaled = rule.m_edges[band];
+			ticks += room;
+		}
+		return Math.max( scaled, 0) / rule.m_scale;
+	}
+
+	/** Number of ticks from one valid price to another, negative if to is lower. */
+	public long ticksBetween(double from, double to, int ruleId) {
+		Rule rule = rule( ruleId);
+		if (to < from) {
+			return -ticksBetween( to, from, ruleId);
+		}
+		if (from < 0) {
+			return to <= 0 ? ticksBetween( -to, -from, ruleId) : ticksBetween( 0, -from, ruleId) + ticksBetween( 0, to, ruleId);
+		}
+		double lo = round( rule, from * rule.m_scale, Direction.NEAREST);
+		double hi = round( rule, to * rule.m_scale, Direction.NEAREST);
+		double ticks = 0;
+		for (int band = rule.band( lo); lo < hi; band++) {
+			double end = Math.min( hi, rule.edge( band + 1) );
+			ticks += (end - lo) / rule.m_ticks[band];
+			lo = end;
+		}
+		return Math.round( ticks);
+	}
+
+	private Rule rule(int ruleId) {
+		Rule[] rules = m_rules;
+		Rule rule = ruleId >= 0 && ruleId < rules.length ? rules[ruleId] : null;
+		if (rule == null) {
+			throw new IllegalArgumentException( "unknown market rule " + ruleId);
+		}
+		return rule;
+	}
+
+	/** Rounds a scaled non-negative price within its band, anchored at the band edge. */
+	private static double round(Rule rule, double scaled, Direction direction) {
+		int band = rule.band( scaled);
+		double edge = rule.m_edges[band];
+		double tick = rule.m_ticks[band];
+		double steps = (scaled - edge) * rule.m_perTick[band];
+		double down = Math.floor( steps + EPSILON);
+		switch (direction) {
+			case DOWN:
+				return edge + down * tick;
+			case UP:
+				return Math.min( edge + Math.ceil( steps - EPSILON) * tick, rule.edge( band + 1) );
+			default:
+				return Math.min( edge + (steps - down >= 0.5 ? down + 1 : down) * tick, rule.edge( band + 1) );
+		}
+	}
+
+	private static int decimals(double value) {
+		// at most 10 decimals; the increments TWS sends have far fewer
+		int decimals = new BigDecimal( Double.toString( value) ).stripTrailingZeros().scale();
+		return Math.min( Math.max( decimals, 0), 10);
+	}
+}
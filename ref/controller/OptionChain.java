@@ -0,0 +1,109 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import java.util.Arrays;
+
+import com.ib.client.ContractDetails;
+import com.ib.client.Types.Right;
+
+/** Resolved options of one underlying and trading class, indexed by expiration and strike. Expirations are sorted
+ *  ascending, and so are the strikes of each expiration; calls and puts are aligned with the strikes and null where
+ *  TWS has no such contract. Lookups are binary searches; built by OptionChainBuilder and immutable. */
+public class OptionChain {
+	private final int m_underlyingConId;
+	private final String m_exchange;
+	private final String m_tradingClass;
+	private final String m_multiplier;
+	private final String[] m_expirations;
+	private final double[][] m_strikes;
+	private final ContractDetails[][] m_calls;
+	private final ContractDetails[][] m_puts;
+
+	OptionChain(int underlyingConId, String exchange, String tradingClass, String multiplier, String[] expirations,
+			double[][] strikes, ContractDetails[][] calls, ContractDetails[][] puts) {
+		m_underlyingConId = underlyingConId;
+		m_exchange = exchange;
+		m_tradingClass = tradingClass;
+		m_multiplier = multiplier;
+		m_expirations = expirations;
+		m_strikes = strikes;
+		m_calls = calls;
+		m_puts = puts;
+	}
+
+	public int underlyingConId()	{ return m_underlyingConId; }
+	public String exchange()		{ return m_exchange; }
+	public String tradingClass()	{ return m_tradingClass; }
+	public String multiplier()		{ return m_multiplier; }
+
+	public int expirations()				{ return m_expirations.length; }
+	public String expiration(int expiry)	{ return m_expirations[expiry]; }
+	public int strikes(int expiry)			{ return m_strikes[expiry].length; }
+	public double strike(int expiry, int strike)	{ return m_strikes[expiry][strike]; }
+
+	public ContractDetails call(int expiry, int strike)	{ return m_calls[expiry][strike]; }
+	public ContractDetails put(int expiry, int strike)	{ return m_puts[expiry][strike]; }
+
+	public ContractDetails option(int expiry, int strike, Right right) {
+		return right == Right.Call ? call( expiry, strike) : right == Right.Put ? put( expiry, strike) : null;
+	}
+
+	/** Returns the index of an expiration (yyyyMMdd), or -1. */
+	public int expiryIndex(String expiration) {
+		int i = Arrays.binarySearch( m_expirations, expiration);
+		return i >= 0 ? i : -1;
+	}
+
+	/** Returns the index of the first expiration on or after a date (yyyyMMdd), or -1 if all are earlier. */
+	public int expiryOnOrAfter(String date) {
+		int i = Arrays.binarySearch( m_expirations, date);
+		if (i < 0) {
+			i = -i - 1;
+		}
+		return i < m_expirations.length ? i : -1;
+	}
+
+	/** Returns the index of a strike of an expiration, or -1. */
+	public int strikeIndex(int expiry, double strike) {
+		int i = Arrays.binarySearch( m_strikes[expiry], strike);
+		return i >= 0 ? i : -1;
+	}
+
+	/** Returns the index of the strike of an expiration closest to the price of the underlying, the lower one on a
+	 *  tie; -1 if the expiration has no strikes. */
+	public int atmIndex(int expiry, double underlyingPrice) {
+		double[] strikes = m_strikes[expiry];
+		if (strikes.length == 0) {
+			return -1;
+		}
+		int i = Arrays.binarySearch( strikes, underlyingPrice);
+		if (i >= 0) {
+			return i;
+		}
+		int above = -i - 1;
+		if (above == 0) {
+			return 0;
+		}
+		if (above == strikes.length) {
+			return strikes.length - 1;
+		}
+		return underlyingPrice - strikes[above - 1] <= strikes[above] - underlyingPrice ? above - 1 : above;
+	}
+
+	/** Returns the number of resolved calls and puts. */
+	public int size() {
+		int size = 0;
+		for (int e = 0; e < m_expirations.length; e++) {
+			for (int s = 0; s < m_strikes[e].length; s++) {
+				size += (m_calls[e][s] != null ? 1 : 0) + (m_puts[e][s] != null ? 1 : 0);
+			}
+		}
+		return size;
+	}
+
+	@Override public String toString() {
+		return m_tradingClass + " " + m_exchange + " expirations=" + m_expirations.length + " options=" + size();
+	}
+}
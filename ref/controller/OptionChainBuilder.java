@@ -0,0 +1,264 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ib.client.Contract;
+import com.ib.client.ContractDetails;
+import com.ib.client.Types.Right;
+import com.ib.client.Types.SecType;
+import com.ib.controller.ApiController.IContractDetailsHandler;
+import com.ib.controller.ApiController.ISecDefOptParamsReqHandler;
+
+/** Loads option chains. reqSecDefOptParams() gives the expirations and strikes of each trading class; their product
+ *  inside a strike and expiration window is resolved with one reqContractDetails() per call and put, with at most
+ *  maxInFlight() requests outstanding on the connection, and the result is returned as an OptionChain per trading
+ *  class. Resolved contracts, and combinations which turned out not to exist, are cached, so loading an overlapping
+ *  window again only requests what is new; clearCache() forgets them, e.g. after the daily contract roll.
+ *  A contract details request which fails for any reason counts as not existing. Requests still outstanding when the
+ *  connection drops are never answered, and the load does not complete. */
+public class OptionChainBuilder {
+	private static final ContractDetails MISSING = new ContractDetails();
+
+	public interface IChainHandler {
+		/** Called once per load, on the processing thread, with one chain per trading class. */
+		void chains(List<OptionChain> chains);
+	}
+
+	private final ApiController m_controller;
+	private final Map<String,ContractDetails> m_cache = new ConcurrentHashMap<>();
+	private volatile int m_maxInFlight = 40;
+	private volatile long m_requests;
+
+	// accessed on the processing thread only
+	private final ArrayDeque<Leg> m_pending = new ArrayDeque<>();
+	private int m_inFlight;
+
+	public OptionChainBuilder(ApiController controller) {
+		m_controller = controller;
+	}
+
+	/** Maximum number of contract details requests outstanding at a time, over all loads. */
+	public int maxInFlight()			{ return m_maxInFlight; }
+	public void maxInFlight(int v)		{ m_maxInFlight = Math.max( 1, v); }
+
+	/** Number of contract details requests sent so far. */
+	public long requests()				{ return m_requests; }
+	public int cacheSize()				{ return m_cache.size(); }
+	public void clearCache()			{ m_cache.clear(); }
+
+	/** Loads all expirations of an underlying with the strikes in [lowStrike, highStrike]. */
+	public void load(Contract underlying, String exchange, double lowStrike, double highStrike, IChainHandler handler) {
+		load( underlying, exchange, null, lowStrike, highStrike, null, null, handler);
+	}
+
+	/** Loads the chain of an underlying, which needs its conid, symbol and security type.
+	 *  @param exchange the exchange of the options, e.g. SMART
+	 *  @param tradingClass only this trading class, or null for all
+	 *  @param firstExpiry first expiration to load as yyyyMMdd, or null
+	 *  @param lastExpiry last expiration to load as yyyyMMdd, or null */
+	public void load(Contract underlying, String exchange, String tradingClass, double lowStrike, double highStrike,
+			String firstExpiry, String lastExpiry, IChainHandler handler) {
+		Load load = new Load( underlying, exchange, tradingClass, lowStrike, highStrike, firstExpiry, lastExpiry, handler);
+		// all exchanges; the one asked for is picked from the answers
+		m_controller.reqSecDefOptParams( underlying.symbol(), "", underlying.getSecType(), underlying.conid(), load);
+	}
+
+	/** Sends pending requests up to the limit. */
+	private void pump() {
+		while (m_inFlight < m_maxInFlight && !m_pending.isEmpty() ) {
+			Leg leg = m_pending.poll();
+			m_inFlight++;
+			m_requests++;
+			m_controller.reqContractDetails( leg.m_contract, leg);
+		}
+	}
+
+	private static String key(Contract option) {
+		return option.tradingClass() + ' ' + option.exchange() + ' ' + option.lastTradeDateOrContractMonth() + ' '
+				+ option.strike() + ' ' + option.getRight();
+	}
+
+	/** Expirations and strikes of one trading class on the requested exchange. */
+	private static class Params {
+		final String m_tradingClass;
+		final String m_multiplier;
+		final TreeSet<String> m_expirations = new TreeSet<>();
+		final TreeSet<Double> m_strikes = new TreeSet<>();
+
+		Params(String tradingClass, String multiplier) {
+			m_tradingClass = tradingClass;
+			m_multiplier = multiplier;
+		}
+	}
+
+	/** One chain load; lives on the processing thread once the parameters have arrived. */
+	private class Load implements ISecDefOptParamsReqHandler {
+		private final Contract m_underlying;
+		private final String m_exchange;
+		private final String m_tradingClass;
+		private final double m_lowStrike;
+		private final double m_highStrike;
+		private final String m_firstExpiry;
+		private final String m_lastExpiry;
+		private final IChainHandler m_handler;
+		private final Map<String,Params> m_params = new LinkedHashMap<>();
+		private int m_outstanding;
+		private boolean m_ended;
+
+		Load(Contract underlying, String exchange, String tradingClass, double lowStrike, double highStrike,
+				String firstExpiry, String lastExpiry, IChainHandler handler) {
+			m_underlying = underlying;
+			m_exchange = exchange;
+			m_tradingClass = tradingClass;
+			m_lowStrike = lowStrike;
+			m_highStrike = highStrike;
+			m_firstExpiry = firstExpiry;
+			m_lastExpiry = lastExpiry;
+			m_handler = handler;
+		}
+
+		@Override public void securityDefinitionOptionalParameter(String exchange, int underlyingConId, String tradingClass,
+				String multiplier, Set<String> expirations, Set<Double> strikes) {
+			if (!m_exchange.equals( exchange) || m_tradingClass != null && !m_tradingClass.equals( tradingClass) ) {
+				return;
+			}
+			Params params = m_params.computeIfAbsent( tradingClass, k -> new Params( tradingClass, multiplier) );
+			for (String expiry : expirations) {
+				if ( (m_firstExpiry == null || expiry.compareTo( m_firstExpiry) >= 0)
+						&& (m_lastExpiry == null || expiry.compareTo( m_lastExpiry) <= 0) ) {
+					params.m_expirations.add( expiry);
+				}
+			}
+			for (Double strike : strikes) {
+				if (strike >= m_lowStrike && strike <= m_highStrike) {
+					params.m_strikes.add( strike);
+				}
+			}
+		}
+
+		@Override public void securityDefinitionOptionalParameterEnd(int reqId) {
+			if (m_ended) {
+				return;
+			}
+			m_ended = true;
+			for (Params params : m_params.values() ) {
+				for (String expiry : params.m_expirations) {
+					for (Double strike : params.m_strikes) {
+						request( params, expiry, strike, Right.Call);
+						request( params, expiry, strike, Right.Put);
+					}
+				}
+			}
+			if (m_outstanding == 0) {
+				complete();
+			}
+			else {
+				pump();
+			}
+		}
+
+		private void request(Params params, String expiry, double strike, Right right) {
+			Contract option = new Contract();
+			option.symbol( m_underlying.symbol() );
+			option.secType( m_underlying.secType() == SecType.FUT ? SecType.FOP : SecType.OPT);
+			option.lastTradeDateOrContractMonth( expiry);
+			option.strike( strike);
+			option.right( right);
+			option.exchange( m_exchange);
+			option.currency( m_underlying.currency() );
+			option.tradingClass( params.m_tradingClass);
+			option.multiplier( params.m_multiplier);
+			if (!m_cache.containsKey( key( option) ) ) {
+				m_outstanding++;
+				m_pending.add( new Leg( this, option) );
+			}
+		}
+
+		void resolved() {
+			if (--m_outstanding == 0) {
+				complete();
+			}
+		}
+
+		/** Builds the chains from the cache; strikes with neither a call nor a put are left out. */
+		private void complete() {
+			List<OptionChain> chains = new ArrayList<>();
+			for (Params params : m_params.values() ) {
+				String[] expirations = params.m_expirations.toArray( new String[0]);
+				double[][] strikes = new double[expirations.length][];
+				ContractDetails[][] calls = new ContractDetails[expirations.length][];
+				ContractDetails[][] puts = new ContractDetails[expirations.length][];
+				Contract option = new Contract();
+				option.tradingClass( params.m_tradingClass);
+				option.exchange( m_exchange);
+
+				for (int e = 0; e < expirations.length; e++) {
+					int n = params.m_strikes.size();
+					strikes[e] = new double[n];
+					calls[e] = new ContractDetails[n];
+					puts[e] = new ContractDetails[n];
+					option.lastTradeDateOrContractMonth( expirations[e]);
+					int s = 0;
+					for (Double strike : params.m_strikes) {
+						option.strike( strike);
+						option.right( Right.Call);
+						ContractDetails call = cached( key( option) );
+						option.right( Right.Put);
+						ContractDetails put = cached( key( option) );
+						if (call != null || put != null) {
+							strikes[e][s] = strike;
+							calls[e][s] = call;
+							puts[e][s] = put;
+							s++;
+						}
+					}
+					strikes[e] = Arrays.copyOf( strikes[e], s);
+					calls[e] = Arrays.copyOf( calls[e], s);
+					puts[e] = Arrays.copyOf( puts[e], s);
+				}
+				chains.add( new OptionChain( m_underlying.conid(), m_exchange, params.m_tradingClass, params.m_multiplier,
+						expirations, strikes, calls, puts) );
+			}
+			m_handler.chains( chains);
+		}
+
+		private ContractDetails cached(String key) {
+			ContractDetails details = m_cache.get( key);
+			return details == MISSING ? null : details;
+		}
+	}
+
+	/** Contract details request of one call or put. */
+	private class Leg implements IContractDetailsHandler {
+		private final Load m_load;
+		private final Contract m_contract;
+		private boolean m_done;
+
+		Leg(Load load, Contract contract) {
+			m_load = load;
+			m_contract = contract;
+		}
+
+		@Override public void contractDetails(List<ContractDetails> list) {
+			if (m_done) {
+				return;
+			}
+			m_done = true;
+			m_cache.put( key( m_contract), list.isEmpty() ? MISSING : list.get( 0) );
+			m_inFlight--;
+			m_load.resolved();
+			pump();
+		}
+	}
+}
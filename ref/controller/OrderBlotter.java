@@ -0,0 +1,602 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ib.client.CommissionReport;
+import com.ib.client.Contract;
+import com.ib.client.Decimal;
+import com.ib.client.Execution;
+import com.ib.client.Order;
+import com.ib.client.OrderState;
+import com.ib.client.OrderStatus;
+
+/** Local state of all orders seen on a connection, built from placeOrder, openOrder, orderStatus, completedOrder,
+ *  execDetails and commissionReport. ApiController keeps one, see ApiController.orderBlotter(); it can also be fed
+ *  directly from an EWrapper.
+ *  Orders are found by orderId (per client id) and by permId. Status updates never move an order out of a final
+ *  state (Filled, Cancelled, ApiCancelled); corrected executions replace the original ones; commission reports
+ *  are attached to their execution by execId, also if they arrive first. The filled quantity and average price are
+ *  taken from orderStatus or from the executions, whichever is further along.
+ *  Every update publishes an immutable Entry, so queries never lock and never see a half-applied update;
+ *  updates lock only the order they apply to. */
+public class OrderBlotter {
+	private static final Fills NO_FILLS = new Fills( new Fill[0], new int[0], new int[0], 0, 0, 0);
+
+	/** Immutable snapshot of one order. Contract and Order are the objects last received and must not be modified. */
+	public static class Entry {
+		private final int m_orderId;
+		private final int m_clientId;
+		private final long m_permId;
+		private final int m_parentId;
+		private final Contract m_contract;
+		private final Order m_order;
+		private final OrderStatus m_status;
+		private final Decimal m_filled;
+		private final Decimal m_remaining;
+		private final double m_avgFillPrice;
+		private final double m_lastFillPrice;
+		private final String m_whyHeld;
+		private final Fills m_fills;
+		private final double m_commission;
+		private final double m_realizedPnl;
+
+		public int orderId()			{ return m_orderId; }
+		public int clientId()			{ return m_clientId; }
+		public long permId()			{ return m_permId; }
+		public int parentId()			{ return m_parentId; }
+		public Contract contract()		{ return m_contract; }
+		public Order order()			{ return m_order; }
+		public OrderStatus status()		{ return m_status; }
+		public Decimal filled()			{ return m_filled; }
+		public Decimal remaining()		{ return m_remaining; }
+		public double avgFillPrice()	{ return m_avgFillPrice; }
+		public double lastFillPrice()	{ return m_lastFillPrice; }
+		public String whyHeld()			{ return m_whyHeld; }
+		public List<Fill> fills()		{ return m_fills.list(); }
+		public double commission()		{ return m_commission; }
+		public double realizedPnl()		{ return m_realizedPnl; }
+		public int conid()				{ return m_contract != null ? m_contract.conid() : 0; }
+		public String account()			{ return m_order != null ? m_order.account() : null; }
+		public boolean isWorking()		{ return OrderBlotter.isWorking( m_status); }
+
+		Entry(int orderId, int clientId, long permId, int parentId, Contract contract, Order order, OrderStatus status, Decimal filled,
+				Decimal remaining, double avgFillPrice, double lastFillPrice, String whyHeld, Fills fills, double commission, double realizedPnl) {
+			m_orderId = orderId;
+			m_clientId = clientId;
+			m_permId = permId;
+			m_parentId = parentId;
+			m_contract = contract;
+			m_order = order;
+			m_status = status;
+			m_filled = filled;
+			m_remaining = remaining;
+			m_avgFillPrice = avgFillPrice;
+			m_lastFillPrice = lastFillPrice;
+			m_whyHeld = whyHeld;
+			m_fills = fills;
+			m_commission = commission;
+			m_realizedPnl = realizedPnl;
+		}
+
+		@Override public String toString() {
+			return "orderId=" + m_orderId + " clientId=" + m_clientId + " permId=" + m_permId + " " + m_status
+				+ " filled=" + m_filled + " remaining=" + m_remaining + " avgFillPrice=" + m_avgFillPrice + " fills=" + m_fills.m_count;
+		}
+	}
+
+	/** One execution, in its latest corrected version, with its commission report if received. */
+	public static class Fill {
+		private final Execution m_execution;
+		private final CommissionReport m_commissionReport;
+
+		public Execution execution()					{ return m_execution; }
+		public CommissionReport commissionReport()		{ return m_commissionReport; }
+
+		Fill(Execution execution, CommissionReport commissionReport) {
+			m_execution = execution;
+			m_commissionReport = commissionReport;
+		}
+	}
+
+	/** The fills of an order as of one update. Shares the append-only fill log of the order, in which a fill is never
+	 *  overwritten but marked as replaced at a later version, so publishing an entry does not copy the fills. */
+	private static class Fills {
+		private final Fill[] m_log;
+		private final int[] m_ordinals;		// position of the fill's trade key in the order of arrival
+		private final int[] m_replacedAt;	// version at which the fill was replaced, or Integer.MAX_VALUE; written later
+		private final int m_logSize;
+		private final int m_count;			// number of trade keys
+		private final int m_version;
+		private volatile List<Fill> m_list;
+
+		Fills(Fill[] log, int[] ordinals, int[] replacedAt, int logSize, int count, int version) {
+			m_log = log;
+			m_ordinals = ordinals;
+			m_replacedAt = replacedAt;
+			m_logSize = logSize;
+			m_count = count;
+			m_version = version;
+		}
+
+		List<Fill> list() {
+			List<Fill> list = m_list;
+			if (list == null) {
+				Fill[] fills = new Fill[m_count];
+				for (int i = 0; i < m_logSize; i++) {
+					if (m_replacedAt[i] > m_version) {
+						fills[m_ordinals[i]] = m_log[i];
+					}
+				}
+				list = m_list = Collections.unmodifiableList( Arrays.asList( fills) );
+			}
+			return list;
+		}
+	}
+
+	/** Mutable state of one order, guarded by its own monitor; readers only use the published entry. */
+	private static class Tracked {
+		private int m_orderId;
+		private int m_clientId;
+		private long m_permId;
+		private int m_parentId;
+		private Contract m_contract;
+		private Order m_order;
+		private OrderStatus m_status = OrderStatus.Unknown;
+		private Decimal m_statusFilled = Decimal.ZERO;
+		private Decimal m_statusRemaining = Decimal.INVALID;
+		private double m_statusAvgPrice;
+		private double m_lastFillPrice;
+		private String m_whyHeld;
+		private final Map<String, Integer> m_fillSlots = new HashMap<>(); // by trade key, i.e. execId without the correction suffix
+		private Fill[] m_fillLog = new Fill[4];
+		private int[] m_fillOrdinals = new int[4];
+		private int[] m_fillReplacedAt = new int[4];
+		private int m_fillLogSize;
+		private int m_fillVersion;
+		private Fills m_fills = NO_FILLS;
+		private Decimal m_execFilled = Decimal.ZERO;
+		private double m_execNotional;
+		private double m_commission;
+		private double m_realizedPnl;
+		private String m_indexedAccount;	// working order indexes this order is currently in
+		private int m_indexedConid;
+		private volatile Entry m_entry;
+
+		Entry entry()	{ return m_entry; }
+	}
+
+	private final Map<Long, Tracked> m_byOrderId = new ConcurrentHashMap<>(); // key is clientId and orderId
+	private final Map<Long, Tracked> m_byPermId = new ConcurrentHashMap<>();
+	private final Map<String, Tracked> m_byTradeKey = new ConcurrentHashMap<>();
+	private final Map<String, CommissionReport> m_pendingCommissions = new ConcurrentHashMap<>(); // received before their execution
+	private final Set<Tracked> m_working = new ConcurrentHashSet<>();
+	private final Map<String, Set<Tracked>> m_workingByAccount = new ConcurrentHashMap<>();
+	private final Map<Integer, Set<Tracked>> m_workingByConid = new ConcurrentHashMap<>();
+	private volatile int m_clientId;
+
+	/** Client id used by order(orderId); set by ApiController on connect. */
+	public int clientId()				{ return m_clientId; }
+	public void clientId(int clientId)	{ m_clientId = clientId; }
+
+	// ---------------------------------------- Queries ----------------------------------------
+
+	/** Returns the order with the given id placed by this client, or null. */
+	public Entry order(int orderId) {
+		return order( m_clientId, orderId);
+	}
+
+	public Entry order(int clientId, int orderId) {
+		return entry( m_byOrderId.get( orderKey( clientId, orderId) ) );
+	}
+
+	public Entry orderByPermId(long permId) {
+		return entry( m_byPermId.get( permId) );
+	}
+
+	/** Filled quantity of an order of this client, zero if the order is unknown. */
+	public Decimal filled(int orderId) {
+		Entry entry = order( orderId);
+		return entry != null ? entry.filled() : Decimal.ZERO;
+	}
+
+	/** Average fill price of an order of this client, zero if the order is unknown or not filled. */
+	public double avgFillPrice(int orderId) {
+		Entry entry = order( orderId);
+		return entry != null ? entry.avgFillPrice() : 0;
+	}
+
+	public List<Entry> orders() {
+		List<Entry> list = new ArrayList<>();
+		for (Tracked tracked : orderStates() ) {
+			add( list, tracked);
+		}
+		return list;
+	}
+
+	public List<Entry> workingOrders() {
+		return entries( m_working);
+	}
+
+	public List<Entry> workingOrders(String account) {
+		return entries( m_workingByAccount.get( account) );
+	}
+
+	public List<Entry> workingOrders(int conid) {
+		return entries( m_workingByConid.get( conid) );
+	}
+
+	/** Forgets all orders that reached a final state; returns their number. */
+	public int purgeDone() {
+		int count = 0;
+		for (Tracked tracked : orderStates() ) {
+			synchronized( tracked) {
+				if (tracked.m_status.isDone() ) {
+					remove( tracked);
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	public void clear() {
+		for (Tracked tracked : orderStates() ) {
+			synchronized( tracked) {
+				remove( tracked);
+			}
+		}
+		m_pendingCommissions.clear();
+	}
+
+	// ---------------------------------------- Updates ----------------------------------------
+
+	/** Registers an order about to be sent with placeOrder; its status is ApiPending until TWS answers. */
+	public void placed(Contract contract, Order order) {
+		Tracked tracked = track( order.clientId() != 0 ? order.clientId() : m_clientId, order.orderId(), order.permId() );
+		synchronized( tracked) {
+			tracked.m_contract = contract;
+			tracked.m_order = order;
+			if (tracked.m_status == OrderStatus.Unknown) {
+				tracked.m_status = OrderStatus.ApiPending;
+			}
+			publish( tracked);
+		}
+	}
+
+	/** An order of this client was not sent, e.g. rejected by a pre-trade check. A new order is then ApiCancelled;
+	 *  a modification of a working order leaves the order unchanged. */
+	public void rejected(int orderId) {
+		Tracked tracked = m_byOrderId.get( orderKey( m_clientId, orderId) );
+		if (tracked == null) {
+			return;
+		}
+		synchronized( tracked) {
+			if (tracked.m_status == OrderStatus.ApiPending) {
+				tracked.m_status = OrderStatus.ApiCancelled;
+				publish( tracked);
+			}
+		}
+	}
+
+	public void openOrder(int orderId, Contract contract, Order order, OrderState orderState) {
+		Tracked tracked = track( order.clientId(), orderId, order.permId() );
+		synchronized( tracked) {
+			tracked.m_contract = contract;
+			tracked.m_order = order;
+			tracked.m_parentId = order.parentId();
+			applyStatus( tracked, orderState.status() );
+			publish( tracked);
+		}
+	}
+
+	public void completedOrder(Contract contract, Order order, OrderState orderState) {
+		if (order.permId() == 0) {
+			return;
+		}
+		Tracked tracked = track( order.clientId(), order.orderId(), order.permId() );
+		synchronized( tracked) {
+			tracked.m_contract = contract;
+			tracked.m_order = order;
+			applyStatus( tracked, orderState.status() );
+			if (Decimal.isValid( order.filledQuantity() ) && order.filledQuantity().compareTo( tracked.m_statusFilled) > 0) {
+				tracked.m_statusFilled = order.filledQuantity();
+			}
+			publish( tracked);
+		}
+	}
+
+	public void orderStatus(int orderId, OrderStatus status, Decimal filled, Decimal remaining, double avgFillPrice, long permId, int parentId, double lastFillPrice, int clientId, String whyHeld) {
+		Tracked tracked = track( clientId, orderId, permId);
+		synchronized( tracked) {
+			tracked.m_parentId = parentId;
+			tracked.m_whyHeld = whyHeld;
+			if (applyStatus( tracked, status) ) {
+				if (Decimal.isValid( filled) && filled.compareTo( tracked.m_statusFilled) >= 0) {
+					tracked.m_statusFilled = filled;
+					tracked.m_statusRemaining = remaining;
+					tracked.m_statusAvgPrice = avgFillPrice;
+				}
+				if (lastFillPrice != 0) {
+					tracked.m_lastFillPrice = lastFillPrice;
+				}
+			}
+			publish( tracked);
+		}
+	}
+
+	/** Binds an order id to an order placed elsewhere, e.g. in TWS, see EWrapper.orderBound(). */
+	public void orderBound(long permId, int clientId, int orderId) {
+		Tracked tracked = track( clientId, orderId, permId);
+		synchronized( tracked) {
+			publish( tracked);
+		}
+	}
+
+	public void execDetails(Contract contract, Execution execution) {
+		String tradeKey = tradeKey( execution.execId() );
+		Tracked tracked = m_byTradeKey.get( tradeKey);
+		if (tracked == null) {
+			tracked = track( execution.clientId(), execution.orderId(), execution.permId() );
+		}
+		synchronized( tracked) {
+			if (tracked.m_contract == null) {
+				tracked.m_contract = contract;
+			}
+
+			Fill previous = fill( tracked, tradeKey);
+			if (previous != null && previous.execution().execId().compareTo( execution.execId() ) >= 0) {
+				return; // already have this or a later correction
+			}
+			CommissionReport report = m_pendingCommissions.remove( execution.execId() );
+			if (report == null && previous != null && previous.commissionReport() != null) {
+				report = previous.commissionReport();
+			}
+			putFill( tracked, tradeKey, new Fill( execution, report) );
+			m_byTradeKey.put( tradeKey, tracked);
+
+			tracked.m_lastFillPrice = execution.price();
+			publish( tracked);
+		}
+	}
+
+	public void commissionReport(CommissionReport report) {
+		String tradeKey = tradeKey( report.execId() );
+		Tracked tracked = m_byTradeKey.get( tradeKey);
+		if (tracked == null) {
+			m_pendingCommissions.put( report.execId(), report);
+			return;
+		}
+		synchronized( tracked) {
+			Fill fill = fill( tracked, tradeKey);
+			if (fill == null) {
+				return; // purged meanwhile
+			}
+			putFill( tracked, tradeKey, new Fill( fill.execution(), report) );
+			publish( tracked);
+		}
+	}
+
+	// ---------------------------------------- Internals ----------------------------------------
+
+	/** Finds or creates the order, binding orderId and permId to each other once both are known. */
+	private Tracked track(int clientId, int orderId, long permId) {
+		Tracked tracked = permId != 0 ? m_byPermId.get( permId) : null;
+		Long orderKey = orderId != 0 ? orderKey( clientId, orderId) : null;
+		if (tracked == null && orderKey != null) {
+			tracked = permId != 0
+				? m_byOrderId.get( orderKey)
+				: m_byOrderId.computeIfAbsent( orderKey, key -> new Tracked() );
+		}
+		if (tracked == null) {
+			tracked = m_byPermId.computeIfAbsent( permId, key -> new Tracked() );
+		}
+
+		synchronized( tracked) {
+			if (orderKey != null && tracked.m_orderId == 0) {
+				tracked.m_orderId = orderId;
+				tracked.m_clientId = clientId;
+				m_byOrderId.putIfAbsent( orderKey, tracked);
+			}
+			if (permId != 0 && tracked.m_permId == 0) {
+				tracked.m_permId = permId;
+				m_byPermId.putIfAbsent( permId, tracked);
+			}
+		}
+		return tracked;
+	}
+
+	/** Returns false if the update was ignored because the order is already in a final state. */
+	private static boolean applyStatus(Tracked tracked, OrderStatus status) {
+		if (status == null || status == OrderStatus.Unknown) {
+			return true;
+		}
+		if (tracked.m_status.isDone() && tracked.m_status != status) {
+			return false;
+		}
+		tracked.m_status = status;
+		return true;
+	}
+
+	private static Fill fill(Tracked tracked, String tradeKey) {
+		Integer slot = tracked.m_fillSlots.get( tradeKey);
+		return slot != null ? tracked.m_fillLog[slot] : null;
+	}
+
+	/** Adds or replaces the fill of a trade key, updating the totals by the difference. */
+	private static void putFill(Tracked tracked, String tradeKey, Fill fill) {
+		int version = ++tracked.m_fillVersion;
+		Integer previous = tracked.m_fillSlots.get( tradeKey);
+		int ordinal;
+		if (previous != null) {
+			tracked.m_fillReplacedAt[previous] = version;
+			ordinal = tracked.m_fillOrdinals[previous];
+			addToTotals( tracked, tracked.m_fillLog[previous], -1);
+		}
+		else {
+			ordinal = tracked.m_fillSlots.size();
+		}
+
+		int slot = tracked.m_fillLogSize;
+		if (slot == tracked.m_fillLog.length) {
+			// entries published so far keep the old arrays, which are not written any more
+			tracked.m_fillLog = Arrays.copyOf( tracked.m_fillLog, slot * 2);
+			tracked.m_fillOrdinals = Arrays.copyOf( tracked.m_fillOrdinals, slot * 2);
+			tracked.m_fillReplacedAt = Arrays.copyOf( tracked.m_fillReplacedAt, slot * 2);
+		}
+		tracked.m_fillLog[slot] = fill;
+		tracked.m_fillOrdinals[slot] = ordinal;
+		tracked.m_fillReplacedAt[slot] = Integer.MAX_VALUE;
+		tracked.m_fillLogSize = slot + 1;
+		tracked.m_fillSlots.put( tradeKey, slot);
+		addToTotals( tracked, fill, 1);
+
+		tracked.m_fills = new Fills( tracked.m_fillLog, tracked.m_fillOrdinals, tracked.m_fillReplacedAt, tracked.m_fillLogSize,
+			tracked.m_fillSlots.size(), version);
+	}
+
+	private static void addToTotals(Tracked tracked, Fill fill, int sign) {
+		Execution execution = fill.execution();
+		tracked.m_execFilled = tracked.m_execFilled.add( sign > 0 ? execution.shares() : execution.shares().negate() );
+		tracked.m_execNotional += sign * execution.price() * execution.shares().doubleValue();
+		CommissionReport report = fill.commissionReport();
+		if (report != null) {
+			tracked.m_commission += sign * report.commission();
+			if (report.realizedPNL() != Double.MAX_VALUE) {
+				tracked.m_realizedPnl += sign * report.realizedPNL();
+			}
+		}
+	}
+
+	/** Builds and publishes the entry, and moves the order between the working order indexes. Called holding the monitor. */
+	private void publish(Tracked tracked) {
+		Decimal filled = tracked.m_statusFilled;
+		Decimal remaining = tracked.m_statusRemaining;
+		double avgPrice = tracked.m_statusAvgPrice;
+		if (tracked.m_execFilled.compareTo( filled) > 0) {
+			filled = tracked.m_execFilled;
+			avgPrice = tracked.m_execNotional / filled.doubleValue();
+			Decimal total = tracked.m_order != null ? tracked.m_order.totalQuantity() : null;
+			remaining = Decimal.isValid( total) ? total.add( filled.negate() ) : Decimal.INVALID;
+		}
+		else if (!Decimal.isValid( remaining) && tracked.m_order != null && Decimal.isValid( tracked.m_order.totalQuantity() ) ) {
+			remaining = tracked.m_order.totalQuantity().add( filled.negate() );
+		}
+
+		tracked.m_entry = new Entry( tracked.m_orderId, tracked.m_clientId, tracked.m_permId, tracked.m_parentId, tracked.m_contract,
+			tracked.m_order, tracked.m_status, filled, remaining, avgPrice, tracked.m_lastFillPrice, tracked.m_whyHeld,
+			tracked.m_fills, tracked.m_commission, tracked.m_realizedPnl);
+
+		if (isWorking( tracked.m_status) ) {
+			String account = tracked.m_order != null ? tracked.m_order.account() : null;
+			int conid = tracked.m_contract != null ? tracked.m_contract.conid() : 0;
+			m_working.add( tracked);
+			if (!equal( account, tracked.m_indexedAccount) ) {
+				unindex( m_workingByAccount, tracked.m_indexedAccount, tracked);
+				index( m_workingByAccount, account, tracked);
+				tracked.m_indexedAccount = account;
+			}
+			if (conid != tracked.m_indexedConid) {
+				unindex( m_workingByConid, tracked.m_indexedConid, tracked);
+				index( m_workingByConid, conid, tracked);
+				tracked.m_indexedConid = conid;
+			}
+		}
+		else {
+			unindexWorking( tracked);
+		}
+	}
+
+	private void remove(Tracked tracked) {
+		unindexWorking( tracked);
+		if (tracked.m_orderId != 0) {
+			m_byOrderId.remove( orderKey( tracked.m_clientId, tracked.m_orderId), tracked);
+		}
+		m_byPermId.remove( tracked.m_permId, tracked);
+		for (String tradeKey : tracked.m_fillSlots.keySet() ) {
+			m_byTradeKey.remove( tradeKey, tracked);
+		}
+	}
+
+	private void unindexWorking(Tracked tracked) {
+		if (m_working.remove( tracked) ) {
+			unindex( m_workingByAccount, tracked.m_indexedAccount, tracked);
+			unindex( m_workingByConid, tracked.m_indexedConid, tracked);
+			tracked.m_indexedAccount = null;
+			tracked.m_indexedConid = 0;
+		}
+	}
+
+	private List<Tracked> orderStates() {
+		List<Tracked> list = new ArrayList<>( m_byPermId.values() );
+		for (Tracked tracked : m_byOrderId.values() ) {
+			if (tracked.m_permId == 0) {
+				list.add( tracked);
+			}
+		}
+		return list;
+	}
+
+	private static <K> void index(Map<K, Set<Tracked>> map, K key, Tracked tracked) {
+		if (key != null) {
+			map.computeIfAbsent( key, k -> new ConcurrentHashSet<>() ).add( tracked);
+		}
+	}
+
+	private static <K> void unindex(Map<K, Set<Tracked>> map, K key, Tracked tracked) {
+		Set<Tracked> set = key != null ? map.get( key) : null;
+		if (set != null) {
+			set.remove( tracked);
+		}
+	}
+
+	private static List<Entry> entries(Set<Tracked> set) {
+		if (set == null) {
+			return new ArrayList<>();
+		}
+		List<Entry> list = new ArrayList<>( set.size() );
+		for (Tracked tracked : set) {
+			add( list, tracked);
+		}
+		return list;
+	}
+
+	/** Skips orders which are being created and have no entry yet. */
+	private static void add(List<Entry> list, Tracked tracked) {
+		Entry entry = tracked.entry();
+		if (entry != null) {
+			list.add( entry);
+		}
+	}
+
+	private static Entry entry(Tracked tracked) {
+		return tracked != null ? tracked.entry() : null;
+	}
+
+	private static boolean isWorking(OrderStatus status) {
+		return status.isActive() || status == OrderStatus.ApiPending;
+	}
+
+	private static long orderKey(int clientId, int orderId) {
+		return ((long)clientId << 32) | (orderId & 0xffffffffL);
+	}
+
+	/** execId without the correction suffix, same as the trade key of ApiController.ITradeReportHandler. */
+	private static String tradeKey(String execId) {
+		int i = execId.lastIndexOf( '.');
+		return i > 0 ? execId.substring( 0, i) : execId;
+	}
+
+	private static boolean equal(Object a, Object b) {
+		return a == null ? b == null : a.equals( b);
+	}
+}
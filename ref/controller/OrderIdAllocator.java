@@ -0,0 +1,144 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Lock-free allocator of order ids, seeded by nextValidId.
+ *  Ids come from an atomic counter which never moves backwards: seeding it again after a reconnect only raises it,
+ *  so ids handed out before the reconnect are never handed out again.
+ *  With a file, the allocator persists a high-water mark ahead of the ids it hands out and starts from that mark
+ *  after a restart, so ids are not reused even if TWS was reset or the process died. The file is only written
+ *  once every PERSIST_AHEAD ids.
+ *  With a block size above 1 each thread takes blocks of ids from the counter and hands them out without touching
+ *  shared state. Note that TWS rejects a new order whose id is not above all ids used before on the connection,
+ *  so larger blocks only suit threads which do not interleave their orders; blocks are dropped when the allocator
+ *  is seeded again. */
+public class OrderIdAllocator {
+	public static final int PERSIST_AHEAD = 1000;
+
+	private final AtomicInteger m_next = new AtomicInteger( 1);
+	private final AtomicInteger m_epoch = new AtomicInteger();	// incremented by seed() to drop thread blocks
+	private final int m_blockSize;
+	private final Path m_file;
+	private volatile int m_persisted = Integer.MAX_VALUE;			// ids below this are covered by the file
+	private final ThreadLocal<int[]> m_block = new ThreadLocal<int[]>() {	// next, end, epoch
+		@Override protected int[] initialValue() {
+			return new int[3];
+		}
+	};
+
+	/** In-memory allocator handing out one id at a time. */
+	public OrderIdAllocator() {
+		m_blockSize = 1;
+		m_file = null;
+	}
+
+	/** Allocator persisting its high-water mark in file, which is read if it exists; blockSize is the number of ids
+	 *  reserved by each thread at a time. file may be null. */
+	public OrderIdAllocator(Path file, int blockSize) throws IOException {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException( "blockSize " + blockSize);
+		}
+		m_blockSize = blockSize;
+		m_file = file;
+		if (file != null) {
+			if (Files.exists( file) ) {
+				String str = new String( Files.readAllBytes( file), StandardCharsets.US_ASCII).trim();
+				try {
+					m_next.set( Math.max( 1, Integer.parseInt( str) ) );
+				}
+				catch (NumberFormatException e) {
+					throw new IOException( "invalid order id high-water mark in " + file + ": " + str);
+				}
+			}
+			persist( m_next.get() );
+		}
+	}
+
+	public int blockSize()	{ return m_blockSize; }
+	public Path file()		{ return m_file; }
+
+	/** Next id the shared counter will hand out; ids in blocks already taken by threads are below it. */
+	public int peek() {
+		return m_next.get();
+	}
+
+	/** Raises the counter to nextValidId if it is below it, and drops the blocks taken by threads. */
+	public void seed(int nextValidId) {
+		for (;;) {
+			int next = m_next.get();
+			if (next >= nextValidId || m_next.compareAndSet( next, nextValidId) ) {
+				break;
+			}
+		}
+		m_epoch.incrementAndGet();
+		persisted( m_next.get() );
+	}
+
+	/** Returns a new order id. */
+	public int next() {
+		if (m_blockSize == 1) {
+			return reserve( 1);
+		}
+
+		int[] block = m_block.get();
+		int epoch = m_epoch.get();
+		if (block[0] == block[1] || block[2] != epoch) {
+			block[0] = reserve( m_blockSize);
+			block[1] = block[0] + m_blockSize;
+			block[2] = epoch;
+		}
+		return block[0]++;
+	}
+
+	/** Returns the first of count consecutive ids, e.g. for the orders of a bracket or a basket. */
+	public int reserve(int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException( "count " + count);
+		}
+		int first = m_next.getAndAdd( count);
+		persisted( first + count);
+		return first;
+	}
+
+	/** Makes sure ids below end are covered by the file before any of them is handed out. */
+	private void persisted(int end) {
+		if (end > m_persisted) {
+			synchronized( this) {
+				if (end > m_persisted) {
+					persist( end + PERSIST_AHEAD);
+				}
+			}
+		}
+	}
+
+	private void persist(int mark) {
+		try {
+			Path tmp = m_file.resolveSibling( m_file.getFileName() + ".tmp");
+			Files.write( tmp, String.valueOf( mark).getBytes( StandardCharsets.US_ASCII) );
+			try {
+				Files.move( tmp, m_file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e) {
+				Files.move( tmp, m_file, StandardCopyOption.REPLACE_EXISTING);
+			}
+			m_persisted = mark;
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException( "cannot persist order id high-water mark to " + m_file, e);
+		}
+	}
+
+	@Override public String toString() {
+		return "next=" + peek() + (m_file != null ? " persisted=" + m_persisted + " file=" + m_file : "");
+	}
+}
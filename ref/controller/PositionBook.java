@@ -0,0 +1,601 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.ib.client.Contract;
+import com.ib.client.ContractDetails;
+import com.ib.client.Decimal;
+import com.ib.client.PreTradeCheck.PositionSource;
+import com.ib.client.PreTradeCheck.PriceSource;
+import com.ib.client.TickAttrib;
+import com.ib.client.TickType;
+import com.ib.client.Util;
+import com.ib.controller.ApiController.IPnLSingleHandler;
+import com.ib.controller.ApiController.IPositionHandler;
+import com.ib.controller.ApiController.IPositionMultiHandler;
+import com.ib.controller.ApiController.ITopMktDataHandler;
+import com.ib.controller.ApiController.TopMktDataAdapter;
+
+/** Positions per account, model code and conid with quantity, average cost, market value, realized, unrealized and
+ *  daily PnL, kept in flat primitive arrays indexed by slot, plus running totals by account, underlying and sector.
+ *  Feed it from reqPositions/reqPositionsMulti (it is an IPositionHandler and IPositionMultiHandler), from
+ *  ApiController.positionBook() for reqAccountUpdates, and from pnlSingleHandler(). Positions are marked to market
+ *  from marketDataHandler(), using the bid/ask midpoint or else the last price; a mark replaces the market value and
+ *  unrealized PnL last reported by TWS. Every update adjusts the totals by its difference, so queries are constant time.
+ *  Average cost is per contract as reported by TWS, i.e. it includes the multiplier; the underlying defaults to the
+ *  symbol and the sector to "" until classify() is called.
+ *  As PriceSource and PositionSource it provides the marks and positions for the standard PreTradeChecks; position()
+ *  reads a per-contract snapshot which every quantity change replaces, so placeOrder() does not wait for this lock. */
+public class PositionBook implements IPositionHandler, IPositionMultiHandler, PriceSource, PositionSource {
+	public enum Rollup { ACCOUNT, UNDERLYING, SECTOR }
+
+	private static final int INITIAL_SLOTS = 64;
+	private static final String NO_MODEL = "";
+
+	/** Net quantity by account of one instrument, replaced on every change. */
+	private static class NetPosition {
+		private final String[] m_accounts;
+		private final double[] m_quantities;
+		private final double m_total;
+
+		NetPosition(String[] accounts, double[] quantities, double total) {
+			m_accounts = accounts;
+			m_quantities = quantities;
+			m_total = total;
+		}
+
+		double quantity(String account) {
+			if (Util.StringIsEmpty( account) ) {
+				return m_total;
+			}
+			for (int i = 0; i < m_accounts.length; i++) {
+				if (m_accounts[i].equals( account) ) {
+					return m_quantities[i];
+				}
+			}
+			return 0;
+		}
+	}
+
+	/** Totals of one rollup, indexed by group. */
+	private static class Groups {
+		private final Map<String,Integer> m_index = new HashMap<>();
+		private final List<String> m_names = new ArrayList<>();
+		private double[] m_marketValue = new double[INITIAL_SLOTS];
+		private double[] m_grossValue = new double[INITIAL_SLOTS];
+		private double[] m_unrealizedPnl = new double[INITIAL_SLOTS];
+		private double[] m_realizedPnl = new double[INITIAL_SLOTS];
+		private double[] m_dailyPnl = new double[INITIAL_SLOTS];
+
+		int group(String name) {
+			Integer group = m_index.get( name);
+			if (group != null) {
+				return group;
+			}
+
+			int newGroup = m_names.size();
+			if (newGroup == m_marketValue.length) {
+				int capacity = newGroup * 2;
+				m_marketValue = Arrays.copyOf( m_marketValue, capacity);
+				m_grossValue = Arrays.copyOf( m_grossValue, capacity);
+				m_unrealizedPnl = Arrays.copyOf( m_unrealizedPnl, capacity);
+				m_realizedPnl = Arrays.copyOf( m_realizedPnl, capacity);
+				m_dailyPnl = Arrays.copyOf( m_dailyPnl, capacity);
+			}
+			m_names.add( name);
+			m_index.put( name, newGroup);
+			return newGroup;
+		}
+
+		int find(String name) {
+			Integer group = m_index.get( name);
+			return group != null ? group : -1;
+		}
+
+		void add(int group, double sign, double marketValue, double unrealizedPnl, double realizedPnl, double dailyPnl) {
+			m_marketValue[group] += sign * marketValue;
+			m_grossValue[group] += sign * Math.abs( marketValue);
+			m_unrealizedPnl[group] += sign * unrealizedPnl;
+			m_realizedPnl[group] += sign * realizedPnl;
+			m_dailyPnl[group] += sign * dailyPnl;
+		}
+	}
+
+	private final Map<Long,Integer> m_slots = new HashMap<>();		// key is account/model index and conid
+	private final Map<String,Integer> m_accountModels = new HashMap<>();
+	private final List<String> m_accountModelNames = new ArrayList<>();	// account, '\0', model code
+	private final IntIntMap m_instruments = new IntIntMap();
+	private final Groups[] m_groups = { new Groups(), new Groups(), new Groups() }; // by Rollup ordinal
+
+	// one entry per position slot
+	private int m_slotCount;
+	private int[] m_accountModel = new int[INITIAL_SLOTS];
+	private int[] m_account = new int[INITIAL_SLOTS];		// group in the ACCOUNT rollup
+	private int[] m_instrument = new int[INITIAL_SLOTS];
+	private double[] m_quantity = new double[INITIAL_SLOTS];
+	private double[] m_avgCost = new double[INITIAL_SLOTS];
+	private double[] m_marketValue = new double[INITIAL_SLOTS];
+	private double[] m_unrealizedPnl = new double[INITIAL_SLOTS];
+	private double[] m_realizedPnl = new double[INITIAL_SLOTS];
+	private double[] m_dailyPnl = new double[INITIAL_SLOTS];
+
+	// one entry per instrument
+	private int m_instrumentCount;
+	private int[] m_conid = new int[INITIAL_SLOTS];
+	private double[] m_multiplier = new double[INITIAL_SLOTS];
+	private double[] m_bid = new double[INITIAL_SLOTS];
+	private double[] m_ask = new double[INITIAL_SLOTS];
+	private double[] m_last = new double[INITIAL_SLOTS];
+	private double[] m_mark = new double[INITIAL_SLOTS];			// 0 until marked from market data
+	private int[] m_underlying = new int[INITIAL_SLOTS];
+	private int[] m_sector = new int[INITIAL_SLOTS];
+	private boolean[] m_described = new boolean[INITIAL_SLOTS];	// multiplier and symbol known
+	private boolean[] m_classified = new boolean[INITIAL_SLOTS];	// classify() was called
+	private int[][] m_positions = new int[INITIAL_SLOTS][];			// position slots of each instrument
+	private int[] m_positionCount = new int[INITIAL_SLOTS];
+
+	// read by position() without the lock
+	private volatile AtomicReferenceArray<NetPosition> m_net = new AtomicReferenceArray<>( INITIAL_SLOTS);	// by instrument
+	private volatile IntIntMap m_netLookup;	// copy of m_instruments, null after instruments were added
+
+	// ---------------------------------------- Queries ----------------------------------------
+
+	public synchronized int size()	{ return m_slotCount; }
+
+	/** Returns the slot of a position for use with the per-slot queries, or -1. Slots stay valid until clear(). */
+	public synchronized int slot(String account, String modelCode, int conid) {
+		Integer accountModel = m_accountModels.get( accountModelKey( account, modelCode) );
+		Integer slot = accountModel != null ? m_slots.get( slotKey( accountModel, conid) ) : null;
+		return slot != null ? slot : -1;
+	}
+
+	public int slot(String account, int conid)	{ return slot( account, NO_MODEL, conid); }
+
+	public synchronized String account(int slot)			{ return accountModel( slot)[0]; }
+	public synchronized String modelCode(int slot)			{ return accountModel( slot)[1]; }
+	public synchronized int conid(int slot)					{ return m_conid[m_instrument[slot]]; }
+	public synchronized double quantity(int slot)			{ return m_quantity[slot]; }
+	public synchronized double avgCost(int slot)			{ return m_avgCost[slot]; }
+	public synchronized double marketValue(int slot)		{ return m_marketValue[slot]; }
+	public synchronized double unrealizedPnl(int slot)		{ return m_unrealizedPnl[slot]; }
+	public synchronized double realizedPnl(int slot)		{ return m_realizedPnl[slot]; }
+	public synchronized double dailyPnl(int slot)			{ return m_dailyPnl[slot]; }
+
+	/** Last mark of a contract from market data, 0 if none. */
+	public synchronized double mark(int conid) {
+		int instrument = m_instruments.get( conid);
+		return instrument >= 0 ? m_mark[instrument] : 0;
+	}
+
+	/** Same as mark(), as reference price for PreTradeChecks. */
+	@Override public double price(int conid) {
+		return mark( conid);
+	}
+
+	/** Quantity of an account in a contract over all model codes, or over all accounts if account is empty, for
+	 *  PreTradeChecks. Takes the lock only to refresh the conid lookup after contracts were added. */
+	@Override public double position(String account, int conid) {
+		IntIntMap lookup = m_netLookup;
+		if (lookup == null) {
+			lookup = netLookup();
+		}
+		int instrument = lookup.get( conid);
+		NetPosition net = instrument >= 0 ? m_net.get( instrument) : null;
+		return net != null ? net.quantity( account) : 0;
+	}
+
+	/** Names of the groups of a rollup, e.g. all accounts. */
+	public synchronized List<String> groups(Rollup rollup) {
+		return new ArrayList<>( m_groups[rollup.ordinal()].m_names);
+	}
+
+	public synchronized double marketValue(Rollup rollup, String group) {
+		int i = m_groups[rollup.ordinal()].find( group);
+		return i >= 0 ? m_groups[rollup.ordinal()].m_marketValue[i] : 0;
+	}
+
+	/** Sum of absolute market values. */
+	public synchronized double grossValue(Rollup rollup, String group) {
+		int i = m_groups[rollup.ordinal()].find( group);
+		return i >= 0 ? m_groups[rollup.ordinal()].m_grossValue[i] : 0;
+	}
+
+	public synchronized double unrealizedPnl(Rollup rollup, String group) {
+		int i = m_groups[rollup.ordinal()].find( group);
+		return i >= 0 ? m_groups[rollup.ordinal()].m_unrealizedPnl[i] : 0;
+	}
+
+	public synchronized double realizedPnl(Rollup rollup, String group) {
+		int i = m_groups[rollup.ordinal()].find( group);
+		return i >= 0 ? m_groups[rollup.ordinal()].m_realizedPnl[i] : 0;
+	}
+
+	public synchronized double dailyPnl(Rollup rollup, String group) {
+		int i = m_groups[rollup.ordinal()].find( group);
+		return i >= 0 ? m_groups[rollup.ordinal()].m_dailyPnl[i] : 0;
+	}
+
+	// ---------------------------------------- Updates ----------------------------------------
+
+	@Override public void position(String account, Contract contract, Decimal pos, double avgCost) {
+		positionMulti( account, NO_MODEL, contract, pos, avgCost);
+	}
+
+	@Override public void positionEnd() {
+	}
+
+	@Override public synchronized void positionMulti(String account, String modelCode, Contract contract, Decimal pos, double avgCost) {
+		int slot = slotFor( account, modelCode, contract);
+		m_quantity[slot] = toDouble( pos);
+		m_avgCost[slot] = avgCost;
+		revalue( slot, m_realizedPnl[slot], m_dailyPnl[slot]);
+		publishNet( m_instrument[slot]);
+	}
+
+	@Override public void positionMultiEnd() {
+	}
+
+	/** Applies one row of reqAccountUpdates; ApiController calls this without creating a Position. */
+	public synchronized void updatePortfolio(String account, Contract contract, Decimal position, double marketPrice, double marketValue,
+			double averageCost, double unrealizedPnl, double realizedPnl) {
+		int slot = slotFor( account, NO_MODEL, contract);
+		m_quantity[slot] = toDouble( position);
+		m_avgCost[slot] = averageCost;
+		publishNet( m_instrument[slot]);
+		if (m_mark[m_instrument[slot]] != 0) {
+			revalue( slot, realizedPnl, m_dailyPnl[slot]);
+		}
+		else {
+			set( slot, marketValue, unrealizedPnl, realizedPnl, m_dailyPnl[slot]);
+		}
+	}
+
+	public void updatePortfolio(Position position) {
+		updatePortfolio( position.account(), position.contract(), position.position(), position.marketPrice(), position.marketValue(),
+			position.averageCost(), position.unrealPnl(), position.realPnl() );
+	}
+
+	/** Applies one update of reqPnLSingle; values which TWS leaves unset are ignored. */
+	public synchronized void pnlSingle(String account, String modelCode, int conid, Decimal pos, double dailyPnl, double unrealizedPnl,
+			double realizedPnl, double value) {
+		int slot = slotFor( account, modelCode, conid);
+		if (Decimal.isValid( pos) ) {
+			m_quantity[slot] = toDouble( pos);
+			publishNet( m_instrument[slot]);
+		}
+		double daily = isSet( dailyPnl) ? dailyPnl : m_dailyPnl[slot];
+		double realized = isSet( realizedPnl) ? realizedPnl : m_realizedPnl[slot];
+		if (m_mark[m_instrument[slot]] != 0) {
+			revalue( slot, realized, daily);
+		}
+		else {
+			set( slot, isSet( value) ? value : m_marketValue[slot], isSet( unrealizedPnl) ? unrealizedPnl : m_unrealizedPnl[slot], realized, daily);
+		}
+	}
+
+	/** Sets the mark of a contract and revalues all of its positions. */
+	public synchronized void mark(int conid, double price) {
+		if (price <= 0 || price == Double.MAX_VALUE) {
+			return;
+		}
+		int instrument = instrument( conid);
+		if (m_mark[instrument] == price) {
+			return;
+		}
+		m_mark[instrument] = price;
+		int[] positions = m_positions[instrument];
+		for (int i = 0; i < m_positionCount[instrument]; i++) {
+			revalue( positions[i], m_realizedPnl[positions[i]], m_dailyPnl[positions[i]]);
+		}
+	}
+
+	/** Sets the underlying and sector of a contract, moving its positions between groups. */
+	public synchronized void classify(int conid, String underlying, String sector) {
+		int instrument = instrument( conid);
+		m_classified[instrument] = true;
+		move( instrument, underlying, sector);
+	}
+
+	/** Classifies by underlying symbol and industry. */
+	public void classify(ContractDetails details) {
+		String underlying = !Util.StringIsEmpty( details.underSymbol() ) ? details.underSymbol() : details.contract().symbol();
+		classify( details.contract().conid(), underlying, details.industry() );
+	}
+
+	public synchronized void clear() {
+		m_slots.clear();
+		m_accountModels.clear();
+		m_accountModelNames.clear();
+		m_instruments.clear();
+		for (int i = 0; i < m_groups.length; i++) {
+			m_groups[i] = new Groups();
+		}
+		m_slotCount = 0;
+		m_instrumentCount = 0;
+		m_net = new AtomicReferenceArray<>( m_conid.length);
+		m_netLookup = null;
+	}
+
+	// ---------------------------------------- Handlers ----------------------------------------
+
+	/** Handler for reqTopMktData of a contract, marking its positions. */
+	public ITopMktDataHandler marketDataHandler(final int conid) {
+		return new TopMktDataAdapter() {
+			@Override public void tickPrice(TickType tickType, double price, TickAttrib attribs) {
+				PositionBook.this.tickPrice( conid, tickType, price);
+			}
+		};
+	}
+
+	/** Handler for reqPnLSingle(account, modelCode, conid). */
+	public IPnLSingleHandler pnlSingleHandler(final String account, final String modelCode, final int conid) {
+		return (reqId, pos, dailyPnL, unrealizedPnL, realizedPnL, value) -> pnlSingle( account, modelCode, conid, pos, dailyPnL, unrealizedPnL, realizedPnL, value);
+	}
+
+	private synchronized void tickPrice(int conid, TickType tickType, double price) {
+		int instrument = instrument( conid);
+		switch (tickType) {
+			case BID:
+			case DELAYED_BID:
+				m_bid[instrument] = price;
+				break;
+			case ASK:
+			case DELAYED_ASK:
+				m_ask[instrument] = price;
+				break;
+			case LAST:
+			case DELAYED_LAST:
+				m_last[instrument] = price;
+				break;
+			default:
+				return;
+		}
+
+		double bid = m_bid[instrument];
+		double ask = m_ask[instrument];
+		mark( conid, bid > 0 && ask > 0 && ask >= bid ? (bid + ask) / 2 : m_last[instrument]);
+	}
+
+	// ---------------------------------------- Internals ----------------------------------------
+
+	private synchronized IntIntMap netLookup() {
+		IntIntMap lookup = m_netLookup;
+		if (lookup == null) {
+			lookup = new IntIntMap( m_instrumentCount);
+			for (int i = 0; i < m_instrumentCount; i++) {
+				lookup.put( m_conid[i], i);
+			}
+			m_netLookup = lookup;
+		}
+		return lookup;
+	}
+
+	/** Replaces the net positions of an instrument read by position(). */
+	private void publishNet(int instrument) {
+		int[] positions = m_positions[instrument];
+		int count = m_positionCount[instrument];
+		int[] groups = new int[count];
+		double[] quantities = new double[count];
+		int accounts = 0;
+		double total = 0;
+		for (int i = 0; i < count; i++) {
+			int group = m_account[positions[i]];
+			int k = 0;
+			while (k < accounts && groups[k] != group) {
+				k++;
+			}
+			if (k == accounts) {
+				groups[accounts++] = group;
+			}
+			quantities[k] += m_quantity[positions[i]];
+			total += m_quantity[positions[i]];
+		}
+
+		String[] names = new String[accounts];
+		for (int k = 0; k < accounts; k++) {
+			names[k] = m_groups[Rollup.ACCOUNT.ordinal()].m_names.get( groups[k]);
+		}
+		m_net.set( instrument, new NetPosition( names, Arrays.copyOf( quantities, accounts), total) );
+	}
+
+	/** Recomputes market value and unrealized PnL of a position from the mark of its contract, if there is one. */
+	private void revalue(int slot, double realizedPnl, double dailyPnl) {
+		int instrument = m_instrument[slot];
+		double mark = m_mark[instrument];
+		if (mark == 0) {
+			set( slot, m_marketValue[slot], m_unrealizedPnl[slot], realizedPnl, dailyPnl);
+			return;
+		}
+		double marketValue = m_quantity[slot] * mark * m_multiplier[instrument];
+		set( slot, marketValue, marketValue - m_quantity[slot] * m_avgCost[slot], realizedPnl, dailyPnl);
+	}
+
+	private void set(int slot, double marketValue, double unrealizedPnl, double realizedPnl, double dailyPnl) {
+		rollup( slot, -1);
+		m_marketValue[slot] = marketValue;
+		m_unrealizedPnl[slot] = unrealizedPnl;
+		m_realizedPnl[slot] = realizedPnl;
+		m_dailyPnl[slot] = dailyPnl;
+		rollup( slot, 1);
+	}
+
+	/** Adds a position to (sign 1) or removes it from (sign -1) the totals of its groups. */
+	private void rollup(int slot, double sign) {
+		int instrument = m_instrument[slot];
+		double mv = m_marketValue[slot];
+		double unrealized = m_unrealizedPnl[slot];
+		double realized = m_realizedPnl[slot];
+		double daily = m_dailyPnl[slot];
+		m_groups[Rollup.ACCOUNT.ordinal()].add( m_account[slot], sign, mv, unrealized, realized, daily);
+		m_groups[Rollup.UNDERLYING.ordinal()].add( m_underlying[instrument], sign, mv, unrealized, realized, daily);
+		m_groups[Rollup.SECTOR.ordinal()].add( m_sector[instrument], sign, mv, unrealized, realized, daily);
+	}
+
+	/** Moves the positions of an instrument to other underlying and sector groups. */
+	private void move(int instrument, String underlying, String sector) {
+		int[] positions = m_positions[instrument];
+		for (int i = 0; i < m_positionCount[instrument]; i++) {
+			rollup( positions[i], -1);
+		}
+		m_underlying[instrument] = m_groups[Rollup.UNDERLYING.ordinal()].group( underlying != null ? underlying : "");
+		m_sector[instrument] = m_groups[Rollup.SECTOR.ordinal()].group( sector != null ? sector : "");
+		for (int i = 0; i < m_positionCount[instrument]; i++) {
+			rollup( positions[i], 1);
+		}
+	}
+
+	/** Like slotFor(account, modelCode, conid), taking the multiplier and default underlying from the contract
+	 *  the first time the contract is seen with its details. */
+	private int slotFor(String account, String modelCode, Contract contract) {
+		int instrument = instrument( contract.conid() );
+		if (!m_described[instrument]) {
+			m_described[instrument] = true;
+			m_multiplier[instrument] = multiplier( contract.multiplier() );
+			if (!m_classified[instrument]) {
+				move( instrument, contract.symbol(), m_groups[Rollup.SECTOR.ordinal()].m_names.get( m_sector[instrument]) );
+			}
+			int[] positions = m_positions[instrument];
+			for (int i = 0; i < m_positionCount[instrument]; i++) {
+				revalue( positions[i], m_realizedPnl[positions[i]], m_dailyPnl[positions[i]]);
+			}
+		}
+		return slotFor( account, modelCode, contract.conid() );
+	}
+
+	private int slotFor(String account, String modelCode, int conid) {
+		String key = accountModelKey( account, modelCode);
+		Integer accountModel = m_accountModels.get( key);
+		if (accountModel == null) {
+			accountModel = m_accountModelNames.size();
+			m_accountModels.put( key, accountModel);
+			m_accountModelNames.add( key);
+		}
+
+		Long slotKey = slotKey( accountModel, conid);
+		Integer slot = m_slots.get( slotKey);
+		if (slot != null) {
+			return slot;
+		}
+
+		if (m_slotCount == m_quantity.length) {
+			int capacity = m_slotCount * 2;
+			m_accountModel = Arrays.copyOf( m_accountModel, capacity);
+			m_account = Arrays.copyOf( m_account, capacity);
+			m_instrument = Arrays.copyOf( m_instrument, capacity);
+			m_quantity = Arrays.copyOf( m_quantity, capacity);
+			m_avgCost = Arrays.copyOf( m_avgCost, capacity);
+			m_marketValue = Arrays.copyOf( m_marketValue, capacity);
+			m_unrealizedPnl = Arrays.copyOf( m_unrealizedPnl, capacity);
+			m_realizedPnl = Arrays.copyOf( m_realizedPnl, capacity);
+			m_dailyPnl = Arrays.copyOf( m_dailyPnl, capacity);
+		}
+
+		int newSlot = m_slotCount++;
+		int instrument = instrument( conid);
+		m_accountModel[newSlot] = accountModel;
+		m_account[newSlot] = m_groups[Rollup.ACCOUNT.ordinal()].group( account);
+		m_instrument[newSlot] = instrument;
+		m_quantity[newSlot] = 0;
+		m_avgCost[newSlot] = 0;
+		m_marketValue[newSlot] = 0;
+		m_unrealizedPnl[newSlot] = 0;
+		m_realizedPnl[newSlot] = 0;
+		m_dailyPnl[newSlot] = 0;
+
+		if (m_positions[instrument].length == m_positionCount[instrument]) {
+			m_positions[instrument] = Arrays.copyOf( m_positions[instrument], m_positionCount[instrument] * 2);
+		}
+		m_positions[instrument][m_positionCount[instrument]++] = newSlot;
+		m_slots.put( slotKey, newSlot);
+		return newSlot;
+	}
+
+	private int instrument(int conid) {
+		int instrument = m_instruments.get( conid);
+		if (instrument >= 0) {
+			return instrument;
+		}
+
+		if (m_instrumentCount == m_conid.length) {
+			int capacity = m_instrumentCount * 2;
+			m_conid = Arrays.copyOf( m_conid, capacity);
+			m_multiplier = Arrays.copyOf( m_multiplier, capacity);
+			m_bid = Arrays.copyOf( m_bid, capacity);
+			m_ask = Arrays.copyOf( m_ask, capacity);
+			m_last = Arrays.copyOf( m_last, capacity);
+			m_mark = Arrays.copyOf( m_mark, capacity);
+			m_underlying = Arrays.copyOf( m_underlying, capacity);
+			m_sector = Arrays.copyOf( m_sector, capacity);
+			m_described = Arrays.copyOf( m_described, capacity);
+			m_classified = Arrays.copyOf( m_classified, capacity);
+			m_positions = Arrays.copyOf( m_positions, capacity);
+			m_positionCount = Arrays.copyOf( m_positionCount, capacity);
+
+			AtomicReferenceArray<NetPosition> net = new AtomicReferenceArray<>( capacity);
+			for (int i = 0; i < m_instrumentCount; i++) {
+				net.set( i, m_net.get( i) );
+			}
+			m_net = net;
+		}
+
+		int newInstrument = m_instrumentCount++;
+		m_conid[newInstrument] = conid;
+		m_multiplier[newInstrument] = 1;
+		m_bid[newInstrument] = 0;
+		m_ask[newInstrument] = 0;
+		m_last[newInstrument] = 0;
+		m_mark[newInstrument] = 0;
+		m_underlying[newInstrument] = m_groups[Rollup.UNDERLYING.ordinal()].group( "");
+		m_sector[newInstrument] = m_groups[Rollup.SECTOR.ordinal()].group( "");
+		m_described[newInstrument] = false;
+		m_classified[newInstrument] = false;
+		m_positions[newInstrument] = new int[4];
+		m_positionCount[newInstrument] = 0;
+		m_instruments.put( conid, newInstrument);
+		m_netLookup = null;
+		return newInstrument;
+	}
+
+	private String[] accountModel(int slot) {
+		String key = m_accountModelNames.get( m_accountModel[slot]);
+		int i = key.indexOf( '\0');
+		return new String[] { key.substring( 0, i), key.substring( i + 1) };
+	}
+
+	private static String accountModelKey(String account, String modelCode) {
+		return account + '\0' + (modelCode != null ? modelCode : NO_MODEL);
+	}
+
+	private static long slotKey(int accountModel, int conid) {
+		return ((long)accountModel << 32) | (conid & 0xffffffffL);
+	}
+
+	private static double multiplier(String multiplier) {
+		if (Util.StringIsEmpty( multiplier) ) {
+			return 1;
+		}
+		try {
+			double value = Double.parseDouble( multiplier);
+			return value > 0 ? value : 1;
+		}
+		catch (NumberFormatException e) {
+			return 1;
+		}
+	}
+
+	private static boolean isSet(double value) {
+		return value != Double.MAX_VALUE && !Double.isNaN( value);
+	}
+
+	private static double toDouble(Decimal decimal) {
+		return Decimal.isValid( decimal) ? decimal.doubleValue() : 0;
+	}
+}
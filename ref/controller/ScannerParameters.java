@@ -0,0 +1,261 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/** Scan types, instruments and the location tree of the scanner parameters XML, parsed in one streaming pass and
+ *  indexed by scan code, instrument type and location code. Filters and display settings are skipped.
+ *  Immutable once parsed. */
+public class ScannerParameters {
+	private final Map<String,ScanType> m_scanTypes = new LinkedHashMap<>();
+	private final Map<String,InstrumentType> m_instruments = new LinkedHashMap<>();
+	private final Map<String,Location> m_locations = new LinkedHashMap<>();
+	private final List<Location> m_rootLocations = new ArrayList<>();
+	private final Map<String,List<ScanType>> m_scanTypesByInstrument = new HashMap<>();
+	private final Map<String,List<Location>> m_locationsByInstrument = new HashMap<>();
+
+	public static class ScanType {
+		private String m_scanCode;
+		private String m_displayName;
+		private List<String> m_instruments = Collections.emptyList();
+		private String m_locationFilter;
+		private String m_access;
+
+		public String scanCode()			{ return m_scanCode; }
+		public String displayName()			{ return m_displayName; }
+		public List<String> instruments()	{ return m_instruments; }
+		public String locationFilter()		{ return m_locationFilter; }
+		public String access()				{ return m_access; }
+
+		@Override public String toString() {
+			return m_scanCode + " " + m_displayName;
+		}
+	}
+
+	public static class InstrumentType {
+		private String m_type;
+		private String m_name;
+		private String m_group;
+		private String m_shortName;
+		private List<String> m_filters = Collections.emptyList();
+
+		public String type()			{ return m_type; }
+		public String name()			{ return m_name; }
+		public String group()			{ return m_group; }
+		public String shortName()		{ return m_shortName; }
+		public List<String> filters()	{ return m_filters; }
+
+		@Override public String toString() {
+			return m_type + " " + m_name;
+		}
+	}
+
+	public static class Location {
+		private String m_locationCode;
+		private String m_displayName;
+		private String m_routeExchange;
+		private List<String> m_instruments = Collections.emptyList();
+		private Location m_parent;
+		private final List<Location> m_children = new ArrayList<>();
+
+		public String locationCode()		{ return m_locationCode; }
+		public String displayName()			{ return m_displayName; }
+		public String routeExchange()		{ return m_routeExchange; }
+		public List<String> instruments()	{ return m_instruments; }
+		public Location parent()			{ return m_parent; }
+		public List<Location> children()	{ return Collections.unmodifiableList( m_children); }
+
+		@Override public String toString() {
+			return m_locationCode + " " + m_displayName;
+		}
+	}
+
+	public Collection<ScanType> scanTypes()				{ return Collections.unmodifiableCollection( m_scanTypes.values() ); }
+	public Collection<InstrumentType> instruments()		{ return Collections.unmodifiableCollection( m_instruments.values() ); }
+	public Collection<Location> locations()				{ return Collections.unmodifiableCollection( m_locations.values() ); }
+	public List<Location> rootLocations()				{ return Collections.unmodifiableList( m_rootLocations); }
+
+	/** Returns the scan type with the given scan code, e.g. TOP_PERC_GAIN, or null. */
+	public ScanType scanType(String scanCode) {
+		return m_scanTypes.get( scanCode);
+	}
+
+	/** Returns the instrument type with the given type, e.g. STK, or null. */
+	public InstrumentType instrument(String type) {
+		return m_instruments.get( type);
+	}
+
+	/** Returns the location with the given code, e.g. STK.US.MAJOR, or null. */
+	public Location location(String locationCode) {
+		return m_locations.get( locationCode);
+	}
+
+	/** Returns the scan types available for an instrument type. */
+	public List<ScanType> scanTypes(String instrument) {
+		return unmodifiable( m_scanTypesByInstrument.get( instrument) );
+	}
+
+	/** Returns the locations available for an instrument type. */
+	public List<Location> locations(String instrument) {
+		return unmodifiable( m_locationsByInstrument.get( instrument) );
+	}
+
+	public static ScannerParameters parse(String xml) throws XMLStreamException {
+		return parse( Xml.reader( xml) );
+	}
+
+	/** Parses the XML from a stream, e.g. the one passed to EXmlStreamWrapper.scannerParameters(). */
+	public static ScannerParameters parse(InputStream xml) throws XMLStreamException {
+		return parse( Xml.reader( xml) );
+	}
+
+	private static ScannerParameters parse(XMLStreamReader reader) throws XMLStreamException {
+		ScannerParameters params = new ScannerParameters();
+		try {
+			if (!Xml.nextChild( reader) ) {
+				return params;
+			}
+			// children of the root element
+			while (Xml.nextChild( reader) ) {
+				switch (reader.getLocalName() ) {
+					case "InstrumentList":
+						while (Xml.nextChild( reader) ) {
+							if (reader.getLocalName().equals( "Instrument") ) {
+								params.add( parseInstrument( reader) );
+							}
+							else {
+								Xml.skip( reader);
+							}
+						}
+						break;
+					case "LocationTree":
+						params.parseLocations( reader, null);
+						break;
+					case "ScanTypeList":
+						while (Xml.nextChild( reader) ) {
+							if (reader.getLocalName().equals( "ScanType") ) {
+								params.add( parseScanType( reader) );
+							}
+							else {
+								Xml.skip( reader);
+							}
+						}
+						break;
+					default:
+						Xml.skip( reader);
+						break;
+				}
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return params;
+	}
+
+	private static InstrumentType parseInstrument(XMLStreamReader reader) throws XMLStreamException {
+		InstrumentType instrument = new InstrumentType();
+		while (Xml.nextChild( reader) ) {
+			switch (reader.getLocalName() ) {
+				case "type":		instrument.m_type = Xml.text( reader); break;
+				case "name":		instrument.m_name = Xml.text( reader); break;
+				case "group":		instrument.m_group = Xml.text( reader); break;
+				case "shortName":	instrument.m_shortName = Xml.text( reader); break;
+				case "filters":		instrument.m_filters = Xml.list( Xml.text( reader) ); break;
+				default:			Xml.skip( reader); break;
+			}
+		}
+		return instrument;
+	}
+
+	private static ScanType parseScanType(XMLStreamReader reader) throws XMLStreamException {
+		ScanType scanType = new ScanType();
+		while (Xml.nextChild( reader) ) {
+			switch (reader.getLocalName() ) {
+				case "scanCode":		scanType.m_scanCode = Xml.text( reader); break;
+				case "displayName":		scanType.m_displayName = Xml.text( reader); break;
+				case "instruments":		scanType.m_instruments = Xml.list( Xml.text( reader) ); break;
+				case "locationFilter":	scanType.m_locationFilter = Xml.text( reader); break;
+				case "access":			scanType.m_access = Xml.text( reader); break;
+				default:				Xml.skip( reader); break;
+			}
+		}
+		return scanType;
+	}
+
+	/** Reads the Location children of a LocationTree element; nested trees become children of their location. */
+	private void parseLocations(XMLStreamReader reader, Location parent) throws XMLStreamException {
+		while (Xml.nextChild( reader) ) {
+			if (!reader.getLocalName().equals( "Location") ) {
+				Xml.skip( reader);
+				continue;
+			}
+
+			Location location = new Location();
+			location.m_parent = parent;
+			while (Xml.nextChild( reader) ) {
+				switch (reader.getLocalName() ) {
+					case "locationCode":	location.m_locationCode = Xml.text( reader); break;
+					case "displayName":		location.m_displayName = Xml.text( reader); break;
+					case "routeExchange":	location.m_routeExchange = Xml.text( reader); break;
+					case "instruments":		location.m_instruments = Xml.list( Xml.text( reader) ); break;
+					case "LocationTree":	parseLocations( reader, location); break;
+					default:				Xml.skip( reader); break;
+				}
+			}
+			add( location);
+		}
+	}
+
+	private void add(InstrumentType instrument) {
+		if (instrument.m_type != null && !m_instruments.containsKey( instrument.m_type) ) {
+			m_instruments.put( instrument.m_type, instrument);
+		}
+	}
+
+	private void add(ScanType scanType) {
+		if (scanType.m_scanCode == null || m_scanTypes.containsKey( scanType.m_scanCode) ) {
+			return;
+		}
+		m_scanTypes.put( scanType.m_scanCode, scanType);
+		for (String instrument : scanType.m_instruments) {
+			m_scanTypesByInstrument.computeIfAbsent( instrument, k -> new ArrayList<>() ).add( scanType);
+		}
+	}
+
+	/** Called once the location and its subtree are complete. */
+	private void add(Location location) {
+		if (location.m_parent != null) {
+			location.m_parent.m_children.add( location);
+		}
+		else {
+			m_rootLocations.add( location);
+		}
+		if (location.m_locationCode != null && !m_locations.containsKey( location.m_locationCode) ) {
+			m_locations.put( location.m_locationCode, location);
+			for (String instrument : location.m_instruments) {
+				m_locationsByInstrument.computeIfAbsent( instrument, k -> new ArrayList<>() ).add( location);
+			}
+		}
+	}
+
+	private static <T> List<T> unmodifiable(List<T> list) {
+		return list == null ? Collections.emptyList() : Collections.unmodifiableList( list);
+	}
+
+	@Override public String toString() {
+		return "scanTypes=" + m_scanTypes.size() + " instruments=" + m_instruments.size() + " locations=" + m_locations.size();
+	}
+}
@@ -0,0 +1,392 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.ib.client.Contract;
+import com.ib.client.Decimal;
+import com.ib.client.TickAttrib;
+import com.ib.client.TickType;
+import com.ib.controller.ApiController.ITopMktDataHandler;
+
+/** Conflating delivery of top of book market data to consumers slower than the feed. The handler passed to TWS only
+ *  stores the latest price, size or string of each subscription and tick type in a slot table and marks it dirty, so
+ *  the processing thread never waits for a consumer and memory stays bounded by subscriptions times tick types.
+ *  Consumers call drain() at their own pace, on any thread, and get the latest value of every tick type changed since
+ *  the last drain; a value overwritten before it was drained is counted as conflated. Within a subscription the
+ *  values are delivered by tick type, not in the order received; marketDataType() and tickReqParams() come first
+ *  and tickSnapshotEnd() last. The optional notifier runs on the processing thread whenever the first subscription
+ *  becomes dirty after a drain, e.g. to schedule one. */
+public class TopMktDataConflater {
+	private static final TickType[] TYPES = TickType.values();
+	private static final int WORDS = (TYPES.length + 63) / 64;
+	private static final int INITIAL_SLOTS = 16;
+
+	private static final byte PRICE = 1;
+	private static final byte SIZE = 2;
+	private static final byte STRING = 3;
+
+	private static final int MARKET_DATA_TYPE = 1;
+	private static final int REQ_PARAMS = 2;
+	private static final int SNAPSHOT_END = 4;
+
+	private final ApiController m_controller;
+	private final Runnable m_notifier;
+	private final Object m_drainLock = new Object();
+
+	// slot table, guarded by this; cells are indexed by slot * TYPES.length + TickType ordinal
+	private final Map<ITopMktDataHandler,Producer> m_producers = new HashMap<>();
+	private ITopMktDataHandler[] m_consumers = new ITopMktDataHandler[INITIAL_SLOTS];
+	private byte[] m_kind = new byte[INITIAL_SLOTS * TYPES.length];
+	private double[] m_price = new double[INITIAL_SLOTS * TYPES.length];
+	private Object[] m_value = new Object[INITIAL_SLOTS * TYPES.length];	// TickAttrib, Decimal or String
+	private long[] m_dirty = new long[INITIAL_SLOTS * WORDS];
+	private int[] m_events = new int[INITIAL_SLOTS];
+	private int[] m_marketDataType = new int[INITIAL_SLOTS];
+	private int[] m_tickerId = new int[INITIAL_SLOTS];
+	private double[] m_minTick = new double[INITIAL_SLOTS];
+	private String[] m_bboExchange = new String[INITIAL_SLOTS];
+	private int[] m_snapshotPermissions = new int[INITIAL_SLOTS];
+	private long[] m_slotConflated = new long[INITIAL_SLOTS];
+	private boolean[] m_queued = new boolean[INITIAL_SLOTS];
+	private int[] m_queue = new int[INITIAL_SLOTS];		// ring of dirty slots, each at most once
+	private int m_queueHead;
+	private int m_queueSize;
+	private int[] m_free = new int[INITIAL_SLOTS];
+	private int m_freeCount;
+	private int m_slotCount;
+	private long m_updates;
+	private long m_conflated;
+	private long m_delivered;
+
+	// copy of one slot's changes, guarded by m_drainLock
+	private final int[] m_drainType = new int[TYPES.length];
+	private final byte[] m_drainKind = new byte[TYPES.length];
+	private final double[] m_drainPrice = new double[TYPES.length];
+	private final Object[] m_drainValue = new Object[TYPES.length];
+
+	/** @param notifier called when a drain becomes due, or null */
+	public TopMktDataConflater(ApiController controller, Runnable notifier) {
+		m_controller = controller;
+		m_notifier = notifier;
+	}
+
+	/** Requests top of book data which is delivered to the consumer by drain(). */
+	public void reqTopMktData(Contract contract, String genericTickList, boolean snapshot, boolean regulatorySnapshot,
+			ITopMktDataHandler consumer) {
+		m_controller.reqTopMktData( contract, genericTickList, snapshot, regulatorySnapshot, handler( consumer) );
+	}
+
+	public void cancelTopMktData(ITopMktDataHandler consumer) {
+		Producer producer;
+		synchronized( this) {
+			producer = m_producers.get( consumer);
+		}
+		if (producer != null) {
+			m_controller.cancelTopMktData( producer);
+			release( consumer);
+		}
+	}
+
+	/** Returns the handler to subscribe with, e.g. through a ConnectionSupervisor, so that the consumer is fed by
+	 *  drain(); the same handler for the same consumer until release(). */
+	public synchronized ITopMktDataHandler handler(ITopMktDataHandler consumer) {
+		Producer producer = m_producers.get( consumer);
+		if (producer == null) {
+			producer = new Producer( allocate( consumer) );
+			m_producers.put( consumer, producer);
+		}
+		return producer;
+	}
+
+	/** Frees the slot of a consumer whose subscription was canceled; its undrained values are discarded. */
+	public synchronized void release(ITopMktDataHandler consumer) {
+		Producer producer = m_producers.remove( consumer);
+		if (producer == null) {
+			return;
+		}
+		int slot = producer.m_slot;
+		producer.m_released = true;
+		m_consumers[slot] = null;
+		Arrays.fill( m_dirty, slot * WORDS, (slot + 1) * WORDS, 0);
+		Arrays.fill( m_value, slot * TYPES.length, (slot + 1) * TYPES.length, null);
+		m_events[slot] = 0;
+		m_bboExchange[slot] = null;
+		m_free[m_freeCount++] = slot;	// a queued slot stays queued and is skipped or reused
+	}
+
+	/** Number of subscriptions. */
+	public synchronized int subscriptions()		{ return m_producers.size(); }
+
+	/** Number of subscriptions with changes not drained yet. */
+	public synchronized int pending()			{ return m_queueSize; }
+
+	/** Ticks received. */
+	public synchronized long updates()			{ return m_updates; }
+
+	/** Ticks overwritten before they were drained. */
+	public synchronized long conflated()		{ return m_conflated; }
+
+	/** Callbacks made by drain(). */
+	public synchronized long delivered()		{ return m_delivered; }
+
+	/** Ticks of one consumer overwritten before they were drained. */
+	public synchronized long conflated(ITopMktDataHandler consumer) {
+		Producer producer = m_producers.get( consumer);
+		return producer != null ? m_slotConflated[producer.m_slot] : 0;
+	}
+
+	/** Delivers the latest values changed since the last drain on the calling thread; drains by several threads run
+	 *  one at a time. Returns the number of callbacks made. */
+	public int drain() {
+		return drain( Integer.MAX_VALUE);
+	}
+
+	/** Same as drain() for at most maxSubscriptions subscriptions; the others stay pending. */
+	public int drain(int maxSubscriptions) {
+		synchronized( m_drainLock) {
+			int callbacks = 0;
+			for (int i = 0; i < maxSubscriptions; i++) {
+				ITopMktDataHandler consumer;
+				int count = 0;
+				int events;
+				int marketDataType;
+				int tickerId;
+				double minTick;
+				String bboExchange;
+				int snapshotPermissions;
+
+				synchronized( this) {
+					if (m_queueSize == 0) {
+						break;
+					}
+					int slot = m_queue[m_queueHead];
+					m_queueHead = (m_queueHead + 1) % m_queue.length;
+					m_queueSize--;
+					m_queued[slot] = false;
+					consumer = m_consumers[slot];
+					if (consumer == null) {
+						continue;
+					}
+					for (int w = 0; w < WORDS; w++) {
+						long dirty = m_dirty[slot * WORDS + w];
+						m_dirty[slot * WORDS + w] = 0;
+						while (dirty != 0) {
+							int type = w * 64 + Long.numberOfTrailingZeros( dirty);
+							dirty &= dirty - 1;
+							int cell = slot * TYPES.length + type;
+							m_drainType[count] = type;
+							m_drainKind[count] = m_kind[cell];
+							m_drainPrice[count] = m_price[cell];
+							m_drainValue[count] = m_value[cell];
+							count++;
+						}
+					}
+					events = m_events[slot];
+					m_events[slot] = 0;
+					marketDataType = m_marketDataType[slot];
+					tickerId = m_tickerId[slot];
+					minTick = m_minTick[slot];
+					bboExchange = m_bboExchange[slot];
+					snapshotPermissions = m_snapshotPermissions[slot];
+				}
+
+				if ( (events & MARKET_DATA_TYPE) != 0) {
+					consumer.marketDataType( marketDataType);
+					callbacks++;
+				}
+				if ( (events & REQ_PARAMS) != 0) {
+					consumer.tickReqParams( tickerId, minTick, bboExchange, snapshotPermissions);
+					callbacks++;
+				}
+				for (int j = 0; j < count; j++) {
+					TickType type = TYPES[m_drainType[j]];
+					switch (m_drainKind[j]) {
+						case PRICE:
+							consumer.tickPrice( type, m_drainPrice[j], (TickAttrib)m_drainValue[j]);
+							break;
+						case SIZE:
+							consumer.tickSize( type, (Decimal)m_drainValue[j]);
+							break;
+						default:
+							consumer.tickString( type, (String)m_drainValue[j]);
+							break;
+					}
+					m_drainValue[j] = null;
+				}
+				callbacks += count;
+				if ( (events & SNAPSHOT_END) != 0) {
+					consumer.tickSnapshotEnd();
+					callbacks++;
+				}
+			}
+			synchronized( this) {
+				m_delivered += callbacks;
+			}
+			return callbacks;
+		}
+	}
+
+	private int allocate(ITopMktDataHandler consumer) {
+		int slot;
+		if (m_freeCount > 0) {
+			slot = m_free[--m_freeCount];
+		}
+		else {
+			if (m_slotCount == m_consumers.length) {
+				grow( m_consumers.length * 2);
+			}
+			slot = m_slotCount++;
+		}
+		m_consumers[slot] = consumer;
+		m_slotConflated[slot] = 0;
+		return slot;
+	}
+
+	private void grow(int capacity) {
+		m_consumers = Arrays.copyOf( m_consumers, capacity);
+		m_kind = Arrays.copyOf( m_kind, capacity * TYPES.length);
+		m_price = Arrays.copyOf( m_price, capacity * TYPES.length);
+		m_value = Arrays.copyOf( m_value, capacity * TYPES.length);
+		m_dirty = Arrays.copyOf( m_dirty, capacity * WORDS);
+		m_events = Arrays.copyOf( m_events, capacity);
+		m_marketDataType = Arrays.copyOf( m_marketDataType, capacity);
+		m_tickerId = Arrays.copyOf( m_tickerId, capacity);
+		m_minTick = Arrays.copyOf( m_minTick, capacity);
+		m_bboExchange = Arrays.copyOf( m_bboExchange, capacity);
+		m_snapshotPermissions = Arrays.copyOf( m_snapshotPermissions, capacity);
+		m_slotConflated = Arrays.copyOf( m_slotConflated, capacity);
+		m_queued = Arrays.copyOf( m_queued, capacity);
+		m_free = Arrays.copyOf( m_free, capacity);
+
+		// unroll the ring into the larger array
+		int[] queue = new int[capacity];
+		for (int i = 0; i < m_queueSize; i++) {
+			queue[i] = m_queue[(m_queueHead + i) % m_queue.length];
+		}
+		m_queue = queue;
+		m_queueHead = 0;
+	}
+
+	/** Marks a cell dirty, counting a conflation if it was already; returns true if the notifier is due. */
+	private boolean mark(int slot, int type) {
+		m_updates++;
+		int word = slot * WORDS + (type >>> 6);
+		long bit = 1L << (type & 63);
+		if ( (m_dirty[word] & bit) != 0) {
+			m_conflated++;
+			m_slotConflated[slot]++;
+		}
+		else {
+			m_dirty[word] |= bit;
+		}
+		return enqueue( slot);
+	}
+
+	private boolean enqueue(int slot) {
+		if (m_queued[slot]) {
+			return false;
+		}
+		m_queued[slot] = true;
+		m_queue[(m_queueHead + m_queueSize) % m_queue.length] = slot;
+		return m_queueSize++ == 0;
+	}
+
+	private void notifyDue(boolean due) {
+		if (due && m_notifier != null) {
+			m_notifier.run();
+		}
+	}
+
+	/** The handler subscribed with; called on the processing thread. */
+	private class Producer implements ITopMktDataHandler {
+		private final int m_slot;
+		private boolean m_released;	// guarded by the conflater
+
+		Producer(int slot) {
+			m_slot = slot;
+		}
+
+		@Override public void tickPrice(TickType tickType, double price, TickAttrib attribs) {
+			boolean due;
+			synchronized( TopMktDataConflater.this) {
+				if (m_released) {
+					return;
+				}
+				int cell = m_slot * TYPES.length + tickType.ordinal();
+				m_kind[cell] = PRICE;
+				m_price[cell] = price;
+				m_value[cell] = attribs;
+				due = mark( m_slot, tickType.ordinal() );
+			}
+			notifyDue( due);
+		}
+
+		@Override public void tickSize(TickType tickType, Decimal size) {
+			set( tickType, SIZE, size);
+		}
+
+		@Override public void tickString(TickType tickType, String value) {
+			set( tickType, STRING, value);
+		}
+
+		private void set(TickType tickType, byte kind, Object value) {
+			boolean due;
+			synchronized( TopMktDataConflater.this) {
+				if (m_released) {
+					return;
+				}
+				int cell = m_slot * TYPES.length + tickType.ordinal();
+				m_kind[cell] = kind;
+				m_value[cell] = value;
+				due = mark( m_slot, tickType.ordinal() );
+			}
+			notifyDue( due);
+		}
+
+		@Override public void marketDataType(int marketDataType) {
+			boolean due;
+			synchronized( TopMktDataConflater.this) {
+				if (m_released) {
+					return;
+				}
+				m_marketDataType[m_slot] = marketDataType;
+				m_events[m_slot] |= MARKET_DATA_TYPE;
+				due = enqueue( m_slot);
+			}
+			notifyDue( due);
+		}
+
+		@Override public void tickReqParams(int tickerId, double minTick, String bboExchange, int snapshotPermissions) {
+			boolean due;
+			synchronized( TopMktDataConflater.this) {
+				if (m_released) {
+					return;
+				}
+				m_tickerId[m_slot] = tickerId;
+				m_minTick[m_slot] = minTick;
+				m_bboExchange[m_slot] = bboExchange;
+				m_snapshotPermissions[m_slot] = snapshotPermissions;
+				m_events[m_slot] |= REQ_PARAMS;
+				due = enqueue( m_slot);
+			}
+			notifyDue( due);
+		}
+
+		@Override public void tickSnapshotEnd() {
+			boolean due;
+			synchronized( TopMktDataConflater.this) {
+				if (m_released) {
+					return;
+				}
+				m_events[m_slot] |= SNAPSHOT_END;
+				due = enqueue( m_slot);
+			}
+			notifyDue( due);
+		}
+	}
+}
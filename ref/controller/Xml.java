@@ -0,0 +1,122 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/** StAX helpers for the XML sent by TWS. Parsing walks elements by name, so it does not depend on line breaks,
+ *  indentation or the order of child elements; unknown elements are skipped. DTDs and external entities are disabled. */
+final class Xml {
+	private static final XMLInputFactory FACTORY = factory();
+
+	private Xml() {
+	}
+
+	static XMLStreamReader reader(InputStream xml) throws XMLStreamException {
+		return FACTORY.createXMLStreamReader( xml);
+	}
+
+	static XMLStreamReader reader(String xml) throws XMLStreamException {
+		return FACTORY.createXMLStreamReader( new StringReader( xml) );
+	}
+
+	/** Advances to the next child of the current element; returns false at the end of the current element. */
+	static boolean nextChild(XMLStreamReader reader) throws XMLStreamException {
+		while (reader.hasNext() ) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				return true;
+			}
+			if (event == XMLStreamConstants.END_ELEMENT) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/** Advances to the next element with the given name at any depth; returns false at the end of the document. */
+	static boolean next(XMLStreamReader reader, String name) throws XMLStreamException {
+		while (reader.hasNext() ) {
+			if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals( name) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Returns the trimmed text of the current element, or null if it is empty, and moves to its end.
+	 *  Text of nested elements is ignored. */
+	static String text(XMLStreamReader reader) throws XMLStreamException {
+		StringBuilder sb = null;
+		int depth = 1;
+		while (depth > 0) {
+			switch (reader.next() ) {
+				case XMLStreamConstants.START_ELEMENT:
+					depth++;
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					depth--;
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+					if (depth == 1) {
+						if (sb == null) {
+							sb = new StringBuilder();
+						}
+						sb.append( reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength() );
+					}
+					break;
+				default:
+					break;
+			}
+		}
+		String str = sb == null ? "" : sb.toString().trim();
+		return str.isEmpty() ? null : str;
+	}
+
+	/** Skips the current element and everything in it. */
+	static void skip(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			}
+			else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+	/** Splits a comma separated list; null gives an empty list. */
+	static List<String> list(String str) {
+		List<String> list = new ArrayList<>();
+		if (str != null) {
+			for (StringTokenizer st = new StringTokenizer( str, ","); st.hasMoreTokens(); ) {
+				String token = st.nextToken().trim();
+				if (!token.isEmpty() ) {
+					list.add( token);
+				}
+			}
+		}
+		return list;
+	}
+
+	private static XMLInputFactory factory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty( XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty( XMLInputFactory.IS_COALESCING, false);
+		return factory;
+	}
+}
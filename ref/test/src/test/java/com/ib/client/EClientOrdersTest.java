@@ -0,0 +1,184 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/** Compares the bytes of the fast order paths, templates and batches, with those of placeOrder(id, contract, order). */
+public class EClientOrdersTest {
+	private static final double[] PRICES = { Double.MAX_VALUE, 0, 101.25, 0.0001, 99999.5, -2.5 };
+	private static final String[] QUANTITIES = { "1", "100", "0.5", "12345678", "0.0001" };
+
+	/** Client recording the messages it sends instead of writing them to a socket. */
+	static class RecordingClient extends EClientSocket {
+		final List<byte[]> m_sent = new ArrayList<>();
+		final List<String> m_errors = new ArrayList<>();
+
+		RecordingClient() {
+			super( new DefaultEWrapper(), new EJavaSignal() );
+			m_serverVersion = EClient.MAX_VERSION;
+		}
+
+		@Override public synchronized boolean isConnected() {
+			return true;
+		}
+
+		@Override protected void sendMsg(EMessage msg) {
+			m_sent.add( msg.getRawData() );
+		}
+
+		@Override protected void error(int id, EClientErrors.CodeMsgPair pair, String tail) {
+			m_errors.add( id + " " + pair.code() );
+		}
+	}
+
+	/** Rejects limit prices above 200. */
+	static final PreTradeCheck PRICE_LIMIT = new PreTradeCheck() {
+		@Override public String name() {
+			return "PriceLimit";
+		}
+		@Override public String check(Contract contract, Order order) {
+			return order.lmtPrice() != Double.MAX_VALUE && order.lmtPrice() > 200 ? "price above 200" : null;
+		}
+	};
+
+	static Contract contract() {
+		Contract contract = new Contract();
+		contract.conid( 265598);
+		contract.symbol( "AAPL");
+		contract.secType( "STK");
+		contract.exchange( "SMART");
+		contract.currency( "USD");
+		return contract;
+	}
+
+	static Order order(String action, String quantity, double lmtPrice) {
+		Order order = new Order();
+		order.action( action);
+		order.orderType( "LMT");
+		order.totalQuantity( Decimal.parse( quantity) );
+		order.lmtPrice( lmtPrice);
+		order.tif( "DAY");
+		order.account( "DU1");
+		return order;
+	}
+
+	/** The bytes placeOrder(id, contract, order) sends. */
+	static byte[] placed(int id, Contract contract, Order order) {
+		RecordingClient client = new RecordingClient();
+		client.placeOrder( id, contract, order);
+		assertEquals( 1, client.m_sent.size(), String.valueOf( client.m_errors) );
+		return client.m_sent.get( 0);
+	}
+
+	@Test public void templateSendsTheBytesOfPlaceOrder() {
+		RecordingClient client = new RecordingClient();
+		Contract contract = contract();
+		OrderTemplate template = client.compileOrder( contract, order( "BUY", "100", 101.25) );
+
+		SplittableRandom random = new SplittableRandom( 7);
+		for (int i = 0; i < 200; i++) {
+			int id = random.nextInt( 3) == 0 ? random.nextInt( Integer.MAX_VALUE) : 1 + random.nextInt( 1000);
+			Decimal quantity = Decimal.parse( QUANTITIES[random.nextInt( QUANTITIES.length)]);
+			double lmtPrice = PRICES[random.nextInt( PRICES.length)];
+			double auxPrice = PRICES[random.nextInt( PRICES.length)];
+			assertTrue( client.placeOrder( template, id, quantity, lmtPrice, auxPrice) );
+
+			Order order = order( "BUY", "1", 0);
+			order.totalQuantity( quantity);
+			order.lmtPrice( lmtPrice);
+			order.auxPrice( auxPrice);
+			assertArrayEquals( placed( id, contract, order), client.m_sent.get( i), "id " + id + " " + quantity + " " + lmtPrice + " " + auxPrice);
+			assertEquals( id, template.order().orderId() );
+		}
+	}
+
+	@Test public void rejectedAmendLeavesTheTemplateUnchanged() {
+		RecordingClient client = new RecordingClient();
+		PreTradeChecks checks = new PreTradeChecks();
+		checks.add( PRICE_LIMIT);
+		client.preTradeChecks( checks);
+		OrderTemplate template = client.compileOrder( contract(), order( "SELL", "100", 101.25) );
+
+		assertTrue( client.placeOrder( template, 5, Decimal.get( 100), 150, Double.MAX_VALUE) );
+		assertFalse( client.placeOrder( template, 5, Decimal.get( 300), 250, Double.MAX_VALUE) );
+
+		assertEquals( 1, client.m_sent.size() );
+		assertEquals( "5 " + EClientErrors.PRE_TRADE_REJECT.code(), client.m_errors.get( 0) );
+		assertEquals( 150, template.order().lmtPrice() );
+		assertEquals( Decimal.get( 100), template.order().totalQuantity() );
+	}
+
+	@Test public void batchSendsTheBytesOfSinglePlaceOrders() throws Exception {
+		RecordingClient client = new RecordingClient();
+		Contract contract = contract();
+		List<BatchOrder> orders = new ArrayList<>();
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		SplittableRandom random = new SplittableRandom( 11);
+		for (int i = 0; i < 20; i++) {
+			Order order = order( random.nextBoolean() ? "BUY" : "SELL", QUANTITIES[random.nextInt( QUANTITIES.length)], PRICES[random.nextInt( PRICES.length)]);
+			order.orderId( 100 + i);
+			if (i > 0 && random.nextInt( 4) == 0) {
+				order.parentId( 100);
+				order.orderType( "STP");
+				order.auxPrice( 95);
+			}
+			orders.add( new BatchOrder( contract, order) );
+			expected.write( placed( order.orderId(), contract, order) );
+		}
+
+		assertEquals( orders, client.placeOrders( orders) );
+		assertEquals( 1, client.m_sent.size() );
+		assertArrayEquals( expected.toByteArray(), client.m_sent.get( 0) );
+	}
+
+	@Test public void batchLeavesOutRejectedOrdersAndCountsTheAcceptedOnes() throws Exception {
+		RecordingClient client = new RecordingClient();
+		PreTradeChecks checks = new PreTradeChecks();
+		checks.add( new PreTradeChecks.MaxPosition( 150, (account, conid) -> 0) );
+		client.preTradeChecks( checks);
+
+		Contract contract = contract();
+		Contract invalid = contract();
+		invalid.symbol( "AAPL\u00e9");	// not ASCII, fails encoding
+		List<BatchOrder> orders = Arrays.asList(
+				new BatchOrder( contract, order( "BUY", "100", 101)),
+				new BatchOrder( contract, order( "BUY", "100", 101)),		// 200 with the first
+				new BatchOrder( invalid, order( "BUY", "50", 101)),		// not sent, so not counted
+				new BatchOrder( contract, order( "SELL", "50", 101)),
+				new BatchOrder( contract, order( "BUY", "100", 101)) );	// 150 with the first and the fourth
+		for (int i = 0; i < orders.size(); i++) {
+			orders.get( i).order().orderId( 1 + i);
+		}
+
+		List<BatchOrder> sent = client.placeOrders( orders);
+
+		assertEquals( 3, sent.size() );
+		assertSame( orders.get( 0), sent.get( 0) );
+		assertSame( orders.get( 3), sent.get( 1) );
+		assertSame( orders.get( 4), sent.get( 2) );
+		assertEquals( Arrays.asList( "2 " + EClientErrors.PRE_TRADE_REJECT.code(), "3 " + EClientErrors.INVALID_SYMBOL.code() ), client.m_errors);
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		for (BatchOrder batchOrder : sent) {
+			expected.write( placed( batchOrder.order().orderId(), batchOrder.contract(), batchOrder.order() ) );
+		}
+		assertArrayEquals( expected.toByteArray(), client.m_sent.get( 0) );
+
+		// the next batch starts from the positions again
+		assertEquals( 1, client.placeOrders( Arrays.asList( new BatchOrder( contract, order( "BUY", "150", 101)) ) ).size() );
+	}
+}
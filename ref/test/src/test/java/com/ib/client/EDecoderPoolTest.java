@@ -0,0 +1,160 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import com.ib.controller.ApiController;
+
+public class EDecoderPoolTest {
+	private static final int SUBSCRIPTIONS = 4;
+	private static final int TICKS = 40;
+	private static final int[] CYCLE = { TickType.BID.index(), TickType.ASK.index(), TickType.LAST.index(), TickType.VOLUME.index() };
+
+	/** Records the ticks of each request with the thread which delivered them. */
+	private static class Wrapper extends DefaultEWrapper {
+		final List<List<Integer>> m_types = new ArrayList<>();
+		final List<List<Thread>> m_threads = new ArrayList<>();
+		final CountDownLatch m_ticks = new CountDownLatch( SUBSCRIPTIONS);
+		final CountDownLatch m_currentTime = new CountDownLatch( 1);
+		volatile Thread m_currentTimeThread;
+		volatile String m_error;
+
+		Wrapper() {
+			for (int i = 0; i < SUBSCRIPTIONS; i++) {
+				m_types.add( new ArrayList<>() );
+				m_threads.add( new ArrayList<>() );
+			}
+		}
+
+		@Override public void tickPrice(int tickerId, int field, double price, TickAttrib attribs) {
+			record( tickerId, field);
+		}
+
+		@Override public void tickSize(int tickerId, int field, Decimal size) {
+			if (field == TickType.VOLUME.index() ) {	// the others come with the prices
+				record( tickerId, field);
+			}
+		}
+
+		private void record(int tickerId, int field) {
+			List<Integer> types = m_types.get( tickerId);
+			synchronized( types) {
+				types.add( field);
+				m_threads.get( tickerId).add( Thread.currentThread() );
+				if (types.size() == TICKS) {
+					m_ticks.countDown();
+				}
+			}
+		}
+
+		@Override public void currentTime(long time) {
+			m_currentTimeThread = Thread.currentThread();
+			m_currentTime.countDown();
+		}
+
+		@Override public void error(Exception e) {
+			m_error = String.valueOf( e);
+		}
+	}
+
+	private static Contract contract(int conid) {
+		Contract contract = new Contract();
+		contract.conid( conid);
+		contract.symbol( "SYM" + conid);
+		contract.secType( "STK");
+		contract.exchange( "SMART");
+		contract.currency( "USD");
+		return contract;
+	}
+
+	@Test @Timeout( 30) public void requestsKeepTheirOrderAndBarriersRunOnTheProcessingThread() throws Exception {
+		try (TwsSimulator simulator = new TwsSimulator( 0) ) {
+			simulator.marketDataRate( 400);
+			simulator.start();
+			Wrapper wrapper = new Wrapper();
+			EJavaSignal signal = new EJavaSignal();
+			EClientSocket client = new EClientSocket( wrapper, signal);
+			client.setConnectOptions( "");
+			client.eConnect( "127.0.0.1", simulator.port(), 902);
+			assertTrue( client.isConnected() );
+
+			EReader reader = new EReader( client, signal);
+			reader.start();
+			EDecoderPool pool = new EDecoderPool( client, 3);
+			Thread processing = new Thread( () -> {
+				try {
+					while (client.isConnected() ) {
+						signal.waitForSignal();
+						reader.processMsgs( pool);
+					}
+				}
+				catch (Exception e) {
+					wrapper.error( e);
+				}
+			}, "processing");
+			processing.setDaemon( true);
+			processing.start();
+
+			try {
+				for (int i = 0; i < SUBSCRIPTIONS; i++) {
+					client.reqMktData( i, contract( 1000 + i), "", false, false, null);
+				}
+				assertTrue( wrapper.m_ticks.await( 10, TimeUnit.SECONDS) );
+				client.reqCurrentTime();
+				assertTrue( wrapper.m_currentTime.await( 10, TimeUnit.SECONDS) );
+			}
+			finally {
+				client.eDisconnect();
+				pool.close();
+			}
+
+			assertNull( wrapper.m_error);
+			assertSame( processing, wrapper.m_currentTimeThread);
+			assertTrue( pool.parallel() > 0);
+			assertTrue( pool.ordered() > 0);
+			for (int i = 0; i < SUBSCRIPTIONS; i++) {
+				List<Integer> types = wrapper.m_types.get( i);
+				List<Thread> threads = wrapper.m_threads.get( i);
+				synchronized( types) {
+					for (int j = 0; j < types.size(); j++) {
+						assertEquals( CYCLE[j % CYCLE.length], (int)types.get( j), "request " + i + " tick " + j);
+						assertSame( threads.get( 0), threads.get( j) );
+					}
+					assertTrue( threads.get( 0).getName().startsWith( "EDecoderPool-") );
+				}
+			}
+		}
+	}
+
+	@Test public void refusesSingleThreadedWrappers() {
+		ApiController controller = new ApiController( new ApiController.IConnectionHandler() {
+			@Override public void connected() {
+			}
+			@Override public void disconnected() {
+			}
+			@Override public void accountList(List<String> list) {
+			}
+			@Override public void error(Exception e) {
+			}
+			@Override public void message(int id, int errorCode, String errorMsg, String advancedOrderRejectJson) {
+			}
+			@Override public void show(String string) {
+			}
+		});
+		assertThrows( IllegalArgumentException.class, () -> new EDecoderPool( controller.client(), 2) );
+	}
+}
@@ -0,0 +1,214 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.EnumSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import com.ib.client.EReaderLimits.MsgClass;
+import com.ib.client.EReaderLimits.Policy;
+
+public class EReaderLimitsTest {
+	private static final int TICK_PRICE = 1;
+	private static final int ORDER_STATUS = 3;
+	private static final int MARKET_DEPTH = 12;
+
+	/** Client reading V100 frames from memory instead of a socket. */
+	private static class FrameClient extends EClientSocket {
+		private final ArrayDeque<byte[]> m_frames = new ArrayDeque<>();
+		private byte[] m_frame;
+
+		FrameClient(EReaderLimits limits) {
+			super( new DefaultEWrapper(), new EJavaSignal() );
+			readerLimits( limits);
+		}
+
+		/** Adds a message consisting of its id and a request id. */
+		void add(int msgId) {
+			m_frames.add( (msgId + "\0" + "1\0" + "7\0").getBytes( StandardCharsets.US_ASCII) );
+		}
+
+		@Override public boolean isUseV100Plus() {
+			return true;
+		}
+
+		@Override public synchronized boolean isConnected() {
+			return true;
+		}
+
+		@Override public int readInt() {
+			m_frame = m_frames.poll();
+			return m_frame.length;
+		}
+
+		@Override public int read(byte[] buf, int off, int len) {
+			System.arraycopy( m_frame, 0, buf, off, len);
+			return len;
+		}
+	}
+
+	/** Wrapper waiting for one error code. */
+	private static class Wrapper extends DefaultEWrapper {
+		final CountDownLatch m_received = new CountDownLatch( 1);
+		final int m_code;
+		volatile String m_msg;
+
+		Wrapper(int code) {
+			m_code = code;
+		}
+
+		@Override public void error(int id, int errorCode, String errorMsg, String advancedOrderRejectJson) {
+			if (errorCode == m_code) {
+				m_msg = errorMsg;
+				m_received.countDown();
+			}
+		}
+	}
+
+	@Test public void policyIsRequired() {
+		assertThrows( IllegalArgumentException.class, () -> new EReaderLimits( 10, 1000, null) );
+	}
+
+	@Test public void fullOnlyWithQueuedMessages() {
+		EReaderLimits limits = new EReaderLimits( 2, 100, Policy.BLOCK);
+
+		assertFalse( limits.isFull( 0, 0, 500) );		// a message is always queued into an empty queue
+		assertFalse( limits.isFull( 1, 50, 50) );
+		assertTrue( limits.isFull( 1, 50, 51) );
+		assertTrue( limits.isFull( 2, 0, 1) );
+	}
+
+	@Test public void classifiesMessages() {
+		assertEquals( MsgClass.TICKS, EReaderLimits.msgClass( 1) );
+		assertEquals( MsgClass.DEPTH, EReaderLimits.msgClass( 13) );
+		assertEquals( MsgClass.BARS, EReaderLimits.msgClass( 50) );
+		assertNull( EReaderLimits.msgClass( 3) );		// order status
+	}
+
+	@Test public void overloadIsCountedOnceAndResetByANewReader() {
+		EReaderLimits limits = new EReaderLimits( 1, Long.MAX_VALUE, Policy.DROP_MARKET_DATA);
+		limits.overloaded( true);
+		limits.overloaded( true);
+		assertEquals( 1, limits.overloads() );
+
+		EJavaSignal signal = new EJavaSignal();
+		EClientSocket client = new EClientSocket( new DefaultEWrapper(), signal);
+		client.readerLimits( limits);
+		new EReader( client, signal);
+
+		assertFalse( limits.isOverloaded() );
+		assertEquals( 1, limits.overloads() );
+	}
+
+	@Test @Timeout( 30) public void disconnectReportsTheLimits() throws Exception {
+		try (TwsSimulator simulator = new TwsSimulator( 0) ) {
+			simulator.start();
+			Wrapper wrapper = new Wrapper( EClientErrors.READER_QUEUE_OVERFLOW.code() );
+			EJavaSignal signal = new EJavaSignal();
+			EClientSocket client = new EClientSocket( wrapper, signal);
+			client.readerLimits( new EReaderLimits( 1, Long.MAX_VALUE, Policy.DISCONNECT) );
+			client.setConnectOptions( "");
+			client.eConnect( "127.0.0.1", simulator.port(), 901);
+			try {
+				new EReader( client, signal).start();	// messages are never processed, so the queue fills up
+
+				assertTrue( wrapper.m_received.await( 10, TimeUnit.SECONDS) );
+				assertTrue( wrapper.m_msg.startsWith( EClientErrors.READER_QUEUE_OVERFLOW.msg() ) );
+				assertTrue( wrapper.m_msg.contains( "DISCONNECT maxMessages=1") );
+			}
+			finally {
+				client.eDisconnect();
+			}
+		}
+	}
+
+	@Test public void overloadEndsAtHalfTheLimit() throws Exception {
+		EReaderLimits limits = new EReaderLimits( 4, Long.MAX_VALUE, Policy.DROP_MARKET_DATA);
+		limits.shed( EnumSet.noneOf( MsgClass.class) );
+		FrameClient client = new FrameClient( limits);
+		EReader reader = new EReader( client, new EJavaSignal() );
+		for (int i = 0; i < 5; i++) {
+			client.add( TICK_PRICE);
+			reader.putMessageToQueue();
+		}
+		assertTrue( limits.isOverloaded() );
+
+		// taking one message and queueing the next, as under steady load, stays one overload
+		for (int i = 0; i < 10; i++) {
+			reader.getMsg();
+			client.add( TICK_PRICE);
+			reader.putMessageToQueue();
+		}
+		assertEquals( 1, limits.overloads() );
+
+		reader.getMsg();
+		reader.getMsg();
+		assertTrue( limits.isOverloaded() );
+		reader.getMsg();
+		assertFalse( limits.isOverloaded() );	// 2 of 4 left
+	}
+
+	@Test public void dropShedsMarketDataOnly() throws Exception {
+		EReaderLimits limits = new EReaderLimits( 2, Long.MAX_VALUE, Policy.DROP_MARKET_DATA);
+		limits.shed( EnumSet.of( MsgClass.TICKS, MsgClass.DEPTH) );
+		FrameClient client = new FrameClient( limits);
+		EReader reader = new EReader( client, new EJavaSignal() );
+		int[] msgIds = { TICK_PRICE, TICK_PRICE, TICK_PRICE, ORDER_STATUS, MARKET_DEPTH, ORDER_STATUS };
+		for (int msgId : msgIds) {
+			client.add( msgId);
+			assertTrue( reader.putMessageToQueue() );
+		}
+
+		assertEquals( 1, limits.dropped( MsgClass.TICKS) );
+		assertEquals( 1, limits.dropped( MsgClass.DEPTH) );
+		assertEquals( 4, limits.highWaterMessages() );
+		int[] queued = { TICK_PRICE, TICK_PRICE, ORDER_STATUS, ORDER_STATUS };
+		for (int msgId : queued) {
+			assertEquals( msgId, reader.getMsg().intField( 0) );
+		}
+		assertNull( reader.getMsg() );
+	}
+
+	@Test @Timeout( 30) public void blockWaitsForRoom() throws Exception {
+		EReaderLimits limits = new EReaderLimits( 1, Long.MAX_VALUE, Policy.BLOCK);
+		FrameClient client = new FrameClient( limits);
+		EReader reader = new EReader( client, new EJavaSignal() );
+		client.add( ORDER_STATUS);
+		client.add( ORDER_STATUS);
+		reader.putMessageToQueue();
+
+		Thread putter = new Thread( () -> {
+			try {
+				reader.putMessageToQueue();
+			}
+			catch (Exception e) {
+				throw new RuntimeException( e);
+			}
+		});
+		putter.start();
+		while (putter.getState() != Thread.State.TIMED_WAITING && putter.getState() != Thread.State.WAITING) {
+			Thread.sleep( 1);
+		}
+		assertTrue( putter.isAlive() );
+		assertTrue( limits.isOverloaded() );
+
+		assertEquals( ORDER_STATUS, reader.getMsg().intField( 0) );
+		putter.join();
+		assertEquals( ORDER_STATUS, reader.getMsg().intField( 0) );
+		assertTrue( limits.blockedNanos() > 0);
+		assertEquals( 0, limits.dropped() );
+	}
+}
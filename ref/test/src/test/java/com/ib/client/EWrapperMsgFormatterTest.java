@@ -0,0 +1,162 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+/** Compares the text of EWrapperMsgFormatter with that of EWrapperMsgGenerator. */
+public class EWrapperMsgFormatterTest {
+	private static final long TIME = 1700000123;
+	private static final double[] PRICES = { 0, 101.25, -3.5, 1e-7, Double.MAX_VALUE };
+	private static final Decimal[] SIZES = { Decimal.ZERO, Decimal.get( 100), Decimal.parse( "0.0001"), Decimal.INVALID };
+
+	private final EWrapperMsgFormatter m_formatter = new EWrapperMsgFormatter();
+
+	private void same(String expected) {
+		assertEquals( expected, m_formatter.text().toString() );
+		m_formatter.text().setLength( 0);
+	}
+
+	private static Contract contract(int conid, String symbol) {
+		Contract contract = new Contract();
+		contract.conid( conid);
+		contract.symbol( symbol);
+		contract.secType( "OPT");
+		contract.lastTradeDateOrContractMonth( "20261120");
+		contract.strike( 150);
+		contract.right( "C");
+		contract.multiplier( "100");
+		contract.exchange( "SMART");
+		contract.currency( "USD");
+		contract.localSymbol( symbol + "  261120C00150000");
+		contract.tradingClass( symbol);
+		return contract;
+	}
+
+	@Test public void marketData() {
+		TickAttrib attribs = new TickAttrib();
+		attribs.canAutoExecute( true);
+		attribs.preOpen( true);
+		for (double price : PRICES) {
+			for (int field : new int[] { TickType.BID.index(), TickType.LAST.index(), 300 }) {
+				m_formatter.tickPrice( 7, field, price, attribs);
+				same( EWrapperMsgGenerator.tickPrice( 7, field, price, attribs) );
+			}
+			m_formatter.tickGeneric( 7, TickType.HALTED.index(), price);
+			same( EWrapperMsgGenerator.tickGeneric( 7, TickType.HALTED.index(), price) );
+			m_formatter.tickOptionComputation( 7, TickType.MODEL_OPTION.index(), 1, 0.25, price, 3.1, 0, 0.02, 0.1, -0.05, 150);
+			same( EWrapperMsgGenerator.tickOptionComputation( 7, TickType.MODEL_OPTION.index(), 1, 0.25, price, 3.1, 0, 0.02, 0.1, -0.05, 150) );
+		}
+		for (Decimal size : SIZES) {
+			for (int i = 0; i < 2; i++) {	// the second time from the cache
+				m_formatter.tickSize( 7, TickType.BID_SIZE.index(), size);
+				same( EWrapperMsgGenerator.tickSize( 7, TickType.BID_SIZE.index(), size) );
+			}
+			m_formatter.updateMktDepth( 8, 2, 1, 0, 101.25, size);
+			same( EWrapperMsgGenerator.updateMktDepth( 8, 2, 1, 0, 101.25, size) );
+			m_formatter.updateMktDepthL2( 8, 2, "ARCA", 1, 1, 101.26, size, true);
+			same( EWrapperMsgGenerator.updateMktDepthL2( 8, 2, "ARCA", 1, 1, 101.26, size, true) );
+		}
+		m_formatter.tickString( 7, TickType.LAST_TIMESTAMP.index(), "1700000123");
+		same( EWrapperMsgGenerator.tickString( 7, TickType.LAST_TIMESTAMP.index(), "1700000123") );
+	}
+
+	@Test public void ticksAndBars() {
+		TickAttribLast last = new TickAttribLast();
+		last.unreported( true);
+		TickAttribBidAsk bidAsk = new TickAttribBidAsk();
+		bidAsk.askPastHigh( true);
+		for (int i = 0; i < 2; i++) {
+			long time = TIME + i;
+			m_formatter.tickByTickAllLast( 9, 1, time, 101.25, Decimal.get( 300), last, "NYSE", "I");
+			same( EWrapperMsgGenerator.tickByTickAllLast( 9, 1, time, 101.25, Decimal.get( 300), last, "NYSE", "I") );
+			m_formatter.tickByTickBidAsk( 9, time, 101.24, 101.26, Decimal.get( 1), Decimal.get( 2), bidAsk);
+			same( EWrapperMsgGenerator.tickByTickBidAsk( 9, time, 101.24, 101.26, Decimal.get( 1), Decimal.get( 2), bidAsk) );
+			m_formatter.tickByTickMidPoint( 9, time, 101.25);
+			same( EWrapperMsgGenerator.tickByTickMidPoint( 9, time, 101.25) );
+			m_formatter.historicalTick( 9, time, 101.25, Decimal.get( 5) );
+			same( EWrapperMsgGenerator.historicalTick( 9, time, 101.25, Decimal.get( 5) ) );
+			m_formatter.historicalTickBidAsk( 9, time, bidAsk, 101.24, 101.26, Decimal.get( 1), Decimal.get( 2) );
+			same( EWrapperMsgGenerator.historicalTickBidAsk( 9, time, bidAsk, 101.24, 101.26, Decimal.get( 1), Decimal.get( 2) ) );
+			m_formatter.historicalTickLast( 9, time, last, 101.25, Decimal.get( 5), "ARCA", "");
+			same( EWrapperMsgGenerator.historicalTickLast( 9, time, last, 101.25, Decimal.get( 5), "ARCA", "") );
+			m_formatter.realtimeBar( 9, time, 1, 2, 0.5, 1.5, Decimal.get( 1000), Decimal.parse( "1.25"), 12);
+			same( EWrapperMsgGenerator.realtimeBar( 9, time, 1, 2, 0.5, 1.5, Decimal.get( 1000), Decimal.parse( "1.25"), 12) );
+		}
+		m_formatter.historicalData( 9, "20261019 09:30:00", 1, 2, 0.5, 1.5, Decimal.get( 1000), 12, Decimal.INVALID);
+		same( EWrapperMsgGenerator.historicalData( 9, "20261019 09:30:00", 1, 2, 0.5, 1.5, Decimal.get( 1000), 12, Decimal.INVALID) );
+	}
+
+	@Test public void ordersAndErrors() {
+		m_formatter.orderStatus( 11, "Submitted", Decimal.get( 10), Decimal.get( 90), 101.25, 555, 0, 101.25, 3, "", Double.MAX_VALUE);
+		same( EWrapperMsgGenerator.orderStatus( 11, "Submitted", Decimal.get( 10), Decimal.get( 90), 101.25, 555, 0, 101.25, 3, "", Double.MAX_VALUE) );
+
+		Execution execution = new Execution();
+		execution.orderId( 11);
+		execution.execId( "0001.01");
+		execution.time( "20261019 09:30:01");
+		execution.acctNumber( "DU1");
+		execution.side( "BOT");
+		execution.shares( Decimal.get( 10) );
+		execution.price( 101.25);
+		for (int i = 0; i < 2; i++) {
+			m_formatter.execDetails( 1, contract( 42, "AAPL"), execution);
+			same( EWrapperMsgGenerator.execDetails( 1, contract( 42, "AAPL"), execution) );
+		}
+
+		CommissionReport report = new CommissionReport();
+		report.execId( "0001.01");
+		report.commission( 1.05);
+		report.currency( "USD");
+		report.realizedPNL( Double.MAX_VALUE);
+		m_formatter.commissionReport( report);
+		same( EWrapperMsgGenerator.commissionReport( report) );
+
+		m_formatter.error( 11, 201, "Order rejected", null);
+		same( EWrapperMsgGenerator.error( 11, 201, "Order rejected", null) );
+		m_formatter.error( 11, 201, "Order rejected", "{\"reason\":\"x\"}");
+		same( EWrapperMsgGenerator.error( 11, 201, "Order rejected", "{\"reason\":\"x\"}") );
+	}
+
+	@Test public void accountsAndPositions() {
+		Contract contract = contract( 42, "AAPL");
+		m_formatter.position( "DU1", contract, Decimal.get( 10), 101.25);
+		same( EWrapperMsgGenerator.position( "DU1", contract, Decimal.get( 10), 101.25) );
+
+		// same conid with other fields, which must not come from the cache
+		Contract changed = contract( 42, "MSFT");
+		m_formatter.position( "DU1", changed, Decimal.get( 10), 101.25);
+		same( EWrapperMsgGenerator.position( "DU1", changed, Decimal.get( 10), 101.25) );
+
+		m_formatter.updatePortfolio( contract, Decimal.get( 10), 101, 1010, 100, 10, 0, "DU1");
+		same( EWrapperMsgGenerator.updatePortfolio( contract, Decimal.get( 10), 101, 1010, 100, 10, 0, "DU1") );
+		m_formatter.positionMulti( 3, "DU1", "MODEL", contract, Decimal.get( -5), 99);
+		same( EWrapperMsgGenerator.positionMulti( 3, "DU1", "MODEL", contract, Decimal.get( -5), 99) );
+		m_formatter.updateAccountValue( "NetLiquidation", "1000.5", "USD", "DU1");
+		same( EWrapperMsgGenerator.updateAccountValue( "NetLiquidation", "1000.5", "USD", "DU1") );
+		m_formatter.accountSummary( 4, "DU1", "NetLiquidation", "1000.5", "USD");
+		same( EWrapperMsgGenerator.accountSummary( 4, "DU1", "NetLiquidation", "1000.5", "USD") );
+		m_formatter.accountUpdateMulti( 4, "DU1", "MODEL", "NetLiquidation", "1000.5", "USD");
+		same( EWrapperMsgGenerator.accountUpdateMulti( 4, "DU1", "MODEL", "NetLiquidation", "1000.5", "USD") );
+		m_formatter.pnl( 5, 1.5, -2, Double.MAX_VALUE);
+		same( EWrapperMsgGenerator.pnl( 5, 1.5, -2, Double.MAX_VALUE) );
+		m_formatter.pnlSingle( 5, Decimal.get( 10), 1.5, -2, 0, 1010);
+		same( EWrapperMsgGenerator.pnlSingle( 5, Decimal.get( 10), 1.5, -2, 0, 1010) );
+	}
+
+	@Test public void writerGetsTheSameText() {
+		StringWriter writer = new StringWriter();
+		EWrapperMsgFormatter formatter = new EWrapperMsgFormatter( writer);
+		TickAttrib attribs = new TickAttrib();
+		formatter.tickPrice( 7, TickType.ASK.index(), 101.25, attribs);
+		formatter.position( "DU1", contract( 42, "AAPL"), Decimal.get( 10), 101.25);
+
+		assertEquals( EWrapperMsgGenerator.tickPrice( 7, TickType.ASK.index(), 101.25, attribs)
+				+ EWrapperMsgGenerator.position( "DU1", contract( 42, "AAPL"), Decimal.get( 10), 101.25), writer.toString() );
+	}
+}
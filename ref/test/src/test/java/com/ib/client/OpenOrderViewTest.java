@@ -0,0 +1,181 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+/** Checks the lazy accessors of OpenOrderView against the eager decode of the same frame. Frames are made by
+ *  running EDecoder's own order decoding against a recorder which answers every read with a random value of the
+ *  requested type, so they follow EOrderDecoder's layout at each server version, including the optional groups. */
+public class OpenOrderViewTest {
+	private static final int OPEN_ORDER = 5;
+	private static final int COMPLETED_ORDER = 101;
+	private static final int FRAMES = 40;
+
+	private static final List<Function<OpenOrderView,Object>> ACCESSORS = Arrays.asList(
+			OpenOrderView::orderId, OpenOrderView::conid, OpenOrderView::symbol, OpenOrderView::secType,
+			OpenOrderView::exchange, OpenOrderView::currency, OpenOrderView::localSymbol, OpenOrderView::action,
+			OpenOrderView::totalQuantity, OpenOrderView::orderType, OpenOrderView::lmtPrice, OpenOrderView::auxPrice,
+			OpenOrderView::tif, OpenOrderView::account, OpenOrderView::clientId, OpenOrderView::permId,
+			OpenOrderView::status);
+
+	/** Decoder recording the fields it is asked for, each answered with a random value of its type. */
+	private static class Recorder extends EDecoder {
+		private final SplittableRandom m_random;
+		private final List<String> m_fields = new ArrayList<>();
+		private int m_msgId;
+
+		Recorder(int serverVersion, long seed) {
+			super( serverVersion, new DefaultEWrapper() );
+			m_random = new SplittableRandom( seed);
+		}
+
+		/** Records a frame of the message with the given id; null if EDecoder rejected the random values. */
+		static byte[] frame(int serverVersion, int msgId, long seed) {
+			Recorder recorder = new Recorder( serverVersion, seed);
+			recorder.m_msgId = msgId;
+			byte[] id = (msgId + "\0").getBytes( StandardCharsets.US_ASCII);
+			try {
+				recorder.processMsg( new EMessage( id, id.length) );
+			}
+			catch (IOException | RuntimeException e) {
+				return null;
+			}
+			StringBuilder sb = new StringBuilder();
+			for (String field : recorder.m_fields) {
+				sb.append( field).append( '\0');
+			}
+			return sb.toString().getBytes( StandardCharsets.ISO_8859_1);
+		}
+
+		private String next(String... choices) {
+			String value = choices[m_random.nextInt( choices.length)];
+			m_fields.add( value);
+			return value.isEmpty() ? null : value;
+		}
+
+		@Override public String readStr() {
+			return next( "", "s" + m_fields.size() );
+		}
+
+		@Override public int readInt() {
+			if (m_fields.isEmpty() ) {
+				return Integer.parseInt( next( String.valueOf( m_msgId) ) );
+			}
+			String str = next( "", "0", "0", "1");	// mostly empty groups, which keeps the conditions parsable
+			return str == null ? 0 : Integer.parseInt( str);
+		}
+
+		@Override public int readIntMax() {
+			String str = next( "", "0", "7");
+			return str == null ? Integer.MAX_VALUE : Integer.parseInt( str);
+		}
+
+		@Override public long readLong() {
+			String str = next( "", String.valueOf( 1000000000L + m_fields.size() ) );
+			return str == null ? 0 : Long.parseLong( str);
+		}
+
+		@Override public double readDouble() {
+			String str = next( "", "0", "1.25");
+			return str == null ? 0 : Double.parseDouble( str);
+		}
+
+		@Override public double readDoubleMax() {
+			String str = next( "", "0", "101.5", "0.25");
+			return str == null ? Double.MAX_VALUE : Double.parseDouble( str);
+		}
+
+		@Override public Decimal readDecimal() {
+			String str = next( "", "100", "0.5", String.valueOf( Long.MAX_VALUE) );
+			return str == null || str.equals( String.valueOf( Long.MAX_VALUE) ) ? Decimal.INVALID : Decimal.parse( str);
+		}
+
+		@Override public boolean readBoolFromInt() {
+			String str = next( "0", "1");
+			return Integer.parseInt( str) != 0;
+		}
+	}
+
+	/** The values the view would return if every accessor decoded in full. */
+	private static Object[] eager(byte[] frame, int serverVersion, boolean completed) throws IOException {
+		Contract contract = new Contract();
+		Order order = new Order();
+		OrderState orderState = new OrderState();
+		EDecoder.decodeOrder( frame, serverVersion, completed, contract, order, orderState);
+		return new Object[] {
+			completed ? 0 : order.orderId(), contract.conid(), contract.symbol(), contract.getSecType(), contract.exchange(),
+			contract.currency(), contract.localSymbol(), order.getAction(), order.totalQuantity(), order.getOrderType(),
+			order.lmtPrice(), order.auxPrice(), order.getTif(), order.account(), completed ? 0 : order.clientId(),
+			order.permId(), orderState.getStatus() };
+	}
+
+	private static int compare(int msgId) throws IOException {
+		boolean completed = msgId == COMPLETED_ORDER;
+		int first = completed ? EClient.MIN_SERVER_VER_REQ_COMPLETED_ORDERS : EClient.MIN_VERSION;
+		int frames = 0;
+		for (int version = first; version <= EClient.MAX_VERSION; version++) {
+			for (long seed = 0; seed < FRAMES; seed++) {
+				byte[] frame = Recorder.frame( version, msgId, seed);
+				if (frame == null) {
+					continue;
+				}
+				Object[] expected = eager( frame, version, completed);
+				OpenOrderView view = new OpenOrderView( frame, version, completed);
+				for (int i = 0; i < ACCESSORS.size(); i++) {
+					Object actual = ACCESSORS.get( i).apply( view);
+					assertTrue( Objects.equals( expected[i], actual),
+							"version " + version + " seed " + seed + " accessor " + i + ": " + expected[i] + " != " + actual);
+				}
+				frames++;
+			}
+		}
+		return frames;
+	}
+
+	@Test public void openOrderMatchesEagerDecode() throws IOException {
+		int frames = compare( OPEN_ORDER);
+		assertTrue( frames > (EClient.MAX_VERSION - EClient.MIN_VERSION) * FRAMES / 2, "only " + frames + " frames");
+	}
+
+	@Test public void completedOrderMatchesEagerDecode() throws IOException {
+		int frames = compare( COMPLETED_ORDER);
+		assertTrue( frames > (EClient.MAX_VERSION - EClient.MIN_SERVER_VER_REQ_COMPLETED_ORDERS) * FRAMES / 2, "only " + frames + " frames");
+	}
+
+	@Test public void truncatedFramesFailClearly() {
+		int version = EClient.MAX_VERSION;
+		byte[] frame = null;
+		for (long seed = 0; frame == null; seed++) {
+			frame = Recorder.frame( version, OPEN_ORDER, seed);
+		}
+		OpenOrderView full = new OpenOrderView( frame, version, false);
+
+		for (int length = 1; length < frame.length; length++) {
+			OpenOrderView view = new OpenOrderView( Arrays.copyOf( frame, length), version, false);
+			for (int i = 0; i < ACCESSORS.size(); i++) {
+				Object value;
+				try {
+					value = ACCESSORS.get( i).apply( view);
+				}
+				catch (IllegalStateException e) {
+					continue;
+				}
+				assertEquals( ACCESSORS.get( i).apply( full), value, "length " + length + " accessor " + i);
+			}
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import com.ib.client.Contract;
+import com.ib.client.TwsSimulator;
+import com.ib.controller.ApiController.TopMktDataAdapter;
+
+public class ApiControllerPoolTest {
+	/** Pool handler recording messages with their connection. */
+	static class PoolHandler extends ApiControllerTest.ConnectionHandler implements ApiControllerPool.IPoolConnectionHandler {
+		final CountDownLatch m_connected = new CountDownLatch( 1);
+		final List<String> m_poolMessages = new ArrayList<>();
+
+		@Override public void connected() {
+			m_connected.countDown();
+		}
+
+		@Override public void message(int shard, int id, int errorCode, String errorMsg, String advancedOrderRejectJson) {
+			m_poolMessages.add( shard + ":" + id + ":" + errorCode);
+		}
+	}
+
+	private static Contract contract(int conid) {
+		Contract contract = new Contract();
+		contract.conid( conid);
+		contract.symbol( "SYM" + conid);
+		contract.secType( "STK");
+		contract.exchange( "SMART");
+		contract.currency( "USD");
+		return contract;
+	}
+
+	@Test public void messagesCarryTheirConnection() {
+		PoolHandler handler = new PoolHandler();
+		ApiControllerPool pool = new ApiControllerPool( 3, handler);
+
+		pool.controller( 2).error( 5, 300, "Can't find EId", null);
+		pool.controller( 0).error( 5, 300, "Can't find EId", null);
+
+		assertEquals( 2, handler.m_poolMessages.size() );
+		assertEquals( "2:5:300", handler.m_poolMessages.get( 0) );
+		assertEquals( "0:5:300", handler.m_poolMessages.get( 1) );
+		assertTrue( handler.m_messages.isEmpty() );
+	}
+
+	@Test @Timeout( 30) public void snapshotsStopCountingWhenTheyEnd() throws Exception {
+		try (TwsSimulator simulator = new TwsSimulator( 0) ) {
+			simulator.start();
+			PoolHandler handler = new PoolHandler();
+			ApiControllerPool pool = new ApiControllerPool( 2, handler);
+			pool.connect( "127.0.0.1", simulator.port(), 900, "");
+			try {
+				assertTrue( handler.m_connected.await( 10, TimeUnit.SECONDS) );
+
+				final CountDownLatch ended = new CountDownLatch( 1);
+				Contract contract = contract( 1001);
+				int shard = pool.shard( contract);
+				pool.reqTopMktData( contract, "", true, false, new TopMktDataAdapter() {
+					@Override public void tickSnapshotEnd() {
+						ended.countDown();
+					}
+				});
+				TopMktDataAdapter streaming = new TopMktDataAdapter();
+				pool.reqTopMktData( contract, "", false, false, streaming);
+
+				assertTrue( ended.await( 10, TimeUnit.SECONDS) );
+				long deadline = System.currentTimeMillis() + 5000;
+				while (pool.subscriptions( shard) != 1 && System.currentTimeMillis() < deadline) {
+					Thread.sleep( 10);
+				}
+				assertEquals( 1, pool.subscriptions( shard) );
+
+				pool.cancelTopMktData( streaming);
+				assertEquals( 0, pool.subscriptions( shard) );
+			}
+			finally {
+				pool.disconnect();
+			}
+		}
+	}
+}
@@ -0,0 +1,184 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import com.ib.client.BatchOrder;
+import com.ib.client.Contract;
+import com.ib.client.Decimal;
+import com.ib.client.EClientErrors;
+import com.ib.client.Order;
+import com.ib.client.OrderState;
+import com.ib.client.OrderStatus;
+import com.ib.client.PreTradeChecks;
+import com.ib.client.TwsSimulator;
+import com.ib.client.Types.FADataType;
+import com.ib.client.Types.Method;
+
+public class ApiControllerTest {
+	private static final String XML = "<?xml version=\"1.0\"?><ScanParameterResponse></ScanParameterResponse>";
+
+	/** Connection handler recording errors. */
+	static class ConnectionHandler implements ApiController.IConnectionHandler {
+		final List<Exception> m_errors = new ArrayList<>();
+		final List<String> m_messages = new ArrayList<>();
+
+		@Override public void connected() {
+		}
+		@Override public void disconnected() {
+		}
+		@Override public void accountList(List<String> list) {
+		}
+		@Override public void error(Exception e) {
+			m_errors.add( e);
+		}
+		@Override public void message(int id, int errorCode, String errorMsg, String advancedOrderRejectJson) {
+			m_messages.add( id + " " + errorCode + " " + errorMsg);
+		}
+		@Override public void show(String string) {
+		}
+	}
+
+	@Test public void streamedScannerParametersReachStringOverride() {
+		final List<String> received = new ArrayList<>();
+		ApiController controller = new ApiController( new ConnectionHandler() ) {
+			@Override public void scannerParameters(String xml) {
+				received.add( xml);
+			}
+		};
+
+		controller.scannerParameters( new ByteArrayInputStream( XML.getBytes( StandardCharsets.ISO_8859_1) ) );
+
+		assertEquals( 1, received.size() );
+		assertEquals( XML, received.get( 0) );
+	}
+
+	@Test public void streamedScannerParametersWithoutHandlerAreIgnored() {
+		ConnectionHandler handler = new ConnectionHandler();
+		ApiController controller = new ApiController( handler);
+
+		controller.scannerParameters( new ByteArrayInputStream( XML.getBytes( StandardCharsets.ISO_8859_1) ) );
+		controller.scannerParameters( XML);
+
+		assertEquals( 0, handler.m_errors.size() );
+	}
+
+	@Test public void faGroupsParseTheSameFromStringAndStream() {
+		Group group = new Group();
+		group.name( "Growth");
+		group.defaultMethod( Method.Equal);
+		group.setAllAccounts( "DU1;DU2");
+		String xml = AdvisorUtil.getGroupsXml( Collections.singletonList( group) );
+
+		final List<String> received = new ArrayList<>();
+		ApiController controller = new ApiController( new ConnectionHandler() ) {
+			@Override protected boolean checkConnection() {
+				return true;
+			}
+		};
+		controller.reqAdvisorData( FADataType.GROUPS, new ApiController.IAdvisorHandler() {
+			@Override public void groups(List<Group> groups) {
+				received.add( groups.get( 0).name() + " " + groups.get( 0).accounts().size() );
+			}
+			@Override public void aliases(List<Alias> aliases) {
+			}
+			@Override public void updateGroupsEnd(String text) {
+			}
+		});
+
+		controller.receiveFA( FADataType.GROUPS.id(), xml);
+		controller.receiveFA( FADataType.GROUPS.id(), new ByteArrayInputStream( xml.getBytes( StandardCharsets.UTF_8) ) );
+
+		assertEquals( 2, received.size() );
+		assertEquals( "Growth 2", received.get( 0) );
+		assertEquals( received.get( 0), received.get( 1) );
+	}
+
+	/** Order handler recording error codes and waiting for the first status. */
+	static class OrderHandler implements ApiController.IOrderHandler {
+		final List<Integer> m_errors = Collections.synchronizedList( new ArrayList<>() );
+		final CountDownLatch m_status = new CountDownLatch( 1);
+
+		@Override public void orderState(OrderState orderState, Order order) {
+		}
+		@Override public void orderStatus(OrderStatus status, Decimal filled, Decimal remaining, double avgFillPrice, long permId,
+				int parentId, double lastFillPrice, int clientId, String whyHeld, double mktCapPrice) {
+			m_status.countDown();
+		}
+		@Override public void handle(int errorCode, String errorMsg) {
+			m_errors.add( errorCode);
+		}
+	}
+
+	private static BatchOrder batchOrder(String quantity) {
+		Contract contract = new Contract();
+		contract.conid( 265598);
+		contract.symbol( "AAPL");
+		contract.secType( "STK");
+		contract.exchange( "SMART");
+		contract.currency( "USD");
+		Order order = new Order();
+		order.action( "BUY");
+		order.orderType( "LMT");
+		order.totalQuantity( Decimal.parse( quantity) );
+		order.lmtPrice( 101);
+		return new BatchOrder( contract, order);
+	}
+
+	@Test @Timeout( 30) public void batchKeepsHandlersAndBlotterEntriesOfSentOrdersOnly() throws Exception {
+		try (TwsSimulator simulator = new TwsSimulator( 0) ) {
+			simulator.start();
+			final CountDownLatch connected = new CountDownLatch( 1);
+			ApiController controller = new ApiController( new ConnectionHandler() {
+				@Override public void connected() {
+					connected.countDown();
+				}
+			});
+			controller.connect( "127.0.0.1", simulator.port(), 903, "");
+			try {
+				assertTrue( connected.await( 10, TimeUnit.SECONDS) );
+				PreTradeChecks checks = new PreTradeChecks();
+				checks.add( new PreTradeChecks.MaxPosition( 150, (account, conid) -> 0) );
+				controller.client().preTradeChecks( checks);
+
+				List<BatchOrder> orders = Arrays.asList( batchOrder( "100"), batchOrder( "100"), batchOrder( "50") );
+				List<OrderHandler> handlers = Arrays.asList( new OrderHandler(), new OrderHandler(), new OrderHandler() );
+				assertEquals( 2, controller.placeOrModifyOrders( orders, new ArrayList<>( handlers) ) );
+
+				int rejectedId = orders.get( 1).order().orderId();
+				assertEquals( Collections.singletonList( EClientErrors.PRE_TRADE_REJECT.code() ), handlers.get( 1).m_errors);
+				assertNull( controller.orderBlotter().order( rejectedId) );
+				for (int i : new int[] { 0, 2 }) {
+					OrderBlotter.Entry entry = controller.orderBlotter().order( orders.get( i).order().orderId() );
+					assertNotNull( entry);
+					assertNotSame( orders.get( i).order(), entry.order() );
+					assertTrue( handlers.get( i).m_status.await( 10, TimeUnit.SECONDS) );
+				}
+
+				controller.error( rejectedId, 399, "late message", null);	// no longer reaches the handler
+				assertEquals( 1, handlers.get( 1).m_errors.size() );
+			}
+			finally {
+				controller.disconnect();
+			}
+		}
+	}
+}
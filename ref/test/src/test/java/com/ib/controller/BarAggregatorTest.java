@@ -0,0 +1,125 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class BarAggregatorTest {
+	private static final int CONID = 265598;
+	private static final long T0 = 1700000100;	// a multiple of 60
+
+	/** Collects completed bars by size. */
+	private static class Collector implements BarAggregator.IBarHandler {
+		final List<Bar> m_completed = new ArrayList<>();
+		final List<Integer> m_sizes = new ArrayList<>();
+
+		@Override public void barUpdated(int conid, int barSize, Bar bar) {
+		}
+
+		@Override public void barCompleted(int conid, int barSize, Bar bar) {
+			m_completed.add( bar);
+			m_sizes.add( barSize);
+		}
+
+		List<Bar> bars(int barSize) {
+			List<Bar> bars = new ArrayList<>();
+			for (int i = 0; i < m_completed.size(); i++) {
+				if (m_sizes.get( i) == barSize) {
+					bars.add( m_completed.get( i) );
+				}
+			}
+			return bars;
+		}
+	}
+
+	@Test public void buildsBarsFromTicks() {
+		Collector collector = new Collector();
+		BarAggregator aggregator = new BarAggregator( collector, 60);
+
+		aggregator.tick( CONID, T0, 10, 100);
+		aggregator.tick( CONID, T0 + 30, 12, 100);
+		aggregator.tick( CONID, T0 + 59, 11, 200);
+		aggregator.advanceTo( T0 + 60);
+
+		Bar bar = collector.bars( 60).get( 0);
+		assertEquals( T0, bar.time() );
+		assertEquals( 10, bar.open() );
+		assertEquals( 12, bar.high() );
+		assertEquals( 10, bar.low() );
+		assertEquals( 11, bar.close() );
+		assertEquals( 400, bar.volume().doubleValue() );
+		assertEquals( 3, bar.count() );
+	}
+
+	@Test public void mixedFeedsTakeEachIntervalFromOneSource() {
+		Collector collector = new Collector();
+		BarAggregator aggregator = new BarAggregator( collector, 1, 60);
+
+		// ticks in the first 5 seconds, then the real-time bar covering the same interval
+		aggregator.tick( CONID, T0, 10, 100);
+		aggregator.tick( CONID, T0 + 3, 11, 100);
+		aggregator.realtimeBar( CONID, T0, 10, 11, 10, 11, 200, 10.5, 2);
+		// no ticks in the next interval, so its real-time bar is used
+		aggregator.realtimeBar( CONID, T0 + 5, 11, 13, 11, 12, 50, 12, 1);
+		// a tick arriving after the real-time bar of its interval
+		aggregator.tick( CONID, T0 + 7, 12, 10);
+		aggregator.advanceTo( T0 + 60);
+
+		Bar minute = collector.bars( 60).get( 0);
+		assertEquals( 250, minute.volume().doubleValue() );
+		assertEquals( 3, minute.count() );
+		assertEquals( 13, minute.high() );
+		assertEquals( 12, minute.close() );
+
+		// 1-second bars come from ticks only, including the one the minute bar ignored
+		assertEquals( 3, collector.bars( 1).size() );
+	}
+
+	@Test public void realtimeBarsAloneFeedMultiplesOfFiveSeconds() {
+		Collector collector = new Collector();
+		BarAggregator aggregator = new BarAggregator( collector, 1, 10);
+
+		aggregator.realtimeBar( CONID, T0, 10, 11, 9, 10, 100, 10, 5);
+		aggregator.realtimeBar( CONID, T0 + 5, 10, 12, 10, 11, 100, 11, 5);
+		aggregator.advanceTo( T0 + 10);
+
+		assertEquals( 0, collector.bars( 1).size() );
+		Bar bar = collector.bars( 10).get( 0);
+		assertEquals( 200, bar.volume().doubleValue() );
+		assertEquals( 10, bar.count() );
+	}
+
+	@Test public void lateDataDoesNotRepublishACompletedBar() {
+		Collector collector = new Collector();
+		BarAggregator aggregator = new BarAggregator( collector, 60);
+
+		aggregator.tick( CONID, T0 + 10, 10, 100);
+		aggregator.advanceTo( T0 + 60);
+		aggregator.tick( CONID, T0 + 50, 11, 100);	// belongs to the completed bar
+		aggregator.advanceTo( T0 + 120);
+
+		assertEquals( 1, collector.bars( 60).size() );
+		assertEquals( 100, collector.bars( 60).get( 0).volume().doubleValue() );
+		assertEquals( 1, aggregator.lateUpdates() );
+	}
+
+	@Test public void lateDataIsDroppedOnceTheNextBarStarted() {
+		Collector collector = new Collector();
+		BarAggregator aggregator = new BarAggregator( collector, 60);
+
+		aggregator.tick( CONID, T0 + 10, 10, 100);
+		aggregator.tick( CONID, T0 + 70, 11, 100);	// completes the first bar
+		aggregator.tick( CONID, T0 + 20, 12, 100);
+		aggregator.advanceTo( T0 + 120);
+
+		assertEquals( 2, collector.bars( 60).size() );
+		assertEquals( 10, collector.bars( 60).get( 0).high() );
+		assertEquals( 1, aggregator.lateUpdates() );
+	}
+}
@@ -0,0 +1,151 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import com.ib.client.Contract;
+import com.ib.client.TickAttrib;
+import com.ib.client.TickType;
+import com.ib.client.TwsSimulator;
+import com.ib.controller.ApiController.TopMktDataAdapter;
+
+public class ConnectionSupervisorTest {
+	/** Connection handler counting connects. */
+	static class ConnectionHandler extends ApiControllerTest.ConnectionHandler {
+		final Semaphore m_connected = new Semaphore( 0);
+
+		@Override public void connected() {
+			m_connected.release();
+		}
+	}
+
+	/** Counts prices; waits for the end of a snapshot. */
+	static class MktDataHandler extends TopMktDataAdapter {
+		final AtomicInteger m_prices = new AtomicInteger();
+		final CountDownLatch m_snapshotEnd = new CountDownLatch( 1);
+
+		@Override public void tickPrice(TickType tickType, double price, TickAttrib attribs) {
+			m_prices.incrementAndGet();
+		}
+
+		@Override public void tickSnapshotEnd() {
+			m_snapshotEnd.countDown();
+		}
+	}
+
+	private static Contract contract(int conid) {
+		Contract contract = new Contract();
+		contract.conid( conid);
+		contract.symbol( "SYM" + conid);
+		contract.secType( "STK");
+		contract.exchange( "SMART");
+		contract.currency( "USD");
+		return contract;
+	}
+
+	private static void awaitPrices(MktDataHandler handler) throws InterruptedException {
+		handler.m_prices.set( 0);
+		long deadline = System.currentTimeMillis() + 10000;
+		while (handler.m_prices.get() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep( 10);
+		}
+		assertTrue( handler.m_prices.get() > 0);
+	}
+
+	@Test @Timeout( 30) public void reconnectReplaysSubscriptionsButNotSnapshots() throws Exception {
+		try (TwsSimulator simulator = new TwsSimulator( 0) ) {
+			simulator.marketDataRate( 100);
+			simulator.start();
+			ConnectionHandler handler = new ConnectionHandler();
+			ConnectionSupervisor supervisor = new ConnectionSupervisor( handler);
+			try {
+				// a snapshot requested while disconnected goes out once connected, and only then
+				MktDataHandler early = new MktDataHandler();
+				supervisor.reqTopMktData( contract( 1000), "", true, false, early);
+				assertEquals( 1, supervisor.journalSize() );
+
+				supervisor.connect( "127.0.0.1", simulator.port(), 904, "");
+				assertTrue( handler.m_connected.tryAcquire( 10, TimeUnit.SECONDS) );
+				assertTrue( early.m_snapshotEnd.await( 10, TimeUnit.SECONDS) );
+				assertEquals( 0, supervisor.journalSize() );
+
+				MktDataHandler streaming = new MktDataHandler();
+				MktDataHandler snapshot = new MktDataHandler();
+				supervisor.reqTopMktData( contract( 1001), "", false, false, streaming);
+				supervisor.reqTopMktData( contract( 1002), "", true, false, snapshot);
+				assertEquals( 1, supervisor.journalSize() );
+				assertTrue( snapshot.m_snapshotEnd.await( 10, TimeUnit.SECONDS) );
+				awaitPrices( streaming);
+
+				supervisor.reconnect();
+				assertTrue( handler.m_connected.tryAcquire( 10, TimeUnit.SECONDS) );
+				awaitPrices( streaming);
+				early.m_prices.set( 0);
+				snapshot.m_prices.set( 0);
+
+				assertEquals( 1, supervisor.reconnects() );
+				assertEquals( 1, supervisor.replayed() );
+				assertEquals( 1, supervisor.journalSize() );
+
+				supervisor.cancelTopMktData( streaming);
+				assertEquals( 0, supervisor.journalSize() );
+				Thread.sleep( 200);
+				assertEquals( 0, early.m_prices.get() + snapshot.m_prices.get() );	// the snapshots were not requested again
+			}
+			finally {
+				supervisor.close();
+			}
+		}
+	}
+
+	@Test @Timeout( 30) public void requestsDuringAReplayGetTheirOwnReqIds() throws Exception {
+		try (TwsSimulator simulator = new TwsSimulator( 0) ) {
+			simulator.marketDataRate( 50);
+			simulator.start();
+			ConnectionHandler handler = new ConnectionHandler();
+			ConnectionSupervisor supervisor = new ConnectionSupervisor( handler);
+			supervisor.maxRequestsPerSecond( 100);
+			try {
+				supervisor.connect( "127.0.0.1", simulator.port(), 905, "");
+				assertTrue( handler.m_connected.tryAcquire( 10, TimeUnit.SECONDS) );
+				MktDataHandler[] streaming = new MktDataHandler[20];
+				for (int i = 0; i < streaming.length; i++) {
+					streaming[i] = new MktDataHandler();
+					supervisor.reqTopMktData( contract( 2000 + i), "", false, false, streaming[i]);
+				}
+
+				supervisor.reconnect();
+				assertTrue( handler.m_connected.tryAcquire( 10, TimeUnit.SECONDS) );
+				MktDataHandler[] snapshots = new MktDataHandler[20];
+				for (int i = 0; i < snapshots.length; i++) {	// while the replay runs on the supervisor's thread
+					snapshots[i] = new MktDataHandler();
+					MktDataHandler snapshot = snapshots[i];
+					Contract contract = contract( 3000 + i);
+					supervisor.request( () -> supervisor.controller().reqTopMktData( contract, "", true, false, snapshot) );
+				}
+
+				for (MktDataHandler snapshot : snapshots) {
+					assertTrue( snapshot.m_snapshotEnd.await( 10, TimeUnit.SECONDS) );
+				}
+				for (MktDataHandler subscription : streaming) {
+					awaitPrices( subscription);
+				}
+				assertEquals( streaming.length, supervisor.replayed() );
+			}
+			finally {
+				supervisor.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.ib.client.PriceIncrement;
+import com.ib.controller.MarketRules.Direction;
+
+public class MarketRulesTest {
+	private static final PriceIncrement[] RULE = {
+			new PriceIncrement( 0, 0.0001), new PriceIncrement( 1, 0.01) };
+
+	/** Controller recording market rule requests. */
+	private static class Controller extends ApiController {
+		final List<Integer> m_requests = new ArrayList<>();
+
+		Controller() {
+			super( new ApiControllerTest.ConnectionHandler() );
+		}
+
+		@Override public void reqMarketRule(int marketRuleId, IMarketRuleHandler handler) {
+			m_requests.add( marketRuleId);
+		}
+	}
+
+	@Test public void roundsWithinBands() {
+		MarketRules rules = new MarketRules( null);
+		rules.add( 26, RULE);
+
+		assertEquals( 0.3, rules.roundToTick( 0.30004, 26, Direction.DOWN) );
+		assertEquals( 1.24, rules.roundToTick( 1.235, 26, Direction.NEAREST) );
+		assertEquals( 1.01, rules.addTicks( 0.9999, 2, 26) );
+		assertEquals( 2, rules.ticksBetween( 0.9999, 1.01, 26) );
+		assertEquals( -0.3, rules.roundToTick( -0.30004, 26, Direction.UP) );
+	}
+
+	@Test public void requestWithoutControllerDoesNothing() {
+		MarketRules rules = new MarketRules( null);
+		rules.request( 26);
+		assertFalse( rules.isKnown( 26) );
+	}
+
+	@Test public void outstandingRequestIsSentOnce() {
+		Controller controller = new Controller();
+		MarketRules rules = new MarketRules( controller);
+
+		rules.request( 26);
+		rules.request( 26);
+		assertEquals( 1, controller.m_requests.size() );
+
+		rules.marketRule( 26, RULE);
+		rules.request( 26);
+		assertEquals( 1, controller.m_requests.size() );
+		assertTrue( rules.isKnown( 26) );
+	}
+
+	@Test public void unansweredRequestIsSentAgain() {
+		Controller controller = new Controller();
+		MarketRules rules = new MarketRules( controller);
+
+		rules.request( 26);
+		rules.clearRequests();
+		rules.request( 26);
+		assertEquals( 2, controller.m_requests.size() );
+
+		rules.requestTimeout( 0);
+		rules.request( 26);
+		assertEquals( 3, controller.m_requests.size() );
+	}
+}
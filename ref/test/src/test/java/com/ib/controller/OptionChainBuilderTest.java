@@ -0,0 +1,104 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+import com.ib.client.Contract;
+import com.ib.client.ContractDetails;
+import com.ib.client.Types.SecType;
+
+public class OptionChainBuilderTest {
+	private static final int UNDERLYING = 265598;
+
+	/** Controller answering requests through its EWrapper methods, without a connection. Request ids start at 0. */
+	private static class Controller extends ApiController {
+		Controller() {
+			super( new ApiControllerTest.ConnectionHandler() );
+		}
+
+		@Override protected boolean checkConnection() {
+			return true;
+		}
+
+		void params(int reqId, Double... strikes) {
+			securityDefinitionOptionalParameter( reqId, "SMART", UNDERLYING, "AAPL", "100",
+					Collections.singleton( "20261120"), new TreeSet<>( Arrays.asList( strikes) ) );
+			securityDefinitionOptionalParameterEnd( reqId);
+		}
+
+		void answer(int reqId) {
+			ContractDetails details = new ContractDetails();
+			details.contract().conid( 1000 + reqId);
+			contractDetails( reqId, details);
+			contractDetailsEnd( reqId);
+		}
+	}
+
+	private static Contract underlying() {
+		Contract contract = new Contract();
+		contract.conid( UNDERLYING);
+		contract.symbol( "AAPL");
+		contract.secType( SecType.STK);
+		contract.currency( "USD");
+		return contract;
+	}
+
+	@Test public void missingLegEndsOnce() {
+		Controller controller = new Controller();
+		OptionChainBuilder builder = new OptionChainBuilder( controller);
+		builder.maxInFlight( 1);
+		final List<List<OptionChain>> loaded = new ArrayList<>();
+
+		builder.load( underlying(), "SMART", 100, 105, loaded::add);
+		controller.params( 0, 100.0, 105.0);	// four legs, requests 1 to 4
+		assertEquals( 1, builder.requests() );
+
+		controller.error( 1, 200, "No security definition has been found for the request", null);
+		assertEquals( 2, builder.requests() );
+		assertEquals( 0, loaded.size() );
+
+		controller.answer( 2);
+		controller.answer( 3);
+		assertEquals( 0, loaded.size() );
+		controller.answer( 4);
+
+		assertEquals( 4, builder.requests() );
+		assertEquals( 1, loaded.size() );
+		OptionChain chain = loaded.get( 0).get( 0);
+		assertEquals( 2, chain.strikes( 0) );
+		assertNull( chain.call( 0, 0) );
+		assertNotNull( chain.put( 0, 0) );
+		assertEquals( 4, builder.cacheSize() );
+	}
+
+	@Test public void cachedLegsAreNotRequestedAgain() {
+		Controller controller = new Controller();
+		OptionChainBuilder builder = new OptionChainBuilder( controller);
+		final List<List<OptionChain>> loaded = new ArrayList<>();
+
+		builder.load( underlying(), "SMART", 100, 100, loaded::add);
+		controller.params( 0, 100.0);
+		controller.answer( 1);
+		controller.error( 2, 200, "No security definition has been found for the request", null);
+		assertEquals( 1, loaded.size() );
+
+		builder.load( underlying(), "SMART", 100, 100, loaded::add);
+		controller.params( 3, 100.0);
+
+		assertEquals( 2, builder.requests() );
+		assertEquals( 2, loaded.size() );
+		assertEquals( 1, loaded.get( 1).get( 0).strikes( 0) );
+	}
+}
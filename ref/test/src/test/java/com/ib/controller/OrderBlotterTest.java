@@ -0,0 +1,107 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+import com.ib.client.CommissionReport;
+import com.ib.client.Contract;
+import com.ib.client.Decimal;
+import com.ib.client.Execution;
+import com.ib.client.OrderStatus;
+
+public class OrderBlotterTest {
+	private static final int CLIENT_ID = 7;
+	private static final int ORDER_ID = 100;
+	private static final long PERM_ID = 555;
+
+	private static Execution execution(String execId, int shares, double price) {
+		Execution execution = new Execution();
+		execution.execId( execId);
+		execution.orderId( ORDER_ID);
+		execution.clientId( CLIENT_ID);
+		execution.permId( PERM_ID);
+		execution.shares( Decimal.get( shares) );
+		execution.price( price);
+		return execution;
+	}
+
+	private static CommissionReport commission(String execId, double commission) {
+		CommissionReport report = new CommissionReport();
+		report.execId( execId);
+		report.commission( commission);
+		report.realizedPNL( Double.MAX_VALUE);
+		return report;
+	}
+
+	private static OrderBlotter blotter() {
+		OrderBlotter blotter = new OrderBlotter();
+		blotter.clientId( CLIENT_ID);
+		return blotter;
+	}
+
+	@Test public void totalsFollowFillsAndCorrections() {
+		OrderBlotter blotter = blotter();
+		Contract contract = new Contract();
+
+		blotter.execDetails( contract, execution( "0001.01", 100, 10) );
+		blotter.execDetails( contract, execution( "0002.01", 100, 12) );
+		blotter.execDetails( contract, execution( "0001.02", 50, 10) );	// correction of the first fill
+
+		OrderBlotter.Entry entry = blotter.order( ORDER_ID);
+		assertEquals( Decimal.get( 150), entry.filled() );
+		assertEquals( (50 * 10 + 100 * 12) / 150.0, entry.avgFillPrice(), 1e-9);
+		assertEquals( 2, entry.fills().size() );
+		assertEquals( "0001.02", entry.fills().get( 0).execution().execId() );
+		assertEquals( "0002.01", entry.fills().get( 1).execution().execId() );
+	}
+
+	@Test public void commissionsAttachToTheirFill() {
+		OrderBlotter blotter = blotter();
+		Contract contract = new Contract();
+
+		blotter.commissionReport( commission( "0001.01", 1.5) );	// before its execution
+		blotter.execDetails( contract, execution( "0001.01", 100, 10) );
+		blotter.execDetails( contract, execution( "0002.01", 100, 10) );
+		blotter.commissionReport( commission( "0002.01", 2) );
+
+		OrderBlotter.Entry entry = blotter.order( ORDER_ID);
+		assertEquals( 3.5, entry.commission(), 1e-9);
+		assertNotNull( entry.fills().get( 0).commissionReport() );
+		assertEquals( 2, entry.fills().get( 1).commissionReport().commission(), 1e-9);
+	}
+
+	@Test public void publishedEntriesDoNotChange() {
+		OrderBlotter blotter = blotter();
+		Contract contract = new Contract();
+
+		blotter.execDetails( contract, execution( "0001.01", 100, 10) );
+		OrderBlotter.Entry before = blotter.order( ORDER_ID);
+		for (int i = 2; i <= 20; i++) {
+			blotter.execDetails( contract, execution( String.format( "%04d.01", i), 10, 10) );
+		}
+		blotter.execDetails( contract, execution( "0001.02", 1, 10) );
+
+		assertEquals( 1, before.fills().size() );
+		assertEquals( "0001.01", before.fills().get( 0).execution().execId() );
+		assertEquals( Decimal.get( 100), before.filled() );
+
+		OrderBlotter.Entry after = blotter.order( ORDER_ID);
+		assertEquals( 20, after.fills().size() );
+		assertEquals( Decimal.get( 191), after.filled() );
+	}
+
+	@Test public void finalStatusIsKept() {
+		OrderBlotter blotter = blotter();
+		blotter.orderStatus( ORDER_ID, OrderStatus.Filled, Decimal.get( 100), Decimal.ZERO, 10, PERM_ID, 0, 10, CLIENT_ID, null);
+		blotter.orderStatus( ORDER_ID, OrderStatus.Submitted, Decimal.get( 50), Decimal.get( 50), 10, PERM_ID, 0, 10, CLIENT_ID, null);
+
+		assertSame( OrderStatus.Filled, blotter.order( ORDER_ID).status() );
+		assertEquals( Decimal.get( 100), blotter.filled( ORDER_ID) );
+	}
+}
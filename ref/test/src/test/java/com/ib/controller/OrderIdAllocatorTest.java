@@ -0,0 +1,79 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class OrderIdAllocatorTest {
+	@TempDir Path m_dir;
+
+	@Test public void seedOnlyRaisesTheCounter() {
+		OrderIdAllocator allocator = new OrderIdAllocator();
+		allocator.seed( 100);
+		assertEquals( 100, allocator.next() );
+		assertEquals( 101, allocator.reserve( 3) );
+
+		allocator.seed( 50);	// e.g. TWS was reset
+		assertEquals( 104, allocator.next() );
+		assertThrows( IllegalArgumentException.class, () -> allocator.reserve( 0) );
+	}
+
+	@Test public void threadsTakeDisjointBlocks() throws Exception {
+		OrderIdAllocator allocator = new OrderIdAllocator( null, 10);
+		allocator.seed( 1000);
+		Set<Integer> ids = ConcurrentHashMap.newKeySet();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread( () -> {
+				for (int i = 0; i < 250; i++) {
+					ids.add( allocator.next() );
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals( 1000, ids.size() );
+		assertEquals( 2000, allocator.peek() );
+
+		int inBlock = allocator.next();
+		allocator.seed( 1);
+		assertEquals( 2010, allocator.next() );	// the block taken before the seed is dropped
+		assertTrue( inBlock < 2010);
+	}
+
+	@Test public void restartContinuesAboveIdsHandedOut() throws IOException {
+		Path file = m_dir.resolve( "orderIds");
+		OrderIdAllocator allocator = new OrderIdAllocator( file, 1);
+		allocator.seed( 500);
+		int last = 0;
+		for (int i = 0; i < OrderIdAllocator.PERSIST_AHEAD + 10; i++) {
+			last = allocator.next();
+		}
+
+		OrderIdAllocator restarted = new OrderIdAllocator( file, 1);
+		restarted.seed( 500);	// TWS does not know the ids of the previous session
+		assertTrue( restarted.next() > last);
+	}
+
+	@Test public void rejectsCorruptFile() throws IOException {
+		Path file = m_dir.resolve( "orderIds");
+		Files.write( file, "abc".getBytes( StandardCharsets.US_ASCII) );
+		assertThrows( IOException.class, () -> new OrderIdAllocator( file, 1) );
+	}
+}
@@ -0,0 +1,81 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import com.ib.client.Contract;
+import com.ib.client.Decimal;
+import com.ib.client.Order;
+import com.ib.client.PreTradeChecks;
+
+public class PositionBookTest {
+	private static Contract contract(int conid) {
+		Contract contract = new Contract();
+		contract.conid( conid);
+		contract.symbol( "SYM" + conid);
+		return contract;
+	}
+
+	private static Order order(String account, String action, int quantity) {
+		Order order = new Order();
+		order.account( account);
+		order.action( action);
+		order.totalQuantity( Decimal.get( quantity) );
+		return order;
+	}
+
+	@Test public void positionIsPerAccountOverAllModels() {
+		PositionBook book = new PositionBook();
+		book.positionMulti( "DU1", "", contract( 1), Decimal.get( 100), 10);
+		book.positionMulti( "DU1", "MODEL", contract( 1), Decimal.get( 50), 10);
+		book.position( "DU2", contract( 1), Decimal.get( -30), 10);
+
+		assertEquals( 150, book.position( "DU1", 1) );
+		assertEquals( -30, book.position( "DU2", 1) );
+		assertEquals( 0, book.position( "DU3", 1) );
+		assertEquals( 0, book.position( "DU1", 2) );
+	}
+
+	@Test public void emptyAccountMeansAllAccounts() {
+		PositionBook book = new PositionBook();
+		book.position( "DU1", contract( 1), Decimal.get( 100), 10);
+		book.position( "DU2", contract( 1), Decimal.get( 20), 10);
+
+		assertEquals( 120, book.position( "", 1) );
+		assertEquals( 120, book.position( null, 1) );
+	}
+
+	@Test public void positionFollowsUpdatesAndNewContracts() {
+		PositionBook book = new PositionBook();
+		book.position( "DU1", contract( 1), Decimal.get( 100), 10);
+		assertEquals( 100, book.position( "DU1", 1) );
+
+		book.position( "DU1", contract( 1), Decimal.get( 40), 10);
+		for (int conid = 2; conid < 200; conid++) {
+			book.position( "DU1", contract( conid), Decimal.get( conid), 10);
+		}
+
+		assertEquals( 40, book.position( "DU1", 1) );
+		assertEquals( 199, book.position( "DU1", 199) );
+
+		book.clear();
+		assertEquals( 0, book.position( "DU1", 1) );
+	}
+
+	@Test public void maxPositionChecksOrdersWithoutAccount() {
+		PositionBook book = new PositionBook();
+		book.position( "DU1", contract( 1), Decimal.get( 90), 10);
+		PreTradeChecks.MaxPosition check = new PreTradeChecks.MaxPosition( 100, book);
+
+		assertNotNull( check.check( contract( 1), order( "", "BUY", 20) ) );
+		assertNull( check.check( contract( 1), order( "", "BUY", 10) ) );
+		assertNull( check.check( contract( 1), order( "", "SELL", 150) ) );	// reduces the absolute position
+		assertNull( check.check( contract( 1), order( "DU2", "BUY", 20) ) );
+	}
+}
@@ -0,0 +1,100 @@
+/* Copyright (C) 2024 Interactive Brokers LLC. All rights reserved. This code is subject to the terms
+ * and conditions of the IB API Non-Commercial License or the IB API Commercial License, as applicable. */
+
+package com.ib.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.ib.client.Decimal;
+import com.ib.client.TickAttrib;
+import com.ib.client.TickType;
+import com.ib.controller.ApiController.ITopMktDataHandler;
+import com.ib.controller.ApiController.TopMktDataAdapter;
+
+public class TopMktDataConflaterTest {
+	/** Consumer recording its callbacks. */
+	private static class Consumer extends TopMktDataAdapter {
+		final List<String> m_calls = new ArrayList<>();
+
+		@Override public void tickPrice(TickType tickType, double price, TickAttrib attribs) {
+			m_calls.add( tickType + "=" + price);
+		}
+		@Override public void tickSize(TickType tickType, Decimal size) {
+			m_calls.add( tickType + "=" + size);
+		}
+		@Override public void marketDataType(int marketDataType) {
+			m_calls.add( "type=" + marketDataType);
+		}
+		@Override public void tickSnapshotEnd() {
+			m_calls.add( "end");
+		}
+	}
+
+	@Test public void deliversLatestValuesByTickType() {
+		TopMktDataConflater conflater = new TopMktDataConflater( null, null);
+		Consumer consumer = new Consumer();
+		ITopMktDataHandler producer = conflater.handler( consumer);
+
+		producer.tickSnapshotEnd();
+		producer.tickPrice( TickType.ASK, 10.02, null);
+		producer.tickPrice( TickType.BID, 10, null);
+		producer.tickPrice( TickType.BID, 10.01, null);
+		producer.tickSize( TickType.VOLUME, Decimal.get( 300) );
+		producer.marketDataType( 3);
+
+		assertEquals( 1, conflater.pending() );
+		assertEquals( 5, conflater.drain() );
+		assertEquals( "[type=3, BID=10.01, ASK=10.02, VOLUME=300, end]", consumer.m_calls.toString() );
+		assertEquals( 4, conflater.updates() );
+		assertEquals( 1, conflater.conflated() );
+		assertEquals( 1, conflater.conflated( consumer) );
+		assertEquals( 0, conflater.drain() );
+	}
+
+	@Test public void notifiesOncePerDrain() {
+		final int[] notified = new int[1];
+		TopMktDataConflater conflater = new TopMktDataConflater( null, () -> notified[0]++);
+		ITopMktDataHandler first = conflater.handler( new Consumer() );
+		ITopMktDataHandler second = conflater.handler( new Consumer() );
+
+		first.tickPrice( TickType.BID, 1, null);
+		second.tickPrice( TickType.BID, 2, null);
+		first.tickPrice( TickType.ASK, 1.01, null);
+		assertEquals( 1, notified[0] );
+		assertEquals( 2, conflater.pending() );
+
+		assertEquals( 2, conflater.drain( 1) );
+		assertEquals( 1, conflater.pending() );
+		conflater.drain();
+		second.tickPrice( TickType.BID, 2.01, null);
+		assertEquals( 2, notified[0] );
+	}
+
+	@Test public void releasedSlotsAreReused() {
+		TopMktDataConflater conflater = new TopMktDataConflater( null, null);
+		Consumer gone = new Consumer();
+		ITopMktDataHandler producer = conflater.handler( gone);
+		assertSame( producer, conflater.handler( gone) );
+
+		producer.tickPrice( TickType.BID, 1, null);
+		conflater.release( gone);
+		producer.tickPrice( TickType.BID, 2, null);	// late tick of the canceled subscription
+
+		Consumer consumer = new Consumer();
+		conflater.handler( consumer).tickPrice( TickType.LAST, 3, null);
+		for (int i = 0; i < 40; i++) {
+			conflater.handler( new Consumer() );		// grows the table
+		}
+		conflater.drain();
+
+		assertEquals( 0, gone.m_calls.size() );
+		assertEquals( "[LAST=3.0]", consumer.m_calls.toString() );
+		assertEquals( 41, conflater.subscriptions() );
+	}
+}